@@ -0,0 +1,45 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * File helpers for benchmark fixtures.
+ *
+ * @author pdgreen
+ */
+final class BenchmarkFiles {
+
+  private BenchmarkFiles() {
+  }
+
+  static File createTempDirectory(final String prefix) throws IOException {
+    final File directory = File.createTempFile(prefix, "");
+    if (!directory.delete() || !directory.mkdir()) {
+      throw new IOException("unable to create directory " + directory);
+    }
+    return directory;
+  }
+
+  static void writeProperties(final File file, final int keys) throws IOException {
+    final FileWriter writer = new FileWriter(file);
+    try {
+      for (int i = 0; i < keys; i++) {
+        writer.write("application.setting." + i + "=value-" + i + "\n");
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  static void delete(final File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (final File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
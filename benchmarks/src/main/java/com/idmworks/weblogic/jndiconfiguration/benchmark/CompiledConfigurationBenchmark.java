@@ -0,0 +1,84 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import com.idmworks.weblogic.jndiconfiguration.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Startup cost of binding a manifest of string, typed and properties entries from its source files compared with
+ * binding the same entries from a compiled configuration.
+ *
+ * @author pdgreen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledConfigurationBenchmark {
+
+  @Param({"10", "200"})
+  public int propertiesFiles;
+  private File directory;
+  private File manifest;
+  private File compiled;
+  private InitialContext initialContext;
+
+  @Setup
+  public void createFiles() throws IOException {
+    directory = BenchmarkFiles.createTempDirectory("compiled-benchmark");
+    manifest = new File(directory, "jndi.manifest");
+    final FileWriter writer = new FileWriter(manifest);
+    try {
+      for (int i = 0; i < 100; i++) {
+        writer.write("string app/strings/group" + (i % 10) + "/string" + i + "=value" + i + "\n");
+        writer.write("typed app/typed/group" + (i % 10) + "/timeout" + i + ":duration=" + i + "s\n");
+      }
+      for (int i = 0; i < propertiesFiles; i++) {
+        final File file = new File(directory, "file" + i + ".properties");
+        BenchmarkFiles.writeProperties(file, 50);
+        writer.write("properties app/properties/group" + (i % 10) + "/properties" + i + "=" + file.getPath() + "\n");
+      }
+    } finally {
+      writer.close();
+    }
+    compiled = new File(directory, "jndi.compiled");
+    CompiledConfiguration.compile(Collections.singletonList(manifest.getPath())).write(compiled);
+  }
+
+  @TearDown
+  public void deleteFiles() {
+    BenchmarkFiles.delete(directory);
+  }
+
+  @Setup(Level.Invocation)
+  public void resetTree() {
+    InMemoryContextFactory.reset();
+    final Hashtable<String, String> environment = new Hashtable<String, String>();
+    environment.put(Context.INITIAL_CONTEXT_FACTORY, InMemoryContextFactory.class.getName());
+    initialContext = JndiUtils.createInitialContext(environment);
+  }
+
+  @Benchmark
+  public InitializationReport manifest() {
+    final BulkInitializer initializer = new BulkInitializer(initialContext, JndiUtils.createNameParser(initialContext), 1);
+    return initializer.initialize(BulkInitializer.readManifest(manifest.getPath()));
+  }
+
+  @Benchmark
+  public InitializationReport compiled() throws IOException {
+    final CompiledConfiguration configuration = CompiledConfiguration.read(compiled);
+    if (!configuration.findStaleSources().isEmpty()) {
+      throw new IllegalStateException("compiled configuration is stale");
+    }
+    return new CompiledConfigurationInitializer(initialContext, JndiUtils.createNameParser(initialContext)).initialize(configuration);
+  }
+}
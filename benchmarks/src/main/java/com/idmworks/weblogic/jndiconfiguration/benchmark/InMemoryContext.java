@@ -0,0 +1,254 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.naming.*;
+import javax.naming.spi.NamingManager;
+
+/**
+ * Thread-safe, in-memory naming tree behaving like a server's JNDI tree: subcontexts must exist before names are
+ * bound in them, binding an existing name fails and {@link Reference}s are resolved through their object factory on
+ * lookup.
+ *
+ * @author pdgreen
+ */
+public class InMemoryContext implements Context {
+
+  private static final NameParser NAME_PARSER = new NameParser() {
+
+    public Name parse(String name) throws NamingException {
+      return new CompositeName(name);
+    }
+  };
+  private final ConcurrentMap<String, Object> bindings = new ConcurrentHashMap<String, Object>();
+  private final Name nameInNamespace;
+  private final Hashtable<Object, Object> environment;
+
+  public InMemoryContext(final Hashtable<?, ?> environment) {
+    this(new CompositeName(), environment);
+  }
+
+  private InMemoryContext(final Name nameInNamespace, final Hashtable<?, ?> environment) {
+    this.nameInNamespace = nameInNamespace;
+    this.environment = environment == null ? new Hashtable<Object, Object>() : new Hashtable<Object, Object>(environment);
+  }
+
+  private InMemoryContext resolveParent(final Name name) throws NamingException {
+    if (name.isEmpty()) {
+      throw new InvalidNameException("empty name");
+    }
+    InMemoryContext context = this;
+    for (int i = 0; i < name.size() - 1; i++) {
+      final Object child = context.bindings.get(name.get(i));
+      if (child == null) {
+        throw new NameNotFoundException(name.getPrefix(i + 1).toString());
+      } else if (!(child instanceof InMemoryContext)) {
+        throw new NotContextException(name.getPrefix(i + 1).toString());
+      }
+      context = (InMemoryContext) child;
+    }
+    return context;
+  }
+
+  private static String last(final Name name) {
+    return name.get(name.size() - 1);
+  }
+
+  public Object lookup(final Name name) throws NamingException {
+    if (name.isEmpty()) {
+      return this;
+    }
+    final Object bound = lookupLink(name);
+    if (bound instanceof Reference) {
+      try {
+        return NamingManager.getObjectInstance(bound, name, this, environment);
+      } catch (NamingException ex) {
+        throw ex;
+      } catch (Exception ex) {
+        final NamingException namingException = new NamingException("unable to resolve reference " + name);
+        namingException.setRootCause(ex);
+        throw namingException;
+      }
+    }
+    return bound;
+  }
+
+  public Object lookup(final String name) throws NamingException {
+    return lookup(NAME_PARSER.parse(name));
+  }
+
+  public void bind(final Name name, final Object obj) throws NamingException {
+    if (resolveParent(name).bindings.putIfAbsent(last(name), obj) != null) {
+      throw new NameAlreadyBoundException(name.toString());
+    }
+  }
+
+  public void bind(final String name, final Object obj) throws NamingException {
+    bind(NAME_PARSER.parse(name), obj);
+  }
+
+  public void rebind(final Name name, final Object obj) throws NamingException {
+    resolveParent(name).bindings.put(last(name), obj);
+  }
+
+  public void rebind(final String name, final Object obj) throws NamingException {
+    rebind(NAME_PARSER.parse(name), obj);
+  }
+
+  public void unbind(final Name name) throws NamingException {
+    resolveParent(name).bindings.remove(last(name));
+  }
+
+  public void unbind(final String name) throws NamingException {
+    unbind(NAME_PARSER.parse(name));
+  }
+
+  public void rename(final Name oldName, final Name newName) throws NamingException {
+    bind(newName, lookupLink(oldName));
+    unbind(oldName);
+  }
+
+  public void rename(final String oldName, final String newName) throws NamingException {
+    rename(NAME_PARSER.parse(oldName), NAME_PARSER.parse(newName));
+  }
+
+  private InMemoryContext lookupContext(final Name name) throws NamingException {
+    final Object bound = name.isEmpty() ? this : lookupLink(name);
+    if (!(bound instanceof InMemoryContext)) {
+      throw new NotContextException(name.toString());
+    }
+    return (InMemoryContext) bound;
+  }
+
+  public NamingEnumeration<NameClassPair> list(final Name name) throws NamingException {
+    final List<NameClassPair> pairs = new ArrayList<NameClassPair>();
+    for (final Map.Entry<String, Object> entry : lookupContext(name).bindings.entrySet()) {
+      pairs.add(new NameClassPair(entry.getKey(), entry.getValue().getClass().getName()));
+    }
+    return new ListEnumeration<NameClassPair>(pairs);
+  }
+
+  public NamingEnumeration<NameClassPair> list(final String name) throws NamingException {
+    return list(NAME_PARSER.parse(name));
+  }
+
+  public NamingEnumeration<Binding> listBindings(final Name name) throws NamingException {
+    final List<Binding> result = new ArrayList<Binding>();
+    for (final Map.Entry<String, Object> entry : lookupContext(name).bindings.entrySet()) {
+      result.add(new Binding(entry.getKey(), entry.getValue()));
+    }
+    return new ListEnumeration<Binding>(result);
+  }
+
+  public NamingEnumeration<Binding> listBindings(final String name) throws NamingException {
+    return listBindings(NAME_PARSER.parse(name));
+  }
+
+  public void destroySubcontext(final Name name) throws NamingException {
+    final InMemoryContext parent = resolveParent(name);
+    final Object bound = parent.bindings.get(last(name));
+    if (bound != null && !(bound instanceof InMemoryContext)) {
+      throw new NotContextException(name.toString());
+    } else if (bound != null && !((InMemoryContext) bound).bindings.isEmpty()) {
+      throw new ContextNotEmptyException(name.toString());
+    }
+    parent.bindings.remove(last(name));
+  }
+
+  public void destroySubcontext(final String name) throws NamingException {
+    destroySubcontext(NAME_PARSER.parse(name));
+  }
+
+  public Context createSubcontext(final Name name) throws NamingException {
+    final Name absolute = ((Name) nameInNamespace.clone()).addAll(name);
+    final InMemoryContext subcontext = new InMemoryContext(absolute, environment);
+    bind(name, subcontext);
+    return subcontext;
+  }
+
+  public Context createSubcontext(final String name) throws NamingException {
+    return createSubcontext(NAME_PARSER.parse(name));
+  }
+
+  public Object lookupLink(final Name name) throws NamingException {
+    if (name.isEmpty()) {
+      return this;
+    }
+    final Object bound = resolveParent(name).bindings.get(last(name));
+    if (bound == null) {
+      throw new NameNotFoundException(name.toString());
+    }
+    return bound;
+  }
+
+  public Object lookupLink(final String name) throws NamingException {
+    return lookupLink(NAME_PARSER.parse(name));
+  }
+
+  public NameParser getNameParser(final Name name) {
+    return NAME_PARSER;
+  }
+
+  public NameParser getNameParser(final String name) {
+    return NAME_PARSER;
+  }
+
+  public Name composeName(final Name name, final Name prefix) throws NamingException {
+    return ((Name) prefix.clone()).addAll(name);
+  }
+
+  public String composeName(final String name, final String prefix) throws NamingException {
+    return composeName(NAME_PARSER.parse(name), NAME_PARSER.parse(prefix)).toString();
+  }
+
+  public Object addToEnvironment(final String propName, final Object propVal) {
+    return environment.put(propName, propVal);
+  }
+
+  public Object removeFromEnvironment(final String propName) {
+    return environment.remove(propName);
+  }
+
+  public Hashtable<?, ?> getEnvironment() {
+    return new Hashtable<Object, Object>(environment);
+  }
+
+  public void close() {
+  }
+
+  public String getNameInNamespace() {
+    return nameInNamespace.toString();
+  }
+
+  /**
+   * Enumeration over a materialized list.
+   */
+  private static final class ListEnumeration<T> implements NamingEnumeration<T> {
+
+    private final Iterator<T> iterator;
+
+    ListEnumeration(final List<T> elements) {
+      this.iterator = elements.iterator();
+    }
+
+    public T next() {
+      return iterator.next();
+    }
+
+    public boolean hasMore() {
+      return iterator.hasNext();
+    }
+
+    public void close() {
+    }
+
+    public boolean hasMoreElements() {
+      return iterator.hasNext();
+    }
+
+    public T nextElement() {
+      return iterator.next();
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import java.util.Hashtable;
+import javax.naming.Context;
+import javax.naming.spi.InitialContextFactory;
+
+/**
+ * {@link InitialContextFactory} for an {@link InMemoryContext} shared by every InitialContext created through it, like
+ * a server's JNDI tree.
+ *
+ * @author pdgreen
+ */
+public class InMemoryContextFactory implements InitialContextFactory {
+
+  private static volatile InMemoryContext root = new InMemoryContext(null);
+
+  public Context getInitialContext(final Hashtable<?, ?> environment) {
+    return root;
+  }
+
+  /**
+   * Replaces the shared tree with an empty one.
+   */
+  public static void reset() {
+    root = new InMemoryContext(null);
+  }
+}
@@ -0,0 +1,68 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import com.idmworks.weblogic.jndiconfiguration.*;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.naming.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of binding a batch of entries through the initializers into an empty naming tree.
+ *
+ * @author pdgreen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InitializerBenchmark {
+
+  @Param({"100"})
+  public int entries;
+  private InitialContext initialContext;
+  private List<ValueDescriptor<String>> stringDescriptors;
+  private List<ValueDescriptor<Properties>> propertiesDescriptors;
+
+  @Setup
+  public void createDescriptors() throws NamingException {
+    final Properties properties = new Properties();
+    for (int i = 0; i < 20; i++) {
+      properties.setProperty("application.setting." + i, "value-" + i);
+    }
+    stringDescriptors = new ArrayList<ValueDescriptor<String>>(entries);
+    propertiesDescriptors = new ArrayList<ValueDescriptor<Properties>>(entries);
+    for (int i = 0; i < entries; i++) {
+      stringDescriptors.add(ValueDescriptor.of(new CompositeName("app/strings/group" + (i % 10) + "/string" + i), "value" + i));
+      propertiesDescriptors.add(ValueDescriptor.of(new CompositeName("app/properties/group" + (i % 10) + "/properties" + i), properties));
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void resetTree() {
+    InMemoryContextFactory.reset();
+    final Hashtable<String, String> environment = new Hashtable<String, String>();
+    environment.put(Context.INITIAL_CONTEXT_FACTORY, InMemoryContextFactory.class.getName());
+    initialContext = JndiUtils.createInitialContext(environment);
+  }
+
+  @Benchmark
+  public void stringInitializer() {
+    final StringInitializer initializer = new StringInitializer(initialContext);
+    for (final ValueDescriptor<String> descriptor : stringDescriptors) {
+      initializer.initialize(descriptor);
+    }
+  }
+
+  @Benchmark
+  public void propertiesInitializer() {
+    final PropertiesInitializer initializer = new PropertiesInitializer(initialContext);
+    for (final ValueDescriptor<Properties> descriptor : propertiesDescriptors) {
+      initializer.initialize(descriptor);
+    }
+  }
+}
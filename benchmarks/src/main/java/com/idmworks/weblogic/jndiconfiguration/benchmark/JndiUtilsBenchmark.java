@@ -0,0 +1,63 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import com.idmworks.weblogic.jndiconfiguration.JndiUtils;
+import com.idmworks.weblogic.jndiconfiguration.SubcontextCache;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.naming.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of {@link JndiUtils#ensureSubcontexts} for names sharing their subcontexts, at several name depths, with and
+ * without a {@link SubcontextCache}. The subcontexts already exist, as they do for every name after the first.
+ *
+ * @author pdgreen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JndiUtilsBenchmark {
+
+  @Param({"1", "4", "8"})
+  public int depth;
+  @Param({"100"})
+  public int names;
+  private Context context;
+  private List<Name> jndiNames;
+
+  @Setup
+  public void createNames() throws NamingException {
+    InMemoryContextFactory.reset();
+    final Hashtable<String, String> environment = new Hashtable<String, String>();
+    environment.put(Context.INITIAL_CONTEXT_FACTORY, InMemoryContextFactory.class.getName());
+    context = new InitialContext(environment);
+    final StringBuilder prefix = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      prefix.append("level").append(i).append('/');
+    }
+    jndiNames = new ArrayList<Name>(names);
+    for (int i = 0; i < names; i++) {
+      jndiNames.add(new CompositeName(prefix + "name" + i));
+    }
+    JndiUtils.ensureSubcontexts(context, jndiNames, new SubcontextCache());
+  }
+
+  @Benchmark
+  public void uncached() throws NamingException {
+    for (final Name name : jndiNames) {
+      JndiUtils.ensureSubcontexts(context, name);
+    }
+  }
+
+  @Benchmark
+  public SubcontextCache cached() throws NamingException {
+    final SubcontextCache cache = new SubcontextCache();
+    JndiUtils.ensureSubcontexts(context, jndiNames, cache);
+    return cache;
+  }
+}
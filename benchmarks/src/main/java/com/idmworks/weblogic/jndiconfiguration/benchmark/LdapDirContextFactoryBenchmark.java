@@ -0,0 +1,65 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import com.idmworks.weblogic.jndiconfiguration.*;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.naming.*;
+import javax.naming.directory.DirContext;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Latency of looking up a DirContext bound by {@link LdapDirContextInitializer}, i.e.
+ * {@link LdapDirContextFactory#getObjectInstance}, against a local in-memory LDAP listener, with and without
+ * connection pooling.
+ *
+ * @author pdgreen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LdapDirContextFactoryBenchmark {
+
+  private static final String BASE_DN = "dc=example,dc=com";
+  @Param({"false", "true"})
+  public boolean pool;
+  private InMemoryDirectoryServer server;
+  private InitialContext initialContext;
+
+  @Setup
+  public void startServer() throws Exception {
+    final InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+    config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("ldap", 0));
+    server = new InMemoryDirectoryServer(config);
+    server.add("dn: " + BASE_DN, "objectClass: top", "objectClass: domain", "dc: example");
+    server.startListening();
+
+    InMemoryContextFactory.reset();
+    final Hashtable<String, String> environment = new Hashtable<String, String>();
+    environment.put(Context.INITIAL_CONTEXT_FACTORY, InMemoryContextFactory.class.getName());
+    initialContext = JndiUtils.createInitialContext(environment);
+
+    final Properties properties = new Properties();
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:" + server.getListenPort() + "/" + BASE_DN);
+    properties.setProperty(LdapDirContextFactory.RESERVED_KEY_PREFIX + "pool", String.valueOf(pool));
+    new LdapDirContextInitializer(initialContext).initialize(ValueDescriptor.of(new CompositeName("ldap/directory"), properties));
+  }
+
+  @TearDown
+  public void stopServer() {
+    server.shutDown(true);
+  }
+
+  @Benchmark
+  public Object lookupAndClose() throws NamingException {
+    final DirContext dirContext = (DirContext) initialContext.lookup("ldap/directory");
+    dirContext.close();
+    return dirContext;
+  }
+}
@@ -0,0 +1,54 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import com.idmworks.weblogic.jndiconfiguration.PropertiesSnapshot;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Multi-threaded read throughput of {@link Properties} (synchronized) compared with {@link PropertiesSnapshot}.
+ *
+ * @author pdgreen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class PropertiesSnapshotBenchmark {
+
+  @Param({"16", "1024"})
+  public int size;
+  private Properties properties;
+  private PropertiesSnapshot snapshot;
+  private String[] keys;
+
+  @Setup
+  public void createProperties() {
+    properties = new Properties();
+    keys = new String[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = "application.setting." + i;
+      properties.setProperty(keys[i], "value-" + i);
+    }
+    snapshot = PropertiesSnapshot.of(properties);
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    int next;
+  }
+
+  @Benchmark
+  public String properties(final Cursor cursor) {
+    return properties.getProperty(keys[cursor.next++ & (size - 1)]);
+  }
+
+  @Benchmark
+  public String snapshot(final Cursor cursor) {
+    return snapshot.get(keys[cursor.next++ & (size - 1)]);
+  }
+}
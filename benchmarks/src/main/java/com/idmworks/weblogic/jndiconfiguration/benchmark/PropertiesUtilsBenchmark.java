@@ -0,0 +1,77 @@
+package com.idmworks.weblogic.jndiconfiguration.benchmark;
+
+import com.idmworks.weblogic.jndiconfiguration.PropertiesUtils;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares loading properties files one at a time with the concurrent loader, for several file counts and sizes, and
+ * with plain {@link Properties#load} of the same files, which neither interns keys and values nor loads concurrently.
+ *
+ * @author pdgreen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertiesUtilsBenchmark {
+
+  @Param({"1", "50", "500"})
+  public int fileCount;
+  @Param({"20", "2000"})
+  public int keysPerFile;
+  private File directory;
+  private List<String> filenames;
+
+  @Setup
+  public void createFiles() throws IOException {
+    directory = BenchmarkFiles.createTempDirectory("properties-benchmark");
+    filenames = new ArrayList<String>(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      final File file = new File(directory, "file" + i + ".properties");
+      BenchmarkFiles.writeProperties(file, keysPerFile);
+      filenames.add(file.getPath());
+    }
+  }
+
+  @TearDown
+  public void deleteFiles() {
+    BenchmarkFiles.delete(directory);
+  }
+
+  @Benchmark
+  public void serial(final Blackhole blackhole) {
+    for (final String filename : filenames) {
+      blackhole.consume(PropertiesUtils.loadProperties(filename));
+    }
+  }
+
+  @Benchmark
+  public List<Properties> concurrent() {
+    return PropertiesUtils.loadProperties(filenames);
+  }
+
+  @Benchmark
+  public void uninterned(final Blackhole blackhole) throws IOException {
+    for (final String filename : filenames) {
+      final Properties properties = new Properties();
+      final InputStream in = new FileInputStream(filename);
+      try {
+        properties.load(in);
+      } finally {
+        in.close();
+      }
+      blackhole.consume(properties);
+    }
+  }
+}
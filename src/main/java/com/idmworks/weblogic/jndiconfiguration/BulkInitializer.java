@@ -0,0 +1,434 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.*;
+
+/**
+ * Adds the entries of one or more manifests to JNDI in weblogic during startup, replacing a Startup Class per
+ * initializer.
+ *
+ * Each manifest line is <code>type argument</code> where type is one of <code>string</code>, <code>typed</code>,
+ * <code>properties</code> or <code>ldap</code> and argument has the format of the matching initializer
+ * ({@link StringInitializer}, {@link TypedInitializer}, {@link PropertiesInitializer},
+ * {@link LdapDirContextInitializer}). Blank lines and lines starting with <code>#</code> are ignored.
+ *
+ * Entries are grouped by the subcontext they are bound in, i.e. their JNDI name without its last component; groups
+ * are bound concurrently, entries within a group in manifest order, so <code>config/app1/x</code> and
+ * <code>config/app2/y</code> are bound at the same time. A subcontext two groups create at the same time is
+ * created by one and confirmed by the other. A failing entry is reported and doesn't stop the others.
+ *
+ * With <code>-entryTimeout</code> a group moves on to its next entry when an entry takes longer; the late entry keeps
+ * being bound in the background. With <code>-deadline</code> binding returns once the deadline passed and every
+ * binding thread is interrupted: entries being bound then are reported as late, and are bound, or fail, when their
+ * bind returns; entries that hadn't started are reported as skipped and aren't bound.
+ *
+ * Since an {@link InitialContext} isn't safe for concurrent use, each binding thread creates its own from the JNDI
+ * environment and binds through its own initializers; only the {@link SubcontextCache} is shared. A thread's context
+ * is closed when the thread ends.
+ */
+public class BulkInitializer {
+
+  private static final Logger LOGGER = Logger.getLogger(BulkInitializer.class.getName());
+  static final String THREADS_OPTION = "threads";
+  static final String DEADLINE_OPTION = "deadline";
+  static final String ENTRY_TIMEOUT_OPTION = "entryTimeout";
+  private static final String COMMENT_PREFIX = "#";
+  private final NameParser nameParser;
+  private final int threads;
+  private final long deadline;
+  private final long entryTimeout;
+  private final Hashtable<String, String> environment;
+  private final InitialContext sharedContext;
+  private final InitializerOptions options;
+  private final SubcontextCache subcontextCache = new SubcontextCache();
+  private final ThreadLocal<Initializers> threadInitializers = new ThreadLocal<Initializers>();
+
+  /**
+   * Creates bulk initializer; initialContext is shared by all binding threads, so it must support concurrent use.
+   *
+   * @param initialContext context to bind to
+   * @param nameParser parser for the JNDI names of the entries
+   * @param threads maximum number of groups bound concurrently
+   */
+  public BulkInitializer(final InitialContext initialContext, final NameParser nameParser, final int threads) {
+    this(initialContext, nameParser, threads, InitializerOptions.none());
+  }
+
+  /**
+   * Creates bulk initializer; initialContext is shared by all binding threads, so it must support concurrent use, and
+   * options are passed on to the initializers (for example <code>-rebind</code>). <code>-deadline</code> and <code>-entryTimeout</code> (milliseconds,
+   * 0 for none) bound how long binding may take.
+   *
+   * @param initialContext context to bind to
+   * @param nameParser parser for the JNDI names of the entries
+   * @param threads maximum number of groups bound concurrently
+   * @param options options of the initializers
+   */
+  public BulkInitializer(final InitialContext initialContext, final NameParser nameParser, final int threads, final InitializerOptions options) {
+    this(null, initialContext, nameParser, threads, options);
+  }
+
+  /**
+   * Creates bulk initializer whose binding threads each create their own InitialContext from environment; options are
+   * passed on to the initializers (for example <code>-rebind</code>). <code>-deadline</code> and
+   * <code>-entryTimeout</code> (milliseconds, 0 for none) bound how long binding may take.
+   *
+   * @param environment JNDI environment of the contexts to bind to
+   * @param nameParser parser for the JNDI names of the entries
+   * @param threads maximum number of groups bound concurrently
+   * @param options options of the initializers
+   */
+  public BulkInitializer(final Hashtable<String, String> environment, final NameParser nameParser, final int threads, final InitializerOptions options) {
+    this(environment, null, nameParser, threads, options);
+  }
+
+  private BulkInitializer(final Hashtable<String, String> environment, final InitialContext sharedContext, final NameParser nameParser,
+          final int threads, final InitializerOptions options) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive: " + threads);
+    }
+    this.environment = environment;
+    this.sharedContext = sharedContext;
+    this.options = options;
+    this.nameParser = nameParser;
+    this.threads = threads;
+    this.deadline = options.getLong(DEADLINE_OPTION, 0L);
+    this.entryTimeout = options.getLong(ENTRY_TIMEOUT_OPTION, 0L);
+    if (deadline < 0 || entryTimeout < 0) {
+      throw new IllegalArgumentException("deadline and entryTimeout must not be negative: " + deadline + "/" + entryTimeout);
+    }
+  }
+
+  /**
+   * Initializers of the current thread, bound to its own context unless a shared context was given.
+   */
+  private Initializers getInitializers() {
+    Initializers initializers = threadInitializers.get();
+    if (initializers == null) {
+      initializers = new Initializers(environment == null ? sharedContext : JndiUtils.createInitialContext(environment));
+      threadInitializers.set(initializers);
+    }
+    return initializers;
+  }
+
+  /**
+   * Closes the context of the current thread if it created one.
+   */
+  private void releaseInitializers() {
+    final Initializers initializers = threadInitializers.get();
+    threadInitializers.remove();
+    if (initializers != null && environment != null) {
+      try {
+        initializers.initialContext.close();
+      } catch (NamingException ex) {
+        LOGGER.log(Level.FINE, "unable to close context of " + Thread.currentThread().getName(), ex);
+      }
+    }
+  }
+
+  /**
+   * Binds all entries, reporting failures per entry. Returns when all entries are bound or, with a deadline, when the
+   * deadline passed; entries still being bound are then reported as late.
+   *
+   * @param entries entries to bind
+   * @return report of bound, failed and late entries
+   */
+  public InitializationReport initialize(final List<ManifestEntry> entries) {
+    final long deadlineAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline);
+    final InitializationReport report = new InitializationReport();
+    final Collection<List<ManifestEntry>> groups = group(entries, report);
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, groups.size())), new BindingThreadFactory("jndi-bulk-initializer"));
+    final ExecutorService entryExecutor = entryTimeout > 0 ? Executors.newCachedThreadPool(new BindingThreadFactory("jndi-bulk-entry")) : null;
+    try {
+      final List<Future<?>> futures = new ArrayList<Future<?>>(groups.size());
+      for (final List<ManifestEntry> group : groups) {
+        futures.add(executor.submit(new Runnable() {
+
+          public void run() {
+            for (int i = 0; i < group.size(); i++) {
+              final ManifestEntry entry = group.get(i);
+              if (Thread.currentThread().isInterrupted() || !report.recordStarted(entry.toString())) {
+                skip(group.subList(i, group.size()), report);
+                return;
+              }
+              if (entryExecutor == null) {
+                initialize(entry, report);
+              } else if (!initializeWithTimeout(entryExecutor, entry, report)) {
+                skip(group.subList(i + 1, group.size()), report);
+                return;
+              }
+            }
+          }
+        }));
+      }
+      for (final Future<?> future : futures) {
+        if (deadline > 0) {
+          future.get(Math.max(0L, deadlineAt - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } else {
+          future.get();
+        }
+      }
+    } catch (TimeoutException ex) {
+      executor.shutdownNow();
+      if (entryExecutor != null) {
+        entryExecutor.shutdownNow();
+      }
+      for (final ManifestEntry entry : entries) {
+        if (report.recordSkipped(entry.toString())) {
+          LOGGER.log(Level.WARNING, "Deadline of {0}ms passed, leaving {1} unbound", new Object[]{deadline, entry});
+        } else if (report.recordLate(entry.toString())) {
+          LOGGER.log(Level.WARNING, "Deadline of {0}ms passed, interrupted {1} which may still be bound", new Object[]{deadline, entry});
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while binding manifest entries", ex);
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException("unable to bind manifest entries", ex.getCause());
+    } finally {
+      executor.shutdown();
+      if (entryExecutor != null) {
+        entryExecutor.shutdown();
+      }
+    }
+    return report;
+  }
+
+  /**
+   * Binds entry on entryExecutor, waiting at most entryTimeout; a late entry keeps being bound in the background.
+   *
+   * @return false when interrupted while waiting (the deadline passed), entry is then reported as late
+   */
+  private boolean initializeWithTimeout(final ExecutorService entryExecutor, final ManifestEntry entry, final InitializationReport report) {
+    try {
+      final Future<?> future = entryExecutor.submit(new Runnable() {
+
+        public void run() {
+          initialize(entry, report);
+        }
+      });
+      future.get(entryTimeout, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException ex) {
+      //the deadline passed between starting the entry and submitting it
+      report.recordFailure(entry.toString(), new IllegalStateException("Deadline passed before " + entry + " could be bound", ex));
+      return false;
+    } catch (TimeoutException ex) {
+      if (report.recordLate(entry.toString())) {
+        LOGGER.log(Level.WARNING, "{0} not bound within {1}ms, binding it in the background", new Object[]{entry, entryTimeout});
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      report.recordLate(entry.toString());
+      return false;
+    } catch (ExecutionException ex) {
+      report.recordFailure(entry.toString(), ex.getCause());
+    }
+    return true;
+  }
+
+  /**
+   * Reports entries of an interrupted group as skipped.
+   */
+  private static void skip(final List<ManifestEntry> entries, final InitializationReport report) {
+    for (final ManifestEntry entry : entries) {
+      if (report.recordSkipped(entry.toString())) {
+        LOGGER.log(Level.WARNING, "Interrupted, leaving {0} unbound", entry);
+      }
+    }
+  }
+
+  private void initialize(final ManifestEntry entry, final InitializationReport report) {
+    try {
+      final Initializers initializers = getInitializers();
+      switch (entry.getType()) {
+        case STRING:
+          for (final ValueDescriptor<String> descriptor : StringInitializer.parse(nameParser, new String[]{entry.getArgument()})) {
+            initializers.stringInitializer.initialize(descriptor);
+          }
+          break;
+        case TYPED:
+          for (final ValueDescriptor<Object> descriptor : TypedInitializer.parse(nameParser, new String[]{entry.getArgument()})) {
+            initializers.typedInitializer.initialize(descriptor);
+          }
+          break;
+        case PROPERTIES:
+          if (PropertiesArchive.isArchiveArgument(entry.getArgument())) {
+            initializers.propertiesInitializer.initializeArchive(nameParser, entry.getArgument());
+            break;
+          }
+          for (final ValueDescriptor<Properties> descriptor : PropertiesInitializer.parse(nameParser, new String[]{entry.getArgument()})) {
+            initializers.propertiesInitializer.initialize(descriptor);
+          }
+          break;
+        case LDAP:
+          for (final ValueDescriptor<Properties> descriptor : LdapDirContextInitializer.parse(nameParser, new String[]{entry.getArgument()})) {
+            initializers.ldapDirContextInitializer.initialize(descriptor);
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported entry type: " + entry.getType());
+      }
+      final boolean late = report.getLate().contains(entry.toString());
+      report.recordBound(entry.toString());
+      if (late) {
+        LOGGER.log(Level.INFO, "Late entry {0} has been bound", entry);
+      }
+    } catch (RuntimeException ex) {
+      LOGGER.log(Level.WARNING, "Unable to bind " + entry, ex);
+      report.recordFailure(entry.toString(), ex);
+    }
+  }
+
+  /**
+   * Groups entries by the subcontext of their JNDI name, keeping manifest order within each group.
+   */
+  private Collection<List<ManifestEntry>> group(final List<ManifestEntry> entries, final InitializationReport report) {
+    final Map<String, List<ManifestEntry>> groups = new LinkedHashMap<String, List<ManifestEntry>>();
+    for (final ManifestEntry entry : entries) {
+      final String key;
+      try {
+        final Name jndiName = JndiUtils.parseJndiName(nameParser, entry.getArgument().split("=", 2)[0]);
+        key = jndiName.getPrefix(Math.max(0, jndiName.size() - 1)).toString();
+      } catch (RuntimeException ex) {
+        LOGGER.log(Level.WARNING, "Unable to parse " + entry, ex);
+        report.recordFailure(entry.toString(), ex);
+        continue;
+      }
+      List<ManifestEntry> group = groups.get(key);
+      if (group == null) {
+        group = new ArrayList<ManifestEntry>();
+        groups.put(key, group);
+      }
+      group.add(entry);
+    }
+    return groups.values();
+  }
+
+  /**
+   * Parse arguments ([-threads=count] [-deadline=millis] [-entryTimeout=millis] [-rebind] [-snapshot] [-local]
+   * manifestFile*) and binds the entries of every manifest into JNDI.
+   *
+   * @param args
+   */
+  public static void main(final String[] args) {
+    final long start = System.nanoTime();
+    final InitializerOptions options = InitializerOptions.parse(args);
+    final Hashtable<String, String> ht = JndiUtils.createEnvironment(options);
+    final InitialContext initialContext = JndiUtils.createInitialContext(ht);
+    final NameParser nameParser = JndiUtils.createNameParser(initialContext);
+
+    final int threads = options.getInt(THREADS_OPTION, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    final BulkInitializer bulkInitializer = new BulkInitializer(ht, nameParser, threads, options);
+
+    final List<ManifestEntry> entries = new ArrayList<ManifestEntry>();
+    for (final String manifest : options.getArguments()) {
+      entries.addAll(readManifest(manifest));
+    }
+    final InitializationReport report = bulkInitializer.initialize(entries);
+    LOGGER.log(report.isSuccessful() ? Level.INFO : Level.SEVERE, "Bulk initialization finished: {0}", report);
+    for (final String late : report.getLate()) {
+      LOGGER.log(Level.SEVERE, "Not bound yet, still binding in the background: {0}", late);
+    }
+    for (final String skipped : report.getSkipped()) {
+      LOGGER.log(Level.SEVERE, "Not bound, skipped: {0}", skipped);
+    }
+    JndiConfigurationMetrics.get().recordMain(BulkInitializer.class, System.nanoTime() - start);
+  }
+
+  /**
+   * Names the threads binding entries and closes their context when they end; they don't keep the server from
+   * shutting down.
+   */
+  private final class BindingThreadFactory implements ThreadFactory {
+
+    private final String name;
+
+    BindingThreadFactory(final String name) {
+      this.name = name;
+    }
+
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(new Runnable() {
+
+        public void run() {
+          try {
+            runnable.run();
+          } finally {
+            releaseInitializers();
+          }
+        }
+      }, name);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  /**
+   * Initializers of one binding thread.
+   */
+  private final class Initializers {
+
+    final InitialContext initialContext;
+    final StringInitializer stringInitializer;
+    final TypedInitializer typedInitializer;
+    final PropertiesInitializer propertiesInitializer;
+    final LdapDirContextInitializer ldapDirContextInitializer;
+
+    Initializers(final InitialContext initialContext) {
+      this.initialContext = initialContext;
+      this.stringInitializer = new StringInitializer(initialContext, subcontextCache, options);
+      this.typedInitializer = new TypedInitializer(initialContext, subcontextCache, options);
+      this.propertiesInitializer = new PropertiesInitializer(initialContext, subcontextCache, options);
+      this.ldapDirContextInitializer = new LdapDirContextInitializer(initialContext, subcontextCache, options);
+    }
+  }
+
+  /**
+   * Reads entries of a manifest.
+   *
+   * @param filename name of manifest file
+   * @return entries in manifest order
+   * @throws IllegalArgumentException thrown when the manifest can't be read or contains invalid lines
+   */
+  public static List<ManifestEntry> readManifest(final String filename) throws IllegalArgumentException {
+    final File file = new File(filename);
+    final List<ManifestEntry> entries = new ArrayList<ManifestEntry>();
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        final String trimmed = line.trim();
+        if (trimmed.length() == 0 || trimmed.startsWith(COMMENT_PREFIX)) {
+          continue;
+        }
+        final String[] parts = trimmed.split("\\s+", 2);
+        if (parts.length < 2 || parts[1].indexOf('=') < 0) {
+          throw new IllegalArgumentException("Invalid manifest entry at " + file + ":" + lineNumber + ": " + line);
+        }
+        entries.add(new ManifestEntry(ManifestEntry.Type.parse(parts[0]), parts[1], file + ":" + lineNumber));
+      }
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Unable to read manifest: " + file, ex);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException ex) {
+          LOGGER.log(Level.FINE, "unable to close manifest " + file, ex);
+        }
+      }
+    }
+    return entries;
+  }
+}
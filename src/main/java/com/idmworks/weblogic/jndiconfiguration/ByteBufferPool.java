@@ -0,0 +1,60 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of equally sized heap {@link ByteBuffer}s reused for reading files.
+ *
+ * @author pdgreen
+ */
+class ByteBufferPool {
+
+  private final int bufferSize;
+  private final int maxPooled;
+  private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicInteger pooled = new AtomicInteger();
+
+  ByteBufferPool(final int bufferSize, final int maxPooled) {
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  /**
+   * Size of the pooled buffers.
+   *
+   * @return buffer size in bytes
+   */
+  int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Takes a cleared buffer out of the pool, allocating one when the pool is empty.
+   *
+   * @return buffer of {@link #getBufferSize()} bytes
+   */
+  ByteBuffer acquire() {
+    final ByteBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocate(bufferSize);
+    }
+    pooled.decrementAndGet();
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Returns a buffer to the pool; buffers of a different size or beyond the pool limit are dropped.
+   *
+   * @param buffer buffer to return
+   */
+  void release(final ByteBuffer buffer) {
+    if (buffer.capacity() == bufferSize && pooled.incrementAndGet() <= maxPooled) {
+      buffers.offer(buffer);
+    } else if (buffer.capacity() == bufferSize) {
+      pooled.decrementAndGet();
+    }
+  }
+}
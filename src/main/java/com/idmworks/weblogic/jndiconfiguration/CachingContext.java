@@ -0,0 +1,413 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.*;
+
+/**
+ * {@link Context} which remembers the values looked up through it, so applications can look up the configuration
+ * bound by the initializers on every request without a JNDI round trip.
+ *
+ * Only plain values are cached: strings, boxed primitives, {@link PropertiesSnapshot}s and unmodifiable collections,
+ * which are shared between callers, and {@link Properties}, of which every caller gets its own copy so that one
+ * caller's changes neither reach the others nor make the cache differ from what is bound. Everything else, such as
+ * other mutable maps and lists, contexts and objects created from a {@link Reference} like the DirContext of
+ * {@link LdapDirContextFactory}, is looked up every time.
+ *
+ * The cache holds at most maxSize names, evicting the least recently used, and optionally forgets values after a time
+ * to live. Binding operations made through this context invalidate the names they touch; the initializers call
+ * {@link #invalidateCaches(Name)} when they rebind.
+ *
+ * @author pdgreen
+ */
+public class CachingContext implements Context {
+
+  private static final Logger LOGGER = Logger.getLogger(CachingContext.class.getName());
+  private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(String.class, Boolean.class,
+          Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, PropertiesSnapshot.class,
+          Collections.unmodifiableList(new ArrayList<Object>()).getClass(), Collections.unmodifiableList(new LinkedList<Object>()).getClass(),
+          Collections.unmodifiableMap(new HashMap<Object, Object>()).getClass(), Collections.unmodifiableSet(new HashSet<Object>()).getClass(),
+          Collections.unmodifiableSortedMap(new TreeMap<Object, Object>()).getClass(), Collections.unmodifiableSortedSet(new TreeSet<Object>()).getClass(),
+          Collections.emptyList().getClass(), Collections.emptyMap().getClass(), Collections.emptySet().getClass(),
+          Collections.singletonList(null).getClass(), Collections.singletonMap(null, null).getClass(), Collections.singleton(null).getClass()));
+  private static final Set<CachingContext> CACHING_CONTEXTS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<CachingContext, Boolean>()));
+  private final Context delegate;
+  private final int maxSize;
+  private final long ttlNanos;
+  private final Map<String, CachedValue> cache;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong bypassCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private long generation;
+
+  /**
+   * Creates caching context without time to live.
+   *
+   * @param delegate context that lookups are forwarded to
+   * @param maxSize maximum number of cached names
+   */
+  public CachingContext(final Context delegate, final int maxSize) {
+    this(delegate, maxSize, 0L, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates caching context.
+   *
+   * @param delegate context that lookups are forwarded to
+   * @param maxSize maximum number of cached names
+   * @param ttl time a value stays cached, 0 to keep it until evicted or invalidated
+   * @param unit unit of ttl
+   */
+  public CachingContext(final Context delegate, final int maxSize, final long ttl, final TimeUnit unit) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+    }
+    if (ttl < 0) {
+      throw new IllegalArgumentException("ttl must not be negative: " + ttl);
+    }
+    this.delegate = delegate;
+    this.maxSize = maxSize;
+    this.ttlNanos = unit.toNanos(ttl);
+    this.cache = new LinkedHashMap<String, CachedValue>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedValue> eldest) {
+        if (size() > CachingContext.this.maxSize) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+    CACHING_CONTEXTS.add(this);
+  }
+
+  /**
+   * Invalidates name, and everything below it, in every caching context of this class loader.
+   *
+   * @param name name that was rebound or unbound
+   */
+  public static void invalidateCaches(final Name name) {
+    final List<CachingContext> cachingContexts;
+    synchronized (CACHING_CONTEXTS) {
+      cachingContexts = new ArrayList<CachingContext>(CACHING_CONTEXTS);
+    }
+    for (final CachingContext cachingContext : cachingContexts) {
+      cachingContext.invalidate(name);
+    }
+  }
+
+  /**
+   * Whether value can be cached: only immutable values and {@link Properties}, never other mutable values, contexts or
+   * objects created by a factory.
+   */
+  static boolean isCacheable(final Object value) {
+    return value != null && (IMMUTABLE_TYPES.contains(value.getClass()) || value instanceof Properties);
+  }
+
+  /**
+   * Value handed to a caller: a copy of mutable properties, immutable values as is.
+   */
+  private static Object share(final Object value) {
+    return value instanceof Properties ? ((Properties) value).clone() : value;
+  }
+
+  private Object cachedLookup(final String key, final Object name) throws NamingException {
+    final long now = System.nanoTime();
+    final long lookupGeneration;
+    synchronized (cache) {
+      final CachedValue cached = cache.get(key);
+      if (cached != null) {
+        if (cached.isExpired(now)) {
+          cache.remove(key);
+        } else {
+          hitCount.incrementAndGet();
+          return share(cached.value);
+        }
+      }
+      lookupGeneration = generation;
+    }
+    final Object value = name instanceof Name ? delegate.lookup((Name) name) : delegate.lookup((String) name);
+    if (!isCacheable(value)) {
+      bypassCount.incrementAndGet();
+      return value;
+    }
+    missCount.incrementAndGet();
+    final Object cachedValue = share(value);
+    synchronized (cache) {
+      // an invalidation during the lookup may have made value stale
+      if (generation == lookupGeneration) {
+        cache.put(key, new CachedValue(cachedValue, ttlNanos == 0L ? Long.MAX_VALUE : now + ttlNanos));
+      }
+    }
+    return share(cachedValue);
+  }
+
+  /**
+   * Forgets name and every name below it.
+   *
+   * @param name name to forget
+   */
+  public void invalidate(final Name name) {
+    NameParser nameParser = null;
+    try {
+      nameParser = delegate.getNameParser("");
+    } catch (NamingException ex) {
+      LOGGER.log(Level.FINE, "unable to get name parser, clearing whole cache", ex);
+    }
+    synchronized (cache) {
+      generation++;
+      if (nameParser == null) {
+        cache.clear();
+        return;
+      }
+      for (final Iterator<String> keys = cache.keySet().iterator(); keys.hasNext();) {
+        if (isAffected(nameParser, keys.next(), name)) {
+          keys.remove();
+        }
+      }
+    }
+  }
+
+  private static boolean isAffected(final NameParser nameParser, final String key, final Name name) {
+    try {
+      final Name cachedName = nameParser.parse(key);
+      if (cachedName.size() < name.size()) {
+        return false;
+      }
+      for (int i = 0; i < name.size(); i++) {
+        if (!cachedName.get(i).equals(name.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    } catch (NamingException ex) {
+      return true;
+    }
+  }
+
+  private void invalidate(final String name) throws NamingException {
+    invalidate(delegate.getNameParser("").parse(name));
+  }
+
+  /**
+   * Forgets every cached value.
+   */
+  public void clear() {
+    synchronized (cache) {
+      generation++;
+      cache.clear();
+    }
+  }
+
+  /**
+   * Number of lookups answered from the cache.
+   *
+   * @return hits
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Number of lookups of cacheable values forwarded to the delegate.
+   *
+   * @return misses
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Number of lookups of values that aren't cached, such as contexts and references.
+   *
+   * @return bypassed lookups
+   */
+  public long getBypassCount() {
+    return bypassCount.get();
+  }
+
+  /**
+   * Number of values evicted to stay within maxSize.
+   *
+   * @return evictions
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Number of cached values.
+   *
+   * @return size
+   */
+  public int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  public Object lookup(Name name) throws NamingException {
+    return cachedLookup(name.toString(), name);
+  }
+
+  public Object lookup(String name) throws NamingException {
+    return cachedLookup(name, name);
+  }
+
+  public void bind(Name name, Object obj) throws NamingException {
+    delegate.bind(name, obj);
+    invalidate(name);
+  }
+
+  public void bind(String name, Object obj) throws NamingException {
+    delegate.bind(name, obj);
+    invalidate(name);
+  }
+
+  public void rebind(Name name, Object obj) throws NamingException {
+    delegate.rebind(name, obj);
+    invalidate(name);
+  }
+
+  public void rebind(String name, Object obj) throws NamingException {
+    delegate.rebind(name, obj);
+    invalidate(name);
+  }
+
+  public void unbind(Name name) throws NamingException {
+    delegate.unbind(name);
+    invalidate(name);
+  }
+
+  public void unbind(String name) throws NamingException {
+    delegate.unbind(name);
+    invalidate(name);
+  }
+
+  public void rename(Name oldName, Name newName) throws NamingException {
+    delegate.rename(oldName, newName);
+    invalidate(oldName);
+    invalidate(newName);
+  }
+
+  public void rename(String oldName, String newName) throws NamingException {
+    delegate.rename(oldName, newName);
+    invalidate(oldName);
+    invalidate(newName);
+  }
+
+  public NamingEnumeration<NameClassPair> list(Name name) throws NamingException {
+    return delegate.list(name);
+  }
+
+  public NamingEnumeration<NameClassPair> list(String name) throws NamingException {
+    return delegate.list(name);
+  }
+
+  public NamingEnumeration<Binding> listBindings(Name name) throws NamingException {
+    return delegate.listBindings(name);
+  }
+
+  public NamingEnumeration<Binding> listBindings(String name) throws NamingException {
+    return delegate.listBindings(name);
+  }
+
+  public void destroySubcontext(Name name) throws NamingException {
+    delegate.destroySubcontext(name);
+    invalidate(name);
+  }
+
+  public void destroySubcontext(String name) throws NamingException {
+    delegate.destroySubcontext(name);
+    invalidate(name);
+  }
+
+  public Context createSubcontext(Name name) throws NamingException {
+    return delegate.createSubcontext(name);
+  }
+
+  public Context createSubcontext(String name) throws NamingException {
+    return delegate.createSubcontext(name);
+  }
+
+  public Object lookupLink(Name name) throws NamingException {
+    return delegate.lookupLink(name);
+  }
+
+  public Object lookupLink(String name) throws NamingException {
+    return delegate.lookupLink(name);
+  }
+
+  public NameParser getNameParser(Name name) throws NamingException {
+    return delegate.getNameParser(name);
+  }
+
+  public NameParser getNameParser(String name) throws NamingException {
+    return delegate.getNameParser(name);
+  }
+
+  public Name composeName(Name name, Name prefix) throws NamingException {
+    return delegate.composeName(name, prefix);
+  }
+
+  public String composeName(String name, String prefix) throws NamingException {
+    return delegate.composeName(name, prefix);
+  }
+
+  public Object addToEnvironment(String propName, Object propVal) throws NamingException {
+    return delegate.addToEnvironment(propName, propVal);
+  }
+
+  public Object removeFromEnvironment(String propName) throws NamingException {
+    return delegate.removeFromEnvironment(propName);
+  }
+
+  public Hashtable<?, ?> getEnvironment() throws NamingException {
+    return delegate.getEnvironment();
+  }
+
+  /**
+   * Closes the delegate and forgets every cached value.
+   *
+   * @throws NamingException thrown when the delegate can't be closed
+   */
+  public void close() throws NamingException {
+    CACHING_CONTEXTS.remove(this);
+    clear();
+    delegate.close();
+  }
+
+  public String getNameInNamespace() throws NamingException {
+    return delegate.getNameInNamespace();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(CachingContext.class.getName()).append("{size=").append(size()).append(",hits=").append(hitCount).append(",misses=").append(missCount).append(",bypassed=").append(bypassCount).append(",evicted=").append(evictionCount).append("}").toString();
+  }
+
+  /**
+   * Cached value and when it expires.
+   */
+  private static final class CachedValue {
+
+    final Object value;
+    final long expiresAt;
+
+    CachedValue(final Object value, final long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired(final long now) {
+      return now - expiresAt > 0 && expiresAt != Long.MAX_VALUE;
+    }
+  }
+}
@@ -0,0 +1,415 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.*;
+import javax.naming.*;
+import javax.naming.directory.*;
+
+/**
+ * {@link DirContext} handed out by {@link LdapDirContextFactory} when <code>jndiconfiguration.cache</code> is enabled:
+ * <code>getAttributes</code> and filter <code>search</code>es are answered from the {@link LdapResultCache} of the bound
+ * name when possible. Combined with <code>jndiconfiguration.lazy</code>, a read answered from the cache doesn't even
+ * connect.
+ *
+ * Writes are forwarded and invalidate the cached results they affect. Searches returning objects, searches by
+ * matching attributes and reads made after the environment of this context was changed (for example to bind as
+ * another principal) bypass the cache.
+ *
+ * @author pdgreen
+ */
+class CachingDirContext extends DelegatingDirContext {
+
+  private final DirContext delegate;
+  private final LdapResultCache cache;
+  private volatile boolean environmentChanged;
+
+  CachingDirContext(final DirContext delegate, final LdapResultCache cache) {
+    this.delegate = delegate;
+    this.cache = cache;
+  }
+
+  @Override
+  protected DirContext getDelegate() {
+    return delegate;
+  }
+
+  private Attributes cachedAttributes(final String name, final String[] attrIds) throws NamingException {
+    if (environmentChanged) {
+      return attrIds == null ? delegate.getAttributes(name) : delegate.getAttributes(name, attrIds);
+    }
+    final String key = new StringBuilder("attributes|").append(LdapResultCache.normalize(name)).append('|')
+            .append(attrIds == null ? "*" : normalizedIds(attrIds)).toString();
+    final Attributes cached = cache.getAttributes(key);
+    if (cached != null) {
+      return cached;
+    }
+    final long generation = cache.generation();
+    final Attributes attributes = attrIds == null ? delegate.getAttributes(name) : delegate.getAttributes(name, attrIds);
+    cache.putAttributes(key, name, attributes, generation);
+    return attributes;
+  }
+
+  private NamingEnumeration<SearchResult> cachedSearch(final String name, final String filter, final Object[] filterArgs, final SearchControls cons) throws NamingException {
+    if (environmentChanged || (cons != null && cons.getReturningObjFlag())) {
+      return filterArgs == null ? delegate.search(name, filter, cons) : delegate.search(name, filter, filterArgs, cons);
+    }
+    final SearchControls controls = cons == null ? new SearchControls() : cons;
+    final String key = new StringBuilder("search|").append(LdapResultCache.normalize(name)).append('|').append(filter)
+            .append('|').append(filterArgs == null ? "" : Arrays.deepToString(filterArgs))
+            .append('|').append(controls.getSearchScope()).append('|').append(controls.getCountLimit())
+            .append('|').append(controls.getTimeLimit()).append('|').append(controls.getDerefLinkFlag())
+            .append('|').append(controls.getReturningAttributes() == null ? "*" : normalizedIds(controls.getReturningAttributes()))
+            .toString();
+    final List<SearchResult> cached = cache.getSearchResults(key);
+    if (cached != null) {
+      return new BufferedNamingEnumeration(cached, null, null);
+    }
+    final long generation = cache.generation();
+    final NamingEnumeration<SearchResult> results = filterArgs == null ? delegate.search(name, filter, cons) : delegate.search(name, filter, filterArgs, cons);
+    final List<SearchResult> read = new ArrayList<SearchResult>();
+    try {
+      while (results.hasMore()) {
+        read.add(results.next());
+        if (read.size() > cache.getMaxSearchResults()) {
+          // too large to cache: hand out what was read followed by the rest
+          return new BufferedNamingEnumeration(read, results, null);
+        }
+      }
+    } catch (NamingException ex) {
+      // partial results are returned as the LDAP provider would, but never cached
+      return new BufferedNamingEnumeration(read, null, ex);
+    }
+    results.close();
+    cache.putSearchResults(key, read, generation);
+    return new BufferedNamingEnumeration(read, null, null);
+  }
+
+  private static String normalizedIds(final String[] ids) {
+    final String[] sorted = new String[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      sorted[i] = ids[i].toLowerCase(Locale.ENGLISH);
+    }
+    Arrays.sort(sorted);
+    return Arrays.toString(sorted);
+  }
+
+  @Override
+  public Attributes getAttributes(Name name) throws NamingException {
+    return cachedAttributes(name.toString(), null);
+  }
+
+  @Override
+  public Attributes getAttributes(String name) throws NamingException {
+    return cachedAttributes(name, null);
+  }
+
+  @Override
+  public Attributes getAttributes(Name name, String[] attrIds) throws NamingException {
+    return cachedAttributes(name.toString(), attrIds);
+  }
+
+  @Override
+  public Attributes getAttributes(String name, String[] attrIds) throws NamingException {
+    return cachedAttributes(name, attrIds);
+  }
+
+  @Override
+  public NamingEnumeration<SearchResult> search(Name name, String filter, SearchControls cons) throws NamingException {
+    return cachedSearch(name.toString(), filter, null, cons);
+  }
+
+  @Override
+  public NamingEnumeration<SearchResult> search(String name, String filter, SearchControls cons) throws NamingException {
+    return cachedSearch(name, filter, null, cons);
+  }
+
+  @Override
+  public NamingEnumeration<SearchResult> search(Name name, String filterExpr, Object[] filterArgs, SearchControls cons) throws NamingException {
+    return cachedSearch(name.toString(), filterExpr, filterArgs, cons);
+  }
+
+  @Override
+  public NamingEnumeration<SearchResult> search(String name, String filterExpr, Object[] filterArgs, SearchControls cons) throws NamingException {
+    return cachedSearch(name, filterExpr, filterArgs, cons);
+  }
+
+  @Override
+  public void modifyAttributes(Name name, int modOp, Attributes attrs) throws NamingException {
+    try {
+      delegate.modifyAttributes(name, modOp, attrs);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public void modifyAttributes(String name, int modOp, Attributes attrs) throws NamingException {
+    try {
+      delegate.modifyAttributes(name, modOp, attrs);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public void modifyAttributes(Name name, ModificationItem[] mods) throws NamingException {
+    try {
+      delegate.modifyAttributes(name, mods);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public void modifyAttributes(String name, ModificationItem[] mods) throws NamingException {
+    try {
+      delegate.modifyAttributes(name, mods);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public void bind(Name name, Object obj) throws NamingException {
+    try {
+      delegate.bind(name, obj);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public void bind(String name, Object obj) throws NamingException {
+    try {
+      delegate.bind(name, obj);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public void bind(Name name, Object obj, Attributes attrs) throws NamingException {
+    try {
+      delegate.bind(name, obj, attrs);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public void bind(String name, Object obj, Attributes attrs) throws NamingException {
+    try {
+      delegate.bind(name, obj, attrs);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public void rebind(Name name, Object obj) throws NamingException {
+    try {
+      delegate.rebind(name, obj);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public void rebind(String name, Object obj) throws NamingException {
+    try {
+      delegate.rebind(name, obj);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public void rebind(Name name, Object obj, Attributes attrs) throws NamingException {
+    try {
+      delegate.rebind(name, obj, attrs);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public void rebind(String name, Object obj, Attributes attrs) throws NamingException {
+    try {
+      delegate.rebind(name, obj, attrs);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public void unbind(Name name) throws NamingException {
+    try {
+      delegate.unbind(name);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public void unbind(String name) throws NamingException {
+    try {
+      delegate.unbind(name);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public void rename(Name oldName, Name newName) throws NamingException {
+    try {
+      delegate.rename(oldName, newName);
+    } finally {
+      cache.invalidate(oldName.toString());
+      cache.invalidate(newName.toString());
+    }
+  }
+
+  @Override
+  public void rename(String oldName, String newName) throws NamingException {
+    try {
+      delegate.rename(oldName, newName);
+    } finally {
+      cache.invalidate(oldName);
+      cache.invalidate(newName);
+    }
+  }
+
+  @Override
+  public Context createSubcontext(Name name) throws NamingException {
+    try {
+      return delegate.createSubcontext(name);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public Context createSubcontext(String name) throws NamingException {
+    try {
+      return delegate.createSubcontext(name);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public DirContext createSubcontext(Name name, Attributes attrs) throws NamingException {
+    try {
+      return delegate.createSubcontext(name, attrs);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public DirContext createSubcontext(String name, Attributes attrs) throws NamingException {
+    try {
+      return delegate.createSubcontext(name, attrs);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public void destroySubcontext(Name name) throws NamingException {
+    try {
+      delegate.destroySubcontext(name);
+    } finally {
+      cache.invalidate(name.toString());
+    }
+  }
+
+  @Override
+  public void destroySubcontext(String name) throws NamingException {
+    try {
+      delegate.destroySubcontext(name);
+    } finally {
+      cache.invalidate(name);
+    }
+  }
+
+  @Override
+  public Object addToEnvironment(String propName, Object propVal) throws NamingException {
+    environmentChanged = true;
+    return delegate.addToEnvironment(propName, propVal);
+  }
+
+  @Override
+  public Object removeFromEnvironment(String propName) throws NamingException {
+    environmentChanged = true;
+    return delegate.removeFromEnvironment(propName);
+  }
+
+  /**
+   * Enumeration over results already read, optionally followed by the rest of the provider's enumeration or by the
+   * exception that ended reading.
+   */
+  private static final class BufferedNamingEnumeration implements NamingEnumeration<SearchResult> {
+
+    private final Iterator<SearchResult> buffered;
+    private final NamingEnumeration<SearchResult> remaining;
+    private NamingException pending;
+
+    BufferedNamingEnumeration(final List<SearchResult> buffered, final NamingEnumeration<SearchResult> remaining, final NamingException pending) {
+      this.buffered = buffered.iterator();
+      this.remaining = remaining;
+      this.pending = pending;
+    }
+
+    public SearchResult next() throws NamingException {
+      if (buffered.hasNext()) {
+        return buffered.next();
+      }
+      if (remaining != null) {
+        return remaining.next();
+      }
+      throwPending();
+      throw new NoSuchElementException();
+    }
+
+    public boolean hasMore() throws NamingException {
+      if (buffered.hasNext()) {
+        return true;
+      }
+      if (remaining != null) {
+        return remaining.hasMore();
+      }
+      throwPending();
+      return false;
+    }
+
+    private void throwPending() throws NamingException {
+      if (pending != null) {
+        final NamingException thrown = pending;
+        pending = null;
+        throw thrown;
+      }
+    }
+
+    public void close() throws NamingException {
+      if (remaining != null) {
+        remaining.close();
+      }
+    }
+
+    public boolean hasMoreElements() {
+      try {
+        return hasMore();
+      } catch (NamingException ex) {
+        throw new IllegalStateException("unable to read search results", ex);
+      }
+    }
+
+    public SearchResult nextElement() {
+      try {
+        return next();
+      } catch (NamingException ex) {
+        throw new IllegalStateException("unable to read search results", ex);
+      }
+    }
+  }
+}
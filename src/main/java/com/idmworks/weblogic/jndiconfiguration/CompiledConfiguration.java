@@ -0,0 +1,488 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.CRC32;
+import javax.naming.CompositeName;
+import javax.naming.InvalidNameException;
+import javax.naming.Name;
+import javax.naming.NameParser;
+
+/**
+ * Entries of one or more {@link BulkInitializer} manifests compiled ahead of time: arguments are split, types are
+ * converted and properties files are loaded once, by {@link ConfigurationCompiler}, and stored in a single file that
+ * {@link CompiledConfigurationInitializer} binds from during startup. An archive entry
+ * (<code>properties jndiName/*=archive</code>) is compiled into one entry per properties file of the archive.
+ *
+ * The file starts with a magic number, a format version, the payload length and a CRC32 of the payload; it is read
+ * through a memory mapping. The payload records the manifests and every file the entries were compiled from with its
+ * size and a CRC32 of its content, so that a stale compiled configuration can be detected whatever the resolution of
+ * file modification times.
+ *
+ * @author pdgreen
+ */
+public class CompiledConfiguration {
+
+  static final int MAGIC = 0x4A4E4443;
+  static final int VERSION = 2;
+  private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final byte STRING_VALUE = 'S';
+  private static final byte INTEGER_VALUE = 'I';
+  private static final byte LONG_VALUE = 'J';
+  private static final byte BOOLEAN_VALUE = 'Z';
+  private static final byte LIST_VALUE = 'L';
+  private static final byte PROPERTIES_VALUE = 'P';
+  private static final byte MAP_VALUE = 'M';
+  private final List<String> manifests;
+  private final List<SourceFile> sources;
+  private final List<Entry> entries;
+
+  CompiledConfiguration(final List<String> manifests, final List<SourceFile> sources, final List<Entry> entries) {
+    this.manifests = Collections.unmodifiableList(manifests);
+    this.sources = Collections.unmodifiableList(sources);
+    this.entries = Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Compiles the entries of manifests: names are checked, typed values converted and properties files loaded.
+   *
+   * @param manifests manifest files (see {@link BulkInitializer})
+   * @return compiled configuration
+   * @throws IllegalArgumentException thrown when a manifest or one of its entries is invalid
+   */
+  public static CompiledConfiguration compile(final List<String> manifests) throws IllegalArgumentException {
+    final Map<String, SourceFile> sources = new LinkedHashMap<String, SourceFile>();
+    final List<Entry> entries = new ArrayList<Entry>();
+    final RecordingNameParser nameParser = new RecordingNameParser();
+    final List<String> manifestPaths = new ArrayList<String>(manifests.size());
+    for (final String manifest : manifests) {
+      manifestPaths.add(new File(manifest).getAbsolutePath());
+      sources.put(manifest, SourceFile.of(manifest));
+      for (final ManifestEntry manifestEntry : BulkInitializer.readManifest(manifest)) {
+        if (manifestEntry.getType() == ManifestEntry.Type.PROPERTIES && PropertiesArchive.isArchiveArgument(manifestEntry.getArgument())) {
+          final String filename = PropertiesArchive.getFilename(manifestEntry.getArgument());
+          sources.put(filename, SourceFile.of(filename));
+          compileArchive(manifestEntry, nameParser, entries);
+          continue;
+        }
+        final String[] argument = new String[]{manifestEntry.getArgument()};
+        final ValueDescriptor<?> descriptor;
+        switch (manifestEntry.getType()) {
+          case STRING:
+            descriptor = StringInitializer.parse(nameParser, argument).get(0);
+            break;
+          case TYPED:
+            descriptor = TypedInitializer.parse(nameParser, argument).get(0);
+            break;
+          case PROPERTIES:
+            descriptor = PropertiesInitializer.parse(nameParser, argument).get(0);
+            break;
+          case LDAP:
+            descriptor = LdapDirContextInitializer.parse(nameParser, argument).get(0);
+            break;
+          default:
+            throw new IllegalArgumentException("Unsupported entry type: " + manifestEntry.getType());
+        }
+        if (manifestEntry.getType() == ManifestEntry.Type.PROPERTIES) {
+          for (final String filename : PropertiesUtils.splitLayers(manifestEntry.getArgument().split("=", 2)[1])) {
+            sources.put(filename, SourceFile.of(filename));
+          }
+        } else if (manifestEntry.getType() == ManifestEntry.Type.TYPED
+                && ValueType.fromTypedName(JndiUtils.stripLocalFlag(argument[0].split("=", 2)[0])) == ValueType.PROPERTIES) {
+          final String filename = argument[0].split("=", 2)[1].trim();
+          sources.put(filename, SourceFile.of(filename));
+        } else if (manifestEntry.getType() == ManifestEntry.Type.LDAP) {
+          final String filename = manifestEntry.getArgument().split("=", 2)[1];
+          sources.put(filename, SourceFile.of(filename));
+        }
+        entries.add(new Entry(manifestEntry.getType(), nameParser.last, descriptor.isLocal(), descriptor.getValue(), manifestEntry.getSource()));
+      }
+    }
+    return new CompiledConfiguration(manifestPaths, new ArrayList<SourceFile>(sources.values()), entries);
+  }
+
+  /**
+   * Compiles the properties files of an archive entry, reading the archive in one pass.
+   */
+  private static void compileArchive(final ManifestEntry manifestEntry, final RecordingNameParser nameParser, final List<Entry> entries) throws IllegalArgumentException {
+    try {
+      final PropertiesArchive archive = PropertiesArchive.open(manifestEntry.getArgument());
+      try {
+        for (ValueDescriptor<Properties> descriptor = archive.next(nameParser); descriptor != null; descriptor = archive.next(nameParser)) {
+          entries.add(new Entry(manifestEntry.getType(), nameParser.last, descriptor.isLocal(), descriptor.getValue(), manifestEntry.getSource()));
+        }
+      } finally {
+        archive.close();
+      }
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Unable to read archive of " + manifestEntry, ex);
+    }
+  }
+
+  /**
+   * Writes this configuration to file, replacing it atomically where the file system allows. The content is forced to
+   * the storage device before the file is replaced, so a crash leaves either the old or the new configuration.
+   *
+   * @param file file to write
+   * @throws IOException thrown when the file can't be written
+   */
+  public void write(final File file) throws IOException {
+    final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(payload);
+    out.writeInt(manifests.size());
+    for (final String manifest : manifests) {
+      writeString(out, manifest);
+    }
+    out.writeInt(sources.size());
+    for (final SourceFile source : sources) {
+      writeString(out, source.path);
+      out.writeLong(source.length);
+      out.writeLong(source.checksum);
+    }
+    out.writeInt(entries.size());
+    for (final Entry entry : entries) {
+      out.writeByte(entry.type.ordinal());
+      writeString(out, entry.name);
+      out.writeBoolean(entry.local);
+      writeString(out, entry.source);
+      writeValue(out, entry.value);
+    }
+    out.flush();
+    final byte[] bytes = payload.toByteArray();
+    final CRC32 crc = new CRC32();
+    crc.update(bytes);
+
+    final File temporary = new File(file.getPath() + ".tmp");
+    final FileOutputStream fileStream = new FileOutputStream(temporary);
+    final DataOutputStream fileOut = new DataOutputStream(new BufferedOutputStream(fileStream));
+    try {
+      fileOut.writeInt(MAGIC);
+      fileOut.writeInt(VERSION);
+      fileOut.writeInt(bytes.length);
+      fileOut.writeLong(crc.getValue());
+      fileOut.write(bytes);
+      fileOut.flush();
+      fileStream.getChannel().force(true);
+    } finally {
+      fileOut.close();
+    }
+    if (!temporary.renameTo(file)) {
+      if (!file.delete() || !temporary.renameTo(file)) {
+        throw new IOException("Unable to replace " + file);
+      }
+    }
+  }
+
+  /**
+   * Reads a compiled configuration through a memory mapping, verifying its format version and checksum.
+   *
+   * @param file compiled configuration file
+   * @return compiled configuration
+   * @throws IOException thrown when the file can't be read, has another format version or is corrupt
+   */
+  public static CompiledConfiguration read(final File file) throws IOException {
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      final FileChannel channel = randomAccessFile.getChannel();
+      if (channel.size() < HEADER_SIZE) {
+        throw new IOException("Truncated compiled configuration: " + file);
+      }
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a compiled configuration: " + file);
+      }
+      final int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported compiled configuration version " + version + ": " + file);
+      }
+      final int length = buffer.getInt();
+      final long checksum = buffer.getLong();
+      if (length < 0 || length != buffer.remaining()) {
+        throw new IOException("Truncated compiled configuration: " + file);
+      }
+      if (checksum(buffer.duplicate()) != checksum) {
+        throw new IOException("Checksum mismatch in compiled configuration: " + file);
+      }
+      return decode(buffer);
+    } catch (RuntimeException ex) {
+      throw new IOException("Corrupt compiled configuration: " + file, ex);
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * CRC32 of the content of file, -1 when it can't be read. The file is read rather than mapped, so that it isn't
+   * kept locked (on Windows) until the mapping is garbage collected.
+   */
+  private static long checksum(final File file) {
+    try {
+      final InputStream in = new FileInputStream(file);
+      try {
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[8192];
+        for (int count = in.read(chunk); count != -1; count = in.read(chunk)) {
+          crc.update(chunk, 0, count);
+        }
+        return crc.getValue();
+      } finally {
+        in.close();
+      }
+    } catch (IOException ex) {
+      return -1L;
+    }
+  }
+
+  private static long checksum(final ByteBuffer buffer) {
+    final CRC32 crc = new CRC32();
+    final byte[] chunk = new byte[8192];
+    while (buffer.hasRemaining()) {
+      final int count = Math.min(chunk.length, buffer.remaining());
+      buffer.get(chunk, 0, count);
+      crc.update(chunk, 0, count);
+    }
+    return crc.getValue();
+  }
+
+  private static CompiledConfiguration decode(final ByteBuffer buffer) {
+    final int manifestCount = buffer.getInt();
+    final List<String> manifests = new ArrayList<String>(manifestCount);
+    for (int i = 0; i < manifestCount; i++) {
+      manifests.add(readString(buffer));
+    }
+    final int sourceCount = buffer.getInt();
+    final List<SourceFile> sources = new ArrayList<SourceFile>(sourceCount);
+    for (int i = 0; i < sourceCount; i++) {
+      sources.add(new SourceFile(readString(buffer), buffer.getLong(), buffer.getLong()));
+    }
+    final int entryCount = buffer.getInt();
+    final List<Entry> entries = new ArrayList<Entry>(entryCount);
+    final ManifestEntry.Type[] types = ManifestEntry.Type.values();
+    for (int i = 0; i < entryCount; i++) {
+      final ManifestEntry.Type type = types[buffer.get()];
+      final String name = readString(buffer);
+      final boolean local = buffer.get() != 0;
+      final String source = readString(buffer);
+      entries.add(new Entry(type, name, local, readValue(buffer), source));
+    }
+    return new CompiledConfiguration(manifests, sources, entries);
+  }
+
+  private static void writeString(final DataOutputStream out, final String value) throws IOException {
+    final byte[] bytes = value.getBytes(UTF8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  private static void writeValue(final DataOutputStream out, final Object value) throws IOException {
+    if (value instanceof String) {
+      out.writeByte(STRING_VALUE);
+      writeString(out, (String) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER_VALUE);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG_VALUE);
+      out.writeLong((Long) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN_VALUE);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof List) {
+      final List<?> list = (List<?>) value;
+      out.writeByte(LIST_VALUE);
+      out.writeInt(list.size());
+      for (final Object element : list) {
+        writeString(out, String.valueOf(element));
+      }
+    } else if (value instanceof Properties) {
+      final Properties properties = (Properties) value;
+      final Set<String> keys = properties.stringPropertyNames();
+      out.writeByte(PROPERTIES_VALUE);
+      out.writeInt(keys.size());
+      for (final String key : keys) {
+        writeString(out, key);
+        writeString(out, properties.getProperty(key));
+      }
+    } else if (value instanceof Map) {
+      final Map<?, ?> map = (Map<?, ?>) value;
+      out.writeByte(MAP_VALUE);
+      out.writeInt(map.size());
+      for (final Map.Entry<?, ?> mapEntry : map.entrySet()) {
+        writeString(out, String.valueOf(mapEntry.getKey()));
+        writeValue(out, mapEntry.getValue());
+      }
+    } else {
+      throw new IllegalArgumentException("Unsupported value type: " + (value == null ? null : value.getClass().getName()));
+    }
+  }
+
+  private static Object readValue(final ByteBuffer buffer) {
+    final byte tag = buffer.get();
+    switch (tag) {
+      case STRING_VALUE:
+        return readString(buffer);
+      case INTEGER_VALUE:
+        return buffer.getInt();
+      case LONG_VALUE:
+        return buffer.getLong();
+      case BOOLEAN_VALUE:
+        return buffer.get() != 0;
+      case LIST_VALUE: {
+        final int size = buffer.getInt();
+        final List<String> elements = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+          elements.add(readString(buffer));
+        }
+        return Collections.unmodifiableList(elements);
+      }
+      case PROPERTIES_VALUE: {
+        final int size = buffer.getInt();
+        final Properties properties = new Properties();
+        for (int i = 0; i < size; i++) {
+          properties.setProperty(readString(buffer), readString(buffer));
+        }
+        return properties;
+      }
+      case MAP_VALUE: {
+        final int size = buffer.getInt();
+        final Map<String, Object> map = new HashMap<String, Object>();
+        for (int i = 0; i < size; i++) {
+          map.put(readString(buffer), readValue(buffer));
+        }
+        return Collections.unmodifiableMap(map);
+      }
+      default:
+        throw new IllegalArgumentException("Unknown value tag: " + tag);
+    }
+  }
+
+  /**
+   * Source files whose size or content changed, or that disappeared, since the configuration was compiled. A file
+   * that was only touched isn't stale.
+   *
+   * @return stale source files, empty when the configuration is up to date
+   */
+  public List<String> findStaleSources() {
+    final List<String> stale = new ArrayList<String>();
+    for (final SourceFile source : sources) {
+      final File file = new File(source.path);
+      if (!file.isFile() || file.length() != source.length || checksum(file) != source.checksum) {
+        stale.add(source.path);
+      }
+    }
+    return stale;
+  }
+
+  /**
+   * Manifests the configuration was compiled from.
+   *
+   * @return manifest files
+   */
+  public List<String> getManifests() {
+    return manifests;
+  }
+
+  /**
+   * Compiled entries in manifest order.
+   *
+   * @return entries
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(CompiledConfiguration.class.getName()).append("{manifests=").append(manifests).append(",sources=").append(sources.size()).append(",entries=").append(entries.size()).append("}").toString();
+  }
+
+  /**
+   * Compiled manifest entry: JNDI name as written in the manifest and converted value.
+   */
+  public static final class Entry {
+
+    private final ManifestEntry.Type type;
+    private final String name;
+    private final boolean local;
+    private final Object value;
+    private final String source;
+
+    Entry(final ManifestEntry.Type type, final String name, final boolean local, final Object value, final String source) {
+      this.type = type;
+      this.name = name;
+      this.local = local;
+      this.value = value;
+      this.source = source;
+    }
+
+    public ManifestEntry.Type getType() {
+      return type;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public boolean isLocal() {
+      return local;
+    }
+
+    public Object getValue() {
+      return value;
+    }
+
+    public String getSource() {
+      return source;
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuffer(type.toString().toLowerCase(Locale.ENGLISH)).append(' ').append(name).append(" (").append(source).append(")").toString();
+    }
+  }
+
+  /**
+   * File an entry was compiled from, with the size and CRC32 of the content it had.
+   */
+  static final class SourceFile {
+
+    final String path;
+    final long length;
+    final long checksum;
+
+    SourceFile(final String path, final long length, final long checksum) {
+      this.path = path;
+      this.length = length;
+      this.checksum = checksum;
+    }
+
+    static SourceFile of(final String path) {
+      final File file = new File(path);
+      return new SourceFile(file.getAbsolutePath(), file.length(), checksum(file));
+    }
+  }
+
+  /**
+   * Remembers the last JNDI name parsed; names are kept as written and parsed by the server's parser when bound.
+   */
+  private static final class RecordingNameParser implements NameParser {
+
+    private String last;
+
+    public Name parse(final String name) throws InvalidNameException {
+      last = name;
+      return new CompositeName().add(name);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.*;
+
+/**
+ * Adds the entries of a {@link CompiledConfiguration} to JNDI in weblogic during startup. Nothing is parsed or loaded
+ * but the JNDI names; values are bound as compiled.
+ *
+ * When the compiled configuration can't be read, is corrupt, or one of the files it was compiled from changed since,
+ * the manifests are bound through {@link BulkInitializer} instead.
+ *
+ * @author pdgreen
+ */
+public class CompiledConfigurationInitializer {
+
+  private static final Logger LOGGER = Logger.getLogger(CompiledConfigurationInitializer.class.getName());
+  private final NameParser nameParser;
+  private final StringInitializer stringInitializer;
+  private final TypedInitializer typedInitializer;
+  private final PropertiesInitializer propertiesInitializer;
+  private final LdapDirContextInitializer ldapDirContextInitializer;
+
+  public CompiledConfigurationInitializer(final InitialContext initialContext, final NameParser nameParser) {
+    this(initialContext, nameParser, InitializerOptions.none());
+  }
+
+  /**
+   * Creates initializer; options are passed on to the initializers (for example <code>-rebind</code>).
+   *
+   * @param initialContext context to bind to
+   * @param nameParser parser for the JNDI names of the entries
+   * @param options options of the initializers
+   */
+  public CompiledConfigurationInitializer(final InitialContext initialContext, final NameParser nameParser, final InitializerOptions options) {
+    this.nameParser = nameParser;
+    final SubcontextCache subcontextCache = new SubcontextCache();
+    this.stringInitializer = new StringInitializer(initialContext, subcontextCache, options);
+    this.typedInitializer = new TypedInitializer(initialContext, subcontextCache, options);
+    this.propertiesInitializer = new PropertiesInitializer(initialContext, subcontextCache, options);
+    this.ldapDirContextInitializer = new LdapDirContextInitializer(initialContext, subcontextCache, options);
+  }
+
+  /**
+   * Binds all entries in order, reporting failures per entry.
+   *
+   * @param configuration compiled configuration
+   * @return report of bound and failed entries
+   */
+  public InitializationReport initialize(final CompiledConfiguration configuration) {
+    final InitializationReport report = new InitializationReport();
+    for (final CompiledConfiguration.Entry entry : configuration.getEntries()) {
+      try {
+        final Name jndiName = JndiUtils.parseJndiName(nameParser, entry.getName());
+        switch (entry.getType()) {
+          case STRING:
+            stringInitializer.initialize(ValueDescriptor.of(jndiName, (String) entry.getValue(), entry.isLocal()));
+            break;
+          case TYPED:
+            typedInitializer.initialize(ValueDescriptor.of(jndiName, entry.getValue(), entry.isLocal()));
+            break;
+          case PROPERTIES:
+            propertiesInitializer.initialize(ValueDescriptor.of(jndiName, (Properties) entry.getValue(), entry.isLocal()));
+            break;
+          case LDAP:
+            ldapDirContextInitializer.initialize(ValueDescriptor.of(jndiName, (Properties) entry.getValue(), entry.isLocal()));
+            break;
+          default:
+            throw new IllegalArgumentException("Unsupported entry type: " + entry.getType());
+        }
+        report.recordBound(entry.toString());
+      } catch (RuntimeException ex) {
+        LOGGER.log(Level.WARNING, "Unable to bind " + entry, ex);
+        report.recordFailure(entry.toString(), ex);
+      }
+    }
+    return report;
+  }
+
+  /**
+   * Reads a compiled configuration unless it is unreadable, corrupt or stale.
+   *
+   * @param file compiled configuration file
+   * @return compiled configuration or null when the source files have to be used
+   */
+  static CompiledConfiguration readIfCurrent(final File file) {
+    final CompiledConfiguration configuration;
+    try {
+      configuration = CompiledConfiguration.read(file);
+    } catch (IOException ex) {
+      LOGGER.log(Level.WARNING, "Unable to use compiled configuration " + file + ", falling back to the manifests", ex);
+      return null;
+    }
+    final List<String> staleSources = configuration.findStaleSources();
+    if (!staleSources.isEmpty()) {
+      LOGGER.log(Level.WARNING, "Compiled configuration {0} is stale ({1} changed), falling back to the manifests", new Object[]{file, staleSources});
+      return null;
+    }
+    return configuration;
+  }
+
+  /**
+   * Parse arguments ([-threads=count] [-deadline=millis] [-entryTimeout=millis] [-rebind] [-snapshot] [-local]
+   * compiledFile [manifestFile*]) and binds the entries of compiledFile into JNDI. When compiledFile is stale or can't be read, the manifests given as arguments,
+   * or else those compiledFile was compiled from, are bound by {@link BulkInitializer}. <code>-threads</code>,
+   * <code>-deadline</code> and <code>-entryTimeout</code> only apply to that fallback; the compiled entries are bound in
+   * order on the calling thread.
+   *
+   * @param args
+   */
+  public static void main(final String[] args) {
+    final long start = System.nanoTime();
+    final InitializerOptions options = InitializerOptions.parse(args);
+    final String[] arguments = options.getArguments();
+    if (arguments.length < 1) {
+      throw new IllegalArgumentException("Usage: CompiledConfigurationInitializer [options] compiledFile [manifestFile*]");
+    }
+    final Hashtable<String, String> ht = JndiUtils.createEnvironment(options);
+    final InitialContext initialContext = JndiUtils.createInitialContext(ht);
+    final NameParser nameParser = JndiUtils.createNameParser(initialContext);
+
+    final File file = new File(arguments[0]);
+    final CompiledConfiguration configuration = readIfCurrent(file);
+    final InitializationReport report;
+    if (configuration != null) {
+      report = new CompiledConfigurationInitializer(initialContext, nameParser, options).initialize(configuration);
+    } else {
+      final List<String> manifests = arguments.length > 1 ? Arrays.asList(arguments).subList(1, arguments.length) : recordedManifests(file);
+      final int threads = options.getInt(BulkInitializer.THREADS_OPTION, Math.min(4, Runtime.getRuntime().availableProcessors()));
+      final List<ManifestEntry> entries = new ArrayList<ManifestEntry>();
+      for (final String manifest : manifests) {
+        entries.addAll(BulkInitializer.readManifest(manifest));
+      }
+      report = new BulkInitializer(ht, nameParser, threads, options).initialize(entries);
+    }
+    LOGGER.log(report.isSuccessful() ? Level.INFO : Level.SEVERE, "Compiled configuration initialization finished: {0}", report);
+    JndiConfigurationMetrics.get().recordMain(CompiledConfigurationInitializer.class, System.nanoTime() - start);
+  }
+
+  private static List<String> recordedManifests(final File file) {
+    try {
+      return CompiledConfiguration.read(file).getManifests();
+    } catch (IOException ex) {
+      throw new IllegalStateException("Compiled configuration " + file + " can't be read and no manifests were given", ex);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Build-time tool compiling {@link BulkInitializer} manifests, and the files they reference, into a single
+ * {@link CompiledConfiguration} file for {@link CompiledConfigurationInitializer}.
+ *
+ * @author pdgreen
+ */
+public class ConfigurationCompiler {
+
+  private static final Logger LOGGER = Logger.getLogger(ConfigurationCompiler.class.getName());
+
+  /**
+   * Parse arguments (outputFile manifestFile*) and compiles the entries of every manifest into outputFile.
+   *
+   * @param args
+   */
+  public static void main(final String[] args) {
+    final InitializerOptions options = InitializerOptions.parse(args);
+    final String[] arguments = options.getArguments();
+    if (arguments.length < 2) {
+      throw new IllegalArgumentException("Usage: ConfigurationCompiler outputFile manifestFile...");
+    }
+    final File output = new File(arguments[0]);
+    final CompiledConfiguration configuration = CompiledConfiguration.compile(Arrays.asList(arguments).subList(1, arguments.length));
+    try {
+      configuration.write(output);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Unable to write " + output, ex);
+    }
+    LOGGER.log(Level.INFO, "Compiled {0} to {1}", new Object[]{configuration, output});
+  }
+}
@@ -0,0 +1,242 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Hashtable;
+import javax.naming.*;
+import javax.naming.directory.*;
+
+/**
+ * {@link DirContext} which forwards every operation to the context returned by {@link #getDelegate()}.
+ * Subclasses decide where the delegate comes from and may override individual operations.
+ *
+ * @author pdgreen
+ */
+public abstract class DelegatingDirContext implements DirContext {
+
+  /**
+   * Context that operations are forwarded to.
+   *
+   * @return delegate context
+   * @throws NamingException thrown when the delegate is unavailable
+   */
+  protected abstract DirContext getDelegate() throws NamingException;
+
+  public Object lookup(Name name) throws NamingException {
+    return getDelegate().lookup(name);
+  }
+
+  public Object lookup(String name) throws NamingException {
+    return getDelegate().lookup(name);
+  }
+
+  public void bind(Name name, Object obj) throws NamingException {
+    getDelegate().bind(name, obj);
+  }
+
+  public void bind(String name, Object obj) throws NamingException {
+    getDelegate().bind(name, obj);
+  }
+
+  public void rebind(Name name, Object obj) throws NamingException {
+    getDelegate().rebind(name, obj);
+  }
+
+  public void rebind(String name, Object obj) throws NamingException {
+    getDelegate().rebind(name, obj);
+  }
+
+  public void unbind(Name name) throws NamingException {
+    getDelegate().unbind(name);
+  }
+
+  public void unbind(String name) throws NamingException {
+    getDelegate().unbind(name);
+  }
+
+  public void rename(Name oldName, Name newName) throws NamingException {
+    getDelegate().rename(oldName, newName);
+  }
+
+  public void rename(String oldName, String newName) throws NamingException {
+    getDelegate().rename(oldName, newName);
+  }
+
+  public NamingEnumeration<NameClassPair> list(Name name) throws NamingException {
+    return getDelegate().list(name);
+  }
+
+  public NamingEnumeration<NameClassPair> list(String name) throws NamingException {
+    return getDelegate().list(name);
+  }
+
+  public NamingEnumeration<Binding> listBindings(Name name) throws NamingException {
+    return getDelegate().listBindings(name);
+  }
+
+  public NamingEnumeration<Binding> listBindings(String name) throws NamingException {
+    return getDelegate().listBindings(name);
+  }
+
+  public void destroySubcontext(Name name) throws NamingException {
+    getDelegate().destroySubcontext(name);
+  }
+
+  public void destroySubcontext(String name) throws NamingException {
+    getDelegate().destroySubcontext(name);
+  }
+
+  public Context createSubcontext(Name name) throws NamingException {
+    return getDelegate().createSubcontext(name);
+  }
+
+  public Context createSubcontext(String name) throws NamingException {
+    return getDelegate().createSubcontext(name);
+  }
+
+  public Object lookupLink(Name name) throws NamingException {
+    return getDelegate().lookupLink(name);
+  }
+
+  public Object lookupLink(String name) throws NamingException {
+    return getDelegate().lookupLink(name);
+  }
+
+  public NameParser getNameParser(Name name) throws NamingException {
+    return getDelegate().getNameParser(name);
+  }
+
+  public NameParser getNameParser(String name) throws NamingException {
+    return getDelegate().getNameParser(name);
+  }
+
+  public Name composeName(Name name, Name prefix) throws NamingException {
+    return getDelegate().composeName(name, prefix);
+  }
+
+  public String composeName(String name, String prefix) throws NamingException {
+    return getDelegate().composeName(name, prefix);
+  }
+
+  public Object addToEnvironment(String propName, Object propVal) throws NamingException {
+    return getDelegate().addToEnvironment(propName, propVal);
+  }
+
+  public Object removeFromEnvironment(String propName) throws NamingException {
+    return getDelegate().removeFromEnvironment(propName);
+  }
+
+  public Hashtable<?, ?> getEnvironment() throws NamingException {
+    return getDelegate().getEnvironment();
+  }
+
+  public void close() throws NamingException {
+    getDelegate().close();
+  }
+
+  public String getNameInNamespace() throws NamingException {
+    return getDelegate().getNameInNamespace();
+  }
+
+  public Attributes getAttributes(Name name) throws NamingException {
+    return getDelegate().getAttributes(name);
+  }
+
+  public Attributes getAttributes(String name) throws NamingException {
+    return getDelegate().getAttributes(name);
+  }
+
+  public Attributes getAttributes(Name name, String[] attrIds) throws NamingException {
+    return getDelegate().getAttributes(name, attrIds);
+  }
+
+  public Attributes getAttributes(String name, String[] attrIds) throws NamingException {
+    return getDelegate().getAttributes(name, attrIds);
+  }
+
+  public void modifyAttributes(Name name, int modOp, Attributes attrs) throws NamingException {
+    getDelegate().modifyAttributes(name, modOp, attrs);
+  }
+
+  public void modifyAttributes(String name, int modOp, Attributes attrs) throws NamingException {
+    getDelegate().modifyAttributes(name, modOp, attrs);
+  }
+
+  public void modifyAttributes(Name name, ModificationItem[] mods) throws NamingException {
+    getDelegate().modifyAttributes(name, mods);
+  }
+
+  public void modifyAttributes(String name, ModificationItem[] mods) throws NamingException {
+    getDelegate().modifyAttributes(name, mods);
+  }
+
+  public void bind(Name name, Object obj, Attributes attrs) throws NamingException {
+    getDelegate().bind(name, obj, attrs);
+  }
+
+  public void bind(String name, Object obj, Attributes attrs) throws NamingException {
+    getDelegate().bind(name, obj, attrs);
+  }
+
+  public void rebind(Name name, Object obj, Attributes attrs) throws NamingException {
+    getDelegate().rebind(name, obj, attrs);
+  }
+
+  public void rebind(String name, Object obj, Attributes attrs) throws NamingException {
+    getDelegate().rebind(name, obj, attrs);
+  }
+
+  public DirContext createSubcontext(Name name, Attributes attrs) throws NamingException {
+    return getDelegate().createSubcontext(name, attrs);
+  }
+
+  public DirContext createSubcontext(String name, Attributes attrs) throws NamingException {
+    return getDelegate().createSubcontext(name, attrs);
+  }
+
+  public DirContext getSchema(Name name) throws NamingException {
+    return getDelegate().getSchema(name);
+  }
+
+  public DirContext getSchema(String name) throws NamingException {
+    return getDelegate().getSchema(name);
+  }
+
+  public DirContext getSchemaClassDefinition(Name name) throws NamingException {
+    return getDelegate().getSchemaClassDefinition(name);
+  }
+
+  public DirContext getSchemaClassDefinition(String name) throws NamingException {
+    return getDelegate().getSchemaClassDefinition(name);
+  }
+
+  public NamingEnumeration<SearchResult> search(Name name, Attributes matchingAttributes) throws NamingException {
+    return getDelegate().search(name, matchingAttributes);
+  }
+
+  public NamingEnumeration<SearchResult> search(String name, Attributes matchingAttributes) throws NamingException {
+    return getDelegate().search(name, matchingAttributes);
+  }
+
+  public NamingEnumeration<SearchResult> search(Name name, Attributes matchingAttributes, String[] attributesToReturn) throws NamingException {
+    return getDelegate().search(name, matchingAttributes, attributesToReturn);
+  }
+
+  public NamingEnumeration<SearchResult> search(String name, Attributes matchingAttributes, String[] attributesToReturn) throws NamingException {
+    return getDelegate().search(name, matchingAttributes, attributesToReturn);
+  }
+
+  public NamingEnumeration<SearchResult> search(Name name, String filter, SearchControls cons) throws NamingException {
+    return getDelegate().search(name, filter, cons);
+  }
+
+  public NamingEnumeration<SearchResult> search(String name, String filter, SearchControls cons) throws NamingException {
+    return getDelegate().search(name, filter, cons);
+  }
+
+  public NamingEnumeration<SearchResult> search(Name name, String filterExpr, Object[] filterArgs, SearchControls cons) throws NamingException {
+    return getDelegate().search(name, filterExpr, filterArgs, cons);
+  }
+
+  public NamingEnumeration<SearchResult> search(String name, String filterExpr, Object[] filterArgs, SearchControls cons) throws NamingException {
+    return getDelegate().search(name, filterExpr, filterArgs, cons);
+  }
+}
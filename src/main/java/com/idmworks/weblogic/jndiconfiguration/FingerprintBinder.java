@@ -0,0 +1,165 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.*;
+
+/**
+ * Binds values only when their content changed, so re-running an initializer doesn't replicate unchanged objects
+ * across the cluster. The fingerprint of a bound value is stored next to it at
+ * <code>name{@value #FINGERPRINT_NAME_SUFFIX}</code>.
+ *
+ * @author pdgreen
+ */
+class FingerprintBinder {
+
+  private static final Logger LOGGER = Logger.getLogger(FingerprintBinder.class.getName());
+  static final String REBIND_OPTION = "rebind";
+  static final String FINGERPRINT_NAME_SUFFIX = "__fingerprint";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private FingerprintBinder() {
+  }
+
+  /**
+   * Binds value at name. When onlyIfChanged, an existing binding is replaced, but only if the fingerprint of value
+   * differs from the stored one.
+   *
+   * @param context context to bind in
+   * @param name name to bind
+   * @param value value to bind
+   * @param onlyIfChanged true to rebind only changed values, false to always bind
+   * @return true when value was written
+   * @throws NamingException thrown when unable to bind
+   */
+  static boolean bind(final Context context, final Name name, final Object value, final boolean onlyIfChanged) throws NamingException {
+    if (!onlyIfChanged) {
+      context.bind(name, value);
+      return true;
+    }
+    final String fingerprint = fingerprint(value);
+    if (isUnchanged(context, name, fingerprint)) {
+      return false;
+    }
+    context.rebind(name, value);
+    storeFingerprint(context, name, fingerprint);
+    CachingContext.invalidateCaches(name);
+    return true;
+  }
+
+  /**
+   * Whether the fingerprint stored for name equals fingerprint.
+   *
+   * @param context context the value is bound in
+   * @param name name of the value
+   * @param fingerprint fingerprint of the value to bind
+   * @return true when the bound value has the same content
+   * @throws NamingException thrown when unable to look up the stored fingerprint
+   */
+  static boolean isUnchanged(final Context context, final Name name, final String fingerprint) throws NamingException {
+    final Object stored;
+    try {
+      stored = context.lookup(buildFingerprintName(name));
+    } catch (NameNotFoundException ex) {
+      LOGGER.log(Level.FINE, "no fingerprint stored for {0}", name);
+      return false;
+    }
+    if (fingerprint.equals(stored)) {
+      JndiConfigurationMetrics.get().recordUnchangedBinding();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Stores fingerprint for name.
+   *
+   * @param context context the value is bound in
+   * @param name name of the value
+   * @param fingerprint fingerprint of the bound value
+   * @throws NamingException thrown when unable to bind the fingerprint
+   */
+  static void storeFingerprint(final Context context, final Name name, final String fingerprint) throws NamingException {
+    context.rebind(buildFingerprintName(name), fingerprint);
+  }
+
+  /**
+   * Builds the name the fingerprint of name is stored at.
+   *
+   * @param name name of the value
+   * @return name of the fingerprint
+   */
+  static Name buildFingerprintName(final Name name) {
+    try {
+      final Name fingerprintName = name.getPrefix(name.size() - 1);
+      fingerprintName.add(name.get(name.size() - 1) + FINGERPRINT_NAME_SUFFIX);
+      return fingerprintName;
+    } catch (InvalidNameException ex) {
+      throw new IllegalArgumentException("unable to build fingerprint name for " + name, ex);
+    }
+  }
+
+  /**
+   * SHA-256 of the content of value: its type and, for maps and collections, their entries in key order.
+   *
+   * @param value value to fingerprint
+   * @return hex encoded fingerprint
+   */
+  static String fingerprint(final Object value) {
+    final StringBuilder canonical = new StringBuilder();
+    appendCanonical(canonical, value);
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(UTF_8));
+      final char[] hex = new char[digest.length * 2];
+      for (int i = 0; i < digest.length; i++) {
+        hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+        hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+      }
+      return new String(hex);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 isn't available", ex);
+    }
+  }
+
+  /**
+   * Appends a representation of value that is equal for equal content; every token is length prefixed so that
+   * separators inside keys or values can't make different contents look alike.
+   */
+  private static void appendCanonical(final StringBuilder canonical, final Object value) {
+    if (value == null) {
+      canonical.append("null;");
+      return;
+    }
+    appendToken(canonical, value.getClass().getName());
+    if (value instanceof Map) {
+      final SortedMap<String, Object> sorted = new TreeMap<String, Object>();
+      for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+      }
+      canonical.append('{').append(sorted.size()).append(';');
+      for (final Map.Entry<String, Object> entry : sorted.entrySet()) {
+        appendToken(canonical, entry.getKey());
+        appendCanonical(canonical, entry.getValue());
+      }
+      canonical.append('}');
+    } else if (value instanceof Collection) {
+      final Collection<?> collection = (Collection<?>) value;
+      canonical.append('[').append(collection.size()).append(';');
+      for (final Object element : collection) {
+        appendCanonical(canonical, element);
+      }
+      canonical.append(']');
+    } else {
+      appendToken(canonical, value.toString());
+    }
+  }
+
+  private static void appendToken(final StringBuilder canonical, final String token) {
+    canonical.append(token.length()).append(':').append(token);
+  }
+}
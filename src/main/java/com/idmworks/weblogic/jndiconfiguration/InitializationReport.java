@@ -0,0 +1,127 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.*;
+
+/**
+ * Outcome of an initializer run: which entries were bound, which failed, which were still being bound when the run
+ * had to finish and which were skipped since they hadn't started by then. Late entries keep being bound in the
+ * background and move to bound or failed once done; skipped entries are never bound. Safe for concurrent use.
+ *
+ * @author pdgreen
+ */
+public class InitializationReport {
+
+  private final List<String> bound = new ArrayList<String>();
+  private final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+  private final Set<String> late = new LinkedHashSet<String>();
+  private final Set<String> skipped = new LinkedHashSet<String>();
+  private final Set<String> running = new HashSet<String>();
+  private final Set<String> finished = new HashSet<String>();
+
+  /**
+   * Records that an entry is about to be bound, unless it has been skipped.
+   *
+   * @param entry entry to bind
+   * @return false when the entry has been skipped and mustn't be bound
+   */
+  public synchronized boolean recordStarted(final String entry) {
+    return !skipped.contains(entry) && running.add(entry);
+  }
+
+  /**
+   * Records a successfully bound entry.
+   *
+   * @param entry entry that was bound
+   */
+  public synchronized void recordBound(final String entry) {
+    bound.add(entry);
+    finished.add(entry);
+    running.remove(entry);
+    late.remove(entry);
+  }
+
+  /**
+   * Records an entry that couldn't be bound.
+   *
+   * @param entry entry that failed
+   * @param cause reason of the failure
+   */
+  public synchronized void recordFailure(final String entry, final Throwable cause) {
+    failures.put(entry, cause);
+    finished.add(entry);
+    running.remove(entry);
+    late.remove(entry);
+  }
+
+  /**
+   * Records an entry that wasn't bound in time and is left to finish in the background; ignored when the entry has
+   * already finished.
+   *
+   * @param entry entry that is late
+   * @return true when recorded as late
+   */
+  public synchronized boolean recordLate(final String entry) {
+    return !finished.contains(entry) && late.add(entry);
+  }
+
+  /**
+   * Records an entry that won't be bound since it hadn't started when the run had to finish; ignored when the entry
+   * has started.
+   *
+   * @param entry entry to skip
+   * @return true when recorded as skipped
+   */
+  public synchronized boolean recordSkipped(final String entry) {
+    return !finished.contains(entry) && !running.contains(entry) && skipped.add(entry);
+  }
+
+  /**
+   * Entries bound so far, in the order they were bound.
+   *
+   * @return bound entries
+   */
+  public synchronized List<String> getBound() {
+    return Collections.unmodifiableList(new ArrayList<String>(bound));
+  }
+
+  /**
+   * Entries that failed and why.
+   *
+   * @return failed entries
+   */
+  public synchronized Map<String, Throwable> getFailures() {
+    return Collections.unmodifiableMap(new LinkedHashMap<String, Throwable>(failures));
+  }
+
+  /**
+   * Entries still being bound in the background.
+   *
+   * @return late entries
+   */
+  public synchronized Set<String> getLate() {
+    return Collections.unmodifiableSet(new LinkedHashSet<String>(late));
+  }
+
+  /**
+   * Entries that weren't bound and won't be.
+   *
+   * @return skipped entries
+   */
+  public synchronized Set<String> getSkipped() {
+    return Collections.unmodifiableSet(new LinkedHashSet<String>(skipped));
+  }
+
+  /**
+   * Whether every entry was bound.
+   *
+   * @return true when nothing failed, is late or was skipped
+   */
+  public synchronized boolean isSuccessful() {
+    return failures.isEmpty() && late.isEmpty() && skipped.isEmpty();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return new StringBuffer(InitializationReport.class.getName()).append("{bound=").append(bound.size()).append(",failed=").append(failures.keySet()).append(",late=").append(late).append(",skipped=").append(skipped).append("}").toString();
+  }
+}
@@ -0,0 +1,116 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Options passed to an initializer along with its regular arguments. Options start with {@value #OPTION_PREFIX} and
+ * are either flags (<code>-name</code>) or have a value (<code>-name=value</code>); every other argument is left for
+ * the initializer to parse.
+ *
+ * @author pdgreen
+ */
+public class InitializerOptions {
+
+  static final String OPTION_PREFIX = "-";
+  private final Properties options;
+  private final String[] arguments;
+
+  public InitializerOptions(final Properties options, final String[] arguments) {
+    this.options = options;
+    this.arguments = arguments;
+  }
+
+  /**
+   * Options without any value and without arguments.
+   *
+   * @return empty options
+   */
+  public static InitializerOptions none() {
+    return new InitializerOptions(new Properties(), new String[0]);
+  }
+
+  /**
+   * Separates options from arguments.
+   *
+   * @param args arguments passed to main
+   * @return parsed options
+   * @throws IllegalArgumentException thrown when an option has no name
+   */
+  public static InitializerOptions parse(final String[] args) throws IllegalArgumentException {
+    final Properties options = new Properties();
+    final List<String> arguments = new ArrayList<String>(args.length);
+    for (final String arg : args) {
+      if (arg.startsWith(OPTION_PREFIX)) {
+        final String[] parts = arg.substring(OPTION_PREFIX.length()).split("=", 2);
+        if (parts[0].length() == 0) {
+          throw new IllegalArgumentException("Option without name: " + arg);
+        }
+        options.setProperty(parts[0], parts.length > 1 ? parts[1] : "true");
+      } else {
+        arguments.add(arg);
+      }
+    }
+    return new InitializerOptions(options, arguments.toArray(new String[arguments.size()]));
+  }
+
+  /**
+   * Arguments which aren't options, in their original order.
+   *
+   * @return arguments
+   */
+  public String[] getArguments() {
+    return arguments;
+  }
+
+  /**
+   * Value of an option.
+   *
+   * @param name name of the option
+   * @return value or null when not given
+   */
+  public String get(final String name) {
+    return options.getProperty(name);
+  }
+
+  /**
+   * Whether a flag was given.
+   *
+   * @param name name of the option
+   * @return true when the option was given without value or with value <code>true</code>
+   * @throws IllegalArgumentException thrown when the value isn't a boolean
+   */
+  public boolean isEnabled(final String name) throws IllegalArgumentException {
+    return PropertiesUtils.getBoolean(options, name, false);
+  }
+
+  /**
+   * Integer value of an option.
+   *
+   * @param name name of the option
+   * @param defaultValue value used when the option isn't given
+   * @return value
+   * @throws IllegalArgumentException thrown when the value isn't an integer
+   */
+  public int getInt(final String name, final int defaultValue) throws IllegalArgumentException {
+    return PropertiesUtils.getInt(options, name, defaultValue);
+  }
+
+  /**
+   * Long value of an option.
+   *
+   * @param name name of the option
+   * @param defaultValue value used when the option isn't given
+   * @return value
+   * @throws IllegalArgumentException thrown when the value isn't a long
+   */
+  public long getLong(final String name, final long defaultValue) throws IllegalArgumentException {
+    return PropertiesUtils.getLong(options, name, defaultValue);
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(InitializerOptions.class.getName()).append("{").append(options).append("}").toString();
+  }
+}
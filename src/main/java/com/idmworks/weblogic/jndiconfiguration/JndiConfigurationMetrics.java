@@ -0,0 +1,248 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Figures collected by the initializers, {@link JndiUtils} and {@link LdapDirContextFactory}, exposed over JMX.
+ *
+ * Events on the lookup path (DirContext creation) are recorded with atomic counters and a fixed power of two
+ * histogram: no locks and no allocation. Per name and per class figures are only recorded during startup.
+ *
+ * @author pdgreen
+ */
+public class JndiConfigurationMetrics implements JndiConfigurationMetricsMXBean {
+
+  private static final Logger LOGGER = Logger.getLogger(JndiConfigurationMetrics.class.getName());
+  static final String OBJECT_NAME = "com.idmworks.weblogic.jndiconfiguration:type=JndiConfigurationMetrics";
+  private static final int BUCKETS = 64;
+  private static final JndiConfigurationMetrics INSTANCE = register(new JndiConfigurationMetrics());
+  private final ConcurrentMap<String, Long> initializeNanos = new ConcurrentHashMap<String, Long>();
+  private final ConcurrentMap<String, Long> mainMillis = new ConcurrentHashMap<String, Long>();
+  private final AtomicLong subcontextsCreated = new AtomicLong();
+  private final AtomicLong subcontextsFound = new AtomicLong();
+  private final AtomicLong unchangedBindings = new AtomicLong();
+  private final AtomicLong ldapContextCreationCount = new AtomicLong();
+  private final AtomicLong ldapContextCreationFailureCount = new AtomicLong();
+  private final AtomicLong ldapContextCreationTotalNanos = new AtomicLong();
+  private final AtomicLong ldapContextCreationMaxNanos = new AtomicLong();
+  private final AtomicLong lazyContextsConnected = new AtomicLong();
+  private final AtomicLong lazyContextsUnused = new AtomicLong();
+  private final AtomicLong ldapResultCacheHits = new AtomicLong();
+  private final AtomicLong ldapResultCacheMisses = new AtomicLong();
+  private final AtomicLong deduplicatedStrings = new AtomicLong();
+  private final AtomicLong deduplicatedBytes = new AtomicLong();
+  private final AtomicLongArray ldapContextCreationHistogram = new AtomicLongArray(BUCKETS);
+
+  JndiConfigurationMetrics() {
+  }
+
+  /**
+   * Metrics of this class loader; registered with the platform MBean server on first use.
+   *
+   * @return metrics
+   */
+  public static JndiConfigurationMetrics get() {
+    return INSTANCE;
+  }
+
+  private static JndiConfigurationMetrics register(final JndiConfigurationMetrics metrics) {
+    try {
+      final ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+      }
+    } catch (JMException ex) {
+      LOGGER.log(Level.WARNING, "Unable to register " + OBJECT_NAME + "; metrics are only collected", ex);
+    } catch (SecurityException ex) {
+      LOGGER.log(Level.WARNING, "Unable to register " + OBJECT_NAME + "; metrics are only collected", ex);
+    }
+    return metrics;
+  }
+
+  void recordInitialize(final Object jndiName, final long nanos) {
+    initializeNanos.put(String.valueOf(jndiName), nanos);
+  }
+
+  void recordSubcontextCreated() {
+    subcontextsCreated.incrementAndGet();
+  }
+
+  void recordSubcontextFound() {
+    subcontextsFound.incrementAndGet();
+  }
+
+  void recordUnchangedBinding() {
+    unchangedBindings.incrementAndGet();
+  }
+
+  void recordLdapContextCreation(final long nanos) {
+    ldapContextCreationCount.incrementAndGet();
+    ldapContextCreationTotalNanos.addAndGet(nanos);
+    ldapContextCreationHistogram.incrementAndGet(bucket(nanos));
+    long max;
+    while (nanos > (max = ldapContextCreationMaxNanos.get()) && !ldapContextCreationMaxNanos.compareAndSet(max, nanos)) {
+      // another thread recorded a new maximum in between; retry against it
+    }
+  }
+
+  void recordLdapContextCreationFailure() {
+    ldapContextCreationFailureCount.incrementAndGet();
+  }
+
+  void recordLazyContextConnected() {
+    lazyContextsConnected.incrementAndGet();
+  }
+
+  void recordLazyContextUnused() {
+    lazyContextsUnused.incrementAndGet();
+  }
+
+  void recordLdapResultCacheHit() {
+    ldapResultCacheHits.incrementAndGet();
+  }
+
+  void recordLdapResultCacheMiss() {
+    ldapResultCacheMisses.incrementAndGet();
+  }
+
+  void recordDeduplicatedStrings(final long count, final long bytes) {
+    deduplicatedStrings.addAndGet(count);
+    deduplicatedBytes.addAndGet(bytes);
+  }
+
+  void recordMain(final Class<?> startupClass, final long nanos) {
+    mainMillis.put(startupClass.getName(), TimeUnit.NANOSECONDS.toMillis(nanos));
+  }
+
+  static int bucket(final long nanos) {
+    return nanos <= 1L ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  public Map<String, Long> getInitializeNanos() {
+    return new TreeMap<String, Long>(initializeNanos);
+  }
+
+  public long getSubcontextsCreated() {
+    return subcontextsCreated.get();
+  }
+
+  public long getSubcontextsFound() {
+    return subcontextsFound.get();
+  }
+
+  public long getUnchangedBindings() {
+    return unchangedBindings.get();
+  }
+
+  public long getLdapContextCreationCount() {
+    return ldapContextCreationCount.get();
+  }
+
+  public long getLdapContextCreationFailureCount() {
+    return ldapContextCreationFailureCount.get();
+  }
+
+  public long getLdapContextCreationTotalNanos() {
+    return ldapContextCreationTotalNanos.get();
+  }
+
+  public long getLdapContextCreationMaxNanos() {
+    return ldapContextCreationMaxNanos.get();
+  }
+
+  public long getLazyContextsConnected() {
+    return lazyContextsConnected.get();
+  }
+
+  public long getLazyContextsUnused() {
+    return lazyContextsUnused.get();
+  }
+
+  public long getLdapResultCacheHits() {
+    return ldapResultCacheHits.get();
+  }
+
+  public long getLdapResultCacheMisses() {
+    return ldapResultCacheMisses.get();
+  }
+
+  public long getDeduplicatedStrings() {
+    return deduplicatedStrings.get();
+  }
+
+  public long getDeduplicatedBytes() {
+    return deduplicatedBytes.get();
+  }
+
+  public long[] getLdapContextCreationHistogram() {
+    final long[] histogram = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      histogram[i] = ldapContextCreationHistogram.get(i);
+    }
+    return histogram;
+  }
+
+  public long getLdapContextCreationPercentileNanos(final double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+    }
+    final long[] histogram = getLdapContextCreationHistogram();
+    long total = 0;
+    for (final long count : histogram) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0L;
+    }
+    final long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += histogram[i];
+      if (seen >= rank) {
+        return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  public Map<String, Long> getMainMillis() {
+    return new TreeMap<String, Long>(mainMillis);
+  }
+
+  public void reset() {
+    initializeNanos.clear();
+    mainMillis.clear();
+    subcontextsCreated.set(0);
+    subcontextsFound.set(0);
+    unchangedBindings.set(0);
+    ldapContextCreationCount.set(0);
+    ldapContextCreationFailureCount.set(0);
+    ldapContextCreationTotalNanos.set(0);
+    ldapContextCreationMaxNanos.set(0);
+    lazyContextsConnected.set(0);
+    lazyContextsUnused.set(0);
+    ldapResultCacheHits.set(0);
+    ldapResultCacheMisses.set(0);
+    deduplicatedStrings.set(0);
+    deduplicatedBytes.set(0);
+    for (int i = 0; i < BUCKETS; i++) {
+      ldapContextCreationHistogram.set(i, 0);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(JndiConfigurationMetrics.class.getName()).append("{subcontextsCreated=").append(subcontextsCreated).append(",subcontextsFound=").append(subcontextsFound).append(",ldapContextsCreated=").append(ldapContextCreationCount).append(",ldapContextFailures=").append(ldapContextCreationFailureCount).append("}").toString();
+  }
+}
@@ -0,0 +1,137 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link JndiConfigurationMetrics}, registered as {@value JndiConfigurationMetrics#OBJECT_NAME}.
+ *
+ * @author pdgreen
+ */
+public interface JndiConfigurationMetricsMXBean {
+
+  /**
+   * Nanoseconds spent in <code>initialize</code> per bound JNDI name.
+   *
+   * @return initialize time by name
+   */
+  Map<String, Long> getInitializeNanos();
+
+  /**
+   * Number of subcontexts created.
+   *
+   * @return created subcontexts
+   */
+  long getSubcontextsCreated();
+
+  /**
+   * Number of subcontexts that already existed.
+   *
+   * @return found subcontexts
+   */
+  long getSubcontextsFound();
+
+  /**
+   * Number of bindings skipped by <code>-rebind</code> because their content was unchanged.
+   *
+   * @return unchanged bindings
+   */
+  long getUnchangedBindings();
+
+  /**
+   * Number of DirContexts the LDAP factory handed out.
+   *
+   * @return successful creations
+   */
+  long getLdapContextCreationCount();
+
+  /**
+   * Number of DirContexts the LDAP factory failed to create.
+   *
+   * @return failed creations
+   */
+  long getLdapContextCreationFailureCount();
+
+  /**
+   * Nanoseconds spent creating all DirContexts handed out.
+   *
+   * @return total creation time
+   */
+  long getLdapContextCreationTotalNanos();
+
+  /**
+   * Longest time spent creating a DirContext.
+   *
+   * @return maximum creation time in nanoseconds
+   */
+  long getLdapContextCreationMaxNanos();
+
+  /**
+   * Number of lazy DirContexts that opened their connection.
+   *
+   * @return connected lazy contexts
+   */
+  long getLazyContextsConnected();
+
+  /**
+   * Number of lazy DirContexts closed without ever connecting, i.e. connections saved.
+   *
+   * @return unused lazy contexts
+   */
+  long getLazyContextsUnused();
+
+  /**
+   * Number of LDAP reads answered from a result cache (<code>jndiconfiguration.cache</code>).
+   *
+   * @return cache hits
+   */
+  long getLdapResultCacheHits();
+
+  /**
+   * Number of LDAP reads that missed a result cache and went to the directory.
+   *
+   * @return cache misses
+   */
+  long getLdapResultCacheMisses();
+
+  /**
+   * Number of keys and values of loaded properties replaced by an equal pooled string.
+   *
+   * @return deduplicated strings
+   */
+  long getDeduplicatedStrings();
+
+  /**
+   * Estimated heap bytes saved by deduplicating the keys and values of loaded properties.
+   *
+   * @return bytes saved
+   */
+  long getDeduplicatedBytes();
+
+  /**
+   * Latency histogram of DirContext creation; element i counts creations that took from 2^i up to 2^(i+1)
+   * nanoseconds (element 0 also counts those under 1 nanosecond).
+   *
+   * @return counts per power of two bucket
+   */
+  long[] getLdapContextCreationHistogram();
+
+  /**
+   * Upper bound of the histogram bucket holding the given percentile of DirContext creations.
+   *
+   * @param percentile percentile between 0 and 100
+   * @return creation time in nanoseconds, 0 when nothing was created
+   */
+  long getLdapContextCreationPercentileNanos(double percentile);
+
+  /**
+   * Milliseconds the last <code>main</code> run of each Startup Class took, by class name.
+   *
+   * @return main durations by class
+   */
+  Map<String, Long> getMainMillis();
+
+  /**
+   * Clears all figures.
+   */
+  void reset();
+}
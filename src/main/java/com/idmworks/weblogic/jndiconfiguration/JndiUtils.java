@@ -1,6 +1,8 @@
 package com.idmworks.weblogic.jndiconfiguration;
 
+import java.util.Collection;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.naming.*;
@@ -13,6 +15,13 @@ import javax.naming.*;
 public class JndiUtils {
 
   private static final Logger LOGGER = Logger.getLogger(JndiUtils.class.getName());
+  static final String WEBLOGIC_INITIAL_CONTEXT_FACTORY = "weblogic.jndi.WLInitialContextFactory";
+  /**
+   * WebLogic environment property; <code>false</code> binds to the JNDI tree of the server only.
+   */
+  public static final String REPLICATE_BINDINGS = "weblogic.jndi.replicateBindings";
+  static final String LOCAL_OPTION = "local";
+  static final String LOCAL_FLAG = ":local";
 
   public static InitialContext createInitialContext(final Hashtable<String, String> ht) throws IllegalStateException {
     try {
@@ -22,6 +31,68 @@ public class JndiUtils {
     }
   }
 
+  /**
+   * Environment of the InitialContext created by the main of an initializer. With <code>-local</code> bindings
+   * aren't replicated to the other servers of the cluster.
+   *
+   * @param options options of the initializer
+   * @return environment
+   */
+  public static Hashtable<String, String> createEnvironment(final InitializerOptions options) {
+    final Hashtable<String, String> ht = new Hashtable<String, String>();
+    ht.put(Context.INITIAL_CONTEXT_FACTORY, WEBLOGIC_INITIAL_CONTEXT_FACTORY);
+    if (options.isEnabled(LOCAL_OPTION)) {
+      ht.put(REPLICATE_BINDINGS, Boolean.FALSE.toString());
+    }
+    return ht;
+  }
+
+  /**
+   * Creates an InitialContext with the environment of context whose bindings aren't replicated.
+   *
+   * @param context context whose environment is copied
+   * @return node-local context
+   * @throws IllegalStateException thrown when the context can't be created
+   */
+  public static InitialContext createLocalInitialContext(final Context context) throws IllegalStateException {
+    final Hashtable<String, String> ht = new Hashtable<String, String>();
+    try {
+      final Hashtable<?, ?> environment = context.getEnvironment();
+      if (environment != null) {
+        for (final Map.Entry<?, ?> entry : environment.entrySet()) {
+          if (entry.getKey() instanceof String && entry.getValue() instanceof String) {
+            ht.put((String) entry.getKey(), (String) entry.getValue());
+          }
+        }
+      }
+    } catch (NamingException ex) {
+      throw new IllegalStateException("unable to read environment of " + context, ex);
+    }
+    ht.put(REPLICATE_BINDINGS, Boolean.FALSE.toString());
+    return createInitialContext(ht);
+  }
+
+  /**
+   * Whether a JNDI name argument ends with {@value #LOCAL_FLAG}, not escaped as <code>\:local</code>, asking for a
+   * node-local binding.
+   *
+   * @param jndiName JNDI name as written in the arguments
+   * @return true when flagged local
+   */
+  static boolean isFlaggedLocal(final String jndiName) {
+    return jndiName.endsWith(LOCAL_FLAG) && !jndiName.endsWith(ValueType.TYPE_ESCAPE + LOCAL_FLAG);
+  }
+
+  /**
+   * Removes {@value #LOCAL_FLAG} from a JNDI name argument.
+   *
+   * @param jndiName JNDI name as written in the arguments
+   * @return JNDI name without the flag
+   */
+  static String stripLocalFlag(final String jndiName) {
+    return isFlaggedLocal(jndiName) ? jndiName.substring(0, jndiName.length() - LOCAL_FLAG.length()) : jndiName;
+  }
+
   public static NameParser createNameParser(final Context context) throws IllegalStateException {
     try {
       return context.getNameParser("");
@@ -60,6 +131,44 @@ public class JndiUtils {
     }
   }
 
+  /**
+   * Makes sure all subcontexts of name exist in baseContext, skipping subcontexts already confirmed in cache.
+   *
+   * @param baseContext base context that subcontexts should exist in
+   * @param name name whose subcontexts should exist in baseContext
+   * @param cache subcontexts already confirmed in baseContext; updated with the subcontexts of name
+   * @throws NamingException thrown when unable to ensure subcontext
+   */
+  public static void ensureSubcontexts(final Context baseContext, final Name name, final SubcontextCache cache) throws NamingException {
+    LOGGER.log(Level.FINE, "ensureSubcontexts({0},{1})", new Object[]{baseContext, name});
+    SubcontextCache.Node node = cache.getRoot();
+    for (int i = 1; i < name.size(); i++) {
+      final String component = name.get(i - 1);
+      final SubcontextCache.Node known = node.getChild(component);
+      if (known != null) {
+        cache.recordSkipped();
+        node = known;
+      } else {
+        retrieveOrCreateSubcontext(baseContext, name.getPrefix(i), cache);
+        node = node.addChild(component);
+      }
+    }
+  }
+
+  /**
+   * Makes sure all subcontexts of all names exist in baseContext; each distinct prefix is created or looked up once.
+   *
+   * @param baseContext base context that subcontexts should exist in
+   * @param names names whose subcontexts should exist in baseContext
+   * @param cache subcontexts already confirmed in baseContext; updated with the subcontexts of names
+   * @throws NamingException thrown when unable to ensure subcontext
+   */
+  public static void ensureSubcontexts(final Context baseContext, final Collection<Name> names, final SubcontextCache cache) throws NamingException {
+    for (final Name name : names) {
+      ensureSubcontexts(baseContext, name, cache);
+    }
+  }
+
   /**
    * Retrieve or load subcontext of context
    *
@@ -69,18 +178,44 @@ public class JndiUtils {
    * @throws NamingException thrown when unable to create or load subcontext
    */
   public static Context retrieveOrCreateSubcontext(final Context context, final Name subcontext) throws NamingException {
+    return retrieveOrCreateSubcontext(context, subcontext, null);
+  }
+
+  /**
+   * Retrieve or load subcontext of context, recording in cache whether it was created or found.
+   *
+   * @param context context to retrieve subcontext
+   * @param subcontext subcontext to retrieve or create
+   * @param cache cache to record the outcome in, or null
+   * @return retrieved or newly created subcontext
+   * @throws NamingException thrown when unable to create or load subcontext
+   */
+  private static Context retrieveOrCreateSubcontext(final Context context, final Name subcontext, final SubcontextCache cache) throws NamingException {
     try {
       final Context createdContext = context.createSubcontext(subcontext);
+      JndiConfigurationMetrics.get().recordSubcontextCreated();
+      if (cache != null) {
+        cache.recordCreated();
+      }
       LOGGER.log(Level.INFO, "Created: {0}", createdContext);
       return createdContext;
     } catch (NameAlreadyBoundException ex) {
-      final Object obj = context.lookup(subcontext);
-      if (obj instanceof Context) {
-        LOGGER.log(Level.FINE, "Found: {0}", obj);
-        return (Context) obj;
-      } else {
-        throw new IllegalArgumentException("JNDI object isn't Context", ex);
+      final Context foundContext = lookupSubcontext(context, subcontext, ex);
+      JndiConfigurationMetrics.get().recordSubcontextFound();
+      if (cache != null) {
+        cache.recordFound();
       }
+      return foundContext;
+    }
+  }
+
+  private static Context lookupSubcontext(final Context context, final Name subcontext, final NameAlreadyBoundException ex) throws NamingException {
+    final Object obj = context.lookup(subcontext);
+    if (obj instanceof Context) {
+      LOGGER.log(Level.FINE, "Found: {0}", obj);
+      return (Context) obj;
+    } else {
+      throw new IllegalArgumentException("JNDI object isn't Context", ex);
     }
   }
 }
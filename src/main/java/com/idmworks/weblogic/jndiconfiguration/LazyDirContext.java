@@ -0,0 +1,126 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+/**
+ * {@link DirContext} handed out by {@link LdapDirContextFactory} when <code>jndiconfiguration.lazy</code> is enabled:
+ * the LDAP connection is only opened (or borrowed from the pool) by the first directory operation. Closing a context
+ * that was never used costs nothing.
+ *
+ * Environment changes made before the connection is opened are kept and applied to the connection once it exists.
+ *
+ * @author pdgreen
+ */
+class LazyDirContext extends DelegatingDirContext {
+
+  private final LdapEnvironment environment;
+  private final Map<String, Object> environmentChanges = new LinkedHashMap<String, Object>();
+  private DirContext delegate;
+  private boolean closed;
+
+  LazyDirContext(final LdapEnvironment environment) {
+    this.environment = environment;
+  }
+
+  @Override
+  protected synchronized DirContext getDelegate() throws NamingException {
+    if (closed) {
+      throw new NamingException("DirContext has already been closed: " + environment.getName());
+    }
+    if (delegate == null) {
+      final DirContext connected = environment.openDirContext();
+      try {
+        for (final Map.Entry<String, Object> change : environmentChanges.entrySet()) {
+          if (change.getValue() == null) {
+            connected.removeFromEnvironment(change.getKey());
+          } else {
+            connected.addToEnvironment(change.getKey(), change.getValue());
+          }
+        }
+      } catch (NamingException ex) {
+        connected.close();
+        throw ex;
+      }
+      environmentChanges.clear();
+      delegate = connected;
+      JndiConfigurationMetrics.get().recordLazyContextConnected();
+    }
+    return delegate;
+  }
+
+  /**
+   * Whether the connection has been opened.
+   *
+   * @return true once a directory operation was made
+   */
+  synchronized boolean isConnected() {
+    return delegate != null;
+  }
+
+  @Override
+  public synchronized Object addToEnvironment(final String propName, final Object propVal) throws NamingException {
+    if (delegate != null || closed) {
+      return super.addToEnvironment(propName, propVal);
+    }
+    final Object previous = currentEnvironment().get(propName);
+    environmentChanges.put(propName, propVal);
+    return previous;
+  }
+
+  @Override
+  public synchronized Object removeFromEnvironment(final String propName) throws NamingException {
+    if (delegate != null || closed) {
+      return super.removeFromEnvironment(propName);
+    }
+    final Object previous = currentEnvironment().get(propName);
+    environmentChanges.put(propName, null);
+    return previous;
+  }
+
+  @Override
+  public synchronized Hashtable<?, ?> getEnvironment() throws NamingException {
+    if (delegate != null || closed) {
+      return super.getEnvironment();
+    }
+    return currentEnvironment();
+  }
+
+  private Hashtable<Object, Object> currentEnvironment() {
+    final Hashtable<Object, Object> current = new Hashtable<Object, Object>(environment.getEnvironment());
+    for (final Map.Entry<String, Object> change : environmentChanges.entrySet()) {
+      if (change.getValue() == null) {
+        current.remove(change.getKey());
+      } else {
+        current.put(change.getKey(), change.getValue());
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Closes the connection if one was opened; calling close more than once has no effect.
+   *
+   * @throws NamingException thrown when the opened connection can't be closed
+   */
+  @Override
+  public void close() throws NamingException {
+    final DirContext opened;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      opened = delegate;
+      delegate = null;
+    }
+    if (opened == null) {
+      JndiConfigurationMetrics.get().recordLazyContextUnused();
+    } else {
+      opened.close();
+    }
+  }
+}
@@ -0,0 +1,426 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+
+/**
+ * Bounded pool of LDAP connections for a single bound LDAP name.
+ *
+ * At most {@link LdapPoolConfiguration#getMaxSize()} connections are open at any time; borrowers wait up to
+ * {@link LdapPoolConfiguration#getMaxWait()} for one to become available. Closing a borrowed {@link DirContext}
+ * returns the connection to the pool.
+ *
+ * @author pdgreen
+ */
+public class LdapConnectionPool {
+
+  private static final Logger LOGGER = Logger.getLogger(LdapConnectionPool.class.getName());
+  private static final String[] NO_ATTRIBUTES = {"1.1"};
+  private static ScheduledExecutorService maintenanceExecutor;
+  private final String name;
+  private final Hashtable<?, ?> environment;
+  private final LdapPoolConfiguration configuration;
+  private final Semaphore permits;
+  private final LinkedList<Connection> idle = new LinkedList<Connection>();
+  private final Set<Connection> borrowed = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+  private final AtomicInteger openCount = new AtomicInteger();
+  private final AtomicLong createdCount = new AtomicLong();
+  private final AtomicLong destroyedCount = new AtomicLong();
+  private final LdapServerSelector serverSelector;
+  private final ScheduledFuture<?> maintenance;
+  private volatile boolean closed;
+
+  public LdapConnectionPool(final String name, final Hashtable<?, ?> environment, final LdapPoolConfiguration configuration) {
+    this(name, environment, configuration, null);
+  }
+
+  /**
+   * Creates pool whose connections are opened to the server chosen by serverSelector.
+   *
+   * @param name JNDI name the LDAP factory is bound to
+   * @param environment environment of the connections
+   * @param configuration pool settings
+   * @param serverSelector selector of the server new connections go to, null to use the environment as is
+   */
+  public LdapConnectionPool(final String name, final Hashtable<?, ?> environment, final LdapPoolConfiguration configuration, final LdapServerSelector serverSelector) {
+    this.name = name;
+    this.environment = environment;
+    this.serverSelector = serverSelector;
+    this.configuration = configuration;
+    this.permits = new Semaphore(configuration.getMaxSize(), true);
+    this.maintenance = getMaintenanceExecutor().scheduleWithFixedDelay(new Runnable() {
+
+      public void run() {
+        evict();
+      }
+    }, configuration.getEvictionInterval(), configuration.getEvictionInterval(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Borrows a connection. Closing the returned context hands the connection back to the pool.
+   *
+   * @return pooled DirContext
+   * @throws NamingException thrown when no connection could be obtained in time or created
+   */
+  public DirContext borrow() throws NamingException {
+    if (closed) {
+      throw new ServiceUnavailableException("pool is closed: " + name);
+    }
+    try {
+      if (!permits.tryAcquire(configuration.getMaxWait(), TimeUnit.MILLISECONDS)) {
+        throw new ServiceUnavailableException("timed out waiting for a connection from pool " + name);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ServiceUnavailableException("interrupted waiting for a connection from pool " + name);
+    }
+    try {
+      Connection connection;
+      while ((connection = pollIdle()) != null) {
+        if (isExpired(connection, System.currentTimeMillis())) {
+          destroy(connection);
+        } else if (configuration.isValidateOnBorrow() && !validate(connection.context)) {
+          LOGGER.log(Level.FINE, "discarding invalid connection from pool {0}", name);
+          destroy(connection);
+        } else {
+          return lend(connection);
+        }
+      }
+      return lend(create());
+    } catch (NamingException ex) {
+      permits.release();
+      throw ex;
+    } catch (RuntimeException ex) {
+      permits.release();
+      throw ex;
+    }
+  }
+
+  private DirContext lend(final Connection connection) {
+    borrowed.add(connection);
+    return new PooledDirContext(this, connection);
+  }
+
+  /**
+   * Opens and validates idle connections until count connections, idle or borrowed, are open, so the first borrowers
+   * don't pay for connecting. Connections already open count, so warming up again is a no-op for a warm pool. Stops at
+   * the first connection that can't be opened or validated.
+   *
+   * @param count connections to have open, bounded by the maximum size of the pool
+   * @return number of connections added
+   * @throws NamingException thrown when a connection can't be opened or fails validation
+   */
+  public int warmUp(final int count) throws NamingException {
+    final int target = Math.min(count, configuration.getMaxSize());
+    int warmed = 0;
+    while (!closed && openCount.get() < target && permits.tryAcquire()) {
+      try {
+        final Connection connection = create();
+        if (!validate(connection.context)) {
+          destroy(connection);
+          throw new ServiceUnavailableException("connection failed validation while warming up pool " + name);
+        }
+        synchronized (idle) {
+          idle.addLast(connection);
+        }
+        warmed++;
+      } finally {
+        permits.release();
+      }
+    }
+    LOGGER.log(Level.FINE, "warmed up {0} connections for pool {1}", new Object[]{warmed, name});
+    return warmed;
+  }
+
+  /**
+   * Hands a borrowed connection back to the pool; a connection whose environment was changed while borrowed is
+   * closed, so no borrower inherits another one's principal or credentials.
+   *
+   * @param connection connection being returned
+   */
+  void release(final Connection connection) {
+    try {
+      if (!borrowed.remove(connection)) {
+        // already closed by drain
+        return;
+      }
+      final long now = System.currentTimeMillis();
+      if (closed || connection.dirty || isExpired(connection, now)) {
+        destroy(connection);
+      } else {
+        connection.lastUsed = now;
+        synchronized (idle) {
+          idle.addFirst(connection);
+        }
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Closes idle connections and refuses further borrows; borrowed connections are closed when returned.
+   */
+  public void close() {
+    closed = true;
+    maintenance.cancel(false);
+    Connection connection;
+    while ((connection = pollIdle()) != null) {
+      destroy(connection);
+    }
+  }
+
+  /**
+   * Closes the pool and waits up to graceMillis for the borrowed connections to be returned; connections still
+   * borrowed then are closed, so no LDAP session outlives the pool.
+   *
+   * @param graceMillis milliseconds borrowers are given to return their connections
+   * @return number of borrowed connections that had to be closed
+   */
+  public int drain(final long graceMillis) {
+    close();
+    final int maxSize = configuration.getMaxSize();
+    try {
+      if (permits.tryAcquire(maxSize, graceMillis, TimeUnit.MILLISECONDS)) {
+        permits.release(maxSize);
+        return 0;
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    int closedCount = 0;
+    for (final Connection connection : borrowed) {
+      if (borrowed.remove(connection)) {
+        destroy(connection);
+        closedCount++;
+      }
+    }
+    if (closedCount > 0) {
+      LOGGER.log(Level.WARNING, "Closed {0} connections of pool {1} still borrowed after {2}ms", new Object[]{closedCount, name, graceMillis});
+    }
+    return closedCount;
+  }
+
+  /**
+   * Removes idle connections that exceeded their idle timeout or lifetime and refills the pool up to its minimum
+   * size.
+   */
+  void evict() {
+    final long now = System.currentTimeMillis();
+    final LinkedList<Connection> evicted = new LinkedList<Connection>();
+    synchronized (idle) {
+      for (final Iterator<Connection> it = idle.iterator(); it.hasNext();) {
+        final Connection connection = it.next();
+        final boolean idleTooLong = configuration.getIdleTimeout() > 0 && now - connection.lastUsed > configuration.getIdleTimeout();
+        if (isExpired(connection, now) || (idleTooLong && openCount.get() - evicted.size() > configuration.getMinSize())) {
+          it.remove();
+          evicted.add(connection);
+        }
+      }
+    }
+    for (final Connection connection : evicted) {
+      destroy(connection);
+    }
+    fill();
+  }
+
+  private void fill() {
+    while (!closed && openCount.get() < configuration.getMinSize() && permits.tryAcquire()) {
+      try {
+        final Connection connection = create();
+        synchronized (idle) {
+          idle.addLast(connection);
+        }
+      } catch (NamingException ex) {
+        LOGGER.log(Level.WARNING, "unable to open connection for pool " + name, ex);
+        return;
+      } finally {
+        permits.release();
+      }
+    }
+  }
+
+  private Connection pollIdle() {
+    synchronized (idle) {
+      return idle.poll();
+    }
+  }
+
+  private boolean isExpired(final Connection connection, final long now) {
+    return configuration.getMaxLifetime() > 0 && now - connection.created > configuration.getMaxLifetime();
+  }
+
+  private Connection create() throws NamingException {
+    final DirContext context = createContext();
+    openCount.incrementAndGet();
+    createdCount.incrementAndGet();
+    LOGGER.log(Level.FINE, "opened connection for pool {0}", name);
+    return new Connection(context);
+  }
+
+  /**
+   * Opens a new LDAP connection.
+   *
+   * @return new connection
+   * @throws NamingException thrown when the connection can't be established
+   */
+  protected DirContext createContext() throws NamingException {
+    if (serverSelector != null) {
+      return serverSelector.connect();
+    }
+    return LdapSslSocketFactory.openDirContext(name, environment);
+  }
+
+  private void destroy(final Connection connection) {
+    openCount.decrementAndGet();
+    destroyedCount.incrementAndGet();
+    try {
+      connection.context.close();
+    } catch (NamingException ex) {
+      LOGGER.log(Level.FINE, "unable to close pooled connection", ex);
+    }
+  }
+
+  /**
+   * Checks a connection with a read of the base entry that requests no attributes.
+   *
+   * @param context connection to validate
+   * @return true when the read succeeded
+   */
+  static boolean validate(final DirContext context) {
+    try {
+      context.getAttributes("", NO_ATTRIBUTES);
+      return true;
+    } catch (NamingException ex) {
+      return false;
+    } catch (RuntimeException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Stops the thread evicting idle connections of all pools; it is started again by the next pool created.
+   */
+  static synchronized void shutdownMaintenanceExecutor() {
+    if (maintenanceExecutor != null) {
+      maintenanceExecutor.shutdownNow();
+      maintenanceExecutor = null;
+    }
+  }
+
+  private static synchronized ScheduledExecutorService getMaintenanceExecutor() {
+    if (maintenanceExecutor == null) {
+      maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "ldap-connection-pool-maintenance");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return maintenanceExecutor;
+  }
+
+  /**
+   * Name of the bound LDAP factory this pool serves.
+   *
+   * @return pool name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Settings this pool was created with.
+   *
+   * @return configuration
+   */
+  public LdapPoolConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  /**
+   * Number of connections currently open, idle or borrowed.
+   *
+   * @return open connections
+   */
+  public int getOpenCount() {
+    return openCount.get();
+  }
+
+  /**
+   * Number of connections currently borrowed.
+   *
+   * @return borrowed connections
+   */
+  public int getBorrowedCount() {
+    return borrowed.size();
+  }
+
+  /**
+   * Number of connections waiting to be borrowed.
+   *
+   * @return idle connections
+   */
+  public int getIdleCount() {
+    synchronized (idle) {
+      return idle.size();
+    }
+  }
+
+  /**
+   * Number of connections opened since the pool was created.
+   *
+   * @return created connections
+   */
+  public long getCreatedCount() {
+    return createdCount.get();
+  }
+
+  /**
+   * Number of connections closed by the pool since it was created.
+   *
+   * @return destroyed connections
+   */
+  public long getDestroyedCount() {
+    return destroyedCount.get();
+  }
+
+  /**
+   * Whether {@link #close()} has been called.
+   *
+   * @return true when closed
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Physical connection tracked by the pool.
+   */
+  static final class Connection {
+
+    final DirContext context;
+    final long created;
+    volatile long lastUsed;
+    volatile boolean dirty;
+
+    Connection(final DirContext context) {
+      this.context = context;
+      this.created = System.currentTimeMillis();
+      this.lastUsed = created;
+    }
+  }
+}
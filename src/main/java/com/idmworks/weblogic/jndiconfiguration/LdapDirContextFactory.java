@@ -2,6 +2,11 @@ package com.idmworks.weblogic.jndiconfiguration;
 
 import java.util.Hashtable;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.naming.*;
 import javax.naming.directory.*;
 import javax.naming.spi.ObjectFactory;
@@ -9,22 +14,92 @@ import javax.naming.spi.ObjectFactory;
 /**
  * Creates {@link DirContext} for an LDAP connection.
  *
+ * Keys of the connection properties starting with {@link #RESERVED_KEY_PREFIX} configure this factory and are not
+ * passed to JNDI (see {@link LdapPoolConfiguration}, {@link LdapEnvironment#LAZY_KEY}, {@link LdapServerSelector},
+ * {@link LdapResultCache}, {@link LdapSslSocketFactory} and {@link LdapPagedSearch}).
+ *
+ * The validated environment of each bound name is cached (see {@link LdapEnvironment}), so after the first lookup
+ * creating a DirContext needs neither a lookup of the properties nor a copy of them. The cache entry is invalidated
+ * when {@link LdapDirContextInitializer} binds the name again.
+ *
  * @author pdgreen
  */
 public class LdapDirContextFactory implements ObjectFactory {
 
+  private static final Logger LOGGER = Logger.getLogger(LdapDirContextFactory.class.getName());
+  /**
+   * Prefix of connection property keys that configure this factory.
+   */
+  public static final String RESERVED_KEY_PREFIX = "jndiconfiguration.";
+  /**
+   * Address type of the {@link Reference} address holding the JNDI name the factory was bound to.
+   */
+  static final String JNDI_NAME_ADDRESS_TYPE = "jndiName";
+  private static final ConcurrentMap<String, LdapEnvironment> ENVIRONMENTS = new ConcurrentHashMap<String, LdapEnvironment>();
+
   public Object getObjectInstance(Object o, Name name, Context cntxt, Hashtable<?, ?> hshtbl) throws Exception {
+    final long start = System.nanoTime();
+    try {
+      final DirContext dirContext = retrieveEnvironment(resolveKey(o, name), name, cntxt).createDirContext();
+      JndiConfigurationMetrics.get().recordLdapContextCreation(System.nanoTime() - start);
+      return dirContext;
+    } catch (Exception ex) {
+      JndiConfigurationMetrics.get().recordLdapContextCreationFailure();
+      throw ex;
+    }
+  }
 
+  /**
+   * Returns the cached environment for key, loading and validating the bound properties on a miss.
+   *
+   * @param key key of the binding
+   * @param name name being resolved, relative to cntxt
+   * @param cntxt context the name is relative to
+   * @return cached environment
+   * @throws NamingException thrown when the properties can't be looked up
+   */
+  static LdapEnvironment retrieveEnvironment(final String key, final Name name, final Context cntxt) throws NamingException {
+    final LdapEnvironment cached = ENVIRONMENTS.get(key);
+    if (cached != null) {
+      return cached;
+    }
     final Name propertiesName = LdapDirContextInitializer.buildPropertiesName(name);
     final Properties properties = (Properties) cntxt.lookup(propertiesName);
+    final LdapEnvironment created = new LdapEnvironment(key, properties);
+    final LdapEnvironment raced = ENVIRONMENTS.putIfAbsent(key, created);
+    if (raced != null) {
+      return raced;
+    }
+    LOGGER.log(Level.FINE, "Cached LDAP environment for {0}", key);
+    return created;
+  }
 
-    final DirContext ldapDirContext = new InitialDirContext(buildInitialDirContextHashtableFrom(properties));
-
-    return ldapDirContext;
+  /**
+   * Opens and validates the number of pooled connections configured by {@link LdapPoolConfiguration#WARMUP_KEY},
+   * caching the environment of key so lookups reuse them.
+   *
+   * @param key JNDI name the factory was bound to
+   * @param properties connection properties bound for key
+   * @return number of warm connections added, 0 when pooling is disabled
+   * @throws NamingException thrown when a connection can't be opened or validated
+   */
+  static int warmUp(final String key, final Properties properties) throws NamingException {
+    final LdapEnvironment created = new LdapEnvironment(key, properties);
+    final LdapPoolConfiguration poolConfiguration = created.getPoolConfiguration();
+    if (!poolConfiguration.isEnabled() || poolConfiguration.getWarmup() == 0) {
+      return 0;
+    }
+    final LdapEnvironment raced = ENVIRONMENTS.putIfAbsent(key, created);
+    return (raced == null ? created : raced).retrievePool().warmUp(poolConfiguration.getWarmup());
   }
 
-  static Hashtable buildInitialDirContextHashtableFrom(final Properties properties) {
-    final Hashtable env = new Hashtable(properties);
+  static Hashtable<Object, Object> buildInitialDirContextHashtableFrom(final Properties properties) {
+    final Hashtable<Object, Object> env = new Hashtable<Object, Object>(properties);
+    for (final Object key : properties.keySet()) {
+      if (key.toString().startsWith(RESERVED_KEY_PREFIX)) {
+        env.remove(key);
+      }
+    }
 
     if (!env.containsKey(Context.INITIAL_CONTEXT_FACTORY)) {
       env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");//FIXME don't hardcode values
@@ -36,4 +111,85 @@ public class LdapDirContextFactory implements ObjectFactory {
 
     return env;
   }
+
+  /**
+   * Determines the key the factory state of a binding is kept under: the JNDI name recorded in the {@link Reference}
+   * by {@link LdapDirContextInitializer}, falling back to the name being resolved.
+   *
+   * @param o object being resolved
+   * @param name name being resolved
+   * @return key
+   */
+  static String resolveKey(final Object o, final Name name) {
+    if (o instanceof Reference) {
+      final RefAddr address = ((Reference) o).get(JNDI_NAME_ADDRESS_TYPE);
+      if (address != null && address.getContent() != null) {
+        return address.getContent().toString();
+      }
+    }
+    return String.valueOf(name);
+  }
+
+  /**
+   * Connection pool of a bound LDAP name.
+   *
+   * @param key JNDI name the factory was bound to
+   * @return pool or null when no pool has been created
+   */
+  public static LdapConnectionPool getPool(final String key) {
+    final LdapEnvironment environment = ENVIRONMENTS.get(key);
+    return environment == null ? null : environment.getPool();
+  }
+
+  /**
+   * Cached environment of a bound LDAP name.
+   *
+   * @param key JNDI name the factory was bound to
+   * @return environment or null when nothing is cached
+   */
+  public static LdapEnvironment getEnvironment(final String key) {
+    return ENVIRONMENTS.get(key);
+  }
+
+  /**
+   * Drops the cached environment of a bound LDAP name and closes its connection pool, if any. Called whenever the
+   * name is (re)bound so that the next lookup reads the new properties.
+   *
+   * @param key JNDI name the factory was bound to
+   */
+  static void invalidate(final String key) {
+    final LdapEnvironment environment = ENVIRONMENTS.remove(key);
+    if (environment != null) {
+      environment.close();
+      LOGGER.log(Level.INFO, "Invalidated LDAP environment of {0}", key);
+    }
+  }
+
+  /**
+   * Drops all cached environments, draining their connection pools within a shared grace period.
+   *
+   * @param graceMillis milliseconds borrowers of pooled connections are given, in total, to return them
+   * @return number of borrowed connections that had to be closed
+   */
+  static int drainAll(final long graceMillis) {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(graceMillis);
+    int closedCount = 0;
+    for (final String key : ENVIRONMENTS.keySet()) {
+      final LdapEnvironment environment = ENVIRONMENTS.remove(key);
+      if (environment != null) {
+        closedCount += environment.drain(Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        LOGGER.log(Level.INFO, "Drained LDAP environment of {0}", key);
+      }
+    }
+    return closedCount;
+  }
+
+  /**
+   * Drops all cached environments.
+   */
+  static void invalidateAll() {
+    for (final String key : ENVIRONMENTS.keySet()) {
+      invalidate(key);
+    }
+  }
 }
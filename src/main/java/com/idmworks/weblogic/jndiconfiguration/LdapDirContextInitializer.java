@@ -12,14 +12,28 @@ import javax.naming.directory.DirContext;
 /**
  * Add {@link DirContext} (for connecting to an LDAP) to JNDI in weblogic during startup.
  */
-public class LdapDirContextInitializer {
+public class LdapDirContextInitializer implements Reinitializer<Properties> {
 
   private static final Logger LOGGER = Logger.getLogger(PropertiesInitializer.class.getName());
   static final String PROPERTIES_NAME_SUFFIX = "__properties";
   private final InitialContext initialContext;
+  private final SubcontextCache subcontextCache;
+  private final NodeLocalContext nodeLocalContext;
+  private final boolean rebindChanged;
 
   public LdapDirContextInitializer(final InitialContext initialContext) {
+    this(initialContext, new SubcontextCache());
+  }
+
+  public LdapDirContextInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache) {
+    this(initialContext, subcontextCache, InitializerOptions.none());
+  }
+
+  public LdapDirContextInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache, final InitializerOptions options) {
     this.initialContext = initialContext;
+    this.subcontextCache = subcontextCache;
+    this.nodeLocalContext = new NodeLocalContext(initialContext);
+    this.rebindChanged = options.isEnabled(FingerprintBinder.REBIND_OPTION);
   }
 
   /**
@@ -27,28 +41,132 @@ public class LdapDirContextInitializer {
    * <code>PropertiesDescriptor.getJndiName()</code> returns the name the DirContext LDAP factory location<br>
    * <code>PropertiesDescriptor.getProperties()</code> returns the connection properties for the DirContext LDAP
    * factory<br>
+   * Reserved keys of the connection properties (see {@link LdapPoolConfiguration} and {@link LdapEnvironment}) are
+   * validated here so that invalid settings fail during startup.<br>
+   * When pooling is enabled, {@link LdapPoolConfiguration#WARMUP_KEY} connections are opened and validated once the
+   * factory is bound; failing to do so is logged as a warning and doesn't fail the startup.<br>
+   * When {@link LdapPagedSearch#PAGED_SEARCH_KEY} is true, a {@link LdapPagedSearch} is bound as well, to the name
+   * built by {@link LdapPagedSearch#buildPagedSearchName(Name)}.<br>
+   * With <code>-rebind</code> existing bindings are replaced, unless the connection properties are unchanged.
    *
    * @param propertiesDescriptor properties and JNDI name to use
    */
   public void initialize(ValueDescriptor<Properties> propertiesDescriptor) {
     LOGGER.log(Level.FINE, "initializing {0}", propertiesDescriptor);
+    final long start = System.nanoTime();
     try {
-      JndiUtils.ensureSubcontexts(initialContext, propertiesDescriptor.getJndiName());
+      final Context context = propertiesDescriptor.isLocal() ? nodeLocalContext.get() : initialContext;
+      JndiUtils.ensureSubcontexts(context, propertiesDescriptor.getJndiName(), propertiesDescriptor.isLocal() ? nodeLocalContext.getSubcontextCache() : subcontextCache);
 
       final Name ldapConnectionFactoryName = propertiesDescriptor.getJndiName();
       final Name propertiesName = buildPropertiesName(propertiesDescriptor.getJndiName());
 
-      final Reference reference = new Reference(DirContext.class.getName(), LdapDirContextFactory.class.getName(), null);
-      initialContext.bind(ldapConnectionFactoryName, reference);
+      LdapEnvironment.validateReservedKeys(propertiesDescriptor.getValue());
+
+      final String fingerprint = rebindChanged ? FingerprintBinder.fingerprint(propertiesDescriptor.getValue()) : null;
+      if (rebindChanged && FingerprintBinder.isUnchanged(context, ldapConnectionFactoryName, fingerprint)) {
+        recordOwned(propertiesDescriptor);
+        JndiConfigurationMetrics.get().recordInitialize(ldapConnectionFactoryName, System.nanoTime() - start);
+        LOGGER.log(Level.INFO, "Unchanged LDAP Connection Factory {0}", ldapConnectionFactoryName);
+        warmUp(ldapConnectionFactoryName, propertiesDescriptor.getValue());
+        return;
+      }
+
+      final Reference reference = new Reference(DirContext.class.getName(),
+              new StringRefAddr(LdapDirContextFactory.JNDI_NAME_ADDRESS_TYPE, ldapConnectionFactoryName.toString()),
+              LdapDirContextFactory.class.getName(), null);
+      bind(context, ldapConnectionFactoryName, reference);
       LOGGER.log(Level.INFO, "Bound LDAP Connection Factory to {0} as {1}", new Object[]{ldapConnectionFactoryName, reference});
 
-      initialContext.bind(propertiesName, propertiesDescriptor.getValue());
+      bind(context, propertiesName, propertiesDescriptor.getValue());
       LOGGER.log(Level.INFO, "Bound LDAP Connection Factory Properties of {0} to {1}", new Object[]{ldapConnectionFactoryName, propertiesName});
+
+      if (LdapPagedSearch.isEnabled(propertiesDescriptor.getValue())) {
+        final Name pagedSearchName = LdapPagedSearch.buildPagedSearchName(ldapConnectionFactoryName);
+        bind(context, pagedSearchName, new Reference(LdapPagedSearch.class.getName(),
+                new StringRefAddr(LdapDirContextFactory.JNDI_NAME_ADDRESS_TYPE, ldapConnectionFactoryName.toString()),
+                LdapPagedSearchFactory.class.getName(), null));
+        LOGGER.log(Level.INFO, "Bound LDAP Paged Search of {0} to {1}", new Object[]{ldapConnectionFactoryName, pagedSearchName});
+      }
+
+      if (rebindChanged) {
+        FingerprintBinder.storeFingerprint(context, ldapConnectionFactoryName, fingerprint);
+        CachingContext.invalidateCaches(propertiesName);
+      }
+
+      recordOwned(propertiesDescriptor);
+      LdapDirContextFactory.invalidate(ldapConnectionFactoryName.toString());
+      JndiConfigurationMetrics.get().recordInitialize(ldapConnectionFactoryName, System.nanoTime() - start);
+      warmUp(ldapConnectionFactoryName, propertiesDescriptor.getValue());
     } catch (NamingException e) {
       throw new IllegalArgumentException("Unable to bind " + propertiesDescriptor, e);
     }
   }
 
+  /**
+   * Replaces the connection properties of an already bound DirContext LDAP factory; the factory binding itself is
+   * left untouched and the cached environment of the factory is invalidated.
+   *
+   * @param propertiesDescriptor properties and JNDI name of the DirContext LDAP factory
+   */
+  public void reinitialize(ValueDescriptor<Properties> propertiesDescriptor) {
+    LOGGER.log(Level.FINE, "reinitializing {0}", propertiesDescriptor);
+    try {
+      LdapEnvironment.validateReservedKeys(propertiesDescriptor.getValue());
+
+      final Name ldapConnectionFactoryName = propertiesDescriptor.getJndiName();
+      final Name propertiesName = buildPropertiesName(ldapConnectionFactoryName);
+      final Context context = propertiesDescriptor.isLocal() ? nodeLocalContext.get() : initialContext;
+      context.rebind(propertiesName, propertiesDescriptor.getValue());
+      CachingContext.invalidateCaches(propertiesName);
+      if (rebindChanged) {
+        FingerprintBinder.storeFingerprint(context, ldapConnectionFactoryName, FingerprintBinder.fingerprint(propertiesDescriptor.getValue()));
+      }
+      LOGGER.log(Level.INFO, "Rebound LDAP Connection Factory Properties of {0} to {1}", new Object[]{ldapConnectionFactoryName, propertiesName});
+
+      LdapDirContextFactory.invalidate(ldapConnectionFactoryName.toString());
+    } catch (NamingException e) {
+      throw new IllegalArgumentException("Unable to rebind " + propertiesDescriptor, e);
+    }
+  }
+
+  private void warmUp(final Name ldapConnectionFactoryName, final Properties properties) {
+    final LdapPoolConfiguration poolConfiguration = LdapPoolConfiguration.from(properties);
+    final int warmup = poolConfiguration.getWarmup();
+    if (warmup == 0) {
+      return;
+    }
+    if (!poolConfiguration.isEnabled()) {
+      LOGGER.log(Level.WARNING, "Ignoring warm-up of {0}: pooling is disabled", ldapConnectionFactoryName);
+      return;
+    }
+    try {
+      final int warmed = LdapDirContextFactory.warmUp(ldapConnectionFactoryName.toString(), properties);
+      LOGGER.log(Level.INFO, "Warmed up {0} of {1} connections of {2}", new Object[]{warmed, warmup, ldapConnectionFactoryName});
+    } catch (NamingException ex) {
+      LOGGER.log(Level.WARNING, "Unable to warm up connections of " + ldapConnectionFactoryName + "; first lookups will connect", ex);
+    } catch (RuntimeException ex) {
+      LOGGER.log(Level.WARNING, "Unable to warm up connections of " + ldapConnectionFactoryName + "; first lookups will connect", ex);
+    }
+  }
+
+  private static void recordOwned(final ValueDescriptor<Properties> propertiesDescriptor) {
+    final Name ldapConnectionFactoryName = propertiesDescriptor.getJndiName();
+    OwnedBindings.record(ldapConnectionFactoryName, propertiesDescriptor.isLocal());
+    OwnedBindings.record(buildPropertiesName(ldapConnectionFactoryName), propertiesDescriptor.isLocal());
+    if (LdapPagedSearch.isEnabled(propertiesDescriptor.getValue())) {
+      OwnedBindings.record(LdapPagedSearch.buildPagedSearchName(ldapConnectionFactoryName), propertiesDescriptor.isLocal());
+    }
+  }
+
+  private void bind(final Context context, final Name name, final Object obj) throws NamingException {
+    if (rebindChanged) {
+      context.rebind(name, obj);
+    } else {
+      context.bind(name, obj);
+    }
+  }
+
   /**
    * Builds the name of the associated properties.
    *
@@ -67,26 +185,47 @@ public class LdapDirContextInitializer {
   }
 
   /**
-   * Parse arguments (ldapJndiName=ldapConnectionPropertiesFile) and loads DirContext factory and propertiesFile into
-   * JNDI.
+   * Subcontexts confirmed by this initializer so far.
+   *
+   * @return subcontext cache
+   */
+  public SubcontextCache getSubcontextCache() {
+    return subcontextCache;
+  }
+
+  /**
+   * Parse arguments ([-rebind] [-local] [-watch [-watchDebounce=millis]]
+   * ldapJndiName[:local]=ldapConnectionPropertiesFile*) and loads DirContext factory and propertiesFile into JNDI.
+   * With <code>-rebind</code> existing bindings are replaced when the properties changed; with <code>-local</code>, or
+   * per entry with <code>:local</code>, they are bound on this server only; with <code>-watch</code> the files are
+   * watched and the properties are rebound when they change.
    *
    * @param args
    */
   public static void main(final String[] args) {
-    final Hashtable<String, String> ht = new Hashtable<String, String>();
-    ht.put(Context.INITIAL_CONTEXT_FACTORY, "weblogic.jndi.WLInitialContextFactory");
+    final long start = System.nanoTime();
+    final InitializerOptions options = InitializerOptions.parse(args);
+    final Hashtable<String, String> ht = JndiUtils.createEnvironment(options);
     final InitialContext initialContext = JndiUtils.createInitialContext(ht);
     final NameParser nameParser = JndiUtils.createNameParser(initialContext);
 
-    final LdapDirContextInitializer ldapConnectionInitializer = new LdapDirContextInitializer(initialContext);
+    final LdapDirContextInitializer ldapConnectionInitializer = new LdapDirContextInitializer(initialContext, new SubcontextCache(), options);
 
-    for (final ValueDescriptor<Properties> propertiesDescriptor : parse(nameParser, args)) {
+    final List<ValueDescriptor<Properties>> propertiesDescriptors = parse(nameParser, options.getArguments());
+    for (final ValueDescriptor<Properties> propertiesDescriptor : propertiesDescriptors) {
       ldapConnectionInitializer.initialize(propertiesDescriptor);
     }
+    LOGGER.log(Level.INFO, "Ensured subcontexts: {0}", ldapConnectionInitializer.getSubcontextCache());
+    JndiConfigurationMetrics.get().recordMain(LdapDirContextInitializer.class, System.nanoTime() - start);
+
+    if (options.isEnabled(PropertiesWatcher.WATCH_OPTION)) {
+      PropertiesWatcher.watch(options, propertiesDescriptors, ldapConnectionInitializer);
+    }
   }
 
   /**
-   * Parse input arguments
+   * Parse input arguments; the properties files are loaded concurrently. A name ending with
+   * {@value JndiUtils#LOCAL_FLAG} is bound node-locally.
    *
    * @param nameParser parser to parse JNDI Name
    * @param args args to parse
@@ -94,12 +233,19 @@ public class LdapDirContextInitializer {
    * @throws IllegalArgumentException thrown when args can't be parsed
    */
   static List<ValueDescriptor<Properties>> parse(final NameParser nameParser, final String[] args) throws IllegalArgumentException {
+    final List<Name> jndiNames = new ArrayList<Name>(args.length);
+    final List<String> filenames = new ArrayList<String>(args.length);
+    final boolean[] local = new boolean[args.length];
+    for (int i = 0; i < args.length; i++) {
+      final String[] parts = args[i].split("=", 2);
+      jndiNames.add(JndiUtils.parseJndiName(nameParser, JndiUtils.stripLocalFlag(parts[0])));
+      filenames.add(parts[1]);
+      local[i] = JndiUtils.isFlaggedLocal(parts[0]);
+    }
+    final List<Properties> loadedProperties = PropertiesUtils.loadProperties(filenames);
     final List<ValueDescriptor<Properties>> propertiesDescriptors = new ArrayList<ValueDescriptor<Properties>>(args.length);
-    for (String arg : args) {
-      final String[] parts = arg.split("=", 2);
-      final Name jndiName = JndiUtils.parseJndiName(nameParser, parts[0]);
-      final Properties properties = PropertiesUtils.loadProperties(parts[1]);
-      propertiesDescriptors.add(ValueDescriptor.of(jndiName, properties));
+    for (int i = 0; i < args.length; i++) {
+      propertiesDescriptors.add(ValueDescriptor.of(jndiNames.get(i), loadedProperties.get(i), local[i]));
     }
     return propertiesDescriptors;
   }
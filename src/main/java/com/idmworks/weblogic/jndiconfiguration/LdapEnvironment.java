@@ -0,0 +1,259 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Hashtable;
+import java.util.Properties;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+/**
+ * Validated connection environment of a bound LDAP name, as cached by {@link LdapDirContextFactory}. The JNDI
+ * environment is only handed out as a copy, so it is the same for every DirContext of the name.
+ *
+ * @author pdgreen
+ */
+public class LdapEnvironment {
+
+  static final String LAZY_KEY = LdapDirContextFactory.RESERVED_KEY_PREFIX + "lazy";
+  private final String name;
+  private final Hashtable<Object, Object> environment;
+  private final LdapPoolConfiguration poolConfiguration;
+  private final boolean lazy;
+  private final LdapResultCache resultCache;
+  private final long probeInterval;
+  private final long probeTimeout;
+  private final int pagedSearchPageSize;
+  private final Properties sslProperties;
+  private LdapSslSocketFactory socketFactory;
+  private LdapServerSelector serverSelector;
+  private LdapConnectionPool pool;
+  private boolean closed;
+
+  LdapEnvironment(final String name, final Properties properties) throws IllegalArgumentException {
+    this.name = name;
+    final Hashtable<Object, Object> env = LdapDirContextFactory.buildInitialDirContextHashtableFrom(properties);
+    this.sslProperties = LdapSslSocketFactory.isEnabled(properties) ? properties : null;
+    if (sslProperties != null) {
+      env.put(LdapSslSocketFactory.SOCKET_FACTORY_PROPERTY, LdapSslSocketFactory.class.getName());
+    }
+    this.environment = env;
+    this.poolConfiguration = LdapPoolConfiguration.from(properties);
+    this.lazy = isLazy(properties);
+    this.resultCache = LdapResultCache.from(properties);
+    this.probeInterval = LdapServerSelector.getProbeInterval(properties);
+    this.probeTimeout = LdapServerSelector.getProbeTimeout(properties);
+    this.pagedSearchPageSize = LdapPagedSearch.getPageSize(properties);
+  }
+
+  /**
+   * Validates every reserved key of the connection properties, so invalid settings fail during startup.
+   *
+   * @param properties LDAP connection properties
+   * @throws IllegalArgumentException thrown when a reserved key has an invalid value
+   */
+  static void validateReservedKeys(final Properties properties) throws IllegalArgumentException {
+    LdapPoolConfiguration.from(properties);
+    isLazy(properties);
+    LdapResultCache.from(properties);
+    LdapPagedSearch.isEnabled(properties);
+    LdapPagedSearch.getPageSize(properties);
+    if (LdapSslSocketFactory.isEnabled(properties)) {
+      LdapSslSocketFactory.create("", properties);
+    }
+    if (LdapServerSelector.getProbeInterval(properties) < 1) {
+      throw new IllegalArgumentException(LdapServerSelector.PROBE_INTERVAL_KEY + " must be positive");
+    }
+    if (LdapServerSelector.getProbeTimeout(properties) < 1) {
+      throw new IllegalArgumentException(LdapServerSelector.PROBE_TIMEOUT_KEY + " must be positive");
+    }
+  }
+
+  /**
+   * Whether connection properties ask for lazily connecting DirContexts.
+   *
+   * @param properties LDAP connection properties
+   * @return value of {@value #LAZY_KEY}
+   * @throws IllegalArgumentException thrown when the value isn't a boolean
+   */
+  static boolean isLazy(final Properties properties) throws IllegalArgumentException {
+    return PropertiesUtils.getBoolean(properties, LAZY_KEY, false);
+  }
+
+  /**
+   * Creates a DirContext for this environment. When lazy, the returned DirContext connects on its first directory
+   * operation; otherwise it is connected (or borrowed from the pool when pooling is enabled) right away. When the
+   * result cache is enabled, the DirContext answers repeated reads from it.
+   *
+   * @return DirContext for the LDAP
+   * @throws NamingException thrown when unable to connect
+   */
+  public DirContext createDirContext() throws NamingException {
+    final DirContext dirContext = lazy ? new LazyDirContext(this) : openDirContext();
+    return resultCache == null ? dirContext : new CachingDirContext(dirContext, resultCache);
+  }
+
+  /**
+   * Connects a DirContext, borrowing it from the pool when pooling is enabled.
+   *
+   * @return DirContext connected to the LDAP
+   * @throws NamingException thrown when unable to connect
+   */
+  DirContext openDirContext() throws NamingException {
+    if (poolConfiguration.isEnabled()) {
+      return retrievePool().borrow();
+    }
+    final LdapServerSelector selector = retrieveServerSelector();
+    if (selector != null) {
+      return selector.connect();
+    }
+    return LdapSslSocketFactory.openDirContext(name, environment);
+  }
+
+  synchronized LdapConnectionPool retrievePool() throws NamingException {
+    if (closed) {
+      throw new NamingException("LDAP environment has been invalidated: " + name);
+    }
+    if (pool == null) {
+      pool = new LdapConnectionPool(name, environment, poolConfiguration, retrieveServerSelector());
+    }
+    return pool;
+  }
+
+  /**
+   * Server selector of this environment, started on first use when the provider URL lists several servers. Every
+   * connection is preceded by this call, so it also registers the TLS socket factory of this environment.
+   *
+   * @return selector or null when there is a single server
+   * @throws NamingException thrown when the environment has been closed
+   */
+  synchronized LdapServerSelector retrieveServerSelector() throws NamingException {
+    if (closed) {
+      throw new NamingException("LDAP environment has been invalidated: " + name);
+    }
+    registerSocketFactory();
+    if (serverSelector == null && LdapServerSelector.hasMultipleUrls(environment)) {
+      serverSelector = new LdapServerSelector(name, environment, probeInterval, probeTimeout);
+    }
+    return serverSelector;
+  }
+
+  private void registerSocketFactory() {
+    if (sslProperties != null && socketFactory == null) {
+      socketFactory = LdapSslSocketFactory.register(name, sslProperties);
+    }
+  }
+
+  /**
+   * Socket factory sharing the TLS sessions of this environment.
+   *
+   * @return factory or null when not connecting with <code>ldaps://</code> or none has been registered yet
+   */
+  public synchronized LdapSslSocketFactory getSocketFactory() {
+    return socketFactory;
+  }
+
+  /**
+   * Closes this environment, giving borrowers of pooled connections up to graceMillis to return them.
+   *
+   * @param graceMillis milliseconds borrowers are given to return their connections
+   * @return number of borrowed connections that had to be closed
+   */
+  int drain(final long graceMillis) {
+    final LdapConnectionPool drained;
+    synchronized (this) {
+      closed = true;
+      drained = pool;
+    }
+    final int closedCount = drained == null ? 0 : drained.drain(graceMillis);
+    close();
+    return closedCount;
+  }
+
+  /**
+   * Closes the pool, stops the server probes and unregisters the TLS socket factory of this environment, if they were
+   * started.
+   */
+  synchronized void close() {
+    closed = true;
+    if (pool != null) {
+      pool.close();
+    }
+    if (serverSelector != null) {
+      serverSelector.close();
+    }
+    if (socketFactory != null) {
+      LdapSslSocketFactory.unregister(socketFactory);
+    }
+  }
+
+  /**
+   * JNDI name the LDAP factory is bound to.
+   *
+   * @return name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Copy of the environment passed to JNDI; changing it doesn't affect the connections.
+   *
+   * @return environment
+   */
+  public Hashtable<?, ?> getEnvironment() {
+    return new Hashtable<Object, Object>(environment);
+  }
+
+  /**
+   * Pool settings of this environment.
+   *
+   * @return pool configuration
+   */
+  public LdapPoolConfiguration getPoolConfiguration() {
+    return poolConfiguration;
+  }
+
+  /**
+   * Whether DirContexts connect on their first directory operation.
+   *
+   * @return true when lazy
+   */
+  public boolean isLazy() {
+    return lazy;
+  }
+
+  /**
+   * Cache of LDAP read results shared by the DirContexts of this environment.
+   *
+   * @return cache or null when caching isn't enabled
+   */
+  public LdapResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /**
+   * Number of entries per page of the {@link LdapPagedSearch} of this environment.
+   *
+   * @return page size
+   */
+  public int getPagedSearchPageSize() {
+    return pagedSearchPageSize;
+  }
+
+  /**
+   * Server selector of this environment.
+   *
+   * @return selector or null when none has been started
+   */
+  public synchronized LdapServerSelector getServerSelector() {
+    return serverSelector;
+  }
+
+  /**
+   * Connection pool of this environment.
+   *
+   * @return pool or null when none has been created
+   */
+  public synchronized LdapConnectionPool getPool() {
+    return pool;
+  }
+}
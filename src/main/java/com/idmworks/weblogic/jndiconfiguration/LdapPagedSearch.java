@@ -0,0 +1,416 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.*;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.*;
+
+/**
+ * Search facade of a bound LDAP name using the Paged Results control (RFC 2696), bound by
+ * {@link LdapDirContextInitializer} next to the DirContext factory when {@value #PAGED_SEARCH_KEY} is true.
+ *
+ * Results are returned as a lazy iterator reading one page at a time: while the caller processes a page, the next one
+ * is fetched in the background. At most two pages are held in memory whatever the number of results, and server size
+ * limits apply per page rather than to the whole search.
+ *
+ * Each search borrows a connection through the {@link LdapEnvironment} of the bound name (so pooling, failover and TLS
+ * session reuse apply) until its results are exhausted or closed. Like the DirContext, the facade should be looked up
+ * again once the LDAP name has been rebound.
+ *
+ * @author pdgreen
+ */
+public class LdapPagedSearch {
+
+  private static final Logger LOGGER = Logger.getLogger(LdapPagedSearch.class.getName());
+  static final String PAGED_SEARCH_KEY = LdapDirContextFactory.RESERVED_KEY_PREFIX + "pagedSearch";
+  static final String PAGE_SIZE_KEY = PAGED_SEARCH_KEY + ".pageSize";
+  static final String PAGED_SEARCH_NAME_SUFFIX = "__pagedSearch";
+  private static ExecutorService prefetchExecutor;
+  private final LdapEnvironment environment;
+  private final int pageSize;
+
+  /**
+   * Creates search facade.
+   *
+   * @param environment environment of the bound LDAP name
+   * @param pageSize number of entries requested per page
+   */
+  public LdapPagedSearch(final LdapEnvironment environment, final int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+    }
+    this.environment = environment;
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Whether connection properties ask for the search facade to be bound.
+   *
+   * @param properties LDAP connection properties
+   * @return value of {@value #PAGED_SEARCH_KEY}
+   * @throws IllegalArgumentException thrown when the value isn't a boolean
+   */
+  static boolean isEnabled(final Properties properties) throws IllegalArgumentException {
+    return PropertiesUtils.getBoolean(properties, PAGED_SEARCH_KEY, false);
+  }
+
+  /**
+   * Page size configured by connection properties.
+   *
+   * @param properties LDAP connection properties
+   * @return value of {@value #PAGE_SIZE_KEY}, 500 by default
+   * @throws IllegalArgumentException thrown when the value isn't a positive integer
+   */
+  static int getPageSize(final Properties properties) throws IllegalArgumentException {
+    final int pageSize = PropertiesUtils.getInt(properties, PAGE_SIZE_KEY, 500);
+    if (pageSize < 1) {
+      throw new IllegalArgumentException(PAGE_SIZE_KEY + " must be positive: " + pageSize);
+    }
+    return pageSize;
+  }
+
+  /**
+   * Builds the name the search facade of an LDAP name is bound to.
+   *
+   * @param ldapName name of the DirContext Factory for LDAP
+   * @return name of the search facade
+   */
+  public static Name buildPagedSearchName(final Name ldapName) {
+    try {
+      final Name pagedSearchName = ldapName.getPrefix(ldapName.size() - 1);
+      pagedSearchName.add(ldapName.get(ldapName.size() - 1) + PAGED_SEARCH_NAME_SUFFIX);
+      return pagedSearchName;
+    } catch (InvalidNameException ex) {
+      throw new IllegalArgumentException("unable to build paged search name for " + ldapName, ex);
+    }
+  }
+
+  /**
+   * Builds the name of the LDAP factory from the name of its search facade.
+   *
+   * @param pagedSearchName name of the search facade
+   * @return name of the DirContext Factory for LDAP
+   */
+  static Name buildLdapName(final Name pagedSearchName) {
+    final String last = pagedSearchName.get(pagedSearchName.size() - 1);
+    if (!last.endsWith(PAGED_SEARCH_NAME_SUFFIX)) {
+      throw new IllegalArgumentException("not the name of a paged search: " + pagedSearchName);
+    }
+    try {
+      final Name ldapName = pagedSearchName.getPrefix(pagedSearchName.size() - 1);
+      ldapName.add(last.substring(0, last.length() - PAGED_SEARCH_NAME_SUFFIX.length()));
+      return ldapName;
+    } catch (InvalidNameException ex) {
+      throw new IllegalArgumentException("unable to build LDAP name for " + pagedSearchName, ex);
+    }
+  }
+
+  /**
+   * Searches base for filter, one page at a time. The first page is read before returning.
+   *
+   * @param base name of the context to search
+   * @param filter filter expression
+   * @param controls search controls; its count limit applies to the whole search
+   * @return results, to be closed when not read to the end
+   * @throws NamingException thrown when unable to connect or the first page can't be read
+   */
+  public Results search(final String base, final String filter, final SearchControls controls) throws NamingException {
+    return search(base, filter, null, controls);
+  }
+
+  /**
+   * Searches base for filter, with arguments substituted for the <code>{i}</code> of filterExpr, one page at a time.
+   * The first page is read before returning.
+   *
+   * @param base name of the context to search
+   * @param filterExpr filter expression
+   * @param filterArgs arguments of filterExpr, or null
+   * @param controls search controls; its count limit applies to the whole search
+   * @return results, to be closed when not read to the end
+   * @throws NamingException thrown when unable to connect or the first page can't be read
+   */
+  public Results search(final String base, final String filterExpr, final Object[] filterArgs, final SearchControls controls) throws NamingException {
+    final DirContext dirContext = environment.createDirContext();
+    try {
+      final Object context = dirContext.lookup("");
+      if (!(context instanceof LdapContext)) {
+        throw new OperationNotSupportedException("Paged search needs an LdapContext, got " + context);
+      }
+      return new Results(dirContext, (LdapContext) context, base, filterExpr, filterArgs, controls);
+    } catch (NamingException ex) {
+      dirContext.close();
+      throw ex;
+    } catch (RuntimeException ex) {
+      dirContext.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Number of entries requested per page.
+   *
+   * @return page size
+   */
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Environment of the bound LDAP name.
+   *
+   * @return environment
+   */
+  public LdapEnvironment getEnvironment() {
+    return environment;
+  }
+
+  /**
+   * Stops the threads reading pages in the background; they are started again by the next search.
+   */
+  static synchronized void shutdownPrefetchExecutor() {
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdownNow();
+      prefetchExecutor = null;
+    }
+  }
+
+  private static synchronized ExecutorService getPrefetchExecutor() {
+    if (prefetchExecutor == null) {
+      prefetchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "ldap-paged-search");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return prefetchExecutor;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(LdapPagedSearch.class.getName()).append("{name=").append(environment.getName()).append(",pageSize=").append(pageSize).append("}").toString();
+  }
+
+  /**
+   * Page of results and the cookie requesting the page after it.
+   */
+  private static final class Page {
+
+    final List<SearchResult> results;
+    final byte[] cookie;
+
+    Page(final List<SearchResult> results, final byte[] cookie) {
+      this.results = results;
+      this.cookie = cookie;
+    }
+  }
+
+  /**
+   * Lazy iterator over the results of a paged search. Not thread safe; reading the last result or closing releases the
+   * connection. Failing to read a page is thrown as an {@link IllegalStateException} by {@link #hasNext()}.
+   */
+  public final class Results implements Iterator<SearchResult>, Closeable {
+
+    private final DirContext dirContext;
+    private final LdapContext ldapContext;
+    private final String base;
+    private final String filterExpr;
+    private final Object[] filterArgs;
+    private final SearchControls controls;
+    private final long countLimit;
+    private Iterator<SearchResult> page;
+    private Future<Page> nextPage;
+    private byte[] cookie;
+    private int pageCount;
+    private long returned;
+    private boolean closed;
+
+    Results(final DirContext dirContext, final LdapContext ldapContext, final String base, final String filterExpr,
+            final Object[] filterArgs, final SearchControls controls) throws NamingException {
+      this.dirContext = dirContext;
+      this.ldapContext = ldapContext;
+      this.base = base;
+      this.filterExpr = filterExpr;
+      this.filterArgs = filterArgs;
+      this.controls = new SearchControls(controls.getSearchScope(), 0L, controls.getTimeLimit(),
+              controls.getReturningAttributes(), controls.getReturningObjFlag(), controls.getDerefLinkFlag());
+      this.countLimit = controls.getCountLimit();
+      try {
+        accept(fetch(null));
+      } catch (NamingException ex) {
+        release();
+        throw ex;
+      }
+    }
+
+    /**
+     * Reads the page requested by cookie, null for the first page.
+     */
+    private Page fetch(final byte[] cookie) throws NamingException {
+      try {
+        ldapContext.setRequestControls(new Control[]{new PagedResultsControl(pageSize, cookie, Control.CRITICAL)});
+      } catch (IOException ex) {
+        throw (NamingException) new NamingException("unable to encode paged results control").initCause(ex);
+      }
+      final NamingEnumeration<SearchResult> enumeration = search();
+      final List<SearchResult> results = new ArrayList<SearchResult>(pageSize);
+      try {
+        while (enumeration.hasMore()) {
+          results.add(enumeration.next());
+        }
+      } finally {
+        enumeration.close();
+      }
+      return new Page(results, responseCookie(ldapContext.getResponseControls()));
+    }
+
+    private NamingEnumeration<SearchResult> search() throws NamingException {
+      return filterArgs == null ? ldapContext.search(base, filterExpr, controls) : ldapContext.search(base, filterExpr, filterArgs, controls);
+    }
+
+    private byte[] responseCookie(final Control[] responseControls) {
+      if (responseControls != null) {
+        for (final Control control : responseControls) {
+          if (control instanceof PagedResultsResponseControl) {
+            final byte[] responseCookie = ((PagedResultsResponseControl) control).getCookie();
+            return responseCookie == null || responseCookie.length == 0 ? null : responseCookie;
+          }
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Makes page the current page and starts fetching the next one, or releases the connection after the last page.
+     */
+    private void accept(final Page fetched) {
+      page = fetched.results.iterator();
+      cookie = fetched.cookie;
+      pageCount++;
+      LOGGER.log(Level.FINE, "Read page {0} ({1} entries) of {2}", new Object[]{pageCount, fetched.results.size(), environment.getName()});
+      if (cookie == null || (countLimit > 0 && returned + fetched.results.size() >= countLimit)) {
+        abandon();
+        release();
+        return;
+      }
+      final byte[] nextCookie = cookie;
+      nextPage = getPrefetchExecutor().submit(new Callable<Page>() {
+
+        public Page call() throws NamingException {
+          return fetch(nextCookie);
+        }
+      });
+    }
+
+    public boolean hasNext() {
+      if (countLimit > 0 && returned >= countLimit) {
+        return false;
+      }
+      while (!page.hasNext() && nextPage != null) {
+        final Future<Page> pending = nextPage;
+        nextPage = null;
+        try {
+          accept(pending.get());
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          close();
+          throw new IllegalStateException("interrupted while reading page " + (pageCount + 1) + " of " + environment.getName(), ex);
+        } catch (ExecutionException ex) {
+          cookie = null;
+          close();
+          throw new IllegalStateException("unable to read page " + (pageCount + 1) + " of " + environment.getName(), ex.getCause());
+        }
+      }
+      return page.hasNext();
+    }
+
+    public SearchResult next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      returned++;
+      return page.next();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("search results can't be removed");
+    }
+
+    /**
+     * Number of pages read so far, including a page being read in the background.
+     *
+     * @return pages
+     */
+    public int getPageCount() {
+      return nextPage == null ? pageCount : pageCount + 1;
+    }
+
+    /**
+     * Stops reading pages and releases the connection; the server is told to abandon the search when pages are left.
+     * Calling close more than once has no effect.
+     */
+    public void close() {
+      if (closed) {
+        return;
+      }
+      if (nextPage != null) {
+        try {
+          cookie = nextPage.get().cookie;
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+          cookie = null;
+        }
+        nextPage = null;
+      }
+      page = Collections.<SearchResult>emptyList().iterator();
+      abandon();
+      release();
+    }
+
+    /**
+     * Tells the server to forget the paged search when pages are left; a page size of 0 abandons it.
+     */
+    private void abandon() {
+      if (cookie == null) {
+        return;
+      }
+      try {
+        ldapContext.setRequestControls(new Control[]{new PagedResultsControl(0, cookie, Control.CRITICAL)});
+        search().close();
+      } catch (IOException ex) {
+        LOGGER.log(Level.FINE, "unable to abandon paged search of " + environment.getName(), ex);
+      } catch (NamingException ex) {
+        LOGGER.log(Level.FINE, "unable to abandon paged search of " + environment.getName(), ex);
+      }
+    }
+
+    private void release() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      cookie = null;
+      try {
+        ldapContext.setRequestControls(null);
+        ldapContext.close();
+      } catch (NamingException ex) {
+        LOGGER.log(Level.FINE, "unable to close paged search context of " + environment.getName(), ex);
+      }
+      try {
+        dirContext.close();
+      } catch (NamingException ex) {
+        LOGGER.log(Level.WARNING, "unable to release connection of " + environment.getName(), ex);
+      }
+    }
+  }
+}
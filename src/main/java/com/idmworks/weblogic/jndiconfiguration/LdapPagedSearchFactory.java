@@ -0,0 +1,21 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Hashtable;
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.spi.ObjectFactory;
+
+/**
+ * Creates the {@link LdapPagedSearch} bound next to a DirContext LDAP factory, sharing the cached
+ * {@link LdapEnvironment} of {@link LdapDirContextFactory}.
+ *
+ * @author pdgreen
+ */
+public class LdapPagedSearchFactory implements ObjectFactory {
+
+  public Object getObjectInstance(Object o, Name name, Context cntxt, Hashtable<?, ?> hshtbl) throws Exception {
+    final Name ldapName = LdapPagedSearch.buildLdapName(name);
+    final LdapEnvironment environment = LdapDirContextFactory.retrieveEnvironment(LdapDirContextFactory.resolveKey(o, ldapName), ldapName, cntxt);
+    return new LdapPagedSearch(environment, environment.getPagedSearchPageSize());
+  }
+}
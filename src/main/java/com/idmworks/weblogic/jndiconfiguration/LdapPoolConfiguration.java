@@ -0,0 +1,164 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Properties;
+
+/**
+ * Connection pool settings read from the reserved keys of the LDAP connection properties.
+ *
+ * @author pdgreen
+ */
+public class LdapPoolConfiguration {
+
+  static final String POOL_KEY = LdapDirContextFactory.RESERVED_KEY_PREFIX + "pool";
+  static final String MIN_SIZE_KEY = POOL_KEY + ".minSize";
+  static final String MAX_SIZE_KEY = POOL_KEY + ".maxSize";
+  static final String MAX_WAIT_KEY = POOL_KEY + ".maxWait";
+  static final String IDLE_TIMEOUT_KEY = POOL_KEY + ".idleTimeout";
+  static final String MAX_LIFETIME_KEY = POOL_KEY + ".maxLifetime";
+  static final String VALIDATE_ON_BORROW_KEY = POOL_KEY + ".validateOnBorrow";
+  static final String EVICTION_INTERVAL_KEY = POOL_KEY + ".evictionInterval";
+  static final String WARMUP_KEY = POOL_KEY + ".warmup";
+  private final boolean enabled;
+  private final int minSize;
+  private final int maxSize;
+  private final long maxWait;
+  private final long idleTimeout;
+  private final long maxLifetime;
+  private final boolean validateOnBorrow;
+  private final long evictionInterval;
+  private final int warmup;
+
+  public LdapPoolConfiguration(final boolean enabled, final int minSize, final int maxSize, final long maxWait,
+          final long idleTimeout, final long maxLifetime, final boolean validateOnBorrow, final long evictionInterval) {
+    this(enabled, minSize, maxSize, maxWait, idleTimeout, maxLifetime, validateOnBorrow, evictionInterval, 0);
+  }
+
+  public LdapPoolConfiguration(final boolean enabled, final int minSize, final int maxSize, final long maxWait,
+          final long idleTimeout, final long maxLifetime, final boolean validateOnBorrow, final long evictionInterval,
+          final int warmup) {
+    if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+      throw new IllegalArgumentException("pool sizes must satisfy 0 <= minSize <= maxSize and maxSize >= 1: " + minSize + "/" + maxSize);
+    }
+    if (maxWait < 0 || idleTimeout < 0 || maxLifetime < 0 || evictionInterval < 1) {
+      throw new IllegalArgumentException("pool timeouts must not be negative and evictionInterval must be positive");
+    }
+    if (warmup < 0 || warmup > maxSize) {
+      throw new IllegalArgumentException("warmup must satisfy 0 <= warmup <= maxSize: " + warmup + "/" + maxSize);
+    }
+    this.enabled = enabled;
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.maxWait = maxWait;
+    this.idleTimeout = idleTimeout;
+    this.maxLifetime = maxLifetime;
+    this.validateOnBorrow = validateOnBorrow;
+    this.evictionInterval = evictionInterval;
+    this.warmup = warmup;
+  }
+
+  /**
+   * Reads pool settings from connection properties.
+   *
+   * @param properties LDAP connection properties
+   * @return pool configuration
+   * @throws IllegalArgumentException thrown when a reserved key has an invalid value
+   */
+  public static LdapPoolConfiguration from(final Properties properties) throws IllegalArgumentException {
+    return new LdapPoolConfiguration(
+            PropertiesUtils.getBoolean(properties, POOL_KEY, false),
+            PropertiesUtils.getInt(properties, MIN_SIZE_KEY, 0),
+            PropertiesUtils.getInt(properties, MAX_SIZE_KEY, 8),
+            PropertiesUtils.getLong(properties, MAX_WAIT_KEY, 5000L),
+            PropertiesUtils.getLong(properties, IDLE_TIMEOUT_KEY, 300000L),
+            PropertiesUtils.getLong(properties, MAX_LIFETIME_KEY, 0L),
+            PropertiesUtils.getBoolean(properties, VALIDATE_ON_BORROW_KEY, false),
+            PropertiesUtils.getLong(properties, EVICTION_INTERVAL_KEY, 30000L),
+            PropertiesUtils.getInt(properties, WARMUP_KEY, 0));
+  }
+
+  /**
+   * Whether connections should be pooled at all.
+   *
+   * @return true when pooling is enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Number of connections kept open even when idle.
+   *
+   * @return minimum pool size
+   */
+  public int getMinSize() {
+    return minSize;
+  }
+
+  /**
+   * Upper bound of open connections.
+   *
+   * @return maximum pool size
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Milliseconds to wait for a connection when the pool is exhausted.
+   *
+   * @return maximum wait
+   */
+  public long getMaxWait() {
+    return maxWait;
+  }
+
+  /**
+   * Milliseconds a connection may stay idle before it is evicted; 0 disables idle eviction.
+   *
+   * @return idle timeout
+   */
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * Milliseconds a connection may live before it is retired; 0 means unlimited.
+   *
+   * @return maximum lifetime
+   */
+  public long getMaxLifetime() {
+    return maxLifetime;
+  }
+
+  /**
+   * Whether idle connections are checked with a directory read before being handed out.
+   *
+   * @return true when connections are validated on borrow
+   */
+  public boolean isValidateOnBorrow() {
+    return validateOnBorrow;
+  }
+
+  /**
+   * Milliseconds between eviction runs.
+   *
+   * @return eviction interval
+   */
+  public long getEvictionInterval() {
+    return evictionInterval;
+  }
+
+  /**
+   * Number of connections opened and validated by {@link LdapDirContextInitializer} before applications start.
+   *
+   * @return connections to warm up
+   */
+  public int getWarmup() {
+    return warmup;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(LdapPoolConfiguration.class.getName()).append("{enabled=").append(enabled).append(",minSize=").append(minSize).append(",maxSize=").append(maxSize).append(",maxWait=").append(maxWait).append(",idleTimeout=").append(idleTimeout).append(",maxLifetime=").append(maxLifetime).append(",validateOnBorrow=").append(validateOnBorrow).append(",evictionInterval=").append(evictionInterval).append(",warmup=").append(warmup).append("}").toString();
+  }
+}
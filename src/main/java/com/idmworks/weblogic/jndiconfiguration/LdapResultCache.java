@@ -0,0 +1,358 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchResult;
+
+/**
+ * Results of <code>getAttributes</code> and <code>search</code> shared by the {@link CachingDirContext}s of a bound
+ * LDAP name, configured by reserved keys of the connection properties.
+ *
+ * The cache holds at most maxSize results, evicting the least recently used, and forgets results after a time to live.
+ * Searches returning more than maxSearchResults entries aren't cached. Writes invalidate the attributes of the names
+ * they touch, and everything below them, as well as every cached search.
+ *
+ * @author pdgreen
+ */
+public class LdapResultCache {
+
+  static final String CACHE_KEY = LdapDirContextFactory.RESERVED_KEY_PREFIX + "cache";
+  static final String MAX_SIZE_KEY = CACHE_KEY + ".maxSize";
+  static final String TTL_KEY = CACHE_KEY + ".ttl";
+  static final String MAX_SEARCH_RESULTS_KEY = CACHE_KEY + ".maxSearchResults";
+  private static final long OBJECT_OVERHEAD = 16L;
+  private static final long ENTRY_OVERHEAD = 64L;
+  private final int maxSize;
+  private final long ttlNanos;
+  private final int maxSearchResults;
+  private final Map<String, CachedResult> cache;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong invalidationCount = new AtomicLong();
+  private long estimatedBytes;
+  private long generation;
+
+  /**
+   * Creates cache.
+   *
+   * @param maxSize maximum number of cached results
+   * @param ttlMillis milliseconds a result stays cached
+   * @param maxSearchResults maximum number of entries of a cached search
+   */
+  public LdapResultCache(final int maxSize, final long ttlMillis, final int maxSearchResults) {
+    if (maxSize < 1 || ttlMillis < 1 || maxSearchResults < 0) {
+      throw new IllegalArgumentException("cache maxSize and ttl must be positive and maxSearchResults must not be negative: "
+              + maxSize + "/" + ttlMillis + "/" + maxSearchResults);
+    }
+    this.maxSize = maxSize;
+    this.ttlNanos = ttlMillis * 1000000L;
+    this.maxSearchResults = maxSearchResults;
+    this.cache = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+        if (size() > LdapResultCache.this.maxSize) {
+          estimatedBytes -= eldest.getValue().bytes;
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Reads cache settings from connection properties.
+   *
+   * @param properties LDAP connection properties
+   * @return cache or null when {@value #CACHE_KEY} isn't enabled
+   * @throws IllegalArgumentException thrown when a reserved key has an invalid value
+   */
+  static LdapResultCache from(final Properties properties) throws IllegalArgumentException {
+    final int maxSize = PropertiesUtils.getInt(properties, MAX_SIZE_KEY, 1000);
+    final long ttl = PropertiesUtils.getLong(properties, TTL_KEY, 60000L);
+    final int maxSearchResults = PropertiesUtils.getInt(properties, MAX_SEARCH_RESULTS_KEY, 100);
+    if (!PropertiesUtils.getBoolean(properties, CACHE_KEY, false)) {
+      return null;
+    }
+    return new LdapResultCache(maxSize, ttl, maxSearchResults);
+  }
+
+  static String normalize(final String name) {
+    return name.trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  /**
+   * Cached attributes.
+   *
+   * @param key key built by {@link CachingDirContext}
+   * @return copy of the cached attributes or null on a miss
+   */
+  Attributes getAttributes(final String key) {
+    final CachedResult cached = get(key);
+    return cached == null ? null : (Attributes) cached.attributes.clone();
+  }
+
+  /**
+   * Cached search results.
+   *
+   * @param key key built by {@link CachingDirContext}
+   * @return copies of the cached results or null on a miss
+   */
+  List<SearchResult> getSearchResults(final String key) {
+    final CachedResult cached = get(key);
+    if (cached == null) {
+      return null;
+    }
+    final List<SearchResult> copies = new ArrayList<SearchResult>(cached.searchResults.size());
+    for (final SearchResult result : cached.searchResults) {
+      copies.add(copy(result));
+    }
+    return copies;
+  }
+
+  private CachedResult get(final String key) {
+    final long now = System.nanoTime();
+    synchronized (cache) {
+      final CachedResult cached = cache.get(key);
+      if (cached != null && now - cached.expiresAt > 0) {
+        cache.remove(key);
+        estimatedBytes -= cached.bytes;
+      } else if (cached != null) {
+        hitCount.incrementAndGet();
+        JndiConfigurationMetrics.get().recordLdapResultCacheHit();
+        return cached;
+      }
+    }
+    missCount.incrementAndGet();
+    JndiConfigurationMetrics.get().recordLdapResultCacheMiss();
+    return null;
+  }
+
+  /**
+   * Generation to pass to the put methods; results read while a write invalidated the cache aren't stored.
+   *
+   * @return current generation
+   */
+  long generation() {
+    synchronized (cache) {
+      return generation;
+    }
+  }
+
+  void putAttributes(final String key, final String name, final Attributes attributes, final long readGeneration) {
+    final Attributes copy = (Attributes) attributes.clone();
+    put(key, new CachedResult(normalize(name), copy, null, System.nanoTime() + ttlNanos, estimateBytes(key, copy)), readGeneration);
+  }
+
+  /**
+   * Stores search results unless there are more than maxSearchResults.
+   *
+   * @return true when stored
+   */
+  boolean putSearchResults(final String key, final List<SearchResult> results, final long readGeneration) {
+    if (results.size() > maxSearchResults) {
+      return false;
+    }
+    final List<SearchResult> copies = new ArrayList<SearchResult>(results.size());
+    long bytes = OBJECT_OVERHEAD;
+    for (final SearchResult result : results) {
+      final SearchResult copy = copy(result);
+      copies.add(copy);
+      bytes += estimateBytes(copy.getName(), copy.getAttributes());
+    }
+    put(key, new CachedResult(null, null, copies, System.nanoTime() + ttlNanos, bytes + 2L * key.length()), readGeneration);
+    return true;
+  }
+
+  private void put(final String key, final CachedResult result, final long readGeneration) {
+    synchronized (cache) {
+      if (generation != readGeneration) {
+        return;
+      }
+      final CachedResult replaced = cache.put(key, result);
+      estimatedBytes += result.bytes - (replaced == null ? 0L : replaced.bytes);
+    }
+  }
+
+  /**
+   * Forgets the attributes of name and of every name below it, and all searches.
+   *
+   * @param name name written to
+   */
+  void invalidate(final String name) {
+    final String normalized = normalize(name);
+    final String suffix = "," + normalized;
+    synchronized (cache) {
+      generation++;
+      for (final Iterator<CachedResult> results = cache.values().iterator(); results.hasNext();) {
+        final CachedResult result = results.next();
+        if (result.name == null || result.name.equals(normalized) || result.name.endsWith(suffix) || normalized.length() == 0) {
+          estimatedBytes -= result.bytes;
+          results.remove();
+          invalidationCount.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * Forgets every cached result.
+   */
+  public void clear() {
+    synchronized (cache) {
+      generation++;
+      cache.clear();
+      estimatedBytes = 0L;
+    }
+  }
+
+  private static SearchResult copy(final SearchResult result) {
+    final SearchResult copy = new SearchResult(result.getName(), result.getClassName(), null,
+            result.getAttributes() == null ? null : (Attributes) result.getAttributes().clone(), result.isRelative());
+    try {
+      copy.setNameInNamespace(result.getNameInNamespace());
+    } catch (UnsupportedOperationException ex) {
+      // the full name is optional
+    }
+    return copy;
+  }
+
+  /**
+   * Rough number of heap bytes held by a cached entry: characters of strings, length of binary values and a fixed
+   * overhead per object.
+   */
+  static long estimateBytes(final String name, final Attributes attributes) {
+    long bytes = ENTRY_OVERHEAD + (name == null ? 0L : 2L * name.length());
+    if (attributes == null) {
+      return bytes;
+    }
+    try {
+      for (final NamingEnumeration<? extends Attribute> all = attributes.getAll(); all.hasMore();) {
+        final Attribute attribute = all.next();
+        bytes += ENTRY_OVERHEAD + 2L * attribute.getID().length();
+        for (final NamingEnumeration<?> values = attribute.getAll(); values.hasMore();) {
+          final Object value = values.next();
+          if (value instanceof byte[]) {
+            bytes += OBJECT_OVERHEAD + ((byte[]) value).length;
+          } else if (value != null) {
+            bytes += OBJECT_OVERHEAD + 2L * value.toString().length();
+          }
+        }
+      }
+    } catch (NamingException ex) {
+      throw new IllegalStateException("unable to read cached attributes", ex);
+    }
+    return bytes;
+  }
+
+  /**
+   * Number of reads answered from the cache.
+   *
+   * @return hits
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Number of reads forwarded to the LDAP.
+   *
+   * @return misses
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Share of reads answered from the cache.
+   *
+   * @return hits divided by all reads, 0 before the first read
+   */
+  public double getHitRate() {
+    final long hits = hitCount.get();
+    final long reads = hits + missCount.get();
+    return reads == 0 ? 0.0 : (double) hits / reads;
+  }
+
+  /**
+   * Number of results evicted to stay within maxSize.
+   *
+   * @return evictions
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Number of results dropped because of writes.
+   *
+   * @return invalidations
+   */
+  public long getInvalidationCount() {
+    return invalidationCount.get();
+  }
+
+  /**
+   * Estimated heap bytes held by the cached results.
+   *
+   * @return bytes
+   */
+  public long getEstimatedBytes() {
+    synchronized (cache) {
+      return estimatedBytes;
+    }
+  }
+
+  /**
+   * Maximum number of entries of a cached search.
+   *
+   * @return maxSearchResults
+   */
+  public int getMaxSearchResults() {
+    return maxSearchResults;
+  }
+
+  /**
+   * Number of cached results.
+   *
+   * @return size
+   */
+  public int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(LdapResultCache.class.getName()).append("{size=").append(size()).append(",hits=").append(hitCount).append(",misses=").append(missCount).append(",evicted=").append(evictionCount).append(",invalidated=").append(invalidationCount).append(",estimatedBytes=").append(getEstimatedBytes()).append("}").toString();
+  }
+
+  /**
+   * Cached attributes of a name or results of a search.
+   */
+  private static final class CachedResult {
+
+    final String name;
+    final Attributes attributes;
+    final List<SearchResult> searchResults;
+    final long expiresAt;
+    final long bytes;
+
+    CachedResult(final String name, final Attributes attributes, final List<SearchResult> searchResults, final long expiresAt, final long bytes) {
+      this.name = name;
+      this.attributes = attributes;
+      this.searchResults = searchResults;
+      this.expiresAt = expiresAt;
+      this.bytes = bytes;
+    }
+  }
+}
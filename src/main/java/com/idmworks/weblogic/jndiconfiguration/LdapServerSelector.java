@@ -0,0 +1,381 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+
+/**
+ * Chooses the LDAP server new connections go to when {@link Context#PROVIDER_URL} lists several (space separated)
+ * URLs.
+ *
+ * Every server is probed in the background: a connect, bind and read of the base entry requesting no attributes. The
+ * servers are probed in parallel, at most one probe per server at a time, so an unresponsive server delays neither
+ * the probes of the others nor those of other selectors; a probe still running after twice the probe timeout counts
+ * as failed. The probe latency is kept as an exponentially weighted moving average. Connections are opened to the
+ * healthy server with the lowest average first, then to healthy servers without a successful probe yet in
+ * configuration order; a server failing a probe or a connect is taken out of rotation until a probe succeeds again.
+ * When no server is healthy, all are tried in configuration order.
+ *
+ * @author pdgreen
+ */
+public class LdapServerSelector {
+
+  private static final Logger LOGGER = Logger.getLogger(LdapServerSelector.class.getName());
+  static final String FAILOVER_KEY_PREFIX = LdapDirContextFactory.RESERVED_KEY_PREFIX + "failover.";
+  static final String PROBE_INTERVAL_KEY = FAILOVER_KEY_PREFIX + "probeInterval";
+  static final String PROBE_TIMEOUT_KEY = FAILOVER_KEY_PREFIX + "probeTimeout";
+  static final String CONNECT_TIMEOUT_PROPERTY = "com.sun.jndi.ldap.connect.timeout";
+  static final String READ_TIMEOUT_PROPERTY = "com.sun.jndi.ldap.read.timeout";
+  static final double LATENCY_WEIGHT = 0.3;
+  private static final String[] NO_ATTRIBUTES = {"1.1"};
+  private static ScheduledExecutorService probeExecutor;
+  private static ExecutorService probeWorkers;
+  private final String name;
+  private final List<Server> servers;
+  private final long probeTimeout;
+  private final ScheduledFuture<?> probes;
+
+  /**
+   * Creates selector and starts probing.
+   *
+   * @param name JNDI name the LDAP factory is bound to
+   * @param environment environment whose {@link Context#PROVIDER_URL} lists the servers
+   * @param probeInterval milliseconds between probe rounds
+   * @param probeTimeout milliseconds a probe may take to connect or read
+   */
+  public LdapServerSelector(final String name, final Hashtable<?, ?> environment, final long probeInterval, final long probeTimeout) {
+    if (probeInterval < 1 || probeTimeout < 1) {
+      throw new IllegalArgumentException("probeInterval and probeTimeout must be positive");
+    }
+    this.name = name;
+    this.probeTimeout = probeTimeout;
+    final String[] urls = splitUrls(environment);
+    final List<Server> created = new ArrayList<Server>(urls.length);
+    for (final String url : urls) {
+      created.add(new Server(name, url, environment));
+    }
+    this.servers = Collections.unmodifiableList(created);
+    this.probes = getProbeExecutor().scheduleWithFixedDelay(new Runnable() {
+
+      public void run() {
+        startProbes();
+      }
+    }, 0, probeInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Whether the environment lists more than one server.
+   *
+   * @param environment LDAP environment
+   * @return true when failover applies
+   */
+  static boolean hasMultipleUrls(final Hashtable<?, ?> environment) {
+    return splitUrls(environment).length > 1;
+  }
+
+  private static String[] splitUrls(final Hashtable<?, ?> environment) {
+    final Object url = environment.get(Context.PROVIDER_URL);
+    return url == null ? new String[0] : url.toString().trim().split("\\s+");
+  }
+
+  /**
+   * Reads probe interval from the reserved keys of the connection properties.
+   *
+   * @param properties LDAP connection properties
+   * @return milliseconds between probes
+   * @throws IllegalArgumentException thrown when the value is invalid
+   */
+  static long getProbeInterval(final Properties properties) throws IllegalArgumentException {
+    return PropertiesUtils.getLong(properties, PROBE_INTERVAL_KEY, 10000L);
+  }
+
+  /**
+   * Reads probe timeout from the reserved keys of the connection properties.
+   *
+   * @param properties LDAP connection properties
+   * @return milliseconds a probe may take
+   * @throws IllegalArgumentException thrown when the value is invalid
+   */
+  static long getProbeTimeout(final Properties properties) throws IllegalArgumentException {
+    return PropertiesUtils.getLong(properties, PROBE_TIMEOUT_KEY, 2000L);
+  }
+
+  /**
+   * Connects to the best available server, trying the others in order when it fails.
+   *
+   * @return DirContext connected to one of the servers
+   * @throws NamingException thrown when no server accepted the connection
+   */
+  public DirContext connect() throws NamingException {
+    NamingException last = null;
+    for (final Server server : rank()) {
+      try {
+        return server.connect();
+      } catch (NamingException ex) {
+        server.markFailed(ex);
+        last = ex;
+      }
+    }
+    final ServiceUnavailableException unavailable = new ServiceUnavailableException("no LDAP server available for " + name);
+    unavailable.setRootCause(last);
+    throw unavailable;
+  }
+
+  /**
+   * Servers in the order connections are attempted: healthy ones by average latency, healthy ones not probed
+   * successfully yet in configuration order, then the others.
+   *
+   * @return ranked servers
+   */
+  List<Server> rank() {
+    final List<Server> healthy = new ArrayList<Server>(servers.size());
+    final List<Server> unhealthy = new ArrayList<Server>(servers.size());
+    for (final Server server : servers) {
+      (server.healthy ? healthy : unhealthy).add(server);
+    }
+    Collections.sort(healthy, new Comparator<Server>() {
+
+      public int compare(final Server first, final Server second) {
+        final long firstLatency = first.latencyNanos == 0 ? Long.MAX_VALUE : first.latencyNanos;
+        final long secondLatency = second.latencyNanos == 0 ? Long.MAX_VALUE : second.latencyNanos;
+        return firstLatency < secondLatency ? -1 : (firstLatency == secondLatency ? 0 : 1);
+      }
+    });
+    healthy.addAll(unhealthy);
+    return healthy;
+  }
+
+  /**
+   * Starts a probe of every server that isn't being probed already, without waiting for them.
+   *
+   * @return probe of each server, in configuration order
+   */
+  List<Future<?>> startProbes() {
+    final ExecutorService workers = getProbeWorkers();
+    final List<Future<?>> started = new ArrayList<Future<?>>(servers.size());
+    for (final Server server : servers) {
+      started.add(server.startProbe(workers, probeTimeout));
+    }
+    return started;
+  }
+
+  /**
+   * Probes every server once, in parallel, and waits up to twice the probe timeout for the probes to finish; a server
+   * whose probe is still running is taken out of rotation.
+   */
+  void probe() {
+    final List<Future<?>> started = startProbes();
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2 * probeTimeout);
+    for (int i = 0; i < started.size(); i++) {
+      try {
+        started.get(i).get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException ex) {
+        servers.get(i).markFailed(new ServiceUnavailableException("probe of " + servers.get(i).getUrl() + " didn't finish within " + 2 * probeTimeout + "ms"));
+      } catch (ExecutionException ex) {
+        LOGGER.log(Level.WARNING, "Probe of " + servers.get(i).getUrl() + " failed", ex.getCause());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Stops probing.
+   */
+  public void close() {
+    probes.cancel(false);
+  }
+
+  /**
+   * Servers in configuration order.
+   *
+   * @return servers
+   */
+  public List<Server> getServers() {
+    return servers;
+  }
+
+  /**
+   * Stops the threads probing the servers of all selectors; they are started again by the next selector created.
+   */
+  static synchronized void shutdownProbeExecutor() {
+    if (probeExecutor != null) {
+      probeExecutor.shutdownNow();
+      probeExecutor = null;
+    }
+    if (probeWorkers != null) {
+      probeWorkers.shutdownNow();
+      probeWorkers = null;
+    }
+  }
+
+  private static synchronized ExecutorService getProbeWorkers() {
+    if (probeWorkers == null) {
+      probeWorkers = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private int count;
+
+        public synchronized Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "ldap-server-probe-" + ++count);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return probeWorkers;
+  }
+
+  private static synchronized ScheduledExecutorService getProbeExecutor() {
+    if (probeExecutor == null) {
+      probeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "ldap-server-probe");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return probeExecutor;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(LdapServerSelector.class.getName()).append("{name=").append(name).append(",servers=").append(servers).append("}").toString();
+  }
+
+  /**
+   * LDAP server of a selector with its health and average latency.
+   */
+  public static final class Server {
+
+    private final String name;
+    private final String url;
+    private final Hashtable<Object, Object> environment;
+    private volatile boolean healthy = true;
+    private volatile long latencyNanos;
+    private volatile long failureCount;
+    private Future<?> probing;
+    private long probeStart;
+
+    Server(final String name, final String url, final Hashtable<?, ?> environment) {
+      this.name = name;
+      this.url = url;
+      this.environment = new Hashtable<Object, Object>(environment);
+      this.environment.put(Context.PROVIDER_URL, url);
+    }
+
+    DirContext connect() throws NamingException {
+      return LdapSslSocketFactory.openDirContext(name, environment);
+    }
+
+    /**
+     * Submits a probe unless one is still running; a probe running for more than twice timeout counts as failed.
+     */
+    synchronized Future<?> startProbe(final ExecutorService workers, final long timeout) {
+      if (probing != null && !probing.isDone()) {
+        if (System.nanoTime() - probeStart > TimeUnit.MILLISECONDS.toNanos(2 * timeout)) {
+          markFailed(new ServiceUnavailableException("probe of " + url + " still running after " + 2 * timeout + "ms"));
+        }
+        return probing;
+      }
+      probeStart = System.nanoTime();
+      probing = workers.submit(new Runnable() {
+
+        public void run() {
+          probe(timeout);
+        }
+      });
+      return probing;
+    }
+
+    void probe(final long timeout) {
+      final Hashtable<Object, Object> probeEnvironment = new Hashtable<Object, Object>(environment);
+      probeEnvironment.put(CONNECT_TIMEOUT_PROPERTY, String.valueOf(timeout));
+      probeEnvironment.put(READ_TIMEOUT_PROPERTY, String.valueOf(timeout));
+      final long start = System.nanoTime();
+      DirContext context = null;
+      try {
+        context = LdapSslSocketFactory.openDirContext(name, probeEnvironment);
+        context.getAttributes("", NO_ATTRIBUTES);
+        recordLatency(System.nanoTime() - start);
+      } catch (NamingException ex) {
+        markFailed(ex);
+      } catch (RuntimeException ex) {
+        markFailed(ex);
+      } finally {
+        if (context != null) {
+          try {
+            context.close();
+          } catch (NamingException ex) {
+            LOGGER.log(Level.FINE, "unable to close probe connection to " + url, ex);
+          }
+        }
+      }
+    }
+
+    synchronized void recordLatency(final long nanos) {
+      final long sample = Math.max(1L, nanos);
+      latencyNanos = latencyNanos == 0 ? sample : Math.max(1L, (long) (LATENCY_WEIGHT * sample + (1 - LATENCY_WEIGHT) * latencyNanos));
+      if (!healthy) {
+        LOGGER.log(Level.INFO, "LDAP server {0} is back in rotation", url);
+      }
+      healthy = true;
+    }
+
+    synchronized void markFailed(final Exception ex) {
+      failureCount++;
+      if (healthy) {
+        LOGGER.log(Level.WARNING, "Taking LDAP server " + url + " out of rotation", ex);
+      }
+      healthy = false;
+    }
+
+    /**
+     * URL of the server.
+     *
+     * @return provider URL
+     */
+    public String getUrl() {
+      return url;
+    }
+
+    /**
+     * Whether the server is in rotation.
+     *
+     * @return true when the last probe or connect succeeded
+     */
+    public boolean isHealthy() {
+      return healthy;
+    }
+
+    /**
+     * Moving average of probe latency.
+     *
+     * @return nanoseconds, 0 before the first successful probe
+     */
+    public long getLatencyNanos() {
+      return latencyNanos;
+    }
+
+    /**
+     * Number of failed probes and connects.
+     *
+     * @return failures
+     */
+    public long getFailureCount() {
+      return failureCount;
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuffer(url).append("{healthy=").append(healthy).append(",latencyNanos=").append(latencyNanos).append("}").toString();
+    }
+  }
+}
@@ -0,0 +1,335 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Hashtable;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import javax.net.SocketFactory;
+import javax.net.ssl.*;
+
+/**
+ * Socket factory passed to JNDI through {@value #SOCKET_FACTORY_PROPERTY} for <code>ldaps://</code> connections, so
+ * that the connections of a bound LDAP name share one {@link SSLContext} and resume TLS sessions instead of doing a
+ * full handshake every time.
+ *
+ * JNDI instantiates the factory through the static {@link #getDefault()}, which knows nothing about the bound name;
+ * the name is therefore handed over in a thread local by {@link #openDirContext(String, Hashtable)}, which every
+ * connection opened by the LDAP factory goes through, whichever thread opens it (pool, probes, lazy contexts). JNDI
+ * also opens connections by itself, when it follows a referral or reconnects during an operation; those go to
+ * {@link #getDefault()} without a name and get one shared factory of the JVM default SSLContext, whose sessions and
+ * handshakes aren't counted for any bound name.
+ *
+ * Sessions are cached by the SSLContext; the JDK may invalidate the session of a connection when the connection is
+ * closed while JNDI still reads from it, so connections that are opened and closed one after the other don't reliably
+ * resume. Pooling (see {@link LdapPoolConfiguration}) avoids both the close and the handshake.
+ *
+ * A full handshake verifies the server certificate while a resumed one doesn't, so the trust manager of each context
+ * counts full handshakes and every completed handshake that wasn't verified is counted as resumed.
+ *
+ * @author pdgreen
+ */
+public class LdapSslSocketFactory extends SSLSocketFactory {
+
+  private static final Logger LOGGER = Logger.getLogger(LdapSslSocketFactory.class.getName());
+  static final String SOCKET_FACTORY_PROPERTY = "java.naming.ldap.factory.socket";
+  static final String SSL_KEY_PREFIX = LdapDirContextFactory.RESERVED_KEY_PREFIX + "ssl";
+  static final String SESSION_REUSE_KEY = SSL_KEY_PREFIX + ".sessionReuse";
+  static final String SESSION_CACHE_SIZE_KEY = SSL_KEY_PREFIX + ".sessionCacheSize";
+  static final String SESSION_TIMEOUT_KEY = SSL_KEY_PREFIX + ".sessionTimeout";
+  static final String TRUST_STORE_KEY = SSL_KEY_PREFIX + ".trustStore";
+  static final String TRUST_STORE_PASSWORD_KEY = SSL_KEY_PREFIX + ".trustStorePassword";
+  static final String TRUST_STORE_TYPE_KEY = SSL_KEY_PREFIX + ".trustStoreType";
+  private static final ThreadLocal<String> CURRENT_NAME = new ThreadLocal<String>();
+  private static final ConcurrentMap<String, LdapSslSocketFactory> FACTORIES = new ConcurrentHashMap<String, LdapSslSocketFactory>();
+  private static volatile LdapSslSocketFactory unnamedFactory;
+  private final String name;
+  private final SSLSocketFactory delegate;
+  private final AtomicLong handshakeCount = new AtomicLong();
+  private final AtomicLong fullHandshakeCount;
+  private final HandshakeCompletedListener handshakeListener = new HandshakeCompletedListener() {
+
+    public void handshakeCompleted(final HandshakeCompletedEvent event) {
+      handshakeCount.incrementAndGet();
+    }
+  };
+
+  LdapSslSocketFactory(final String name, final SSLSocketFactory delegate, final AtomicLong fullHandshakeCount) {
+    this.name = name;
+    this.delegate = delegate;
+    this.fullHandshakeCount = fullHandshakeCount;
+  }
+
+  /**
+   * Called by JNDI to obtain the socket factory of a new connection.
+   *
+   * @return factory of the bound name being connected, or the shared one using the default SSLContext for
+   * connections JNDI opens by itself
+   */
+  public static SocketFactory getDefault() {
+    final String name = CURRENT_NAME.get();
+    final LdapSslSocketFactory factory = name == null ? null : FACTORIES.get(name);
+    if (factory != null) {
+      return factory;
+    }
+    LOGGER.log(Level.FINE, "Connection without bound name uses the default SSLContext: {0}", name);
+    if (unnamedFactory == null) {
+      unnamedFactory = new LdapSslSocketFactory(null, (SSLSocketFactory) SSLSocketFactory.getDefault(), new AtomicLong());
+    }
+    return unnamedFactory;
+  }
+
+  /**
+   * Whether connection properties ask for TLS session reuse: the provider URL uses <code>ldaps://</code>, no socket
+   * factory is configured and {@value #SESSION_REUSE_KEY} isn't disabled.
+   *
+   * @param properties LDAP connection properties
+   * @return true when connections should use a shared SSLContext
+   * @throws IllegalArgumentException thrown when a reserved key has an invalid value
+   */
+  static boolean isEnabled(final Properties properties) throws IllegalArgumentException {
+    final String url = properties.getProperty(Context.PROVIDER_URL, "");
+    return PropertiesUtils.getBoolean(properties, SESSION_REUSE_KEY, true)
+            && url.toLowerCase(Locale.ENGLISH).contains("ldaps://")
+            && !properties.containsKey(SOCKET_FACTORY_PROPERTY);
+  }
+
+  /**
+   * Creates the SSLContext of a bound name from the reserved keys and registers its factory, replacing the previous
+   * one.
+   *
+   * @param name JNDI name the LDAP factory is bound to
+   * @param properties LDAP connection properties
+   * @return registered factory
+   * @throws IllegalArgumentException thrown when the SSLContext can't be created
+   */
+  static LdapSslSocketFactory register(final String name, final Properties properties) throws IllegalArgumentException {
+    final LdapSslSocketFactory factory = create(name, properties);
+    FACTORIES.put(name, factory);
+    LOGGER.log(Level.FINE, "Registered TLS socket factory for {0}", name);
+    return factory;
+  }
+
+  /**
+   * Removes the factory of a bound name, unless it has been replaced in the meantime.
+   *
+   * @param factory factory to remove
+   */
+  static void unregister(final LdapSslSocketFactory factory) {
+    FACTORIES.remove(factory.name, factory);
+  }
+
+  static LdapSslSocketFactory create(final String name, final Properties properties) throws IllegalArgumentException {
+    final int cacheSize = PropertiesUtils.getInt(properties, SESSION_CACHE_SIZE_KEY, 0);
+    final int timeout = PropertiesUtils.getInt(properties, SESSION_TIMEOUT_KEY, 86400);
+    if (cacheSize < 0 || timeout < 0) {
+      throw new IllegalArgumentException(SESSION_CACHE_SIZE_KEY + " and " + SESSION_TIMEOUT_KEY + " must not be negative");
+    }
+    try {
+      final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      trustManagerFactory.init(loadTrustStore(properties));
+      final TrustManager[] trustManagers = trustManagerFactory.getTrustManagers();
+      final AtomicLong fullHandshakeCount = new AtomicLong();
+      for (int i = 0; i < trustManagers.length; i++) {
+        if (trustManagers[i] instanceof X509ExtendedTrustManager) {
+          trustManagers[i] = new CountingTrustManager((X509ExtendedTrustManager) trustManagers[i], fullHandshakeCount);
+        }
+      }
+      final SSLContext sslContext = SSLContext.getInstance("TLS");
+      sslContext.init(null, trustManagers, null);
+      sslContext.getClientSessionContext().setSessionCacheSize(cacheSize);
+      sslContext.getClientSessionContext().setSessionTimeout(timeout);
+      return new LdapSslSocketFactory(name, sslContext.getSocketFactory(), fullHandshakeCount);
+    } catch (GeneralSecurityException ex) {
+      throw new IllegalArgumentException("Unable to create SSLContext for " + name, ex);
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Unable to read " + TRUST_STORE_KEY + " of " + name, ex);
+    }
+  }
+
+  private static KeyStore loadTrustStore(final Properties properties) throws GeneralSecurityException, IOException {
+    final String path = properties.getProperty(TRUST_STORE_KEY);
+    if (path == null) {
+      return null;
+    }
+    final KeyStore trustStore = KeyStore.getInstance(properties.getProperty(TRUST_STORE_TYPE_KEY, KeyStore.getDefaultType()));
+    final String password = properties.getProperty(TRUST_STORE_PASSWORD_KEY);
+    final FileInputStream inputStream = new FileInputStream(path);
+    try {
+      trustStore.load(inputStream, password == null ? null : password.toCharArray());
+    } finally {
+      inputStream.close();
+    }
+    return trustStore;
+  }
+
+  /**
+   * Opens a DirContext, making the socket factory of name available to {@link #getDefault()} meanwhile.
+   *
+   * @param name JNDI name the LDAP factory is bound to
+   * @param environment environment of the connection
+   * @return connected DirContext
+   * @throws NamingException thrown when unable to connect
+   */
+  static DirContext openDirContext(final String name, final Hashtable<?, ?> environment) throws NamingException {
+    final String previous = CURRENT_NAME.get();
+    CURRENT_NAME.set(name);
+    try {
+      return new InitialDirContext(environment);
+    } finally {
+      if (previous == null) {
+        CURRENT_NAME.remove();
+      } else {
+        CURRENT_NAME.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Registered factory of a bound name.
+   *
+   * @param name JNDI name the LDAP factory is bound to
+   * @return factory or null when none is registered
+   */
+  public static LdapSslSocketFactory getFactory(final String name) {
+    return FACTORIES.get(name);
+  }
+
+  private Socket watch(final Socket socket) {
+    if (socket instanceof SSLSocket) {
+      ((SSLSocket) socket).addHandshakeCompletedListener(handshakeListener);
+    }
+    return socket;
+  }
+
+  /**
+   * Number of completed handshakes that verified the server certificate.
+   *
+   * @return full handshakes
+   */
+  public long getFullHandshakeCount() {
+    return fullHandshakeCount.get();
+  }
+
+  /**
+   * Number of completed handshakes that resumed a cached session.
+   *
+   * @return resumed handshakes
+   */
+  public long getResumedHandshakeCount() {
+    return Math.max(0L, handshakeCount.get() - fullHandshakeCount.get());
+  }
+
+  @Override
+  public Socket createSocket() throws IOException {
+    return watch(delegate.createSocket());
+  }
+
+  @Override
+  public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+    return watch(delegate.createSocket(socket, host, port, autoClose));
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    return watch(delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+    return watch(delegate.createSocket(host, port, localHost, localPort));
+  }
+
+  @Override
+  public Socket createSocket(InetAddress host, int port) throws IOException {
+    return watch(delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+    return watch(delegate.createSocket(address, port, localAddress, localPort));
+  }
+
+  @Override
+  public String[] getDefaultCipherSuites() {
+    return delegate.getDefaultCipherSuites();
+  }
+
+  @Override
+  public String[] getSupportedCipherSuites() {
+    return delegate.getSupportedCipherSuites();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(LdapSslSocketFactory.class.getName()).append("{name=").append(name).append(",fullHandshakes=").append(fullHandshakeCount).append(",resumedHandshakes=").append(getResumedHandshakeCount()).append("}").toString();
+  }
+
+  /**
+   * Trust manager counting the server certificate checks, i.e. the full handshakes.
+   */
+  private static final class CountingTrustManager extends X509ExtendedTrustManager {
+
+    private final X509ExtendedTrustManager delegate;
+    private final AtomicLong fullHandshakeCount;
+
+    CountingTrustManager(final X509ExtendedTrustManager delegate, final AtomicLong fullHandshakeCount) {
+      this.delegate = delegate;
+      this.fullHandshakeCount = fullHandshakeCount;
+    }
+
+    private void countFullHandshake() {
+      fullHandshakeCount.incrementAndGet();
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+      delegate.checkServerTrusted(chain, authType, socket);
+      countFullHandshake();
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+      delegate.checkServerTrusted(chain, authType, engine);
+      countFullHandshake();
+    }
+
+    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+      delegate.checkServerTrusted(chain, authType);
+      countFullHandshake();
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+      delegate.checkClientTrusted(chain, authType, socket);
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+      delegate.checkClientTrusted(chain, authType, engine);
+    }
+
+    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+      delegate.checkClientTrusted(chain, authType);
+    }
+
+    public X509Certificate[] getAcceptedIssuers() {
+      return delegate.getAcceptedIssuers();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+/**
+ * Entry of a {@link BulkInitializer} manifest: the kind of initializer and its argument.
+ *
+ * @author pdgreen
+ */
+public class ManifestEntry {
+
+  /**
+   * Initializer an entry is meant for.
+   */
+  public enum Type {
+
+    STRING, TYPED, PROPERTIES, LDAP;
+
+    /**
+     * Parses the type keyword of a manifest line.
+     *
+     * @param keyword keyword, case insensitive
+     * @return type
+     * @throws IllegalArgumentException thrown when keyword isn't known
+     */
+    public static Type parse(final String keyword) throws IllegalArgumentException {
+      for (final Type type : values()) {
+        if (type.name().equalsIgnoreCase(keyword)) {
+          return type;
+        }
+      }
+      throw new IllegalArgumentException("Unknown manifest entry type: " + keyword);
+    }
+  }
+  private final Type type;
+  private final String argument;
+  private final String source;
+
+  public ManifestEntry(final Type type, final String argument, final String source) {
+    this.type = type;
+    this.argument = argument;
+    this.source = source;
+  }
+
+  /**
+   * Initializer the entry is meant for.
+   *
+   * @return type
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Argument in the format of the initializer (<code>jndiName=value</code>).
+   *
+   * @return argument
+   */
+  public String getArgument() {
+    return argument;
+  }
+
+  /**
+   * Where the entry was read from, used in reports.
+   *
+   * @return source location
+   */
+  public String getSource() {
+    return source;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(type.name().toLowerCase()).append(" ").append(argument).append(" (").append(source).append(")").toString();
+  }
+}
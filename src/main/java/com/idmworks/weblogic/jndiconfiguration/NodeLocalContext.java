@@ -0,0 +1,43 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import javax.naming.InitialContext;
+
+/**
+ * Node-local counterpart of the context an initializer binds to, used for entries flagged with
+ * {@value JndiUtils#LOCAL_FLAG}. It is created on first use with the environment of the initializer's context and
+ * {@value JndiUtils#REPLICATE_BINDINGS}<code>=false</code>.
+ *
+ * @author pdgreen
+ */
+class NodeLocalContext {
+
+  private final InitialContext initialContext;
+  private final SubcontextCache subcontextCache = new SubcontextCache();
+  private InitialContext localContext;
+
+  NodeLocalContext(final InitialContext initialContext) {
+    this.initialContext = initialContext;
+  }
+
+  /**
+   * Context binding node-locally.
+   *
+   * @return local context
+   * @throws IllegalStateException thrown when the context can't be created
+   */
+  synchronized InitialContext get() throws IllegalStateException {
+    if (localContext == null) {
+      localContext = JndiUtils.createLocalInitialContext(initialContext);
+    }
+    return localContext;
+  }
+
+  /**
+   * Subcontexts confirmed through the local context; kept apart from the replicated ones.
+   *
+   * @return subcontext cache
+   */
+  SubcontextCache getSubcontextCache() {
+    return subcontextCache;
+  }
+}
@@ -0,0 +1,56 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.naming.Name;
+
+/**
+ * Names bound by the initializers of this class loader, so that {@link Shutdown} can unbind them. Subcontexts aren't
+ * recorded since other applications may bind below them.
+ *
+ * @author pdgreen
+ */
+final class OwnedBindings {
+
+  private static final Set<Name> NAMES = new LinkedHashSet<Name>();
+  private static final Set<Name> LOCAL_NAMES = new LinkedHashSet<Name>();
+
+  private OwnedBindings() {
+  }
+
+  /**
+   * Records a name bound (or confirmed to be bound) by an initializer.
+   *
+   * @param name bound name
+   * @param local true when bound node-locally
+   */
+  static synchronized void record(final Name name, final boolean local) {
+    (local ? LOCAL_NAMES : NAMES).add((Name) name.clone());
+  }
+
+  /**
+   * Removes and returns the recorded names, most recently bound first.
+   *
+   * @param local true for the node-local names, false for the others
+   * @return names
+   */
+  static synchronized List<Name> drain(final boolean local) {
+    final Set<Name> names = local ? LOCAL_NAMES : NAMES;
+    final List<Name> drained = new ArrayList<Name>(names);
+    names.clear();
+    Collections.reverse(drained);
+    return drained;
+  }
+
+  /**
+   * Number of recorded names.
+   *
+   * @return names
+   */
+  static synchronized int size() {
+    return NAMES.size() + LOCAL_NAMES.size();
+  }
+}
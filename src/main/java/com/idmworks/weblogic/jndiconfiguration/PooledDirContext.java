@@ -0,0 +1,61 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+/**
+ * {@link DirContext} borrowed from a {@link LdapConnectionPool}; {@link #close()} returns the connection to the pool.
+ * A connection whose environment was changed (for example to authenticate as another user) is closed instead of being
+ * handed to the next borrower.
+ *
+ * @author pdgreen
+ */
+class PooledDirContext extends DelegatingDirContext {
+
+  private final LdapConnectionPool pool;
+  private LdapConnectionPool.Connection connection;
+
+  PooledDirContext(final LdapConnectionPool pool, final LdapConnectionPool.Connection connection) {
+    this.pool = pool;
+    this.connection = connection;
+  }
+
+  @Override
+  protected synchronized DirContext getDelegate() throws NamingException {
+    if (connection == null) {
+      throw new NamingException("DirContext has already been returned to pool " + pool.getName());
+    }
+    return connection.context;
+  }
+
+  @Override
+  public synchronized Object addToEnvironment(final String propName, final Object propVal) throws NamingException {
+    final DirContext delegate = getDelegate();
+    connection.dirty = true;
+    return delegate.addToEnvironment(propName, propVal);
+  }
+
+  @Override
+  public synchronized Object removeFromEnvironment(final String propName) throws NamingException {
+    final DirContext delegate = getDelegate();
+    connection.dirty = true;
+    return delegate.removeFromEnvironment(propName);
+  }
+
+  /**
+   * Returns the connection to the pool; calling close more than once has no effect.
+   *
+   * @throws NamingException never thrown
+   */
+  @Override
+  public void close() throws NamingException {
+    final LdapConnectionPool.Connection released;
+    synchronized (this) {
+      released = connection;
+      connection = null;
+    }
+    if (released != null) {
+      pool.release(released);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.naming.NameParser;
+
+/**
+ * Reads the properties files of a zip or jar archive named by an archive argument
+ * (<code>jndiName/*[:local]=archive[!dir/]</code>) in one sequential pass, one entry at a time.
+ *
+ * The entry <code>dir/name.properties</code> is named <code>jndiName/dir/name</code>. With <code>!dir/</code> only
+ * the entries below <code>dir/</code> are read and <code>dir/</code> is left out of their names, as in a jar URL.
+ * Entries below <code>META-INF/</code> and other files are skipped.
+ *
+ * @author pdgreen
+ */
+final class PropertiesArchive implements Closeable {
+
+  static final String ARCHIVE_WILDCARD = "*";
+  static final String DIRECTORY_SEPARATOR = "!";
+  static final String PROPERTIES_SUFFIX = ".properties";
+  private static final String ARCHIVE_METADATA = "META-INF/";
+  private static final int ARCHIVE_BUFFER_SIZE = 64 * 1024;
+  private final String filename;
+  private final String directory;
+  private final String prefix;
+  private final boolean local;
+  private final ZipInputStream zipInputStream;
+
+  private PropertiesArchive(final String filename, final String directory, final String prefix, final boolean local) throws IOException {
+    this.filename = filename;
+    this.directory = directory;
+    this.prefix = prefix;
+    this.local = local;
+    this.zipInputStream = new ZipInputStream(new BufferedInputStream(new FileInputStream(filename), ARCHIVE_BUFFER_SIZE));
+  }
+
+  /**
+   * Whether argument names an archive (<code>jndiName/*=archive</code>) rather than properties files.
+   *
+   * @param argument argument to check
+   * @return true for an archive
+   */
+  static boolean isArchiveArgument(final String argument) {
+    final String jndiName = JndiUtils.stripLocalFlag(argument.split("=", 2)[0]);
+    return jndiName.equals(ARCHIVE_WILDCARD) || jndiName.endsWith("/" + ARCHIVE_WILDCARD);
+  }
+
+  /**
+   * Archive file named by an archive argument, without the directory inside it.
+   *
+   * @param archiveArgument argument naming the archive
+   * @return archive filename
+   */
+  static String getFilename(final String archiveArgument) {
+    final String source = archiveArgument.split("=", 2)[1];
+    final int separator = source.lastIndexOf(DIRECTORY_SEPARATOR);
+    return separator < 0 ? source : source.substring(0, separator);
+  }
+
+  /**
+   * Opens the archive named by archiveArgument.
+   *
+   * @param archiveArgument argument naming the archive
+   * @return archive positioned before its first entry
+   * @throws IOException thrown when the archive can't be opened
+   */
+  static PropertiesArchive open(final String archiveArgument) throws IOException {
+    final String[] parts = archiveArgument.split("=", 2);
+    final String pattern = JndiUtils.stripLocalFlag(parts[0]);
+    final String filename = getFilename(archiveArgument);
+    final String directory = parts[1].length() == filename.length() ? "" : parts[1].substring(filename.length() + DIRECTORY_SEPARATOR.length());
+    if (directory.length() > 0 && !directory.endsWith("/")) {
+      throw new IllegalArgumentException("Archive directory must end with /: " + archiveArgument);
+    }
+    return new PropertiesArchive(filename, directory, pattern.substring(0, pattern.length() - ARCHIVE_WILDCARD.length()), JndiUtils.isFlaggedLocal(parts[0]));
+  }
+
+  /**
+   * Reads the next properties file of the archive.
+   *
+   * @param nameParser parser to parse JNDI Name
+   * @return properties and the name they are bound at, null after the last one
+   * @throws IOException thrown when the archive can't be read
+   */
+  ValueDescriptor<Properties> next(final NameParser nameParser) throws IOException {
+    for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry()) {
+      final String entryName = entry.getName();
+      if (entry.isDirectory() || !entryName.endsWith(PROPERTIES_SUFFIX) || entryName.startsWith(ARCHIVE_METADATA) || !entryName.startsWith(directory)) {
+        continue;
+      }
+      final String name = entryName.substring(directory.length(), entryName.length() - PROPERTIES_SUFFIX.length());
+      return ValueDescriptor.of(JndiUtils.parseJndiName(nameParser, prefix + name), loadEntry(zipInputStream), local);
+    }
+    return null;
+  }
+
+  private static Properties loadEntry(final InputStream entryStream) throws IOException {
+    final Properties properties = new Properties();
+    properties.load(entryStream);
+    return PropertiesUtils.getStringPool().intern(properties);
+  }
+
+  /**
+   * Archive file being read.
+   *
+   * @return archive filename
+   */
+  String getFilename() {
+    return filename;
+  }
+
+  public void close() throws IOException {
+    zipInputStream.close();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(PropertiesArchive.class.getName()).append("{filename=").append(filename).append(",directory=").append(directory).append(",prefix=").append(prefix).append("}").toString();
+  }
+}
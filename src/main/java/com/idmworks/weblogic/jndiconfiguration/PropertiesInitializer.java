@@ -1,5 +1,6 @@
 package com.idmworks.weblogic.jndiconfiguration;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -8,51 +9,149 @@ import javax.naming.*;
 /**
  * Add {@link Properties} to JNDI in weblogic during startup.
  */
-public class PropertiesInitializer {
+public class PropertiesInitializer extends ValueInitializer<Properties> implements Reinitializer<Properties> {
 
   private static final Logger LOGGER = Logger.getLogger(PropertiesInitializer.class.getName());
-  private final InitialContext initialContext;
+  static final String SNAPSHOT_OPTION = "snapshot";
+  static final String RESOLVE_OPTION = "resolve";
+  private final boolean bindSnapshots;
+  private final boolean resolve;
 
   public PropertiesInitializer(final InitialContext initialContext) {
-    this.initialContext = initialContext;
+    this(initialContext, new SubcontextCache());
+  }
+
+  public PropertiesInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache) {
+    this(initialContext, subcontextCache, InitializerOptions.none());
+  }
+
+  public PropertiesInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache, final InitializerOptions options) {
+    super(initialContext, subcontextCache, options);
+    this.bindSnapshots = options.isEnabled(SNAPSHOT_OPTION);
+    this.resolve = options.isEnabled(RESOLVE_OPTION);
   }
 
   /**
-   * Adds the properties to JNDI as specified in propertiesDescriptor.
+   * Replaces the properties bound in JNDI as specified in propertiesDescriptor and invalidates them in every
+   * {@link CachingContext}.
    *
    * @param propertiesDescriptor properties and JNDI name to use
    */
-  public void initialize(ValueDescriptor<Properties> propertiesDescriptor) {
-    LOGGER.log(Level.FINE, "initializing {0}", propertiesDescriptor);
+  public void reinitialize(ValueDescriptor<Properties> propertiesDescriptor) {
+    LOGGER.log(Level.FINE, "reinitializing {0}", propertiesDescriptor);
     try {
-      JndiUtils.ensureSubcontexts(initialContext, propertiesDescriptor.getJndiName());
-      initialContext.bind(propertiesDescriptor.getJndiName(), propertiesDescriptor.getValue());
-      LOGGER.log(Level.INFO, "Initialized {0}", propertiesDescriptor);
+      final Context context = getContext(propertiesDescriptor);
+      if (isRebindChanged()) {
+        FingerprintBinder.bind(context, propertiesDescriptor.getJndiName(), toBoundValue(propertiesDescriptor.getValue()), true);
+      } else {
+        context.rebind(propertiesDescriptor.getJndiName(), toBoundValue(propertiesDescriptor.getValue()));
+        CachingContext.invalidateCaches(propertiesDescriptor.getJndiName());
+      }
+      LOGGER.log(Level.INFO, "Reinitialized {0}", propertiesDescriptor);
     } catch (NamingException e) {
-      throw new IllegalArgumentException("Unable to bind " + propertiesDescriptor, e);
+      throw new IllegalArgumentException("Unable to rebind " + propertiesDescriptor, e);
+    }
+  }
+
+  /**
+   * Binds every properties file of a zip or jar archive, as specified by archiveArgument
+   * (<code>jndiName/*[:local]=archive[!dir/]</code>, see {@link PropertiesArchive}): the entry
+   * <code>dir/name.properties</code> is bound at <code>jndiName/dir/name</code>. The archive is read in one sequential
+   * pass and each entry is bound as soon as it is read. With <code>-resolve</code> the placeholders of each entry are
+   * resolved against its own keys, system properties and names bound earlier, including previous entries of the
+   * archive.
+   *
+   * @param nameParser parser to parse JNDI Name
+   * @param archiveArgument argument naming the archive
+   * @return number of entries bound
+   * @throws IllegalArgumentException thrown when the archive can't be read or an entry can't be bound
+   */
+  public int initializeArchive(final NameParser nameParser, final String archiveArgument) throws IllegalArgumentException {
+    final long start = System.nanoTime();
+    final String filename = PropertiesArchive.getFilename(archiveArgument);
+    int bound = 0;
+    try {
+      final PropertiesArchive archive = PropertiesArchive.open(archiveArgument);
+      try {
+        for (ValueDescriptor<Properties> propertiesDescriptor = archive.next(nameParser); propertiesDescriptor != null; propertiesDescriptor = archive.next(nameParser)) {
+          if (resolve) {
+            propertiesDescriptor = PropertiesResolver.resolve(Collections.singletonList(propertiesDescriptor), getInitialContext()).get(0);
+          }
+          initialize(propertiesDescriptor);
+          bound++;
+        }
+      } finally {
+        archive.close();
+      }
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Unable to read archive " + filename, ex);
     }
+    LOGGER.log(Level.INFO, "Initialized {0} entries of {1} in {2}ms", new Object[]{bound, filename, (System.nanoTime() - start) / 1000000L});
+    return bound;
+  }
+
+  /**
+   * With <code>-snapshot</code> an immutable {@link PropertiesSnapshot} of the properties is bound instead.
+   */
+  @Override
+  protected Object toBoundValue(final Properties properties) {
+    return bindSnapshots ? PropertiesSnapshot.of(properties) : properties;
   }
 
   /**
-   * Parse arguments (jndiName=propertiesFile) and loads propertiesFile into JNDI.
+   * Parse arguments ([-snapshot] [-rebind] [-local] [-resolve | -watch [-watchDebounce=millis]]
+   * (jndiName[:local]=propertiesFile[|propertiesFile]* | jndiName/*[:local]=archive[!dir/])*) and loads propertiesFile into
+   * JNDI. Several files separated by {@link PropertiesUtils#LAYER_SEPARATOR} are layers, merged in order; the properties files of an archive are bound
+   * after the other arguments (see {@link #initializeArchive(NameParser, String)}). With <code>-snapshot</code> immutable {@link PropertiesSnapshot}s are bound
+   * instead of {@link Properties}; with <code>-rebind</code> existing bindings are replaced when their content
+   * changed; with <code>-local</code>, or per entry with <code>:local</code>, they are bound on this server only; with
+   * <code>-resolve</code> placeholders are resolved before binding (see {@link PropertiesResolver}); with
+   * <code>-watch</code> the files are watched and rebound when they change.
    *
    * @param args
    */
   public static void main(final String[] args) {
-    final Hashtable<String, String> ht = new Hashtable<String, String>();
-    ht.put(Context.INITIAL_CONTEXT_FACTORY, "weblogic.jndi.WLInitialContextFactory");
+    final long start = System.nanoTime();
+    final InitializerOptions options = InitializerOptions.parse(args);
+    final boolean resolve = options.isEnabled(RESOLVE_OPTION);
+    if (resolve && options.isEnabled(PropertiesWatcher.WATCH_OPTION)) {
+      throw new IllegalArgumentException("-" + RESOLVE_OPTION + " can't be combined with -" + PropertiesWatcher.WATCH_OPTION
+              + ": reloaded files would be bound unresolved");
+    }
+    final Hashtable<String, String> ht = JndiUtils.createEnvironment(options);
     final InitialContext initialContext = JndiUtils.createInitialContext(ht);
     final NameParser nameParser = JndiUtils.createNameParser(initialContext);
 
-    final PropertiesInitializer propertiesInitializer = new PropertiesInitializer(initialContext);
+    final PropertiesInitializer propertiesInitializer = new PropertiesInitializer(initialContext, new SubcontextCache(), options);
 
-    for (final ValueDescriptor<Properties> propertiesDescriptor : parse(nameParser, args)) {
+    final List<String> fileArguments = new ArrayList<String>();
+    final List<String> archiveArguments = new ArrayList<String>();
+    for (final String argument : options.getArguments()) {
+      (PropertiesArchive.isArchiveArgument(argument) ? archiveArguments : fileArguments).add(argument);
+    }
+    final String[] fileArgumentArray = fileArguments.toArray(new String[fileArguments.size()]);
+    final List<ValueDescriptor<Properties>> parsedDescriptors = parse(nameParser, fileArgumentArray);
+    final List<ValueDescriptor<Properties>> propertiesDescriptors = resolve ? PropertiesResolver.resolve(parsedDescriptors, initialContext) : parsedDescriptors;
+    for (final ValueDescriptor<Properties> propertiesDescriptor : propertiesDescriptors) {
       propertiesInitializer.initialize(propertiesDescriptor);
     }
+    for (final String archiveArgument : archiveArguments) {
+      propertiesInitializer.initializeArchive(nameParser, archiveArgument);
+    }
+    LOGGER.log(Level.INFO, "Ensured subcontexts: {0}", propertiesInitializer.getSubcontextCache());
+    JndiConfigurationMetrics.get().recordMain(PropertiesInitializer.class, System.nanoTime() - start);
+
+    if (options.isEnabled(PropertiesWatcher.WATCH_OPTION)) {
+      if (!archiveArguments.isEmpty()) {
+        LOGGER.log(Level.WARNING, "Archives aren't watched: {0}", archiveArguments);
+      }
+      PropertiesWatcher.watch(options, fileArgumentArray, propertiesDescriptors, propertiesInitializer);
+    }
   }
 
   /**
-   * Parse input arguments
+   * Parse input arguments; the properties files are loaded concurrently, each file once even when several entries
+   * layer it. A name ending with {@value JndiUtils#LOCAL_FLAG} is bound node-locally. Archives aren't accepted.
    *
    * @param nameParser parser to parse JNDI Name
    * @param args args to parse
@@ -60,12 +159,40 @@ public class PropertiesInitializer {
    * @throws IllegalArgumentException thrown when args can't be parsed
    */
   static List<ValueDescriptor<Properties>> parse(final NameParser nameParser, final String[] args) throws IllegalArgumentException {
+    final List<Name> jndiNames = new ArrayList<Name>(args.length);
+    final List<List<String>> layers = new ArrayList<List<String>>(args.length);
+    final Map<String, Integer> fileIndexes = new LinkedHashMap<String, Integer>();
+    final boolean[] local = new boolean[args.length];
+    for (int i = 0; i < args.length; i++) {
+      if (PropertiesArchive.isArchiveArgument(args[i])) {
+        throw new IllegalArgumentException("Archives are bound by initializeArchive: " + args[i]);
+      }
+      final String[] parts = args[i].split("=", 2);
+      jndiNames.add(JndiUtils.parseJndiName(nameParser, JndiUtils.stripLocalFlag(parts[0])));
+      layers.add(PropertiesUtils.splitLayers(parts[1]));
+      for (final String filename : layers.get(i)) {
+        if (!fileIndexes.containsKey(filename)) {
+          fileIndexes.put(filename, fileIndexes.size());
+        }
+      }
+      local[i] = JndiUtils.isFlaggedLocal(parts[0]);
+    }
+    final List<Properties> loadedProperties = PropertiesUtils.loadProperties(new ArrayList<String>(fileIndexes.keySet()));
+    final boolean[] used = new boolean[loadedProperties.size()];
     final List<ValueDescriptor<Properties>> propertiesDescriptors = new ArrayList<ValueDescriptor<Properties>>(args.length);
-    for (String arg : args) {
-      final String[] parts = arg.split("=", 2);
-      final Name jndiName = JndiUtils.parseJndiName(nameParser, parts[0]);
-      final Properties properties = PropertiesUtils.loadProperties(parts[1]);
-      propertiesDescriptors.add(ValueDescriptor.of(jndiName, properties));
+    for (int i = 0; i < args.length; i++) {
+      final List<Properties> entryLayers = new ArrayList<Properties>(layers.get(i).size());
+      for (final String filename : layers.get(i)) {
+        entryLayers.add(loadedProperties.get(fileIndexes.get(filename)));
+      }
+      Properties properties = PropertiesUtils.mergeLayers(entryLayers);
+      if (entryLayers.size() == 1) {
+        //each binding gets its own instance, as when the file was loaded per entry
+        final int index = fileIndexes.get(layers.get(i).get(0));
+        properties = used[index] ? (Properties) properties.clone() : properties;
+        used[index] = true;
+      }
+      propertiesDescriptors.add(ValueDescriptor.of(jndiNames.get(i), properties, local[i]));
     }
     return propertiesDescriptors;
   }
@@ -0,0 +1,240 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.Context;
+import javax.naming.NamingException;
+
+/**
+ * Resolves <code>${...}</code> placeholders of properties once, before they are bound, so that applications read plain
+ * values.
+ *
+ * <code>${key}</code> is replaced by the value of key in the same properties, or else by the system property key.
+ * Unless the same properties have such a key, <code>${jndiName#key}</code> is replaced by the value of key in the
+ * properties resolved for jndiName, or else in the {@link Properties} (or other {@link Map}) bound at jndiName. Every
+ * key is resolved once, without recursion, so resolving takes time linear in the size of the properties and the
+ * resolved values; cyclic placeholders are rejected.
+ *
+ * @author pdgreen
+ */
+final class PropertiesResolver {
+
+  private static final Logger LOGGER = Logger.getLogger(PropertiesResolver.class.getName());
+  static final String PLACEHOLDER_PREFIX = "${";
+  static final char PLACEHOLDER_SUFFIX = '}';
+  static final char ENTRY_SEPARATOR = '#';
+  private final Map<String, Properties> entries = new HashMap<String, Properties>();
+  private final Context context;
+  private final Map<String, Object> boundEntries = new HashMap<String, Object>();
+  private final Map<Key, String> resolved = new HashMap<Key, String>();
+  private final Set<Key> resolving = new HashSet<Key>();
+
+  private PropertiesResolver(final List<ValueDescriptor<Properties>> propertiesDescriptors, final Context context) {
+    for (final ValueDescriptor<Properties> propertiesDescriptor : propertiesDescriptors) {
+      entries.put(propertiesDescriptor.getJndiName().toString(), propertiesDescriptor.getValue());
+    }
+    this.context = context;
+  }
+
+  /**
+   * Resolves the placeholders of all properties.
+   *
+   * @param propertiesDescriptors properties to resolve, which may refer to each other by JNDI name
+   * @param context context properties bound earlier are looked up in; may be null
+   * @return descriptors with resolved properties, in the same order
+   * @throws IllegalArgumentException thrown when a placeholder can't be resolved or is part of a cycle
+   */
+  static List<ValueDescriptor<Properties>> resolve(final List<ValueDescriptor<Properties>> propertiesDescriptors, final Context context) throws IllegalArgumentException {
+    final long start = System.nanoTime();
+    final PropertiesResolver resolver = new PropertiesResolver(propertiesDescriptors, context);
+    final List<ValueDescriptor<Properties>> resolvedDescriptors = new ArrayList<ValueDescriptor<Properties>>(propertiesDescriptors.size());
+    for (final ValueDescriptor<Properties> propertiesDescriptor : propertiesDescriptors) {
+      final String entry = propertiesDescriptor.getJndiName().toString();
+      final Properties properties = new Properties();
+      for (final String key : propertiesDescriptor.getValue().stringPropertyNames()) {
+        properties.setProperty(key, resolver.resolve(new Key(entry, key)));
+      }
+      resolvedDescriptors.add(ValueDescriptor.of(propertiesDescriptor.getJndiName(), PropertiesUtils.getStringPool().intern(properties), propertiesDescriptor.isLocal()));
+    }
+    LOGGER.log(Level.FINE, "Resolved {0} values in {1}ns", new Object[]{resolver.resolved.size(), System.nanoTime() - start});
+    return resolvedDescriptors;
+  }
+
+  private String resolve(final Key root) {
+    String completed = resolved.get(root);
+    if (completed != null) {
+      return completed;
+    }
+    final Deque<Frame> frames = new ArrayDeque<Frame>();
+    push(frames, root);
+    while (!frames.isEmpty()) {
+      final Frame frame = frames.peek();
+      if (completed != null) {
+        frame.value.append(completed);
+        completed = null;
+      }
+      final Key next = advance(frame);
+      if (next != null) {
+        push(frames, next);
+      } else {
+        frames.pop();
+        resolving.remove(frame.key);
+        completed = frame.value.toString();
+        resolved.put(frame.key, completed);
+      }
+    }
+    return completed;
+  }
+
+  private void push(final Deque<Frame> frames, final Key key) {
+    if (!resolving.add(key)) {
+      final StringBuilder cycle = new StringBuilder();
+      for (final Iterator<Frame> iterator = frames.descendingIterator(); iterator.hasNext();) {
+        cycle.append(iterator.next().key).append(" -> ");
+      }
+      throw new IllegalArgumentException("Cyclic placeholders: " + cycle.append(key));
+    }
+    frames.push(new Frame(key, entries.get(key.entry).getProperty(key.name)));
+  }
+
+  /**
+   * Appends the value of frame up to the next placeholder that refers to a key not resolved yet.
+   *
+   * @return key to resolve first or null when the value of frame is complete
+   */
+  private Key advance(final Frame frame) {
+    final String raw = frame.raw;
+    while (true) {
+      final int start = raw.indexOf(PLACEHOLDER_PREFIX, frame.position);
+      if (start < 0) {
+        frame.value.append(raw, frame.position, raw.length());
+        frame.position = raw.length();
+        return null;
+      }
+      final int end = raw.indexOf(PLACEHOLDER_SUFFIX, start + PLACEHOLDER_PREFIX.length());
+      if (end < 0) {
+        throw new IllegalArgumentException("Unterminated placeholder in " + frame.key + ": " + raw);
+      }
+      frame.value.append(raw, frame.position, start);
+      frame.position = end + 1;
+      final String placeholder = raw.substring(start + PLACEHOLDER_PREFIX.length(), end);
+      final Key target = toKey(frame.key, placeholder);
+      if (target == null) {
+        frame.value.append(resolveOutside(frame.key, placeholder));
+        continue;
+      }
+      final String value = resolved.get(target);
+      if (value == null) {
+        return target;
+      }
+      frame.value.append(value);
+    }
+  }
+
+  /**
+   * Key of the properties being resolved that placeholder refers to.
+   *
+   * @return key or null when placeholder refers to a system property or to properties bound earlier
+   */
+  private Key toKey(final Key referrer, final String placeholder) {
+    if (entries.get(referrer.entry).getProperty(placeholder) != null) {
+      return new Key(referrer.entry, placeholder);
+    }
+    final int separator = placeholder.lastIndexOf(ENTRY_SEPARATOR);
+    if (separator < 0) {
+      return null;
+    }
+    final String entry = placeholder.substring(0, separator);
+    final Properties properties = entries.get(entry);
+    if (properties == null) {
+      return null;
+    }
+    final String name = placeholder.substring(separator + 1);
+    if (properties.getProperty(name) == null) {
+      throw new IllegalArgumentException("Unable to resolve ${" + placeholder + "} in " + referrer + ": " + entry + " has no " + name);
+    }
+    return new Key(entry, name);
+  }
+
+  private String resolveOutside(final Key referrer, final String placeholder) {
+    final int separator = placeholder.lastIndexOf(ENTRY_SEPARATOR);
+    final Object value;
+    if (separator < 0) {
+      value = System.getProperty(placeholder);
+    } else {
+      final Object bound = lookup(referrer, placeholder.substring(0, separator));
+      value = bound instanceof Map ? ((Map<?, ?>) bound).get(placeholder.substring(separator + 1)) : null;
+    }
+    if (value == null) {
+      throw new IllegalArgumentException("Unable to resolve ${" + placeholder + "} in " + referrer);
+    }
+    return value.toString();
+  }
+
+  private Object lookup(final Key referrer, final String entry) {
+    if (boundEntries.containsKey(entry)) {
+      return boundEntries.get(entry);
+    }
+    if (context == null) {
+      throw new IllegalArgumentException("Unable to resolve " + entry + " for " + referrer + ": nothing is bound yet");
+    }
+    try {
+      final Object bound = context.lookup(entry);
+      boundEntries.put(entry, bound);
+      return bound;
+    } catch (NamingException ex) {
+      throw new IllegalArgumentException("Unable to look up " + entry + " for " + referrer, ex);
+    }
+  }
+
+  /**
+   * Key of the properties bound at a JNDI name.
+   */
+  private static final class Key {
+
+    final String entry;
+    final String name;
+
+    Key(final String entry, final String name) {
+      this.entry = entry;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return entry.equals(other.entry) && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * entry.hashCode() + name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return entry + ENTRY_SEPARATOR + name;
+    }
+  }
+
+  /**
+   * Value being resolved.
+   */
+  private static final class Frame {
+
+    final Key key;
+    final String raw;
+    final StringBuilder value;
+    int position;
+
+    Frame(final Key key, final String raw) {
+      this.key = key;
+      this.raw = raw;
+      this.value = new StringBuilder(raw.length());
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Immutable, read-optimized copy of {@link Properties}.
+ *
+ * Keys and values are stored next to each other in a single open-addressing table (linear probing), so there are no
+ * per-entry objects and reads need no locking. Entries handed out while iterating are created on demand.
+ *
+ * @author pdgreen
+ */
+public final class PropertiesSnapshot extends AbstractMap<String, String> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+  private final Object[] table;
+  private final int mask;
+  private final int shift;
+  private final int size;
+
+  private PropertiesSnapshot(final Properties properties) {
+    final Set<String> keys = properties.stringPropertyNames();
+    int capacity = 2;
+    while (capacity < keys.size() * 2) {
+      capacity <<= 1;
+    }
+    this.table = new Object[capacity * 2];
+    this.mask = capacity - 1;
+    this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    for (final String key : keys) {
+      int index = slot(key);
+      while (table[index << 1] != null) {
+        index = (index + 1) & mask;
+      }
+      table[index << 1] = key;
+      table[(index << 1) + 1] = properties.getProperty(key);
+    }
+    this.size = keys.size();
+  }
+
+  /**
+   * Creates a snapshot of the string keys and values of properties, including their defaults.
+   *
+   * @param properties properties to copy
+   * @return snapshot
+   */
+  public static PropertiesSnapshot of(final Properties properties) {
+    return new PropertiesSnapshot(properties);
+  }
+
+  /**
+   * Fibonacci hashing: spreads similar hash codes (such as those of keys sharing a prefix) over the table.
+   */
+  private int slot(final Object key) {
+    return (key.hashCode() * 0x9E3779B9) >>> shift;
+  }
+
+  private int indexOf(final Object key) {
+    if (key == null) {
+      return -1;
+    }
+    int index = slot(key);
+    Object candidate;
+    while ((candidate = table[index << 1]) != null) {
+      if (candidate.equals(key)) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  @Override
+  public String get(final Object key) {
+    final int index = indexOf(key);
+    return index < 0 ? null : (String) table[(index << 1) + 1];
+  }
+
+  /**
+   * Same as {@link #get(Object)}, named like {@link Properties#getProperty(String)}.
+   *
+   * @param key key of the property
+   * @return value or null
+   */
+  public String getProperty(final String key) {
+    return get(key);
+  }
+
+  /**
+   * Same as {@link Properties#getProperty(String, String)}.
+   *
+   * @param key key of the property
+   * @param defaultValue value returned when key isn't present
+   * @return value or defaultValue
+   */
+  public String getProperty(final String key, final String defaultValue) {
+    final String value = get(key);
+    return value == null ? defaultValue : value;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Set<Map.Entry<String, String>> entrySet() {
+    return new AbstractSet<Map.Entry<String, String>>() {
+
+      @Override
+      public Iterator<Map.Entry<String, String>> iterator() {
+        return new Iterator<Map.Entry<String, String>>() {
+
+          private int next = advance(0);
+
+          private int advance(int index) {
+            while (index <= mask && table[index << 1] == null) {
+              index++;
+            }
+            return index;
+          }
+
+          public boolean hasNext() {
+            return next <= mask;
+          }
+
+          public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            final Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<String, String>((String) table[next << 1], (String) table[(next << 1) + 1]);
+            next = advance(next + 1);
+            return entry;
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException("PropertiesSnapshot is immutable");
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Copies the snapshot back into mutable properties.
+   *
+   * @return properties with the same keys and values
+   */
+  public Properties toProperties() {
+    final Properties properties = new Properties();
+    properties.putAll(this);
+    return properties;
+  }
+}
@@ -1,10 +1,18 @@
 package com.idmworks.weblogic.jndiconfiguration;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Common methods when dealing with {@link Properties}.
@@ -13,8 +21,32 @@ import java.util.Properties;
  */
 public class PropertiesUtils {
 
+  private static final Logger LOGGER = Logger.getLogger(PropertiesUtils.class.getName());
+  private static final int MAX_LOADER_THREADS = 16;
   /**
-   * Loads properties specified at filename
+   * Lists of at most this many files are loaded on the calling thread; handing them to the loader threads costs more
+   * than it saves.
+   */
+  static final int MAX_SERIAL_LOAD = 4;
+  private static final long LOADER_KEEP_ALIVE_SECONDS = 30L;
+  private static final ThreadPoolExecutor LOADERS = createLoaderExecutor();
+  private static final ByteBufferPool BUFFERS = new ByteBufferPool(64 * 1024, MAX_LOADER_THREADS);
+  private static final StringPool STRINGS = new StringPool();
+  /**
+   * Separates the layers of a properties source on every platform, e.g.
+   * <code>base.properties|test.properties|node1.properties</code>. It can't be part of a filename on Windows and
+   * doesn't clash with the colons of <code>:local</code> or of drive letters; elsewhere a <code>|</code> that is part
+   * of a filename is escaped as {@value #LAYER_ESCAPE}.
+   */
+  public static final String LAYER_SEPARATOR = "|";
+  /**
+   * {@link #LAYER_SEPARATOR} that is part of a filename.
+   */
+  public static final String LAYER_ESCAPE = "\\|";
+
+  /**
+   * Loads properties specified at filename. Keys and values are interned in a shared {@link StringPool}, so strings
+   * repeated across files are kept once.
    *
    * @param filename name of properties file
    * @return properties loaded from filename
@@ -24,12 +56,256 @@ public class PropertiesUtils {
     final File file = new File(filename);
     final Properties properties = new Properties();
     try {
-      properties.load(new FileInputStream(file));
+      properties.load(new ByteArrayInputStream(readFile(file)));
     } catch (FileNotFoundException ex) {
       throw new IllegalArgumentException("File not found: " + file, ex);
     } catch (IOException ex) {
       throw new IllegalArgumentException("Unable to load properties: " + file, ex);
     }
-    return properties;
+    return STRINGS.intern(properties);
+  }
+
+  /**
+   * Pool the keys and values of loaded properties are interned in.
+   *
+   * @return string pool
+   */
+  public static StringPool getStringPool() {
+    return STRINGS;
+  }
+
+  /**
+   * Loads the properties of all files concurrently, on a shared pool of at most 16 threads that end once idle. Short
+   * lists (see {@link #MAX_SERIAL_LOAD}) are loaded on the calling thread.
+   *
+   * @param filenames names of properties files
+   * @return properties in the order of filenames
+   * @throws IllegalArgumentException thrown when a filename is invalid
+   */
+  public static List<Properties> loadProperties(final List<String> filenames) throws IllegalArgumentException {
+    final List<Properties> loaded = new ArrayList<Properties>(filenames.size());
+    if (filenames.size() <= MAX_SERIAL_LOAD) {
+      for (final String filename : filenames) {
+        loaded.add(loadProperties(filename));
+      }
+      return loaded;
+    }
+    final List<Future<Properties>> futures = new ArrayList<Future<Properties>>(filenames.size());
+    try {
+      for (final String filename : filenames) {
+        futures.add(LOADERS.submit(new Callable<Properties>() {
+
+          public Properties call() {
+            return loadProperties(filename);
+          }
+        }));
+      }
+      for (final Future<Properties> future : futures) {
+        loaded.add(future.get());
+      }
+      return loaded;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while loading properties", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw new IllegalStateException("unable to load properties", ex.getCause());
+    } finally {
+      for (final Future<Properties> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Pool shared by all calls of {@link #loadProperties(List)}.
+   *
+   * @return loader executor
+   */
+  static ThreadPoolExecutor getLoaderExecutor() {
+    return LOADERS;
+  }
+
+  private static ThreadPoolExecutor createLoaderExecutor() {
+    final ThreadFactory threadFactory = new ThreadFactory() {
+
+      private int count;
+
+      public synchronized Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "properties-loader-" + ++count);
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_LOADER_THREADS, MAX_LOADER_THREADS, LOADER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Splits a properties source into the filenames of its layers; a single filename is a source with one layer.
+   * Filenames are kept as is, including colons, commas and surrounding spaces; only {@link #LAYER_ESCAPE} is replaced
+   * by {@link #LAYER_SEPARATOR}.
+   *
+   * @param filenames filenames separated by {@link #LAYER_SEPARATOR}
+   * @return filenames from base to most specific layer
+   * @throws IllegalArgumentException thrown when a layer is empty
+   */
+  public static List<String> splitLayers(final String filenames) throws IllegalArgumentException {
+    final List<String> layers = new ArrayList<String>();
+    final StringBuilder filename = new StringBuilder(filenames.length());
+    for (int i = 0; i <= filenames.length(); i++) {
+      if (filenames.startsWith(LAYER_ESCAPE, i)) {
+        filename.append(LAYER_SEPARATOR);
+        i += LAYER_ESCAPE.length() - 1;
+      } else if (i < filenames.length() && !filenames.startsWith(LAYER_SEPARATOR, i)) {
+        filename.append(filenames.charAt(i));
+      } else if (filename.length() == 0) {
+        throw new IllegalArgumentException("Empty layer in properties source: " + filenames);
+      } else {
+        layers.add(filename.toString());
+        filename.setLength(0);
+      }
+    }
+    return layers;
+  }
+
+  /**
+   * Merges layers of properties; a key of a later layer overrides the same key of earlier layers. A single layer is
+   * returned as is.
+   *
+   * @param layers properties from base to most specific layer
+   * @return merged properties
+   */
+  public static Properties mergeLayers(final List<Properties> layers) {
+    if (layers.size() == 1) {
+      return layers.get(0);
+    }
+    final Properties merged = new Properties();
+    for (final Properties layer : layers) {
+      merged.putAll(layer);
+    }
+    return merged;
+  }
+
+  /**
+   * Loads the layers of a properties source concurrently and merges them.
+   *
+   * @param filenames filenames separated by {@link #LAYER_SEPARATOR}
+   * @return merged properties
+   * @throws IllegalArgumentException thrown when a filename is invalid
+   */
+  public static Properties loadLayeredProperties(final String filenames) throws IllegalArgumentException {
+    return mergeLayers(loadProperties(splitLayers(filenames)));
+  }
+
+  /**
+   * Reads the content of file through its channel, using a pooled buffer when the file fits.
+   *
+   * @param file file to read
+   * @return content of file
+   * @throws IOException thrown when file can't be read
+   */
+  static byte[] readFile(final File file) throws IOException {
+    final FileInputStream inputStream = new FileInputStream(file);
+    try {
+      final FileChannel channel = inputStream.getChannel();
+      final long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File too large: " + file);
+      }
+      final boolean pooled = size < BUFFERS.getBufferSize();
+      ByteBuffer buffer = pooled ? BUFFERS.acquire() : ByteBuffer.allocate((int) size + 1);
+      try {
+        while (channel.read(buffer) >= 0) {
+          if (!buffer.hasRemaining()) {
+            final ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            BUFFERS.release(buffer);
+            buffer = larger;
+          }
+        }
+        final byte[] content = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(content);
+        return content;
+      } finally {
+        BUFFERS.release(buffer);
+      }
+    } finally {
+      try {
+        inputStream.close();
+      } catch (IOException ex) {
+        LOGGER.log(Level.FINE, "unable to close " + file, ex);
+      }
+    }
+  }
+
+  /**
+   * Reads an integer property.
+   *
+   * @param properties properties to read from
+   * @param key key of the property
+   * @param defaultValue value used when the property is not set
+   * @return parsed value or defaultValue
+   * @throws IllegalArgumentException thrown when the property isn't an integer
+   */
+  public static int getInt(final Properties properties, final String key, final int defaultValue) throws IllegalArgumentException {
+    final String value = properties.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException(key + " must be an integer: " + value, ex);
+    }
+  }
+
+  /**
+   * Reads a long property.
+   *
+   * @param properties properties to read from
+   * @param key key of the property
+   * @param defaultValue value used when the property is not set
+   * @return parsed value or defaultValue
+   * @throws IllegalArgumentException thrown when the property isn't a long
+   */
+  public static long getLong(final Properties properties, final String key, final long defaultValue) throws IllegalArgumentException {
+    final String value = properties.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException(key + " must be a long: " + value, ex);
+    }
+  }
+
+  /**
+   * Reads a boolean property; only <code>true</code> and <code>false</code> are accepted.
+   *
+   * @param properties properties to read from
+   * @param key key of the property
+   * @param defaultValue value used when the property is not set
+   * @return parsed value or defaultValue
+   * @throws IllegalArgumentException thrown when the property isn't a boolean
+   */
+  public static boolean getBoolean(final Properties properties, final String key, final boolean defaultValue) throws IllegalArgumentException {
+    final String value = properties.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    final String trimmed = value.trim();
+    if ("true".equalsIgnoreCase(trimmed)) {
+      return true;
+    } else if ("false".equalsIgnoreCase(trimmed)) {
+      return false;
+    }
+    throw new IllegalArgumentException(key + " must be true or false: " + value);
   }
 }
@@ -0,0 +1,379 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.Name;
+
+/**
+ * Watches properties files bound by an initializer and rebinds the names loaded from a file when its content changes.
+ *
+ * Events are debounced per file: a burst of writes results in a single reload once the file has been quiet for the
+ * debounce period. Only the changed file is loaded again, along with the other layers of a layered source, and names
+ * are only rebound when the loaded properties differ from the ones bound.
+ *
+ * @author pdgreen
+ */
+public class PropertiesWatcher implements Closeable {
+
+  private static final Logger LOGGER = Logger.getLogger(PropertiesWatcher.class.getName());
+  static final String WATCH_OPTION = "watch";
+  static final String WATCH_DEBOUNCE_OPTION = "watchDebounce";
+  static final long DEFAULT_DEBOUNCE = 500L;
+  private static final Set<PropertiesWatcher> WATCHERS = Collections.newSetFromMap(new ConcurrentHashMap<PropertiesWatcher, Boolean>());
+  private final long debounce;
+  private final WatchService watchService;
+  private final Map<List<Path>, WatchedFile> files = new ConcurrentHashMap<List<Path>, WatchedFile>();
+  private final Map<Path, List<WatchedFile>> filesByLayer = new ConcurrentHashMap<Path, List<WatchedFile>>();
+  private final Set<Path> directories = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+  private final ScheduledExecutorService reloadExecutor;
+  private final Thread watchThread;
+  private final AtomicLong reloadCount = new AtomicLong();
+  private final AtomicLong unchangedCount = new AtomicLong();
+  private final AtomicLong rebindCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final AtomicLong totalReloadNanos = new AtomicLong();
+  private volatile long lastReloadNanos;
+  private volatile long lastReloadLatencyNanos;
+  private volatile boolean closed;
+
+  /**
+   * Creates a watcher; nothing is watched until {@link #watch(String, Name, Properties, Reinitializer)} is called.
+   *
+   * @param debounce milliseconds a file has to stay unchanged before it is reloaded
+   * @throws IOException thrown when the file system can't be watched
+   */
+  public PropertiesWatcher(final long debounce) throws IOException {
+    this.debounce = debounce;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.reloadExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "properties-watcher-reload");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.watchThread = new Thread(new Runnable() {
+
+      public void run() {
+        processEvents();
+      }
+    }, "properties-watcher");
+    this.watchThread.setDaemon(true);
+    this.watchThread.start();
+    WATCHERS.add(this);
+  }
+
+  /**
+   * Watches the properties of the descriptors, which were loaded from the arguments of options in the same order.
+   * Failure to set up watching is logged; the bindings made so far stay in place.
+   *
+   * @param options options and arguments (jndiName=propertiesFile[|propertiesFile]*) the descriptors were parsed from
+   * @param propertiesDescriptors descriptors that have been bound
+   * @param reinitializer rebinds changed properties
+   * @return watcher or null when watching couldn't be set up
+   */
+  static PropertiesWatcher watch(final InitializerOptions options, final List<ValueDescriptor<Properties>> propertiesDescriptors,
+          final Reinitializer<Properties> reinitializer) {
+    return watch(options, options.getArguments(), propertiesDescriptors, reinitializer);
+  }
+
+  /**
+   * Watches the properties of the descriptors, which were loaded from args in the same order.
+   *
+   * @param options options of the watcher
+   * @param args arguments (jndiName=propertiesFile[|propertiesFile]*) the descriptors were parsed from
+   * @param propertiesDescriptors descriptors that have been bound
+   * @param reinitializer rebinds changed properties
+   * @return watcher or null when watching couldn't be set up
+   */
+  static PropertiesWatcher watch(final InitializerOptions options, final String[] args, final List<ValueDescriptor<Properties>> propertiesDescriptors,
+          final Reinitializer<Properties> reinitializer) {
+    try {
+      final PropertiesWatcher watcher = new PropertiesWatcher(options.getLong(WATCH_DEBOUNCE_OPTION, DEFAULT_DEBOUNCE));
+      for (int i = 0; i < propertiesDescriptors.size(); i++) {
+        final ValueDescriptor<Properties> propertiesDescriptor = propertiesDescriptors.get(i);
+        watcher.watch(args[i].split("=", 2)[1], propertiesDescriptor, reinitializer);
+      }
+      return watcher;
+    } catch (IOException ex) {
+      LOGGER.log(Level.WARNING, "Unable to watch properties files; changes require a restart", ex);
+      return null;
+    }
+  }
+
+  /**
+   * Starts watching a file bound at jndiName.
+   *
+   * @param filename properties file, or layers separated by {@link PropertiesUtils#LAYER_SEPARATOR}
+   * @param jndiName name the properties are bound to
+   * @param bound properties currently bound
+   * @param reinitializer rebinds changed properties
+   * @throws IOException thrown when the directory of filename can't be watched
+   */
+  public void watch(final String filename, final Name jndiName, final Properties bound, final Reinitializer<Properties> reinitializer) throws IOException {
+    watch(filename, ValueDescriptor.of(jndiName, bound), reinitializer);
+  }
+
+  /**
+   * Starts watching a file whose properties were bound as described by boundDescriptor; rebinds keep its node-local
+   * flag. A change to any layer of a layered source reloads all of its layers.
+   *
+   * @param filename properties file, or layers separated by {@link PropertiesUtils#LAYER_SEPARATOR}
+   * @param boundDescriptor name and properties currently bound
+   * @param reinitializer rebinds changed properties
+   * @throws IOException thrown when the directory of filename can't be watched
+   */
+  public void watch(final String filename, final ValueDescriptor<Properties> boundDescriptor, final Reinitializer<Properties> reinitializer) throws IOException {
+    final Name jndiName = boundDescriptor.getJndiName();
+    final List<Path> layers = new ArrayList<Path>();
+    for (final String layer : PropertiesUtils.splitLayers(filename)) {
+      final Path path = Paths.get(layer).toAbsolutePath().normalize();
+      final Path directory = path.getParent();
+      if (directories.add(directory)) {
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+      }
+      layers.add(path);
+    }
+    WatchedFile file = files.get(layers);
+    if (file == null) {
+      file = new WatchedFile(layers, boundDescriptor.getValue());
+      files.put(layers, file);
+      for (final Path layer : layers) {
+        List<WatchedFile> layerFiles = filesByLayer.get(layer);
+        if (layerFiles == null) {
+          layerFiles = new CopyOnWriteArrayList<WatchedFile>();
+          filesByLayer.put(layer, layerFiles);
+        }
+        layerFiles.add(file);
+      }
+    }
+    file.bindings.add(new WatchedBinding(jndiName, boundDescriptor.isLocal(), reinitializer));
+    LOGGER.log(Level.INFO, "Watching {0} for {1}", new Object[]{file, jndiName});
+  }
+
+  private void processEvents() {
+    while (!closed) {
+      final WatchKey key;
+      try {
+        key = watchService.take();
+      } catch (InterruptedException ex) {
+        return;
+      } catch (ClosedWatchServiceException ex) {
+        return;
+      }
+      final Path directory = (Path) key.watchable();
+      for (final WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          for (final Map.Entry<Path, List<WatchedFile>> layerFiles : filesByLayer.entrySet()) {
+            if (layerFiles.getKey().getParent().equals(directory)) {
+              scheduleReloads(layerFiles.getValue());
+            }
+          }
+        } else {
+          final List<WatchedFile> layerFiles = filesByLayer.get(directory.resolve((Path) event.context()));
+          if (layerFiles != null) {
+            scheduleReloads(layerFiles);
+          }
+        }
+      }
+      key.reset();
+    }
+  }
+
+  private void scheduleReloads(final List<WatchedFile> layerFiles) {
+    for (final WatchedFile file : layerFiles) {
+      scheduleReload(file);
+    }
+  }
+
+  private void scheduleReload(final WatchedFile file) {
+    synchronized (file) {
+      if (file.pending == null) {
+        file.firstEvent = System.nanoTime();
+      } else {
+        file.pending.cancel(false);
+      }
+      file.pending = reloadExecutor.schedule(new Runnable() {
+
+        public void run() {
+          reload(file);
+        }
+      }, debounce, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void reload(final WatchedFile file) {
+    final long firstEvent;
+    synchronized (file) {
+      firstEvent = file.firstEvent;
+      file.pending = null;
+    }
+    final long start = System.nanoTime();
+    try {
+      final Properties properties = PropertiesUtils.mergeLayers(PropertiesUtils.loadProperties(file.filenames));
+      if (properties.equals(file.bound)) {
+        unchangedCount.incrementAndGet();
+        LOGGER.log(Level.FINE, "{0} changed on disk but its properties didn't", file);
+      } else {
+        for (final WatchedBinding binding : file.bindings) {
+          binding.reinitializer.reinitialize(ValueDescriptor.of(binding.jndiName, (Properties) properties.clone(), binding.local));
+          rebindCount.incrementAndGet();
+        }
+        file.bound = properties;
+      }
+    } catch (RuntimeException ex) {
+      failureCount.incrementAndGet();
+      LOGGER.log(Level.WARNING, "Unable to reload " + file, ex);
+    } finally {
+      final long end = System.nanoTime();
+      reloadCount.incrementAndGet();
+      lastReloadNanos = end - start;
+      totalReloadNanos.addAndGet(end - start);
+      lastReloadLatencyNanos = end - firstEvent;
+    }
+  }
+
+  /**
+   * Stops watching; pending reloads are discarded.
+   */
+  public void close() {
+    closed = true;
+    WATCHERS.remove(this);
+    reloadExecutor.shutdownNow();
+    try {
+      watchService.close();
+    } catch (IOException ex) {
+      LOGGER.log(Level.FINE, "unable to close watch service", ex);
+    }
+    watchThread.interrupt();
+  }
+
+  /**
+   * Stops every watcher of this class loader that hasn't been closed.
+   *
+   * @return number of watchers stopped
+   */
+  static int closeAll() {
+    int closedCount = 0;
+    for (final PropertiesWatcher watcher : WATCHERS) {
+      watcher.close();
+      closedCount++;
+    }
+    return closedCount;
+  }
+
+  /**
+   * Number of reloads, whether or not the properties changed.
+   *
+   * @return reloads
+   */
+  public long getReloadCount() {
+    return reloadCount.get();
+  }
+
+  /**
+   * Number of reloads that found the properties unchanged and rebound nothing.
+   *
+   * @return unchanged reloads
+   */
+  public long getUnchangedCount() {
+    return unchangedCount.get();
+  }
+
+  /**
+   * Number of names rebound.
+   *
+   * @return rebinds
+   */
+  public long getRebindCount() {
+    return rebindCount.get();
+  }
+
+  /**
+   * Number of reloads that failed.
+   *
+   * @return failed reloads
+   */
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  /**
+   * Nanoseconds spent loading and rebinding during the last reload.
+   *
+   * @return cost of last reload
+   */
+  public long getLastReloadNanos() {
+    return lastReloadNanos;
+  }
+
+  /**
+   * Nanoseconds spent loading and rebinding during all reloads.
+   *
+   * @return cost of all reloads
+   */
+  public long getTotalReloadNanos() {
+    return totalReloadNanos.get();
+  }
+
+  /**
+   * Nanoseconds from the first change event of the last reloaded file until it was rebound, including debouncing.
+   *
+   * @return latency of last reload
+   */
+  public long getLastReloadLatencyNanos() {
+    return lastReloadLatencyNanos;
+  }
+
+  /**
+   * Watched properties file, or the layers of a layered source.
+   */
+  private static final class WatchedFile {
+
+    final List<String> filenames;
+    final List<WatchedBinding> bindings = new CopyOnWriteArrayList<WatchedBinding>();
+    volatile Properties bound;
+    ScheduledFuture<?> pending;
+    long firstEvent;
+
+    WatchedFile(final List<Path> layers, final Properties bound) {
+      this.filenames = new ArrayList<String>(layers.size());
+      for (final Path layer : layers) {
+        filenames.add(layer.toString());
+      }
+      this.bound = bound;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuffer sb = new StringBuffer();
+      for (final String filename : filenames) {
+        sb.append(sb.length() == 0 ? "" : PropertiesUtils.LAYER_SEPARATOR).append(filename.replace(PropertiesUtils.LAYER_SEPARATOR, PropertiesUtils.LAYER_ESCAPE));
+      }
+      return sb.toString();
+    }
+  }
+
+  /**
+   * Name bound from a watched file.
+   */
+  private static final class WatchedBinding {
+
+    final Name jndiName;
+    final boolean local;
+    final Reinitializer<Properties> reinitializer;
+
+    WatchedBinding(final Name jndiName, final boolean local, final Reinitializer<Properties> reinitializer) {
+      this.jndiName = jndiName;
+      this.local = local;
+      this.reinitializer = reinitializer;
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+/**
+ * Replaces a value an initializer has already bound.
+ *
+ * @param <T> type of the bound value
+ * @author pdgreen
+ */
+public interface Reinitializer<T> {
+
+  /**
+   * Rebinds the value as specified in valueDescriptor.
+   *
+   * @param valueDescriptor value and JNDI name to use
+   */
+  void reinitialize(ValueDescriptor<T> valueDescriptor);
+}
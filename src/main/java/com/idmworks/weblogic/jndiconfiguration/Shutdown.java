@@ -0,0 +1,197 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.Name;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+/**
+ * Counterpart of the initializers run as a WebLogic <em>Shutdown Class</em>: releases everything the initializers of
+ * this class loader set up, so a graceful restart doesn't wait on socket timeouts or leave LDAP sessions behind.
+ *
+ * In order, it stops the properties watchers, unbinds the names the initializers bound (along with their
+ * fingerprints), drains the LDAP connection pools and stops the threads shared by the LDAP factories. Borrowers of
+ * pooled connections are given a grace period to return them; connections still borrowed afterwards are closed.
+ * DirContexts opened without pooling belong to the applications and are left to them.
+ *
+ * @author pdgreen
+ */
+public class Shutdown {
+
+  private static final Logger LOGGER = Logger.getLogger(Shutdown.class.getName());
+  static final String GRACE_OPTION = "grace";
+  static final long DEFAULT_GRACE = 10000L;
+  private final InitialContext initialContext;
+  private final NodeLocalContext nodeLocalContext;
+  private final long grace;
+
+  /**
+   * Creates shutdown; <code>-grace=millis</code> of options bounds the time borrowers are given to return pooled
+   * connections (default {@value #DEFAULT_GRACE}).
+   *
+   * @param initialContext context the names were bound in
+   * @param options options of the shutdown
+   */
+  public Shutdown(final InitialContext initialContext, final InitializerOptions options) {
+    this.initialContext = initialContext;
+    this.nodeLocalContext = new NodeLocalContext(initialContext);
+    this.grace = options.getLong(GRACE_OPTION, DEFAULT_GRACE);
+    if (grace < 0) {
+      throw new IllegalArgumentException(GRACE_OPTION + " must not be negative: " + grace);
+    }
+  }
+
+  /**
+   * Releases the watchers, bindings, connections and threads of the initializers.
+   *
+   * @return what was released and how long it took
+   */
+  public Report shutdown() {
+    final long start = System.nanoTime();
+    final int watchersClosed = PropertiesWatcher.closeAll();
+
+    int unbound = 0;
+    int failed = 0;
+    for (final boolean local : new boolean[]{false, true}) {
+      final List<Name> names = OwnedBindings.drain(local);
+      if (names.isEmpty()) {
+        continue;
+      }
+      final Context context = local ? nodeLocalContext.get() : initialContext;
+      for (final Name name : names) {
+        if (unbind(context, name)) {
+          unbound++;
+        } else {
+          failed++;
+        }
+      }
+    }
+
+    final long drainStart = System.nanoTime();
+    final int connectionsClosed = LdapDirContextFactory.drainAll(grace);
+    final long drainNanos = System.nanoTime() - drainStart;
+    LdapConnectionPool.shutdownMaintenanceExecutor();
+    LdapServerSelector.shutdownProbeExecutor();
+    LdapPagedSearch.shutdownPrefetchExecutor();
+
+    return new Report(watchersClosed, unbound, failed, connectionsClosed, drainNanos, System.nanoTime() - start);
+  }
+
+  private static boolean unbind(final Context context, final Name name) {
+    try {
+      context.unbind(name);
+      context.unbind(FingerprintBinder.buildFingerprintName(name));
+      CachingContext.invalidateCaches(name);
+      LOGGER.log(Level.FINE, "Unbound {0}", name);
+      return true;
+    } catch (NameNotFoundException ex) {
+      LOGGER.log(Level.FINE, "{0} is no longer bound", name);
+      return true;
+    } catch (NamingException ex) {
+      LOGGER.log(Level.WARNING, "Unable to unbind " + name, ex);
+      return false;
+    }
+  }
+
+  /**
+   * Parse arguments ([-grace=millis] [-local]) and releases what the initializers set up. With <code>-local</code> the
+   * InitialContext is created as for the initializers run with <code>-local</code>.
+   *
+   * @param args
+   */
+  public static void main(final String[] args) {
+    final long start = System.nanoTime();
+    final InitializerOptions options = InitializerOptions.parse(args);
+    final InitialContext initialContext = JndiUtils.createInitialContext(JndiUtils.createEnvironment(options));
+
+    final Report report = new Shutdown(initialContext, options).shutdown();
+    LOGGER.log(report.getFailedCount() == 0 ? Level.INFO : Level.WARNING, "Shut down: {0}", report);
+    JndiConfigurationMetrics.get().recordMain(Shutdown.class, System.nanoTime() - start);
+  }
+
+  /**
+   * What a shutdown released and how long it took.
+   */
+  public static final class Report {
+
+    private final int watchersClosed;
+    private final int unboundCount;
+    private final int failedCount;
+    private final int connectionsClosed;
+    private final long drainNanos;
+    private final long totalNanos;
+
+    Report(final int watchersClosed, final int unboundCount, final int failedCount, final int connectionsClosed, final long drainNanos, final long totalNanos) {
+      this.watchersClosed = watchersClosed;
+      this.unboundCount = unboundCount;
+      this.failedCount = failedCount;
+      this.connectionsClosed = connectionsClosed;
+      this.drainNanos = drainNanos;
+      this.totalNanos = totalNanos;
+    }
+
+    /**
+     * Number of properties watchers stopped.
+     *
+     * @return watchers
+     */
+    public int getWatchersClosed() {
+      return watchersClosed;
+    }
+
+    /**
+     * Number of names unbound, including those that were no longer bound.
+     *
+     * @return unbound names
+     */
+    public int getUnboundCount() {
+      return unboundCount;
+    }
+
+    /**
+     * Number of names that couldn't be unbound.
+     *
+     * @return failed names
+     */
+    public int getFailedCount() {
+      return failedCount;
+    }
+
+    /**
+     * Number of borrowed connections closed because they weren't returned within the grace period.
+     *
+     * @return closed connections
+     */
+    public int getConnectionsClosed() {
+      return connectionsClosed;
+    }
+
+    /**
+     * Time spent draining the LDAP connection pools.
+     *
+     * @return drain duration in milliseconds
+     */
+    public long getDrainMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(drainNanos);
+    }
+
+    /**
+     * Time spent shutting down.
+     *
+     * @return duration in milliseconds
+     */
+    public long getTotalMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuffer(Report.class.getName()).append("{watchersClosed=").append(watchersClosed).append(",unbound=").append(unboundCount).append(",failed=").append(failedCount).append(",connectionsClosed=").append(connectionsClosed).append(",drainMillis=").append(getDrainMillis()).append(",totalMillis=").append(getTotalMillis()).append("}").toString();
+    }
+  }
+}
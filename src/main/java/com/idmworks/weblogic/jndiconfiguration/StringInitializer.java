@@ -1,58 +1,45 @@
 package com.idmworks.weblogic.jndiconfiguration;
 
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.naming.*;
 
 /**
  * Add {@link String} to JNDI in weblogic during startup.
  */
-public class StringInitializer {
-
-  private static final Logger LOGGER = Logger.getLogger(StringInitializer.class.getName());
-  private final InitialContext initialContext;
+public class StringInitializer extends ValueInitializer<String> {
 
   public StringInitializer(final InitialContext initialContext) {
-    this.initialContext = initialContext;
+    this(initialContext, new SubcontextCache());
   }
 
-  /**
-   * Adds the String into JNDI as specified in valueDescriptor.
-   *
-   * @param stringDescriptor properties and JNDI name to use
-   */
-  public void initialize(ValueDescriptor<String> stringDescriptor) {
-    LOGGER.log(Level.FINE, "initializing {0}", stringDescriptor);
-    try {
-      JndiUtils.ensureSubcontexts(initialContext, stringDescriptor.getJndiName());
-      initialContext.bind(stringDescriptor.getJndiName(), stringDescriptor.getValue());
-      LOGGER.log(Level.INFO, "Initialized {0}", stringDescriptor);
-    } catch (NamingException e) {
-      throw new IllegalArgumentException("Unable to bind " + stringDescriptor, e);
-    }
+  public StringInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache) {
+    this(initialContext, subcontextCache, InitializerOptions.none());
+  }
+
+  public StringInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache, final InitializerOptions options) {
+    super(initialContext, subcontextCache, options);
   }
 
   /**
-   * Parse arguments (jndiName=value) and loads String into JNDI.
+   * Parse arguments ([-rebind] [-local] jndiName[:local]=value*) and loads String into JNDI. With <code>-rebind</code>
+   * existing bindings are replaced, but only when their value changed; with <code>-local</code>, or per entry with
+   * <code>:local</code>, values are bound on this server only.
    *
    * @param args
    */
   public static void main(final String[] args) {
-    final Hashtable<String, String> ht = new Hashtable<String, String>();
-    ht.put(Context.INITIAL_CONTEXT_FACTORY, "weblogic.jndi.WLInitialContextFactory");
+    final long start = System.nanoTime();
+    final InitializerOptions options = InitializerOptions.parse(args);
+    final Hashtable<String, String> ht = JndiUtils.createEnvironment(options);
     final InitialContext initialContext = JndiUtils.createInitialContext(ht);
     final NameParser nameParser = JndiUtils.createNameParser(initialContext);
 
-    final StringInitializer propertiesInitializer = new StringInitializer(initialContext);
-
-    for (final ValueDescriptor<String> stringDescriptor : parse(nameParser, args)) {
-      propertiesInitializer.initialize(stringDescriptor);
-    }
+    new StringInitializer(initialContext, new SubcontextCache(), options).initializeAll(parse(nameParser, options.getArguments()));
+    JndiConfigurationMetrics.get().recordMain(StringInitializer.class, System.nanoTime() - start);
   }
 
   /**
-   * Parse input arguments
+   * Parse input arguments; a name ending with {@value JndiUtils#LOCAL_FLAG} is bound node-locally.
    *
    * @param nameParser parser to parse JNDI Name
    * @param args args to parse
@@ -63,9 +50,9 @@ public class StringInitializer {
     final List<ValueDescriptor<String>> stringDescriptors = new ArrayList<ValueDescriptor<String>>(args.length);
     for (String arg : args) {
       final String[] parts = arg.split("=", 2);
-      final Name jndiName = JndiUtils.parseJndiName(nameParser, parts[0]);
+      final Name jndiName = JndiUtils.parseJndiName(nameParser, JndiUtils.stripLocalFlag(parts[0]));
       final String value = parts[1];
-      stringDescriptors.add(ValueDescriptor.of(jndiName, value));
+      stringDescriptors.add(ValueDescriptor.of(jndiName, value, JndiUtils.isFlaggedLocal(parts[0])));
     }
     return stringDescriptors;
   }
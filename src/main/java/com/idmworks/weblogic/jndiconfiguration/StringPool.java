@@ -0,0 +1,188 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Weakly held pool of canonical strings. The keys and many of the values of the properties files bound by the
+ * initializers repeat from file to file; interning them keeps one instance of each on the heap for as long as any bound
+ * {@link Properties} uses it. Unlike {@link String#intern()}, entries are dropped once nothing else refers to them.
+ *
+ * The pool is split into segments, each guarded by its own lock, so that threads loading properties concurrently
+ * rarely wait for each other.
+ *
+ * @author pdgreen
+ */
+public class StringPool {
+
+  /**
+   * Estimated heap bytes of a string besides its characters: the String object and the header of its char array.
+   */
+  static final long STRING_OVERHEAD = 40L;
+  private static final int SEGMENTS = 32;
+  private final List<Map<String, WeakReference<String>>> segments = new ArrayList<Map<String, WeakReference<String>>>(SEGMENTS);
+  private final AtomicLong internedCount = new AtomicLong();
+  private final AtomicLong deduplicatedCount = new AtomicLong();
+  private final AtomicLong bytesSaved = new AtomicLong();
+
+  /**
+   * Creates empty pool.
+   */
+  public StringPool() {
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments.add(new WeakHashMap<String, WeakReference<String>>());
+    }
+  }
+
+  /**
+   * Canonical instance of value.
+   *
+   * @param value string to intern, may be null
+   * @return pooled instance equal to value
+   */
+  public String intern(final String value) {
+    if (value == null) {
+      return null;
+    }
+    final String pooled = pool(value);
+    if (pooled != value) {
+      record(1L, 1L, estimateBytes(value));
+    } else {
+      record(1L, 0L, 0L);
+    }
+    return pooled;
+  }
+
+  /**
+   * Interns the keys and values of properties in place. Replacing the value of an entry of a
+   * {@link java.util.Hashtable} keeps the existing key instance, so only entries whose key isn't the pooled instance
+   * are removed and put again. The counters are updated once per call rather than once per string.
+   *
+   * @param properties properties to intern, not yet shared with other threads
+   * @return properties, now holding pooled instances
+   */
+  public Properties intern(final Properties properties) {
+    long interned = 0L;
+    long deduplicated = 0L;
+    long saved = 0L;
+    List<String> pooledKeys = null;
+    for (final Map.Entry<Object, Object> entry : properties.entrySet()) {
+      if (entry.getValue() instanceof String) {
+        final String value = (String) entry.getValue();
+        final String pooledValue = pool(value);
+        interned++;
+        if (pooledValue != value) {
+          deduplicated++;
+          saved += estimateBytes(value);
+          entry.setValue(pooledValue);
+        }
+      }
+      if (entry.getKey() instanceof String) {
+        final String key = (String) entry.getKey();
+        final String pooledKey = pool(key);
+        interned++;
+        if (pooledKey != key) {
+          deduplicated++;
+          saved += estimateBytes(key);
+          if (pooledKeys == null) {
+            pooledKeys = new ArrayList<String>();
+          }
+          pooledKeys.add(pooledKey);
+        }
+      }
+    }
+    if (pooledKeys != null) {
+      for (final String pooledKey : pooledKeys) {
+        properties.put(pooledKey, properties.remove(pooledKey));
+      }
+    }
+    record(interned, deduplicated, saved);
+    return properties;
+  }
+
+  /**
+   * Pooled instance equal to value, value itself when it wasn't pooled yet.
+   */
+  private String pool(final String value) {
+    final Map<String, WeakReference<String>> strings = segmentFor(value);
+    synchronized (strings) {
+      final WeakReference<String> reference = strings.get(value);
+      final String pooled = reference == null ? null : reference.get();
+      if (pooled != null) {
+        return pooled;
+      }
+      strings.put(value, new WeakReference<String>(value));
+      return value;
+    }
+  }
+
+  private void record(final long interned, final long deduplicated, final long saved) {
+    internedCount.addAndGet(interned);
+    if (deduplicated > 0) {
+      deduplicatedCount.addAndGet(deduplicated);
+      bytesSaved.addAndGet(saved);
+      JndiConfigurationMetrics.get().recordDeduplicatedStrings(deduplicated, saved);
+    }
+  }
+
+  private Map<String, WeakReference<String>> segmentFor(final String value) {
+    final int hash = value.hashCode();
+    return segments.get((hash ^ (hash >>> 16)) & (SEGMENTS - 1));
+  }
+
+  static long estimateBytes(final String value) {
+    return STRING_OVERHEAD + 2L * value.length();
+  }
+
+  /**
+   * Number of strings passed to {@link #intern(String)}.
+   *
+   * @return interned strings
+   */
+  public long getInternedCount() {
+    return internedCount.get();
+  }
+
+  /**
+   * Number of strings replaced by an equal pooled instance.
+   *
+   * @return deduplicated strings
+   */
+  public long getDeduplicatedCount() {
+    return deduplicatedCount.get();
+  }
+
+  /**
+   * Estimated heap bytes of the duplicates replaced by pooled instances.
+   *
+   * @return bytes saved
+   */
+  public long getBytesSaved() {
+    return bytesSaved.get();
+  }
+
+  /**
+   * Number of distinct strings currently pooled.
+   *
+   * @return size
+   */
+  public int size() {
+    int size = 0;
+    for (final Map<String, WeakReference<String>> strings : segments) {
+      synchronized (strings) {
+        size += strings.size();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(StringPool.class.getName()).append("{size=").append(size()).append(",interned=").append(internedCount).append(",deduplicated=").append(deduplicatedCount).append(",bytesSaved=").append(bytesSaved).append("}").toString();
+  }
+}
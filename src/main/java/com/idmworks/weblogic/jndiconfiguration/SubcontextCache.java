@@ -0,0 +1,86 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prefix trie of subcontexts already confirmed to exist in a base context, used by
+ * {@link JndiUtils#ensureSubcontexts(javax.naming.Context, javax.naming.Name, SubcontextCache)} so that each distinct
+ * prefix is created or looked up only once. Also counts the JNDI round trips made and saved.
+ *
+ * @author pdgreen
+ */
+public class SubcontextCache {
+
+  private final Node root = new Node();
+  private final AtomicLong createdCount = new AtomicLong();
+  private final AtomicLong foundCount = new AtomicLong();
+  private final AtomicLong skippedCount = new AtomicLong();
+
+  Node getRoot() {
+    return root;
+  }
+
+  void recordCreated() {
+    createdCount.incrementAndGet();
+  }
+
+  void recordFound() {
+    foundCount.incrementAndGet();
+  }
+
+  void recordSkipped() {
+    skippedCount.incrementAndGet();
+  }
+
+  /**
+   * Number of subcontexts created.
+   *
+   * @return created subcontexts
+   */
+  public long getCreatedCount() {
+    return createdCount.get();
+  }
+
+  /**
+   * Number of subcontexts that already existed in JNDI.
+   *
+   * @return found subcontexts
+   */
+  public long getFoundCount() {
+    return foundCount.get();
+  }
+
+  /**
+   * Number of subcontexts known from the cache, i.e. JNDI round trips saved.
+   *
+   * @return skipped subcontexts
+   */
+  public long getSkippedCount() {
+    return skippedCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuffer(SubcontextCache.class.getName()).append("{created=").append(createdCount).append(",found=").append(foundCount).append(",skipped=").append(skippedCount).append("}").toString();
+  }
+
+  /**
+   * Confirmed subcontext; its children are the confirmed subcontexts below it.
+   */
+  static final class Node {
+
+    private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<String, Node>();
+
+    Node getChild(final String component) {
+      return children.get(component);
+    }
+
+    Node addChild(final String component) {
+      final Node node = new Node();
+      final Node raced = children.putIfAbsent(component, node);
+      return raced == null ? node : raced;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.*;
+import javax.naming.*;
+
+/**
+ * Add values converted to a {@link ValueType} to JNDI in weblogic during startup, so applications don't have to parse
+ * them on every use. Invalid values fail the startup.
+ */
+public class TypedInitializer extends ValueInitializer<Object> {
+
+  static final String TYPE_SEPARATOR = ValueType.TYPE_SEPARATOR;
+
+  public TypedInitializer(final InitialContext initialContext) {
+    this(initialContext, new SubcontextCache());
+  }
+
+  public TypedInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache) {
+    this(initialContext, subcontextCache, InitializerOptions.none());
+  }
+
+  public TypedInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache, final InitializerOptions options) {
+    super(initialContext, subcontextCache, options);
+  }
+
+  /**
+   * Parse arguments ([-rebind] [-local] jndiName[:type][:local]=value*) and loads converted values into JNDI.
+   *
+   * @param args
+   */
+  public static void main(final String[] args) {
+    final long start = System.nanoTime();
+    final InitializerOptions options = InitializerOptions.parse(args);
+    final Hashtable<String, String> ht = JndiUtils.createEnvironment(options);
+    final InitialContext initialContext = JndiUtils.createInitialContext(ht);
+    final NameParser nameParser = JndiUtils.createNameParser(initialContext);
+
+    new TypedInitializer(initialContext, new SubcontextCache(), options).initializeAll(parse(nameParser, options.getArguments()));
+    JndiConfigurationMetrics.get().recordMain(TypedInitializer.class, System.nanoTime() - start);
+  }
+
+  /**
+   * Parse input arguments; the type hint follows the last {@value #TYPE_SEPARATOR} of the name and defaults to
+   * <code>string</code>, see {@link ValueType#fromTypedName(String)}. A colon that is part of the name is escaped as
+   * <code>\:</code>. A name ending with {@value JndiUtils#LOCAL_FLAG} (after the type) is bound node-locally.
+   *
+   * @param nameParser parser to parse JNDI Name
+   * @param args args to parse
+   * @return ValueDescriptors with converted values based on parsed args
+   * @throws IllegalArgumentException thrown when args can't be parsed, a type hint isn't known or a value doesn't match
+   * its type
+   */
+  static List<ValueDescriptor<Object>> parse(final NameParser nameParser, final String[] args) throws IllegalArgumentException {
+    final List<ValueDescriptor<Object>> valueDescriptors = new ArrayList<ValueDescriptor<Object>>(args.length);
+    for (String arg : args) {
+      final String[] parts = arg.split("=", 2);
+      final String typedName = JndiUtils.stripLocalFlag(parts[0]);
+      final ValueType hinted = ValueType.fromTypedName(typedName);
+      final String name = ValueType.stripTypeHint(typedName);
+      final ValueType type = hinted == null ? ValueType.STRING : hinted;
+      final Name jndiName = JndiUtils.parseJndiName(nameParser, name);
+      try {
+        valueDescriptors.add(ValueDescriptor.of(jndiName, type.convert(parts[1]), JndiUtils.isFlaggedLocal(parts[0])));
+      } catch (IllegalArgumentException ex) {
+        throw new IllegalArgumentException("Invalid value for " + name + ": " + ex.getMessage(), ex);
+      }
+    }
+    return valueDescriptors;
+  }
+}
@@ -11,16 +11,26 @@ public class ValueDescriptor<T> {
 
   private final Name jndiName;
   private final T value;
+  private final boolean local;
 
   public ValueDescriptor(final Name jndiName, final T value) {
+    this(jndiName, value, false);
+  }
+
+  public ValueDescriptor(final Name jndiName, final T value, final boolean local) {
     this.jndiName = jndiName;
     this.value = value;
+    this.local = local;
   }
 
   public static <T> ValueDescriptor<T> of(final Name jndiName, final T value) {
     return new ValueDescriptor<T>(jndiName, value);
   }
 
+  public static <T> ValueDescriptor<T> of(final Name jndiName, final T value, final boolean local) {
+    return new ValueDescriptor<T>(jndiName, value, local);
+  }
+
   /**
    * JNDI Name where the properties are to be located
    *
@@ -39,8 +49,17 @@ public class ValueDescriptor<T> {
     return value;
   }
 
+  /**
+   * Whether the value is bound on this server only instead of in the replicated cluster tree
+   *
+   * @return true when bound node-locally
+   */
+  public boolean isLocal() {
+    return local;
+  }
+
   @Override
   public String toString() {
-    return new StringBuffer(ValueDescriptor.class.getName()).append("{").append(jndiName).append("=").append(value).append("}").toString();
+    return new StringBuffer(ValueDescriptor.class.getName()).append("{").append(jndiName).append("=").append(value).append(local ? ",local" : "").append("}").toString();
   }
 }
@@ -0,0 +1,109 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.*;
+
+/**
+ * Common part of the initializers binding a value per name: subcontexts are ensured, <code>-rebind</code> and
+ * node-local names are honored and bound names are recorded for {@link Shutdown}.
+ *
+ * @param <T> type of the values described
+ * @author pdgreen
+ */
+public abstract class ValueInitializer<T> {
+
+  private final Logger logger = Logger.getLogger(getClass().getName());
+  private final InitialContext initialContext;
+  private final SubcontextCache subcontextCache;
+  private final NodeLocalContext nodeLocalContext;
+  private final boolean rebindChanged;
+
+  protected ValueInitializer(final InitialContext initialContext, final SubcontextCache subcontextCache, final InitializerOptions options) {
+    this.initialContext = initialContext;
+    this.subcontextCache = subcontextCache;
+    this.nodeLocalContext = new NodeLocalContext(initialContext);
+    this.rebindChanged = options.isEnabled(FingerprintBinder.REBIND_OPTION);
+  }
+
+  /**
+   * Adds the value into JNDI as specified in valueDescriptor. With <code>-rebind</code> an existing binding is
+   * replaced, unless its value is unchanged.
+   *
+   * @param valueDescriptor value and JNDI name to use
+   */
+  public void initialize(ValueDescriptor<T> valueDescriptor) {
+    logger.log(Level.FINE, "initializing {0}", valueDescriptor);
+    final long start = System.nanoTime();
+    try {
+      final Context context = getContext(valueDescriptor);
+      JndiUtils.ensureSubcontexts(context, valueDescriptor.getJndiName(), valueDescriptor.isLocal() ? nodeLocalContext.getSubcontextCache() : subcontextCache);
+      final boolean written = FingerprintBinder.bind(context, valueDescriptor.getJndiName(), toBoundValue(valueDescriptor.getValue()), rebindChanged);
+      OwnedBindings.record(valueDescriptor.getJndiName(), valueDescriptor.isLocal());
+      JndiConfigurationMetrics.get().recordInitialize(valueDescriptor.getJndiName(), System.nanoTime() - start);
+      logger.log(Level.INFO, written ? "Initialized {0}" : "Unchanged {0}", valueDescriptor);
+    } catch (NamingException e) {
+      throw new IllegalArgumentException("Unable to bind " + valueDescriptor, e);
+    }
+  }
+
+  /**
+   * Adds all values into JNDI, in order.
+   *
+   * @param valueDescriptors values and JNDI names to use
+   */
+  public void initializeAll(final List<ValueDescriptor<T>> valueDescriptors) {
+    for (final ValueDescriptor<T> valueDescriptor : valueDescriptors) {
+      initialize(valueDescriptor);
+    }
+    logger.log(Level.INFO, "Ensured subcontexts: {0}", subcontextCache);
+  }
+
+  /**
+   * Object bound for value; the value itself unless overridden.
+   *
+   * @param value described value
+   * @return object to bind
+   */
+  protected Object toBoundValue(final T value) {
+    return value;
+  }
+
+  /**
+   * Context the value of valueDescriptor is bound in: the node-local one for local names.
+   *
+   * @param valueDescriptor described value
+   * @return context
+   */
+  protected Context getContext(final ValueDescriptor<?> valueDescriptor) {
+    return valueDescriptor.isLocal() ? nodeLocalContext.get() : initialContext;
+  }
+
+  /**
+   * Context names are bound in, unless they are node-local.
+   *
+   * @return initial context
+   */
+  protected InitialContext getInitialContext() {
+    return initialContext;
+  }
+
+  /**
+   * Whether existing bindings are replaced when their value changed (<code>-rebind</code>).
+   *
+   * @return true when rebinding
+   */
+  protected boolean isRebindChanged() {
+    return rebindChanged;
+  }
+
+  /**
+   * Subcontexts confirmed by this initializer so far.
+   *
+   * @return subcontext cache
+   */
+  public SubcontextCache getSubcontextCache() {
+    return subcontextCache;
+  }
+}
@@ -0,0 +1,246 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Types a {@link TypedInitializer} converts argument values to before binding them.
+ *
+ * @author pdgreen
+ */
+public enum ValueType {
+
+  /**
+   * Value bound as is.
+   */
+  STRING("string") {
+
+    @Override
+    public Object convert(final String value) {
+      return value;
+    }
+  },
+  /**
+   * {@link Integer}.
+   */
+  INT("int") {
+
+    @Override
+    public Object convert(final String value) {
+      try {
+        return Integer.valueOf(value.trim());
+      } catch (NumberFormatException ex) {
+        throw new IllegalArgumentException("Not an int: " + value, ex);
+      }
+    }
+  },
+  /**
+   * {@link Long}.
+   */
+  LONG("long") {
+
+    @Override
+    public Object convert(final String value) {
+      try {
+        return Long.valueOf(value.trim());
+      } catch (NumberFormatException ex) {
+        throw new IllegalArgumentException("Not a long: " + value, ex);
+      }
+    }
+  },
+  /**
+   * {@link Boolean}; only <code>true</code> and <code>false</code> (any case) are accepted.
+   */
+  BOOL("bool") {
+
+    @Override
+    public Object convert(final String value) {
+      final String trimmed = value.trim();
+      if ("true".equalsIgnoreCase(trimmed)) {
+        return Boolean.TRUE;
+      } else if ("false".equalsIgnoreCase(trimmed)) {
+        return Boolean.FALSE;
+      }
+      throw new IllegalArgumentException("Not a bool: " + value);
+    }
+  },
+  /**
+   * {@link Long} number of milliseconds; written as a number followed by one of <code>ms</code>, <code>s</code>,
+   * <code>m</code>, <code>h</code> or <code>d</code> (milliseconds when no unit is given).
+   */
+  DURATION("duration") {
+
+    @Override
+    public Object convert(final String value) {
+      final Matcher matcher = DURATION_PATTERN.matcher(value.trim());
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException("Not a duration: " + value);
+      }
+      final long amount;
+      try {
+        amount = Long.parseLong(matcher.group(1));
+      } catch (NumberFormatException ex) {
+        throw new IllegalArgumentException("Duration out of range: " + value, ex);
+      }
+      final String unit = matcher.group(2);
+      final TimeUnit timeUnit;
+      if (unit.length() == 0 || "ms".equals(unit)) {
+        return amount;
+      } else if ("s".equals(unit)) {
+        timeUnit = TimeUnit.SECONDS;
+      } else if ("m".equals(unit)) {
+        timeUnit = TimeUnit.MINUTES;
+      } else if ("h".equals(unit)) {
+        timeUnit = TimeUnit.HOURS;
+      } else {
+        timeUnit = TimeUnit.DAYS;
+      }
+      //toMillis saturates at Long.MAX_VALUE instead of failing
+      if (amount > Long.MAX_VALUE / timeUnit.toMillis(1)) {
+        throw new IllegalArgumentException("Duration out of range: " + value);
+      }
+      return timeUnit.toMillis(amount);
+    }
+  },
+  /**
+   * Unmodifiable {@link List} of the comma separated, trimmed elements.
+   */
+  LIST("list") {
+
+    @Override
+    public Object convert(final String value) {
+      final List<String> elements = new ArrayList<String>();
+      if (value.trim().length() > 0) {
+        for (final String element : value.split(",")) {
+          elements.add(element.trim());
+        }
+      }
+      return Collections.unmodifiableList(elements);
+    }
+  },
+  /**
+   * Unmodifiable {@link Map} of the properties file named by the value; a key may carry a type hint
+   * (<code>timeout\:duration=30s</code>, the colon escaped as usual in properties files), its value is then converted and bound under the key without the hint.
+   * A key with a literal colon escapes it once more (<code>url\\\:legacy</code>).
+   */
+  PROPERTIES("properties") {
+
+    @Override
+    public Object convert(final String value) {
+      final Properties properties = PropertiesUtils.loadProperties(value.trim());
+      final Map<String, Object> converted = new HashMap<String, Object>();
+      for (final String typedKey : properties.stringPropertyNames()) {
+        final String key = stripTypeHint(typedKey);
+        try {
+          final ValueType type = fromTypedName(typedKey);
+          if (type == PROPERTIES) {
+            throw new IllegalArgumentException("Nested properties aren't supported: " + typedKey);
+          }
+          converted.put(key, (type == null ? STRING : type).convert(properties.getProperty(typedKey)));
+        } catch (IllegalArgumentException ex) {
+          throw new IllegalArgumentException("Invalid value for " + key + " in " + value + ": " + ex.getMessage(), ex);
+        }
+      }
+      return Collections.unmodifiableMap(converted);
+    }
+  };
+  /**
+   * Separates a name from its type hint.
+   */
+  public static final String TYPE_SEPARATOR = ":";
+  /**
+   * Escapes a {@link #TYPE_SEPARATOR} that is part of a name.
+   */
+  public static final String TYPE_ESCAPE = "\\";
+  private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d+)\\s*(ms|s|m|h|d|)");
+  private final String hint;
+
+  private ValueType(final String hint) {
+    this.hint = hint;
+  }
+
+  /**
+   * Converts value to this type.
+   *
+   * @param value value to convert
+   * @return converted value
+   * @throws IllegalArgumentException thrown when value isn't valid for this type
+   */
+  public abstract Object convert(String value) throws IllegalArgumentException;
+
+  /**
+   * Name of the type as used in arguments.
+   *
+   * @return type hint
+   */
+  public String getHint() {
+    return hint;
+  }
+
+  /**
+   * Finds the type of a type hint.
+   *
+   * @param hint type hint
+   * @return type
+   * @throws IllegalArgumentException thrown when hint isn't known
+   */
+  public static ValueType fromHint(final String hint) throws IllegalArgumentException {
+    for (final ValueType type : values()) {
+      if (type.hint.equals(hint)) {
+        return type;
+      }
+    }
+    throw new IllegalArgumentException("Unknown type: " + hint);
+  }
+
+  /**
+   * Finds the type named by the hint after the last unescaped {@value #TYPE_SEPARATOR} of typedName. A suffix
+   * containing <code>/</code>, as in <code>java:comp/env/x</code>, is part of the name rather than a hint.
+   *
+   * @param typedName name, possibly followed by a type hint
+   * @return type or null when typedName has no type hint
+   * @throws IllegalArgumentException thrown when the hint isn't known
+   */
+  public static ValueType fromTypedName(final String typedName) throws IllegalArgumentException {
+    final int separator = hintSeparator(typedName);
+    if (separator < 0) {
+      return null;
+    }
+    try {
+      return fromHint(typedName.substring(separator + 1));
+    } catch (IllegalArgumentException ex) {
+      throw new IllegalArgumentException(ex.getMessage() + " in " + typedName + " (escape a literal colon as " + TYPE_ESCAPE + TYPE_SEPARATOR + ")", ex);
+    }
+  }
+
+  /**
+   * Removes the type hint from typedName and unescapes the literal {@value #TYPE_SEPARATOR} of the name.
+   *
+   * @param typedName name, possibly followed by a type hint
+   * @return name without type hint
+   */
+  public static String stripTypeHint(final String typedName) {
+    final int separator = hintSeparator(typedName);
+    return (separator < 0 ? typedName : typedName.substring(0, separator)).replace(TYPE_ESCAPE + TYPE_SEPARATOR, TYPE_SEPARATOR);
+  }
+
+  /**
+   * Index of the separator of the type hint of typedName.
+   *
+   * @return index or -1 without type hint
+   */
+  private static int hintSeparator(final String typedName) {
+    int separator = typedName.lastIndexOf(TYPE_SEPARATOR);
+    while (separator > 0 && typedName.startsWith(TYPE_ESCAPE, separator - TYPE_ESCAPE.length())) {
+      separator = typedName.lastIndexOf(TYPE_SEPARATOR, separator - 1);
+    }
+    return separator < 0 || typedName.indexOf('/', separator) >= 0 ? -1 : separator;
+  }
+}
@@ -0,0 +1,270 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.naming.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link BulkInitializer}.
+ *
+ * @author pdgreen
+ */
+public class BulkInitializerSpec {
+
+  private String testPropertiesPath;
+  private String ldapTestPropertiesPath;
+  private NameParser nameParser;
+
+  @Before
+  public void initializePropertiesPath() {
+    testPropertiesPath = getClass().getClassLoader().getResource("test.properties").getPath();
+    ldapTestPropertiesPath = getClass().getClassLoader().getResource("ldap-test.properties").getPath();
+    nameParser = new NameParser() {
+
+      public Name parse(String string) throws NamingException {
+        return new CompositeName(string);//CompositeName is used for testing
+      }
+    };
+  }
+
+  @Test
+  public void readManifestShouldReadEntriesSkippingCommentsAndBlankLines() throws IOException {
+    final File manifest = File.createTempFile("manifest", ".txt");
+    manifest.deleteOnExit();
+    final FileWriter writer = new FileWriter(manifest);
+    writer.write("# comment\n\nstring jsf/ProjectStage=Development\nproperties properties/test=" + testPropertiesPath + "\n  LDAP ldap/test=" + ldapTestPropertiesPath + "\n");
+    writer.close();
+
+    final List<ManifestEntry> result = BulkInitializer.readManifest(manifest.getPath());
+
+    assertThat(result.size(), is(3));
+    assertThat(result.get(0).getType(), is(ManifestEntry.Type.STRING));
+    assertThat(result.get(0).getArgument(), is("jsf/ProjectStage=Development"));
+    assertThat(result.get(1).getType(), is(ManifestEntry.Type.PROPERTIES));
+    assertThat(result.get(2).getType(), is(ManifestEntry.Type.LDAP));
+    assertThat(result.get(2).getSource(), is(manifest.getPath() + ":5"));
+  }
+
+  @Test
+  public void initializeShouldBindEveryEntryAndReportFailures() throws NamingException {
+    final InitialContext initialContext = mock(InitialContext.class);
+    final ManifestEntry string = new ManifestEntry(ManifestEntry.Type.STRING, "a/string=value", "test:1");
+    final ManifestEntry properties = new ManifestEntry(ManifestEntry.Type.PROPERTIES, "b/properties=" + testPropertiesPath, "test:2");
+    final ManifestEntry missing = new ManifestEntry(ManifestEntry.Type.PROPERTIES, "b/missing=/does/not/exist.properties", "test:3");
+    final ManifestEntry ldap = new ManifestEntry(ManifestEntry.Type.LDAP, "c/ldap=" + ldapTestPropertiesPath, "test:4");
+
+    final BulkInitializer instance = new BulkInitializer(initialContext, nameParser, 3);
+    final InitializationReport report = instance.initialize(Arrays.asList(string, properties, missing, ldap));
+
+    assertThat(report.isSuccessful(), is(false));
+    assertThat(report.getBound().size(), is(3));
+    assertThat(report.getFailures().keySet().iterator().next(), is(missing.toString()));
+    verify(initialContext).bind(new CompositeName("a/string"), "value");
+    verify(initialContext).bind(eq(new CompositeName("b/properties")), anyObject());
+    verify(initialContext).bind(eq(new CompositeName("c/ldap")), anyObject());
+    verify(initialContext, times(1)).createSubcontext(new CompositeName("b"));
+  }
+
+  @Test
+  public void initializeShouldBindThroughOneContextPerThread() throws NamingException {
+    RecordingContextFactory.reset();
+    final Hashtable<String, String> environment = new Hashtable<String, String>();
+    environment.put(Context.INITIAL_CONTEXT_FACTORY, RecordingContextFactory.class.getName());
+    final List<ManifestEntry> entries = Arrays.asList(new ManifestEntry(ManifestEntry.Type.STRING, "a/string=value", "test:1"),
+            new ManifestEntry(ManifestEntry.Type.STRING, "b/string=value", "test:2"),
+            new ManifestEntry(ManifestEntry.Type.STRING, "c/string=value", "test:3"));
+
+    final InitializationReport report = new BulkInitializer(environment, nameParser, 3, InitializerOptions.none()).initialize(entries);
+
+    assertThat(report.getBound().size(), is(3));
+    assertThat(RecordingContextFactory.CONTEXTS.size(), is(3));
+    for (final Context context : RecordingContextFactory.CONTEXTS) {
+      verify(context, times(1)).bind((Name) anyObject(), eq("value"));
+      verify(context, timeout(5000)).close();
+    }
+  }
+
+  /**
+   * Context whose bind of one name blocks until released; an interrupt fails the bind unless the context ignores
+   * interrupts. Mocks aren't used since they don't support concurrent invocations.
+   */
+  private static class SlowBindContext extends InitialContext {
+
+    private final Name slowName;
+    private final CountDownLatch release;
+    private final boolean interruptible;
+
+    SlowBindContext(final Name slowName, final CountDownLatch release) throws NamingException {
+      this(slowName, release, true);
+    }
+
+    SlowBindContext(final Name slowName, final CountDownLatch release, final boolean interruptible) throws NamingException {
+      super(true);
+      this.slowName = slowName;
+      this.release = release;
+      this.interruptible = interruptible;
+    }
+
+    @Override
+    public void bind(Name name, Object obj) throws NamingException {
+      if (!name.equals(slowName)) {
+        return;
+      }
+      boolean interrupted = false;
+      while (true) {
+        try {
+          release.await();
+          break;
+        } catch (InterruptedException ex) {
+          if (interruptible) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedNamingException("interrupted binding " + name);
+          }
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public Context createSubcontext(Name name) {
+      return null;
+    }
+  }
+
+  @Test
+  public void initializeShouldBindSiblingSubcontextsConcurrently() throws Exception {
+    final CountDownLatch bothBinding = new CountDownLatch(2);
+    final List<String> concurrent = Collections.synchronizedList(new ArrayList<String>());
+    final InitialContext initialContext = new SlowBindContext(new CompositeName(), new CountDownLatch(0)) {
+
+      @Override
+      public void bind(Name name, Object obj) throws NamingException {
+        bothBinding.countDown();
+        try {
+          if (bothBinding.await(5, TimeUnit.SECONDS)) {
+            concurrent.add(name.toString());
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    final ManifestEntry first = new ManifestEntry(ManifestEntry.Type.STRING, "config/app1/x=value", "test:1");
+    final ManifestEntry second = new ManifestEntry(ManifestEntry.Type.STRING, "config/app2/y=value", "test:2");
+
+    final InitializationReport report = new BulkInitializer(initialContext, nameParser, 2).initialize(Arrays.asList(first, second));
+
+    assertThat(report.getBound().size(), is(2));
+    assertThat(concurrent.size(), is(2));
+  }
+
+  @Test
+  public void initializeShouldMoveOnWhenEntryTimesOut() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final InitialContext initialContext = new SlowBindContext(new CompositeName("a/slow"), release);
+    final ManifestEntry slow = new ManifestEntry(ManifestEntry.Type.STRING, "a/slow=value", "test:1");
+    final ManifestEntry next = new ManifestEntry(ManifestEntry.Type.STRING, "a/next=value", "test:2");
+
+    final BulkInitializer instance = new BulkInitializer(initialContext, nameParser, 1, InitializerOptions.parse(new String[]{"-entryTimeout=1000"}));
+    final InitializationReport report = instance.initialize(Arrays.asList(slow, next));
+
+    assertThat(report.isSuccessful(), is(false));
+    assertThat(report.getLate(), is(Collections.singleton(slow.toString())));
+    assertThat(report.getBound(), is(Collections.singletonList(next.toString())));
+
+    release.countDown();
+    for (int i = 0; i < 100 && !report.getLate().isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    assertThat(report.isSuccessful(), is(true));
+    assertThat(report.getBound(), is(Arrays.asList(next.toString(), slow.toString())));
+  }
+
+  @Test
+  public void initializeShouldStopGroupWhenInterrupted() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final InitialContext initialContext = new SlowBindContext(new CompositeName("a/slow"), release) {
+
+      @Override
+      public void bind(Name name, Object obj) throws NamingException {
+        if (name.toString().equals("a/slow")) {
+          for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("jndi-bulk-initializer")) {
+              thread.interrupt();
+            }
+          }
+        }
+        super.bind(name, obj);
+      }
+    };
+    final ManifestEntry slow = new ManifestEntry(ManifestEntry.Type.STRING, "a/slow=value", "test:1");
+    final ManifestEntry next = new ManifestEntry(ManifestEntry.Type.STRING, "a/next=value", "test:2");
+    final ManifestEntry other = new ManifestEntry(ManifestEntry.Type.STRING, "b/other=value", "test:3");
+
+    final BulkInitializer instance = new BulkInitializer(initialContext, nameParser, 1, InitializerOptions.parse(new String[]{"-entryTimeout=60000"}));
+    final InitializationReport report = instance.initialize(Arrays.asList(slow, next, other));
+
+    assertThat(report.getLate(), is(Collections.singleton(slow.toString())));
+    assertThat(report.getSkipped(), is(Collections.singleton(next.toString())));
+    assertThat(report.getBound(), is(Collections.singletonList(other.toString())));
+    release.countDown();
+  }
+
+  @Test
+  public void initializeShouldInterruptEntriesWhenDeadlinePassed() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final InitialContext initialContext = new SlowBindContext(new CompositeName("a/slow"), release);
+    final ManifestEntry slow = new ManifestEntry(ManifestEntry.Type.STRING, "a/slow=value", "test:1");
+    final ManifestEntry blocked = new ManifestEntry(ManifestEntry.Type.STRING, "a/blocked=value", "test:2");
+    final ManifestEntry other = new ManifestEntry(ManifestEntry.Type.STRING, "b/other=value", "test:3");
+
+    final BulkInitializer instance = new BulkInitializer(initialContext, nameParser, 2, InitializerOptions.parse(new String[]{"-deadline=1000"}));
+    final long start = System.nanoTime();
+    final InitializationReport report = instance.initialize(Arrays.asList(slow, blocked, other));
+    final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertThat("returned after " + elapsedMillis + "ms", elapsedMillis < 5000L, is(true));
+    assertThat(report.getSkipped(), is(Collections.singleton(blocked.toString())));
+    for (int i = 0; i < 100 && !report.getLate().isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    assertThat(report.getFailures().keySet(), is(Collections.singleton(slow.toString())));
+    release.countDown();
+    Thread.sleep(100);
+    assertThat(report.getBound(), is(Collections.singletonList(other.toString())));
+  }
+
+  @Test
+  public void initializeShouldReportEntriesStillRunningAfterDeadline() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final InitialContext initialContext = new SlowBindContext(new CompositeName("a/slow"), release, false);
+    final ManifestEntry slow = new ManifestEntry(ManifestEntry.Type.STRING, "a/slow=value", "test:1");
+    final ManifestEntry blocked = new ManifestEntry(ManifestEntry.Type.STRING, "a/blocked=value", "test:2");
+    final ManifestEntry other = new ManifestEntry(ManifestEntry.Type.STRING, "b/other=value", "test:3");
+
+    final BulkInitializer instance = new BulkInitializer(initialContext, nameParser, 2, InitializerOptions.parse(new String[]{"-deadline=1000"}));
+    final InitializationReport report = instance.initialize(Arrays.asList(slow, blocked, other));
+
+    assertThat(report.getLate(), is(Collections.singleton(slow.toString())));
+    assertThat(report.getSkipped(), is(Collections.singleton(blocked.toString())));
+    assertThat(report.getBound(), is(Collections.singletonList(other.toString())));
+
+    release.countDown();
+    for (int i = 0; i < 100 && !report.getLate().isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    assertThat(report.getBound(), is(Arrays.asList(other.toString(), slow.toString())));
+    assertThat(report.getSkipped(), is(Collections.singleton(blocked.toString())));
+  }
+}
@@ -0,0 +1,165 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.naming.*;
+import javax.naming.directory.DirContext;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link CachingContext}.
+ *
+ * @author pdgreen
+ */
+public class CachingContextSpec {
+
+  private Context delegate;
+  private Name stringName;
+  private Name propertiesName;
+  private Properties properties;
+
+  @Before
+  public void initializeDelegate() throws NamingException {
+    delegate = mock(Context.class);
+    when(delegate.getNameParser("")).thenReturn(new NameParser() {
+
+      public Name parse(String name) throws NamingException {
+        return new CompositeName(name);//CompositeName is used for testing
+      }
+    });
+    stringName = new CompositeName("app/string");
+    propertiesName = new CompositeName("app/properties");
+    properties = new Properties();
+    properties.setProperty("key", "value");
+    when(delegate.lookup(stringName)).thenReturn("value");
+    when(delegate.lookup("app/string")).thenReturn("value");
+    when(delegate.lookup(propertiesName)).thenReturn(properties);
+  }
+
+  @Test
+  public void lookupShouldBeAnsweredFromCache() throws NamingException {
+    final CachingContext instance = new CachingContext(delegate, 10);
+
+    assertThat(instance.lookup(stringName), is((Object) "value"));
+    assertThat(instance.lookup(stringName), is((Object) "value"));
+    assertThat(instance.lookup(propertiesName), is((Object) properties));
+    assertThat(instance.lookup(propertiesName), is((Object) properties));
+
+    verify(delegate, times(1)).lookup(stringName);
+    verify(delegate, times(1)).lookup(propertiesName);
+    assertThat(instance.getHitCount(), is(2L));
+    assertThat(instance.getMissCount(), is(2L));
+  }
+
+  @Test
+  public void cachedPropertiesShouldNotBeSharedBetweenCallers() throws NamingException {
+    final CachingContext instance = new CachingContext(delegate, 10);
+
+    ((Properties) instance.lookup(propertiesName)).setProperty("key", "changed");
+    final Properties second = (Properties) instance.lookup(propertiesName);
+    second.setProperty("other", "added");
+
+    assertThat(((Properties) instance.lookup(propertiesName)).getProperty("key"), is("value"));
+    assertThat(((Properties) instance.lookup(propertiesName)).getProperty("other"), is(nullValue()));
+    assertThat(properties.getProperty("key"), is("value"));
+    verify(delegate, times(1)).lookup(propertiesName);
+  }
+
+  @Test
+  public void lookupShouldOnlyCacheUnmodifiableCollections() throws NamingException {
+    final Name mutableName = new CompositeName("app/mutable");
+    final Name unmodifiableName = new CompositeName("app/unmodifiable");
+    when(delegate.lookup(mutableName)).thenReturn(new ArrayList<String>(Arrays.asList("a", "b")));
+    when(delegate.lookup(unmodifiableName)).thenReturn(Collections.unmodifiableList(new ArrayList<String>(Arrays.asList("a", "b"))));
+    final CachingContext instance = new CachingContext(delegate, 10);
+
+    for (int i = 0; i < 2; i++) {
+      instance.lookup(mutableName);
+      instance.lookup(unmodifiableName);
+    }
+
+    verify(delegate, times(2)).lookup(mutableName);
+    verify(delegate, times(1)).lookup(unmodifiableName);
+  }
+
+  @Test
+  public void lookupShouldBypassCacheForObjectsCreatedByFactories() throws NamingException {
+    final Name ldapName = new CompositeName("ldap/test");
+    when(delegate.lookup(ldapName)).thenReturn(mock(DirContext.class));
+    final CachingContext instance = new CachingContext(delegate, 10);
+
+    instance.lookup(ldapName);
+    instance.lookup(ldapName);
+
+    verify(delegate, times(2)).lookup(ldapName);
+    assertThat(instance.getBypassCount(), is(2L));
+    assertThat(instance.size(), is(0));
+  }
+
+  @Test
+  public void cacheShouldEvictLeastRecentlyUsed() throws NamingException {
+    final CachingContext instance = new CachingContext(delegate, 1);
+
+    instance.lookup(stringName);
+    instance.lookup(propertiesName);
+    instance.lookup(stringName);
+
+    verify(delegate, times(2)).lookup(stringName);
+    assertThat(instance.getEvictionCount(), is(2L));
+    assertThat(instance.size(), is(1));
+  }
+
+  @Test
+  public void cachedValueShouldExpireAfterTimeToLive() throws Exception {
+    final CachingContext instance = new CachingContext(delegate, 10, 1, TimeUnit.MILLISECONDS);
+
+    instance.lookup(stringName);
+    Thread.sleep(10);
+    instance.lookup(stringName);
+
+    verify(delegate, times(2)).lookup(stringName);
+  }
+
+  @Test
+  public void rebindThroughContextShouldInvalidateName() throws NamingException {
+    final CachingContext instance = new CachingContext(delegate, 10);
+
+    instance.lookup("app/string");
+    instance.rebind("app/string", "other");
+    instance.lookup("app/string");
+
+    verify(delegate, times(2)).lookup("app/string");
+  }
+
+  @Test
+  public void reinitializeShouldInvalidateAllCachingContexts() throws NamingException {
+    final CachingContext instance = new CachingContext(delegate, 10);
+    instance.lookup(propertiesName);
+    instance.lookup(stringName);
+
+    final InitialContext initialContext = mock(InitialContext.class);
+    new PropertiesInitializer(initialContext).reinitialize(ValueDescriptor.of(propertiesName, properties));
+    instance.lookup(propertiesName);
+    instance.lookup(stringName);
+
+    verify(delegate, times(2)).lookup(propertiesName);
+    verify(delegate, times(1)).lookup(stringName);
+  }
+
+  @Test
+  public void invalidateShouldForgetNamesBelowSubcontext() throws NamingException {
+    final CachingContext instance = new CachingContext(delegate, 10);
+    instance.lookup(propertiesName);
+    instance.lookup(stringName);
+
+    instance.invalidate(new CompositeName("app"));
+
+    assertThat(instance.size(), is(0));
+  }
+}
@@ -0,0 +1,172 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.*;
+import javax.naming.*;
+import javax.naming.directory.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link CachingDirContext} and {@link LdapResultCache}.
+ *
+ * @author pdgreen
+ */
+public class CachingDirContextSpec {
+
+  private static final String USER = "uid=jdoe,ou=people";
+  private static final String FILTER = "(member={0})";
+  private DirContext delegate;
+  private Attributes attributes;
+
+  @Before
+  public void initializeDelegate() throws NamingException {
+    delegate = mock(DirContext.class);
+    attributes = new BasicAttributes("cn", "John Doe", true);
+    attributes.put("mail", "jdoe@example.com");
+    when(delegate.getAttributes(USER)).thenReturn(attributes);
+  }
+
+  private static NamingEnumeration<SearchResult> results(final int count) {
+    final List<SearchResult> results = new ArrayList<SearchResult>();
+    for (int i = 0; i < count; i++) {
+      results.add(new SearchResult("cn=group" + i, null, new BasicAttributes("cn", "group" + i, true)));
+    }
+    final Iterator<SearchResult> iterator = results.iterator();
+    return new NamingEnumeration<SearchResult>() {
+
+      public SearchResult next() {
+        return iterator.next();
+      }
+
+      public boolean hasMore() {
+        return iterator.hasNext();
+      }
+
+      public void close() {
+      }
+
+      public boolean hasMoreElements() {
+        return iterator.hasNext();
+      }
+
+      public SearchResult nextElement() {
+        return iterator.next();
+      }
+    };
+  }
+
+  private static int count(final NamingEnumeration<SearchResult> results) throws NamingException {
+    int count = 0;
+    while (results.hasMore()) {
+      results.next();
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void getAttributesShouldBeAnsweredFromCache() throws NamingException {
+    final LdapResultCache cache = new LdapResultCache(10, 60000L, 100);
+    final CachingDirContext instance = new CachingDirContext(delegate, cache);
+
+    assertThat(instance.getAttributes(USER).get("cn").get(), is((Object) "John Doe"));
+    instance.getAttributes(USER).remove("cn");
+    assertThat(instance.getAttributes(USER).get("cn").get(), is((Object) "John Doe"));
+
+    verify(delegate, times(1)).getAttributes(USER);
+    assertThat(cache.getHitCount(), is(2L));
+    assertThat(cache.getHitRate(), is(2.0 / 3.0));
+    assertThat(cache.getEstimatedBytes() > 0L, is(true));
+  }
+
+  @Test
+  public void modifyAttributesShouldInvalidateEntryAndSearches() throws NamingException {
+    final SearchControls controls = new SearchControls();
+    when(delegate.search("ou=groups", FILTER, new Object[]{USER}, controls)).thenReturn(results(2), results(2));
+    final LdapResultCache cache = new LdapResultCache(10, 60000L, 100);
+    final CachingDirContext instance = new CachingDirContext(delegate, cache);
+    instance.getAttributes(USER);
+    instance.search("ou=groups", FILTER, new Object[]{USER}, controls);
+
+    instance.modifyAttributes(USER, new ModificationItem[0]);
+    instance.getAttributes(USER);
+    assertThat(count(instance.search("ou=groups", FILTER, new Object[]{USER}, controls)), is(2));
+
+    verify(delegate, times(2)).getAttributes(USER);
+    verify(delegate, times(2)).search("ou=groups", FILTER, new Object[]{USER}, controls);
+    assertThat(cache.getInvalidationCount(), is(2L));
+  }
+
+  @Test
+  public void searchShouldBeAnsweredFromCache() throws NamingException {
+    final SearchControls controls = new SearchControls();
+    when(delegate.search("ou=groups", FILTER, new Object[]{USER}, controls)).thenReturn(results(3));
+    final CachingDirContext instance = new CachingDirContext(delegate, new LdapResultCache(10, 60000L, 100));
+
+    assertThat(count(instance.search("ou=groups", FILTER, new Object[]{USER}, controls)), is(3));
+    assertThat(count(instance.search("OU=groups", FILTER, new Object[]{USER}, new SearchControls())), is(3));
+
+    verify(delegate, times(1)).search(anyString(), anyString(), (Object[]) anyObject(), (SearchControls) anyObject());
+  }
+
+  @Test
+  public void searchLargerThanMaxSearchResultsShouldNotBeCached() throws NamingException {
+    final SearchControls controls = new SearchControls();
+    when(delegate.search("ou=groups", "(cn=*)", controls)).thenReturn(results(5), results(5));
+    final LdapResultCache cache = new LdapResultCache(10, 60000L, 2);
+    final CachingDirContext instance = new CachingDirContext(delegate, cache);
+
+    assertThat(count(instance.search("ou=groups", "(cn=*)", controls)), is(5));
+    assertThat(count(instance.search("ou=groups", "(cn=*)", controls)), is(5));
+
+    verify(delegate, times(2)).search("ou=groups", "(cn=*)", controls);
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void changedEnvironmentShouldBypassCache() throws NamingException {
+    final CachingDirContext instance = new CachingDirContext(delegate, new LdapResultCache(10, 60000L, 100));
+    instance.getAttributes(USER);
+
+    instance.addToEnvironment(Context.SECURITY_PRINCIPAL, "cn=other");
+    instance.getAttributes(USER);
+
+    verify(delegate, times(2)).getAttributes(USER);
+  }
+
+  @Test
+  public void cacheShouldEvictLeastRecentlyUsedAndExpire() throws Exception {
+    when(delegate.getAttributes("uid=other,ou=people")).thenReturn(new BasicAttributes("cn", "Other", true));
+    final LdapResultCache cache = new LdapResultCache(1, 1L, 100);
+    final CachingDirContext instance = new CachingDirContext(delegate, cache);
+
+    instance.getAttributes(USER);
+    instance.getAttributes("uid=other,ou=people");
+    assertThat(cache.getEvictionCount(), is(1L));
+    Thread.sleep(10);
+    instance.getAttributes("uid=other,ou=people");
+
+    verify(delegate, times(2)).getAttributes("uid=other,ou=people");
+    assertThat(cache.size(), is(1));
+  }
+
+  @Test
+  public void fromShouldOnlyCreateCacheWhenEnabled() {
+    final Properties properties = new Properties();
+    assertThat(LdapResultCache.from(properties), is(nullValue()));
+    properties.setProperty(LdapResultCache.CACHE_KEY, "true");
+    properties.setProperty(LdapResultCache.MAX_SIZE_KEY, "5");
+    assertThat(LdapResultCache.from(properties), is(notNullValue()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fromShouldRejectInvalidSize() {
+    final Properties properties = new Properties();
+    properties.setProperty(LdapResultCache.CACHE_KEY, "true");
+    properties.setProperty(LdapResultCache.MAX_SIZE_KEY, "0");
+
+    LdapResultCache.from(properties);
+  }
+}
@@ -0,0 +1,186 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.naming.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link CompiledConfiguration} and {@link CompiledConfigurationInitializer}.
+ *
+ * @author pdgreen
+ */
+public class CompiledConfigurationSpec {
+
+  private File propertiesFile;
+  private File manifest;
+  private File compiled;
+  private NameParser nameParser;
+
+  @Before
+  public void writeManifest() throws IOException {
+    propertiesFile = File.createTempFile("compiled", ".properties");
+    propertiesFile.deleteOnExit();
+    FileWriter writer = new FileWriter(propertiesFile);
+    writer.write("key=value\nother=\\u00e9\n");
+    writer.close();
+    final String ldapTestPropertiesPath = getClass().getClassLoader().getResource("ldap-test.properties").getPath();
+    manifest = File.createTempFile("manifest", ".txt");
+    manifest.deleteOnExit();
+    writer = new FileWriter(manifest);
+    writer.write("string jsf/ProjectStage:local=Development\n"
+            + "typed app/maxUsers:int=42\n"
+            + "typed app/admins:list=alice, bob\n"
+            + "properties properties/test=" + propertiesFile.getPath() + "\n"
+            + "ldap ldap/test=" + ldapTestPropertiesPath + "\n");
+    writer.close();
+    compiled = File.createTempFile("configuration", ".compiled");
+    compiled.deleteOnExit();
+    nameParser = new NameParser() {
+
+      public Name parse(String name) throws NamingException {
+        return new CompositeName(name);//CompositeName is used for testing
+      }
+    };
+  }
+
+  private static void rewriteKeepingLastModified(final File file, final String content) throws IOException {
+    final long lastModified = file.lastModified();
+    final FileWriter writer = new FileWriter(file);
+    writer.write(content);
+    writer.close();
+    assertThat(file.setLastModified(lastModified), is(true));
+  }
+
+  @Test
+  public void readShouldReturnCompiledEntries() throws IOException {
+    CompiledConfiguration.compile(Collections.singletonList(manifest.getPath())).write(compiled);
+
+    final CompiledConfiguration result = CompiledConfiguration.read(compiled);
+
+    final List<CompiledConfiguration.Entry> entries = result.getEntries();
+    assertThat(entries.size(), is(5));
+    assertThat(entries.get(0).getName(), is("jsf/ProjectStage"));
+    assertThat(entries.get(0).isLocal(), is(true));
+    assertThat(entries.get(0).getValue(), is((Object) "Development"));
+    assertThat(entries.get(1).getValue(), is((Object) 42));
+    assertThat(entries.get(2).getValue(), is((Object) Arrays.asList("alice", "bob")));
+    assertThat(((Properties) entries.get(3).getValue()).getProperty("other"), is("\u00e9"));
+    assertThat(entries.get(4).getType(), is(ManifestEntry.Type.LDAP));
+    assertThat(result.getManifests(), is(Collections.singletonList(manifest.getAbsolutePath())));
+    assertThat(result.findStaleSources().isEmpty(), is(true));
+  }
+
+  @Test
+  public void readShouldReturnTypedPropertiesAsMap() throws IOException {
+    final File typedFile = File.createTempFile("typed", ".properties");
+    typedFile.deleteOnExit();
+    FileWriter writer = new FileWriter(typedFile);
+    writer.write("maxUsers\\:int=42\nadmins\\:list=alice, bob\nname=plain\n");
+    writer.close();
+    writer = new FileWriter(manifest);
+    writer.write("typed app/settings:properties=" + typedFile.getPath() + "\n");
+    writer.close();
+    CompiledConfiguration.compile(Collections.singletonList(manifest.getPath())).write(compiled);
+
+    final CompiledConfiguration result = CompiledConfiguration.read(compiled);
+
+    final Map<?, ?> settings = (Map<?, ?>) result.getEntries().get(0).getValue();
+    assertThat(settings.get("maxUsers"), is((Object) 42));
+    assertThat(settings.get("admins"), is((Object) Arrays.asList("alice", "bob")));
+    assertThat(settings.get("name"), is((Object) "plain"));
+    rewriteKeepingLastModified(typedFile, "maxUsers\\:int=43\nadmins\\:list=alice, bob\nname=plain\n");
+    assertThat(result.findStaleSources(), is(Collections.singletonList(typedFile.getAbsolutePath())));
+  }
+
+  @Test
+  public void compileShouldCompileEachPropertiesFileOfArchive() throws IOException {
+    final File archive = File.createTempFile("configuration", ".jar");
+    archive.deleteOnExit();
+    final ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+    zipOutputStream.putNextEntry(new ZipEntry("app/db.properties"));
+    zipOutputStream.write("url=jdbc:test\n".getBytes("ISO-8859-1"));
+    zipOutputStream.putNextEntry(new ZipEntry("mail.properties"));
+    zipOutputStream.write("host=smtp\n".getBytes("ISO-8859-1"));
+    zipOutputStream.close();
+    final FileWriter writer = new FileWriter(manifest);
+    writer.write("properties properties/archived/*:local=" + archive.getPath() + "\n");
+    writer.close();
+    CompiledConfiguration.compile(Collections.singletonList(manifest.getPath())).write(compiled);
+
+    final CompiledConfiguration result = CompiledConfiguration.read(compiled);
+
+    final List<CompiledConfiguration.Entry> entries = result.getEntries();
+    assertThat(entries.size(), is(2));
+    assertThat(entries.get(0).getName(), is("properties/archived/app/db"));
+    assertThat(entries.get(0).isLocal(), is(true));
+    assertThat(((Properties) entries.get(0).getValue()).getProperty("url"), is("jdbc:test"));
+    assertThat(entries.get(1).getName(), is("properties/archived/mail"));
+    rewriteKeepingLastModified(archive, "not an archive any more");
+    assertThat(result.findStaleSources(), is(Collections.singletonList(archive.getAbsolutePath())));
+  }
+
+  @Test(expected = IOException.class)
+  public void readShouldRejectCorruptFile() throws IOException {
+    CompiledConfiguration.compile(Collections.singletonList(manifest.getPath())).write(compiled);
+    final RandomAccessFile file = new RandomAccessFile(compiled, "rw");
+    file.seek(file.length() - 1);
+    final int last = file.read();
+    file.seek(file.length() - 1);
+    file.write(last ^ 0xFF);
+    file.close();
+
+    CompiledConfiguration.read(compiled);
+  }
+
+  @Test
+  public void findStaleSourcesShouldIgnoreTouchedFiles() throws IOException {
+    CompiledConfiguration.compile(Collections.singletonList(manifest.getPath())).write(compiled);
+    assertThat(propertiesFile.setLastModified(propertiesFile.lastModified() - 60000L), is(true));
+
+    assertThat(CompiledConfiguration.read(compiled).findStaleSources().isEmpty(), is(true));
+  }
+
+  @Test
+  public void readIfCurrentShouldFallBackWhenSourceChanged() throws IOException {
+    CompiledConfiguration.compile(Collections.singletonList(manifest.getPath())).write(compiled);
+    rewriteKeepingLastModified(propertiesFile, "key=VALUE\nother=\\u00e9\n");//same size and modification time
+
+    assertThat(CompiledConfigurationInitializer.readIfCurrent(compiled), is(nullValue()));
+    assertThat(CompiledConfiguration.read(compiled).findStaleSources(), is(Collections.singletonList(propertiesFile.getAbsolutePath())));
+  }
+
+  @Test
+  public void initializeShouldBindCompiledEntries() throws Exception {
+    CompiledConfiguration.compile(Collections.singletonList(manifest.getPath())).write(compiled);
+    RecordingContextFactory.reset();
+    final Hashtable<String, String> ht = new Hashtable<String, String>();
+    ht.put(Context.INITIAL_CONTEXT_FACTORY, RecordingContextFactory.class.getName());
+    final InitialContext initialContext = JndiUtils.createInitialContext(ht);
+
+    final InitializationReport report = new CompiledConfigurationInitializer(initialContext, nameParser)
+            .initialize(CompiledConfigurationInitializer.readIfCurrent(compiled));
+
+    assertThat(report.getBound().size(), is(5));
+    final Context context = RecordingContextFactory.CONTEXTS.get(0);
+    verify(RecordingContextFactory.CONTEXTS.get(1)).bind(new CompositeName("jsf/ProjectStage"), "Development");
+    verify(context).bind(new CompositeName("app/maxUsers"), 42);
+    verify(context).bind(new CompositeName("app/admins"), Arrays.asList("alice", "bob"));
+    verify(context).bind(eq(new CompositeName("properties/test")), anyObject());
+    verify(context).bind(eq(new CompositeName("ldap/test")), anyObject());
+  }
+}
@@ -0,0 +1,91 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Arrays;
+import java.util.Properties;
+import javax.naming.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link FingerprintBinder}.
+ *
+ * @author pdgreen
+ */
+public class FingerprintBinderSpec {
+
+  private Name jndiName;
+  private Name fingerprintName;
+
+  @Before
+  public void initializeNames() throws InvalidNameException {
+    jndiName = new CompositeName("properties/test");//CompositeName is used for testing
+    fingerprintName = new CompositeName("properties/test" + FingerprintBinder.FINGERPRINT_NAME_SUFFIX);
+  }
+
+  @Test
+  public void fingerprintShouldOnlyDependOnContent() {
+    final Properties first = new Properties();
+    first.setProperty("a", "1");
+    first.setProperty("b", "2");
+    final Properties second = new Properties();
+    second.setProperty("b", "2");
+    second.setProperty("a", "1");
+    final Properties changed = new Properties();
+    changed.setProperty("a", "1");
+    changed.setProperty("b", "3");
+
+    assertThat(FingerprintBinder.fingerprint(first), is(FingerprintBinder.fingerprint(second)));
+    assertThat(FingerprintBinder.fingerprint(first), is(not(FingerprintBinder.fingerprint(changed))));
+    assertThat(FingerprintBinder.fingerprint(first), is(not(FingerprintBinder.fingerprint(PropertiesSnapshot.of(first)))));
+    assertThat(FingerprintBinder.fingerprint("1"), is(not(FingerprintBinder.fingerprint(1))));
+    assertThat(FingerprintBinder.fingerprint(Arrays.asList("a,b")), is(not(FingerprintBinder.fingerprint(Arrays.asList("a", "b")))));
+  }
+
+  @Test
+  public void fingerprintShouldNotConfuseSeparatorsInContent() {
+    final Properties first = new Properties();
+    first.setProperty("a", "1:b");
+    final Properties second = new Properties();
+    second.setProperty("a", "1");
+    second.setProperty("b", "");
+
+    assertThat(FingerprintBinder.fingerprint(first), is(not(FingerprintBinder.fingerprint(second))));
+  }
+
+  @Test
+  public void bindShouldRebindAndStoreFingerprintWhenNoneIsStored() throws NamingException {
+    final Context context = mock(Context.class);
+    when(context.lookup(fingerprintName)).thenThrow(new NameNotFoundException());
+
+    final boolean result = FingerprintBinder.bind(context, jndiName, "value", true);
+
+    assertThat(result, is(true));
+    verify(context).rebind(jndiName, "value");
+    verify(context).rebind(fingerprintName, FingerprintBinder.fingerprint("value"));
+  }
+
+  @Test
+  public void bindShouldSkipUnchangedValue() throws NamingException {
+    final Context context = mock(Context.class);
+    when(context.lookup(fingerprintName)).thenReturn(FingerprintBinder.fingerprint("value"));
+
+    final boolean result = FingerprintBinder.bind(context, jndiName, "value", true);
+
+    assertThat(result, is(false));
+    verify(context, never()).rebind((Name) anyObject(), anyObject());
+    verify(context, never()).bind((Name) anyObject(), anyObject());
+  }
+
+  @Test
+  public void bindShouldAlwaysBindWithoutRebindMode() throws NamingException {
+    final Context context = mock(Context.class);
+
+    final boolean result = FingerprintBinder.bind(context, jndiName, "value", false);
+
+    assertThat(result, is(true));
+    verify(context).bind(jndiName, "value");
+    verify(context, never()).lookup((Name) anyObject());
+  }
+}
@@ -0,0 +1,95 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import javax.management.ObjectName;
+import javax.naming.*;
+import javax.naming.directory.DirContext;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link JndiConfigurationMetrics}.
+ *
+ * @author pdgreen
+ */
+public class JndiConfigurationMetricsSpec {
+
+  private JndiConfigurationMetrics metrics;
+
+  @Before
+  public void resetMetrics() {
+    metrics = JndiConfigurationMetrics.get();
+    metrics.reset();
+    LdapDirContextFactory.invalidateAll();
+  }
+
+  @Test
+  public void bucketShouldBeLog2OfNanos() {
+    assertThat(JndiConfigurationMetrics.bucket(0), is(0));
+    assertThat(JndiConfigurationMetrics.bucket(1), is(0));
+    assertThat(JndiConfigurationMetrics.bucket(2), is(1));
+    assertThat(JndiConfigurationMetrics.bucket(1023), is(9));
+    assertThat(JndiConfigurationMetrics.bucket(1024), is(10));
+    assertThat(JndiConfigurationMetrics.bucket(Long.MAX_VALUE), is(62));
+  }
+
+  @Test
+  public void percentileShouldBeUpperBoundOfBucket() {
+    for (int i = 0; i < 99; i++) {
+      metrics.recordLdapContextCreation(1000);
+    }
+    metrics.recordLdapContextCreation(1000000);
+
+    assertThat(metrics.getLdapContextCreationPercentileNanos(50), is(1023L));
+    assertThat(metrics.getLdapContextCreationPercentileNanos(100), is((1L << 20) - 1));
+    assertThat(metrics.getLdapContextCreationMaxNanos(), is(1000000L));
+    assertThat(metrics.getLdapContextCreationCount(), is(100L));
+  }
+
+  @Test
+  public void initializeShouldRecordTimePerBinding() throws NamingException {
+    final Name jndiName = new CompositeName("app/string");//CompositeName is used for testing
+    final InitialContext initialContext = mock(InitialContext.class);
+
+    new StringInitializer(initialContext).initialize(ValueDescriptor.of(jndiName, "value"));
+
+    assertThat(metrics.getInitializeNanos().containsKey("app/string"), is(true));
+    assertThat(metrics.getSubcontextsCreated(), is(1L));
+  }
+
+  @Test
+  public void getObjectInstanceShouldCountSuccessesAndFailures() throws Exception {
+    final Name name = new CompositeName("ldap/test");
+    final Properties properties = new Properties();
+    properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, StubDirContextFactory.class.getName());
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:389/dc=fake");
+    final Context context = mock(Context.class);
+    when(context.lookup(LdapDirContextInitializer.buildPropertiesName(name))).thenReturn(properties);
+    final LdapDirContextFactory factory = new LdapDirContextFactory();
+
+    ((DirContext) factory.getObjectInstance(null, name, context, null)).close();
+    try {
+      factory.getObjectInstance(null, new CompositeName("ldap/missing"), context, null);
+      fail("missing properties should fail");
+    } catch (RuntimeException ex) {
+      // expected
+    } catch (NamingException ex) {
+      // expected
+    }
+
+    assertThat(metrics.getLdapContextCreationCount(), is(1L));
+    assertThat(metrics.getLdapContextCreationFailureCount(), is(1L));
+  }
+
+  @Test
+  public void metricsShouldBeRegisteredWithPlatformMBeanServer() throws Exception {
+    metrics.recordSubcontextFound();
+
+    final Object result = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(JndiConfigurationMetrics.OBJECT_NAME), "SubcontextsFound");
+
+    assertThat(result, is((Object) 1L));
+  }
+}
@@ -1,10 +1,12 @@
 package com.idmworks.weblogic.jndiconfiguration;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 import javax.naming.*;
 import org.junit.*;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
 
 /**
  * Specification for {@link JndiUtils}.
@@ -19,4 +21,65 @@ public class JndiUtilsSpec {
     InitialContext result = JndiUtils.createInitialContext(ht);
     assertThat(result, is(notNullValue()));
   }
+
+  @Test
+  public void createEnvironmentShouldDisableReplicationOnlyWhenLocal() {
+    final Hashtable<String, String> replicated = JndiUtils.createEnvironment(InitializerOptions.none());
+    final Hashtable<String, String> local = JndiUtils.createEnvironment(InitializerOptions.parse(new String[]{"-local"}));
+
+    assertThat(replicated.get(Context.INITIAL_CONTEXT_FACTORY), is(JndiUtils.WEBLOGIC_INITIAL_CONTEXT_FACTORY));
+    assertThat(replicated.containsKey(JndiUtils.REPLICATE_BINDINGS), is(false));
+    assertThat(local.get(JndiUtils.REPLICATE_BINDINGS), is("false"));
+  }
+
+  @Test
+  public void createLocalInitialContextShouldPassEnvironmentWithoutReplication() throws NamingException {
+    RecordingContextFactory.reset();
+    final Hashtable<String, String> ht = new Hashtable<String, String>();
+    ht.put(Context.INITIAL_CONTEXT_FACTORY, RecordingContextFactory.class.getName());
+    ht.put(Context.PROVIDER_URL, "t3://localhost:7001");
+
+    JndiUtils.createLocalInitialContext(JndiUtils.createInitialContext(ht));
+
+    assertThat(RecordingContextFactory.ENVIRONMENTS.size(), is(2));
+    final Hashtable<?, ?> result = RecordingContextFactory.ENVIRONMENTS.get(1);
+    assertThat(result.get(JndiUtils.REPLICATE_BINDINGS), is((Object) "false"));
+    assertThat(result.get(Context.PROVIDER_URL), is((Object) "t3://localhost:7001"));
+    assertThat(result.get(Context.INITIAL_CONTEXT_FACTORY), is((Object) RecordingContextFactory.class.getName()));
+  }
+
+  @Test
+  public void ensureSubcontextsShouldCreateEachPrefixOnceWithCache() throws NamingException {
+    final Context context = mock(Context.class);
+    final SubcontextCache cache = new SubcontextCache();
+    final Name first = new CompositeName("a/b/c/first");//CompositeName is used for testing
+    final Name second = new CompositeName("a/b/c/second");//CompositeName is used for testing
+    final Name third = new CompositeName("a/d/third");//CompositeName is used for testing
+
+    JndiUtils.ensureSubcontexts(context, Arrays.asList(first, second, third), cache);
+
+    verify(context, times(1)).createSubcontext(new CompositeName("a"));
+    verify(context, times(1)).createSubcontext(new CompositeName("a/b"));
+    verify(context, times(1)).createSubcontext(new CompositeName("a/b/c"));
+    verify(context, times(1)).createSubcontext(new CompositeName("a/d"));
+    assertThat(cache.getCreatedCount(), is(4L));
+    assertThat(cache.getSkippedCount(), is(4L));
+  }
+
+  @Test
+  public void ensureSubcontextsShouldCountExistingSubcontextsAsFound() throws NamingException {
+    final Context context = mock(Context.class);
+    final Context existing = mock(Context.class);
+    final SubcontextCache cache = new SubcontextCache();
+    final Name subcontext = new CompositeName("a");//CompositeName is used for testing
+    when(context.createSubcontext(subcontext)).thenThrow(new NameAlreadyBoundException());
+    when(context.lookup(subcontext)).thenReturn(existing);
+
+    JndiUtils.ensureSubcontexts(context, new CompositeName("a/first"), cache);
+    JndiUtils.ensureSubcontexts(context, new CompositeName("a/second"), cache);
+
+    verify(context, times(1)).lookup(subcontext);
+    assertThat(cache.getFoundCount(), is(1L));
+    assertThat(cache.getSkippedCount(), is(1L));
+  }
 }
@@ -0,0 +1,195 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.*;
+import javax.naming.directory.DirContext;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link LdapConnectionPool}.
+ *
+ * @author pdgreen
+ */
+public class LdapConnectionPoolSpec {
+
+  private static final int MAX_SIZE = 4;
+  private Properties properties;
+
+  @Before
+  public void initializeProperties() {
+    StubDirContextFactory.reset();
+    LdapDirContextFactory.invalidateAll();
+    properties = new Properties();
+    properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, StubDirContextFactory.class.getName());
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:389/dc=fake");
+    properties.setProperty(LdapPoolConfiguration.POOL_KEY, "true");
+    properties.setProperty(LdapPoolConfiguration.MAX_SIZE_KEY, String.valueOf(MAX_SIZE));
+    properties.setProperty(LdapPoolConfiguration.MAX_WAIT_KEY, "10000");
+  }
+
+  @After
+  public void closePools() {
+    LdapDirContextFactory.invalidateAll();
+  }
+
+  @Test
+  public void closeShouldReturnConnectionToPool() throws Exception {
+    final LdapConnectionPool pool = new LdapConnectionPool("ldap/test", LdapDirContextFactory.buildInitialDirContextHashtableFrom(properties), LdapPoolConfiguration.from(properties));
+
+    pool.borrow().close();
+    pool.borrow().close();
+
+    assertThat(pool.getCreatedCount(), is(1L));
+    assertThat(pool.getIdleCount(), is(1));
+    assertThat(StubDirContextFactory.OPEN.get(), is(1));
+    pool.close();
+    assertThat(StubDirContextFactory.OPEN.get(), is(0));
+  }
+
+  @Test
+  public void warmUpShouldCountConnectionsAlreadyOpen() throws Exception {
+    final LdapConnectionPool pool = new LdapConnectionPool("ldap/test", LdapDirContextFactory.buildInitialDirContextHashtableFrom(properties), LdapPoolConfiguration.from(properties));
+
+    assertThat(pool.warmUp(2), is(2));
+    assertThat(pool.warmUp(2), is(0));
+    final DirContext borrowed = pool.borrow();
+    assertThat(pool.warmUp(MAX_SIZE + 1), is(MAX_SIZE - 2));
+    assertThat(pool.warmUp(MAX_SIZE), is(0));
+
+    assertThat(pool.getOpenCount(), is(MAX_SIZE));
+    assertThat(StubDirContextFactory.OPEN.get(), is(MAX_SIZE));
+    borrowed.close();
+    pool.close();
+  }
+
+  @Test
+  public void connectionWithChangedEnvironmentShouldNotBeReturnedToPool() throws Exception {
+    final LdapConnectionPool pool = new LdapConnectionPool("ldap/test", LdapDirContextFactory.buildInitialDirContextHashtableFrom(properties), LdapPoolConfiguration.from(properties));
+    pool.borrow().close();
+
+    final DirContext authenticated = pool.borrow();
+    authenticated.addToEnvironment(Context.SECURITY_PRINCIPAL, "uid=someone,dc=fake");
+    authenticated.addToEnvironment(Context.SECURITY_CREDENTIALS, "secret");
+    authenticated.close();
+    final DirContext next = pool.borrow();
+
+    assertThat(pool.getCreatedCount(), is(2L));
+    assertThat(pool.getDestroyedCount(), is(1L));
+    assertThat(StubDirContextFactory.OPEN.get(), is(1));
+    next.close();
+    assertThat(pool.getIdleCount(), is(1));
+    pool.close();
+  }
+
+  @Test
+  public void borrowShouldDiscardExpiredConnections() throws Exception {
+    properties.setProperty(LdapPoolConfiguration.MAX_LIFETIME_KEY, "1");
+    final LdapConnectionPool pool = new LdapConnectionPool("ldap/test", LdapDirContextFactory.buildInitialDirContextHashtableFrom(properties), LdapPoolConfiguration.from(properties));
+
+    pool.borrow().close();
+    Thread.sleep(5);
+    pool.borrow().close();
+
+    assertThat(pool.getCreatedCount(), is(2L));
+    pool.close();
+  }
+
+  @Test
+  public void drainShouldWaitForBorrowedConnections() throws Exception {
+    final LdapConnectionPool pool = new LdapConnectionPool("ldap/test", LdapDirContextFactory.buildInitialDirContextHashtableFrom(properties), LdapPoolConfiguration.from(properties));
+    final DirContext borrowed = pool.borrow();
+    pool.borrow().close();
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    executor.schedule(new Callable<Void>() {
+
+      public Void call() throws NamingException {
+        borrowed.close();
+        return null;
+      }
+    }, 50, TimeUnit.MILLISECONDS);
+
+    final int closed = pool.drain(10000L);
+    executor.shutdown();
+
+    assertThat(closed, is(0));
+    assertThat(pool.getOpenCount(), is(0));
+    assertThat(StubDirContextFactory.OPEN.get(), is(0));
+  }
+
+  @Test
+  public void drainShouldCloseConnectionsNotReturnedInTime() throws Exception {
+    final LdapConnectionPool pool = new LdapConnectionPool("ldap/test", LdapDirContextFactory.buildInitialDirContextHashtableFrom(properties), LdapPoolConfiguration.from(properties));
+    final DirContext borrowed = pool.borrow();
+
+    assertThat(pool.drain(10L), is(1));
+    assertThat(pool.getBorrowedCount(), is(0));
+    assertThat(StubDirContextFactory.OPEN.get(), is(0));
+
+    borrowed.close();
+    assertThat(pool.getOpenCount(), is(0));
+    assertThat(pool.getDestroyedCount(), is(1L));
+  }
+
+  @Test(expected = ServiceUnavailableException.class)
+  public void borrowShouldTimeOutWhenPoolIsExhausted() throws Exception {
+    properties.setProperty(LdapPoolConfiguration.MAX_SIZE_KEY, "1");
+    properties.setProperty(LdapPoolConfiguration.MAX_WAIT_KEY, "10");
+    final LdapConnectionPool pool = new LdapConnectionPool("ldap/test", LdapDirContextFactory.buildInitialDirContextHashtableFrom(properties), LdapPoolConfiguration.from(properties));
+
+    pool.borrow();
+    pool.borrow();
+  }
+
+  @Test
+  public void concurrentLookupsShouldNotOpenMoreThanMaxSizeConnections() throws Exception {
+    final Name name = new CompositeName("ldap/test");//CompositeName is used for testing
+    final Context context = mock(Context.class);
+    when(context.lookup(LdapDirContextInitializer.buildPropertiesName(name))).thenReturn(properties);
+    final LdapDirContextFactory factory = new LdapDirContextFactory();
+
+    final int threads = 32;
+    final int lookupsPerThread = 50;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger borrowed = new AtomicInteger();
+    final AtomicInteger maxBorrowed = new AtomicInteger();
+    final List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(executor.submit(new Callable<Object>() {
+
+        public Object call() throws Exception {
+          start.await();
+          for (int j = 0; j < lookupsPerThread; j++) {
+            final DirContext dirContext = (DirContext) factory.getObjectInstance(null, name, context, null);
+            final int current = borrowed.incrementAndGet();
+            int max;
+            while ((max = maxBorrowed.get()) < current && !maxBorrowed.compareAndSet(max, current)) {
+            }
+            Thread.yield();
+            borrowed.decrementAndGet();
+            dirContext.close();
+          }
+          return null;
+        }
+      }));
+    }
+    start.countDown();
+    for (final Future<Object> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    final LdapConnectionPool pool = LdapDirContextFactory.getPool("ldap/test");
+    assertThat(StubDirContextFactory.MAX_OPEN.get() <= MAX_SIZE, is(true));
+    assertThat(maxBorrowed.get() <= MAX_SIZE, is(true));
+    assertThat(pool.getCreatedCount() <= MAX_SIZE, is(true));
+    assertThat(pool.getOpenCount(), is(StubDirContextFactory.OPEN.get()));
+  }
+}
@@ -0,0 +1,123 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Hashtable;
+import java.util.Properties;
+import javax.naming.*;
+import javax.naming.directory.DirContext;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link LdapDirContextFactory}.
+ *
+ * @author pdgreen
+ */
+public class LdapDirContextFactorySpec {
+
+  private Name name;
+  private Name propertiesName;
+  private Reference reference;
+  private Properties properties;
+  private Context context;
+
+  @Before
+  public void initializeContext() throws NamingException {
+    StubDirContextFactory.reset();
+    LdapDirContextFactory.invalidateAll();
+    name = new CompositeName("ldap/test");//CompositeName is used for testing
+    propertiesName = LdapDirContextInitializer.buildPropertiesName(name);
+    reference = new Reference(DirContext.class.getName(), new StringRefAddr(LdapDirContextFactory.JNDI_NAME_ADDRESS_TYPE, "ldap/test"), LdapDirContextFactory.class.getName(), null);
+    properties = new Properties();
+    properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, StubDirContextFactory.class.getName());
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:389/dc=fake");
+    context = mock(Context.class);
+    when(context.lookup(propertiesName)).thenReturn(properties);
+  }
+
+  @After
+  public void invalidateEnvironments() {
+    LdapDirContextFactory.invalidateAll();
+  }
+
+  @Test
+  public void getObjectInstanceShouldLookupPropertiesOnlyOnce() throws Exception {
+    final LdapDirContextFactory factory = new LdapDirContextFactory();
+
+    final Object first = factory.getObjectInstance(reference, name, context, null);
+    final Object second = factory.getObjectInstance(reference, name, context, null);
+
+    assertThat(first, is(instanceOf(DirContext.class)));
+    assertThat(second, is(instanceOf(DirContext.class)));
+    assertThat(StubDirContextFactory.CREATED.get(), is(2));
+    verify(context, times(1)).lookup(propertiesName);
+  }
+
+  @Test
+  public void invalidateShouldReloadProperties() throws Exception {
+    final LdapDirContextFactory factory = new LdapDirContextFactory();
+
+    factory.getObjectInstance(reference, name, context, null);
+    LdapDirContextFactory.invalidate("ldap/test");
+    factory.getObjectInstance(reference, name, context, null);
+
+    verify(context, times(2)).lookup(propertiesName);
+  }
+
+  @Test
+  public void cachedEnvironmentShouldExcludeReservedKeys() throws Exception {
+    properties.setProperty(LdapPoolConfiguration.MAX_SIZE_KEY, "2");
+    new LdapDirContextFactory().getObjectInstance(reference, name, context, null);
+
+    final LdapEnvironment environment = LdapDirContextFactory.getEnvironment("ldap/test");
+
+    assertThat(environment.getEnvironment().containsKey(LdapPoolConfiguration.MAX_SIZE_KEY), is(false));
+    assertThat(environment.getEnvironment().get(Context.PROVIDER_URL), is((Object) "ldap://localhost:389/dc=fake"));
+  }
+
+  @Test
+  public void cachedEnvironmentShouldOnlyBeHandedOutAsCopy() throws Exception {
+    new LdapDirContextFactory().getObjectInstance(reference, name, context, null);
+
+    final LdapEnvironment environment = LdapDirContextFactory.getEnvironment("ldap/test");
+    final Hashtable<Object, Object> copy = (Hashtable<Object, Object>) environment.getEnvironment();
+    copy.put(Context.PROVIDER_URL, "ldap://elsewhere");
+    copy.keySet().clear();
+
+    assertThat(environment.getEnvironment().get(Context.PROVIDER_URL), is((Object) "ldap://localhost:389/dc=fake"));
+  }
+
+  @Test
+  public void lazyDirContextShouldConnectOnFirstOperation() throws Exception {
+    properties.setProperty(LdapEnvironment.LAZY_KEY, "true");
+
+    final DirContext unused = (DirContext) new LdapDirContextFactory().getObjectInstance(reference, name, context, null);
+    unused.addToEnvironment("com.sun.jndi.ldap.connect.timeout", "1000");
+    assertThat(unused.getEnvironment().get("com.sun.jndi.ldap.connect.timeout"), is((Object) "1000"));
+    unused.close();
+    assertThat(StubDirContextFactory.CREATED.get(), is(0));
+
+    final DirContext used = (DirContext) new LdapDirContextFactory().getObjectInstance(reference, name, context, null);
+    assertThat(StubDirContextFactory.CREATED.get(), is(0));
+    used.getAttributes("cn=test");
+    used.getAttributes("cn=other");
+    assertThat(StubDirContextFactory.CREATED.get(), is(1));
+    used.close();
+    assertThat(StubDirContextFactory.OPEN.get(), is(0));
+  }
+
+  @Test
+  public void lazyPooledDirContextShouldBorrowOnFirstOperation() throws Exception {
+    properties.setProperty(LdapEnvironment.LAZY_KEY, "true");
+    properties.setProperty(LdapPoolConfiguration.POOL_KEY, "true");
+
+    final DirContext dirContext = (DirContext) new LdapDirContextFactory().getObjectInstance(reference, name, context, null);
+    assertThat(LdapDirContextFactory.getPool("ldap/test"), is(nullValue()));
+    dirContext.getAttributes("cn=test");
+    dirContext.close();
+
+    assertThat(LdapDirContextFactory.getPool("ldap/test").getIdleCount(), is(1));
+    assertThat(StubDirContextFactory.OPEN.get(), is(1));
+  }
+}
@@ -3,6 +3,7 @@ package com.idmworks.weblogic.jndiconfiguration;
 import java.util.List;
 import java.util.Properties;
 import javax.naming.*;
+import javax.naming.directory.DirContext;
 import org.junit.*;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -38,6 +39,73 @@ public class LdapDirContextInitializerSpec {
     verify(initialContext).bind(propertiesName, properties);
   }
 
+  @Test
+  public void initializeShouldBindPagedSearchWhenEnabled() throws NamingException {
+    final InitialContext initialContext = mock(InitialContext.class);
+    final Name jndiName = new CompositeName("ldap/paged");//CompositeName is used for testing
+    final Name pagedSearchName = new CompositeName("ldap/paged" + LdapPagedSearch.PAGED_SEARCH_NAME_SUFFIX);//CompositeName is used for testing
+    final Properties properties = new Properties();
+    properties.setProperty(LdapPagedSearch.PAGED_SEARCH_KEY, "true");
+
+    new LdapDirContextInitializer(initialContext).initialize(ValueDescriptor.of(jndiName, properties));
+
+    final Reference reference = new Reference(LdapPagedSearch.class.getName(), new StringRefAddr(LdapDirContextFactory.JNDI_NAME_ADDRESS_TYPE, "ldap/paged"), LdapPagedSearchFactory.class.getName(), null);
+    verify(initialContext).bind(pagedSearchName, reference);
+  }
+
+  @Test
+  public void initializeShouldNotBindPagedSearchByDefault() throws NamingException {
+    final InitialContext initialContext = mock(InitialContext.class);
+    final Name jndiName = new CompositeName("ldap/unpaged");//CompositeName is used for testing
+    final Name pagedSearchName = new CompositeName("ldap/unpaged" + LdapPagedSearch.PAGED_SEARCH_NAME_SUFFIX);//CompositeName is used for testing
+
+    new LdapDirContextInitializer(initialContext).initialize(ValueDescriptor.of(jndiName, new Properties()));
+
+    verify(initialContext, never()).bind(eq(pagedSearchName), anyObject());
+  }
+
+  @Test
+  public void initializeShouldWarmUpPooledConnections() throws Exception {
+    StubDirContextFactory.reset();
+    LdapDirContextFactory.invalidateAll();
+    final InitialContext initialContext = mock(InitialContext.class);
+    final Name jndiName = new CompositeName("ldap/warm");//CompositeName is used for testing
+    final Properties properties = new Properties();
+    properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, StubDirContextFactory.class.getName());
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:389/dc=fake");
+    properties.setProperty(LdapPoolConfiguration.POOL_KEY, "true");
+    properties.setProperty(LdapPoolConfiguration.WARMUP_KEY, "2");
+    when(initialContext.lookup(LdapDirContextInitializer.buildPropertiesName(jndiName))).thenReturn(properties);
+
+    new LdapDirContextInitializer(initialContext).initialize(ValueDescriptor.of(jndiName, properties));
+
+    assertThat(StubDirContextFactory.CREATED.get(), is(2));
+    assertThat(LdapDirContextFactory.getPool("ldap/warm").getIdleCount(), is(2));
+
+    final Reference reference = new Reference(DirContext.class.getName(), new StringRefAddr(LdapDirContextFactory.JNDI_NAME_ADDRESS_TYPE, "ldap/warm"), LdapDirContextFactory.class.getName(), null);
+    ((DirContext) new LdapDirContextFactory().getObjectInstance(reference, jndiName, initialContext, null)).close();
+    assertThat(StubDirContextFactory.CREATED.get(), is(2));
+    LdapDirContextFactory.invalidateAll();
+  }
+
+  @Test
+  public void initializeShouldOnlyWarnWhenWarmUpFails() throws NamingException {
+    LdapDirContextFactory.invalidateAll();
+    final InitialContext initialContext = mock(InitialContext.class);
+    final Name jndiName = new CompositeName("ldap/cold");//CompositeName is used for testing
+    final Properties properties = new Properties();
+    properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, "com.idmworks.missing.ContextFactory");
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:389/dc=fake");
+    properties.setProperty(LdapPoolConfiguration.POOL_KEY, "true");
+    properties.setProperty(LdapPoolConfiguration.WARMUP_KEY, "1");
+
+    new LdapDirContextInitializer(initialContext).initialize(ValueDescriptor.of(jndiName, properties));
+
+    verify(initialContext).bind(eq(jndiName), anyObject());
+    assertThat(LdapDirContextFactory.getPool("ldap/cold").getOpenCount(), is(0));
+    LdapDirContextFactory.invalidateAll();
+  }
+
   @Test
   public void parseShouldParseValidInputs() {
     final String[] args = {"properties/test=" + ldapTestPropertiesPath};
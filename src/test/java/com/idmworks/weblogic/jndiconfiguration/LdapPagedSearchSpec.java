@@ -0,0 +1,155 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.*;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link LdapPagedSearch}, against a local in-memory directory server with a size limit smaller than
+ * the number of entries.
+ *
+ * @author pdgreen
+ */
+public class LdapPagedSearchSpec {
+
+  private static final int ENTRIES = 25;
+  private static final int SIZE_LIMIT = 20;
+  private final AtomicInteger pagedSearchCount = new AtomicInteger();
+  private InMemoryDirectoryServer server;
+  private Properties properties;
+
+  @Before
+  public void startServer() throws Exception {
+    final InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("dc=example,dc=com");
+    config.setSchema(null);
+    config.setMaxSizeLimit(SIZE_LIMIT);
+    config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+
+      @Override
+      public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+        if (request.getRequest().hasControl(SimplePagedResultsControl.PAGED_RESULTS_OID)) {
+          pagedSearchCount.incrementAndGet();
+        }
+      }
+    });
+    server = new InMemoryDirectoryServer(config);
+    server.add("dn: dc=example,dc=com", "objectClass: domain", "dc: example");
+    server.add("dn: ou=people,dc=example,dc=com", "objectClass: organizationalUnit", "ou: people");
+    for (int i = 0; i < ENTRIES; i++) {
+      server.add("dn: uid=user" + i + ",ou=people,dc=example,dc=com", "objectClass: account", "uid: user" + i);
+    }
+    server.startListening();
+
+    properties = new Properties();
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:" + server.getListenPort() + "/dc=example,dc=com");
+  }
+
+  @After
+  public void stopServer() {
+    LdapDirContextFactory.invalidateAll();
+    server.shutDown(true);
+  }
+
+  private static SearchControls oneLevel() {
+    final SearchControls controls = new SearchControls();
+    controls.setSearchScope(SearchControls.ONELEVEL_SCOPE);
+    controls.setReturningAttributes(new String[]{"uid"});
+    return controls;
+  }
+
+  @Test
+  public void searchShouldReadAllEntriesPageByPage() throws NamingException {
+    final LdapEnvironment environment = new LdapEnvironment("ldap/people", properties);
+    final LdapPagedSearch instance = new LdapPagedSearch(environment, 10);
+
+    final LdapPagedSearch.Results results = instance.search("ou=people", "(objectClass={0})", new Object[]{"account"}, oneLevel());
+    final Set<String> names = new HashSet<String>();
+    while (results.hasNext()) {
+      names.add(results.next().getName());
+    }
+    results.close();
+    environment.close();
+
+    assertThat(names.size(), is(ENTRIES));
+    assertThat(results.getPageCount(), is(3));
+    assertThat(pagedSearchCount.get(), is(3));
+  }
+
+  @Test
+  public void searchShouldApplyCountLimitToWholeSearch() throws NamingException {
+    final LdapEnvironment environment = new LdapEnvironment("ldap/people", properties);
+    final SearchControls controls = oneLevel();
+    controls.setCountLimit(15L);
+
+    final LdapPagedSearch.Results results = new LdapPagedSearch(environment, 10).search("ou=people", "(objectClass=account)", controls);
+    int count = 0;
+    while (results.hasNext()) {
+      results.next();
+      count++;
+    }
+    environment.close();
+
+    assertThat(count, is(15));
+    assertThat(results.getPageCount(), is(2));
+  }
+
+  @Test
+  public void closeShouldReturnPooledConnection() throws NamingException {
+    properties.setProperty(LdapPoolConfiguration.POOL_KEY, "true");
+    final LdapEnvironment environment = new LdapEnvironment("ldap/people", properties);
+
+    final LdapPagedSearch.Results results = new LdapPagedSearch(environment, 5).search("ou=people", "(objectClass=account)", oneLevel());
+    final SearchResult first = results.next();
+    results.close();
+
+    assertThat(first, is(notNullValue()));
+    assertThat(results.hasNext(), is(false));
+    assertThat(environment.getPool().getOpenCount(), is(1));
+    assertThat(environment.getPool().getIdleCount(), is(1));
+    environment.close();
+  }
+
+  @Test(expected = NameNotFoundException.class)
+  public void searchShouldFailWhenFirstPageCantBeRead() throws NamingException {
+    final LdapEnvironment environment = new LdapEnvironment("ldap/people", properties);
+    try {
+      new LdapPagedSearch(environment, 10).search("ou=missing", "(objectClass=*)", oneLevel());
+    } finally {
+      environment.close();
+    }
+  }
+
+  @Test
+  public void factoryShouldCreateSearchOfBoundLdapName() throws Exception {
+    properties.setProperty(LdapPagedSearch.PAGE_SIZE_KEY, "7");
+    final Context context = mock(Context.class);
+    final Name pagedSearchName = new CompositeName("ldap/people" + LdapPagedSearch.PAGED_SEARCH_NAME_SUFFIX);//CompositeName is used for testing
+    when(context.lookup(new CompositeName("ldap/people" + LdapDirContextInitializer.PROPERTIES_NAME_SUFFIX))).thenReturn(properties);
+    final Reference reference = new Reference(LdapPagedSearch.class.getName(), new StringRefAddr(LdapDirContextFactory.JNDI_NAME_ADDRESS_TYPE, "ldap/people"), LdapPagedSearchFactory.class.getName(), null);
+
+    final LdapPagedSearch result = (LdapPagedSearch) new LdapPagedSearchFactory().getObjectInstance(reference, pagedSearchName, context, null);
+
+    assertThat(result.getPageSize(), is(7));
+    assertThat(result.getEnvironment(), is(sameInstance(LdapDirContextFactory.getEnvironment("ldap/people"))));
+  }
+
+  @Test
+  public void buildLdapNameShouldStripSuffix() throws InvalidNameException {
+    final Name ldapName = new CompositeName("ldap/people");//CompositeName is used for testing
+
+    assertThat(LdapPagedSearch.buildLdapName(LdapPagedSearch.buildPagedSearchName(ldapName)), is(ldapName));
+  }
+}
@@ -0,0 +1,199 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Properties;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Specification for {@link LdapServerSelector}, against local in-memory directory servers that can be made slow or
+ * shut down.
+ *
+ * @author pdgreen
+ */
+public class LdapServerSelectorSpec {
+
+  private static final long PROBE_INTERVAL = 60000L;
+  private InMemoryDirectoryServer fastServer;
+  private InMemoryDirectoryServer slowServer;
+  private LdapServerSelector selector;
+
+  @Before
+  public void startServers() throws Exception {
+    fastServer = startServer(0L);
+    slowServer = startServer(50L);
+  }
+
+  @After
+  public void stopServers() {
+    if (selector != null) {
+      selector.close();
+    }
+    fastServer.shutDown(true);
+    slowServer.shutDown(true);
+  }
+
+  private static InMemoryDirectoryServer startServer(final long delay) throws Exception {
+    final InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("dc=example,dc=com");
+    config.setSchema(null);
+    if (delay > 0) {
+      config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+
+        @Override
+        public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+          try {
+            Thread.sleep(delay);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    final InMemoryDirectoryServer server = new InMemoryDirectoryServer(config);
+    server.startListening();
+    return server;
+  }
+
+  private static String url(final InMemoryDirectoryServer server) {
+    return "ldap://localhost:" + server.getListenPort();
+  }
+
+  private static Hashtable<String, String> environment(final InMemoryDirectoryServer... servers) {
+    final StringBuilder urls = new StringBuilder();
+    for (final InMemoryDirectoryServer server : servers) {
+      urls.append(url(server)).append(' ');
+    }
+    final Hashtable<String, String> environment = new Hashtable<String, String>();
+    environment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+    environment.put(Context.PROVIDER_URL, urls.toString().trim());
+    return environment;
+  }
+
+  private static String connectedUrl(final DirContext context) throws NamingException {
+    try {
+      return (String) context.getEnvironment().get(Context.PROVIDER_URL);
+    } finally {
+      context.close();
+    }
+  }
+
+  @Test
+  public void hasMultipleUrlsShouldOnlyAcceptSpaceSeparatedLists() {
+    final Hashtable<String, String> environment = new Hashtable<String, String>();
+    environment.put(Context.PROVIDER_URL, "ldap://localhost:389");
+    assertThat(LdapServerSelector.hasMultipleUrls(environment), is(false));
+    environment.put(Context.PROVIDER_URL, "ldap://first:389  ldap://second:389");
+    assertThat(LdapServerSelector.hasMultipleUrls(environment), is(true));
+  }
+
+  @Test
+  public void connectShouldPreferFastestHealthyServer() throws NamingException {
+    selector = new LdapServerSelector("ldap/test", environment(slowServer, fastServer), PROBE_INTERVAL, 2000L);
+
+    selector.probe();
+
+    assertThat(selector.rank().get(0).getUrl(), is(url(fastServer)));
+    assertThat(connectedUrl(selector.connect()), is(url(fastServer)));
+  }
+
+  @Test
+  public void rankShouldPutUnprobedServersAfterMeasuredOnes() throws Exception {
+    final ServerSocket firstUnresponsiveServer = new ServerSocket(0);//accepts connections into its backlog, never answers
+    final ServerSocket secondUnresponsiveServer = new ServerSocket(0);
+    try {
+      final Hashtable<String, String> environment = environment(fastServer);
+      environment.put(Context.PROVIDER_URL, "ldap://localhost:" + firstUnresponsiveServer.getLocalPort()
+              + " ldap://localhost:" + secondUnresponsiveServer.getLocalPort() + " " + url(fastServer));
+      selector = new LdapServerSelector("ldap/test", environment, PROBE_INTERVAL, 10000L);
+      final LdapServerSelector.Server first = selector.getServers().get(0);
+      final LdapServerSelector.Server second = selector.getServers().get(1);
+      final LdapServerSelector.Server fast = selector.getServers().get(2);
+      selector.startProbes().get(2).get();
+
+      assertThat(fast.getLatencyNanos() > 0, is(true));
+      assertThat(first.getLatencyNanos(), is(0L));
+      assertThat(first.isHealthy(), is(true));
+      assertThat(selector.rank(), is(Arrays.asList(fast, first, second)));
+    } finally {
+      firstUnresponsiveServer.close();
+      secondUnresponsiveServer.close();
+    }
+  }
+
+  @Test
+  public void probeShouldTakeDeadServerOutOfRotation() throws NamingException {
+    selector = new LdapServerSelector("ldap/test", environment(fastServer, slowServer), PROBE_INTERVAL, 2000L);
+    fastServer.shutDown(true);
+
+    selector.probe();
+
+    assertThat(selector.getServers().get(0).isHealthy(), is(false));
+    assertThat(selector.getServers().get(1).isHealthy(), is(true));
+    assertThat(selector.rank().get(0).getUrl(), is(url(slowServer)));
+    assertThat(connectedUrl(selector.connect()), is(url(slowServer)));
+  }
+
+  @Test
+  public void connectShouldFailOverWhenServerDiesBetweenProbes() throws NamingException {
+    selector = new LdapServerSelector("ldap/test", environment(fastServer, slowServer), PROBE_INTERVAL, 2000L);
+    selector.probe();
+    fastServer.shutDown(true);
+
+    assertThat(connectedUrl(selector.connect()), is(url(slowServer)));
+    assertThat(selector.getServers().get(0).isHealthy(), is(false));
+    assertThat(selector.getServers().get(0).getFailureCount(), is(1L));
+  }
+
+  @Test
+  public void probeShouldNotWaitForUnresponsiveServer() throws Exception {
+    final ServerSocket unresponsiveServer = new ServerSocket(0);//accepts connections into its backlog, never answers
+    try {
+      final Hashtable<String, String> environment = environment(fastServer);
+      environment.put(Context.PROVIDER_URL, "ldap://localhost:" + unresponsiveServer.getLocalPort() + " " + url(fastServer));
+      final long start = System.nanoTime();
+      selector = new LdapServerSelector("ldap/test", environment, PROBE_INTERVAL, 2000L);
+      final LdapServerSelector.Server unresponsive = selector.getServers().get(0);
+      final LdapServerSelector.Server fast = selector.getServers().get(1);
+      while (fast.getLatencyNanos() == 0 && System.nanoTime() - start < 1500000000L) {
+        Thread.sleep(10L);
+      }
+
+      assertThat(fast.getLatencyNanos() > 0, is(true));
+      assertThat(unresponsive.getFailureCount(), is(0L));
+      selector.probe();
+      assertThat(unresponsive.isHealthy(), is(false));
+      assertThat(selector.rank().get(0).getUrl(), is(url(fastServer)));
+    } finally {
+      unresponsiveServer.close();
+    }
+  }
+
+  @Test(expected = ServiceUnavailableException.class)
+  public void connectShouldFailWhenNoServerIsAvailable() throws NamingException {
+    selector = new LdapServerSelector("ldap/test", environment(fastServer, slowServer), PROBE_INTERVAL, 2000L);
+    fastServer.shutDown(true);
+    slowServer.shutDown(true);
+
+    selector.connect();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void validateReservedKeysShouldRejectNonPositiveProbeInterval() {
+    final Properties properties = new Properties();
+    properties.setProperty(Context.PROVIDER_URL, "ldap://first:389 ldap://second:389");
+    properties.setProperty(LdapServerSelector.PROBE_INTERVAL_KEY, "0");
+
+    LdapEnvironment.validateReservedKeys(properties);
+  }
+}
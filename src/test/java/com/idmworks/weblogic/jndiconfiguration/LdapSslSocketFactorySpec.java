@@ -0,0 +1,141 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.util.ssl.KeyStoreKeyManager;
+import com.unboundid.util.ssl.SSLUtil;
+import com.unboundid.util.ssl.cert.ManageCertificates;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Specification for {@link LdapSslSocketFactory}, against a local in-memory directory server listening for LDAPS.
+ *
+ * @author pdgreen
+ */
+public class LdapSslSocketFactorySpec {
+
+  private static final String[] NO_ATTRIBUTES = {"1.1"};
+  private static final String KEY_STORE_PASSWORD = "password";
+  private File keyStore;
+  private InMemoryDirectoryServer server;
+  private Properties properties;
+
+  @Before
+  public void startServer() throws Exception {
+    keyStore = File.createTempFile(getClass().getSimpleName(), ".jks");
+    keyStore.delete();
+    //the certificate is issued to localhost, so that the host name is verified
+    final ResultCode resultCode = ManageCertificates.main((InputStream) null, null, null, "generate-self-signed-certificate",
+            "--keystore", keyStore.getPath(), "--keystore-password", KEY_STORE_PASSWORD, "--keystore-type", "JKS",
+            "--alias", "server-cert", "--subject-dn", "CN=localhost", "--subject-alternative-name-dns", "localhost");
+    assertThat(resultCode, is(ResultCode.SUCCESS));
+    final SSLUtil serverSslUtil = new SSLUtil(new KeyStoreKeyManager(keyStore, KEY_STORE_PASSWORD.toCharArray(), "JKS", null), null);
+    final InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig("dc=example,dc=com");
+    config.setSchema(null);
+    config.setListenerConfigs(InMemoryListenerConfig.createLDAPSConfig("ldaps", null, 0, serverSslUtil.createSSLServerSocketFactory(), null));
+    server = new InMemoryDirectoryServer(config);
+    server.startListening();
+
+    properties = new Properties();
+    properties.setProperty(Context.PROVIDER_URL, "ldaps://localhost:" + server.getListenPort());
+    properties.setProperty(LdapSslSocketFactory.TRUST_STORE_KEY, keyStore.getPath());
+    properties.setProperty(LdapSslSocketFactory.TRUST_STORE_PASSWORD_KEY, KEY_STORE_PASSWORD);
+    properties.setProperty(LdapSslSocketFactory.TRUST_STORE_TYPE_KEY, "JKS");
+  }
+
+  @After
+  public void stopServer() {
+    LdapDirContextFactory.invalidateAll();
+    server.shutDown(true);
+    keyStore.delete();
+  }
+
+  @Test
+  public void isEnabledShouldOnlyApplyToLdapsWithoutSocketFactory() {
+    assertThat(LdapSslSocketFactory.isEnabled(properties), is(true));
+    properties.setProperty(LdapSslSocketFactory.SESSION_REUSE_KEY, "false");
+    assertThat(LdapSslSocketFactory.isEnabled(properties), is(false));
+    properties.remove(LdapSslSocketFactory.SESSION_REUSE_KEY);
+    properties.setProperty(LdapSslSocketFactory.SOCKET_FACTORY_PROPERTY, "com.example.SocketFactory");
+    assertThat(LdapSslSocketFactory.isEnabled(properties), is(false));
+    properties.remove(LdapSslSocketFactory.SOCKET_FACTORY_PROPERTY);
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:389");
+    assertThat(LdapSslSocketFactory.isEnabled(properties), is(false));
+  }
+
+  @Test
+  public void connectionsShouldResumeTlsSessions() throws Exception {
+    final LdapEnvironment environment = new LdapEnvironment("ldap/tls", properties);
+    //connections are kept open: the JDK may invalidate the session of a connection closed while JNDI reads from it
+    final List<DirContext> contexts = new ArrayList<DirContext>();
+    try {
+      for (int i = 0; i < 3; i++) {
+        final DirContext context = environment.createDirContext();
+        contexts.add(context);
+        context.getAttributes("", NO_ATTRIBUTES);
+      }
+
+      final LdapSslSocketFactory factory = environment.getSocketFactory();
+      assertThat(LdapSslSocketFactory.getFactory("ldap/tls"), is(sameInstance(factory)));
+      for (int i = 0; i < 100 && factory.getResumedHandshakeCount() < 2; i++) {
+        Thread.sleep(10);
+      }
+      assertThat(factory.getFullHandshakeCount(), is(1L));
+      assertThat(factory.getResumedHandshakeCount(), is(2L));
+    } finally {
+      for (final DirContext context : contexts) {
+        context.close();
+      }
+      environment.close();
+    }
+    assertThat(LdapSslSocketFactory.getFactory("ldap/tls"), is(nullValue()));
+  }
+
+  @Test
+  public void pooledConnectionsShouldNotHandshakeAgain() throws Exception {
+    properties.setProperty(LdapPoolConfiguration.POOL_KEY, "true");
+    final LdapEnvironment environment = new LdapEnvironment("ldap/tls", properties);
+    try {
+      for (int i = 0; i < 3; i++) {
+        final DirContext context = environment.createDirContext();
+        context.getAttributes("", NO_ATTRIBUTES);
+        context.close();
+      }
+
+      final LdapSslSocketFactory factory = environment.getSocketFactory();
+      assertThat(factory.getFullHandshakeCount(), is(1L));
+      assertThat(factory.getResumedHandshakeCount(), is(0L));
+    } finally {
+      environment.close();
+    }
+  }
+
+  @Test
+  public void connectionsWithoutBoundNameShouldShareDefaultFactory() {
+    assertThat(LdapSslSocketFactory.getDefault(), is(sameInstance(LdapSslSocketFactory.getDefault())));
+  }
+
+  @Test(expected = NamingException.class)
+  public void connectionShouldVerifyServerCertificate() throws NamingException {
+    properties.remove(LdapSslSocketFactory.TRUST_STORE_KEY);
+    properties.remove(LdapSslSocketFactory.TRUST_STORE_PASSWORD_KEY);
+    final LdapEnvironment environment = new LdapEnvironment("ldap/untrusted", properties);
+    try {
+      environment.createDirContext().getAttributes("", NO_ATTRIBUTES);
+    } finally {
+      environment.close();
+    }
+  }
+}
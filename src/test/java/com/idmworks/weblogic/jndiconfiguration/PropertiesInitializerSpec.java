@@ -1,7 +1,12 @@
 package com.idmworks.weblogic.jndiconfiguration;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.List;
 import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.naming.*;
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -38,6 +43,20 @@ public class PropertiesInitializerSpec {
     verify(initialContext).bind(jndiName, properties);
   }
 
+  @Test
+  public void initializeShouldBindSnapshotWhenRequested() throws NamingException {
+    final InitialContext initialContext = mock(InitialContext.class);
+    final Name jndiName = new CompositeName("properties/nothing");//CompositeName is used for testing
+    final Properties properties = new Properties();
+    properties.setProperty("key", "value");
+
+    final InitializerOptions options = InitializerOptions.parse(new String[]{"-snapshot"});
+    final PropertiesInitializer instance = new PropertiesInitializer(initialContext, new SubcontextCache(), options);
+    instance.initialize(ValueDescriptor.of(jndiName, properties));
+
+    verify(initialContext).bind(jndiName, PropertiesSnapshot.of(properties));
+  }
+
   @Test
   public void parseShouldParseValidInputs() {
     final String[] args = {"properties/test=" + testPropertiesPath, "properties/mock=" + mockPropertiesPath};
@@ -54,4 +73,115 @@ public class PropertiesInitializerSpec {
     assertThat(result.get(0).getJndiName().toString(), is("properties/test"));
     assertThat(result.get(1).getJndiName().toString(), is("properties/mock"));
   }
+
+  @Test
+  public void parseShouldMergeLayersInOrder() {
+    final String[] args = {"properties/layered=" + mockPropertiesPath + PropertiesUtils.LAYER_SEPARATOR + testPropertiesPath,
+      "properties/test=" + testPropertiesPath, "properties/again=" + testPropertiesPath};
+    final NameParser nameParser = new NameParser() {
+
+      public Name parse(String string) throws NamingException {
+        return new CompositeName(string);//CompositeName is used for testing
+      }
+    };
+    final List<ValueDescriptor<Properties>> result = PropertiesInitializer.parse(nameParser, args);
+
+    assertThat(result.get(0).getValue().size(), is(10));
+    assertThat(result.get(0).getValue().getProperty("mockfield1"), is("three"));
+    assertThat(result.get(0).getValue().getProperty("testfield6"), is("8"));
+    assertThat(result.get(1).getValue(), is(result.get(2).getValue()));
+    assertThat(result.get(1).getValue(), is(not(sameInstance(result.get(2).getValue()))));
+  }
+
+  @Test
+  public void parseShouldMergeLayersOfLocalName() {
+    final String[] args = {"properties/layered:local=" + mockPropertiesPath + PropertiesUtils.LAYER_SEPARATOR + testPropertiesPath};
+    final NameParser nameParser = new NameParser() {
+
+      public Name parse(String string) throws NamingException {
+        return new CompositeName(string);//CompositeName is used for testing
+      }
+    };
+    final List<ValueDescriptor<Properties>> result = PropertiesInitializer.parse(nameParser, args);
+
+    assertThat(result.get(0).getJndiName().toString(), is("properties/layered"));
+    assertThat(result.get(0).isLocal(), is(true));
+    assertThat(result.get(0).getValue().getProperty("mockfield1"), is("three"));
+    assertThat(result.get(0).getValue().getProperty("testfield6"), is("8"));
+  }
+
+  @Test
+  public void initializeArchiveShouldBindEachPropertiesEntry() throws NamingException, IOException {
+    final File archive = File.createTempFile("configuration", ".jar");
+    archive.deleteOnExit();
+    final ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+    writeEntry(zipOutputStream, "META-INF/maven/pom.properties", "version=1");
+    writeEntry(zipOutputStream, "app/", null);
+    writeEntry(zipOutputStream, "app/db.properties", "url=jdbc:test");
+    writeEntry(zipOutputStream, "app/readme.txt", "not properties");
+    writeEntry(zipOutputStream, "mail.properties", "host=${archive.spec.host}");
+    zipOutputStream.close();
+    System.setProperty("archive.spec.host", "smtp.example.com");
+    final InitialContext initialContext = mock(InitialContext.class);
+    final NameParser nameParser = new NameParser() {
+
+      public Name parse(String string) throws NamingException {
+        return new CompositeName(string);//CompositeName is used for testing
+      }
+    };
+
+    final PropertiesInitializer instance = new PropertiesInitializer(initialContext, new SubcontextCache(), InitializerOptions.parse(new String[]{"-resolve"}));
+    final int result;
+    try {
+      result = instance.initializeArchive(nameParser, "properties/archived/*=" + archive.getPath());
+    } finally {
+      System.clearProperty("archive.spec.host");
+    }
+
+    final Properties db = new Properties();
+    db.setProperty("url", "jdbc:test");
+    final Properties mail = new Properties();
+    mail.setProperty("host", "smtp.example.com");
+    assertThat(result, is(2));
+    verify(initialContext).bind(new CompositeName("properties/archived/app/db"), db);//CompositeName is used for testing
+    verify(initialContext).bind(new CompositeName("properties/archived/mail"), mail);//CompositeName is used for testing
+    verify(initialContext, never()).bind(eq(new CompositeName("properties/archived/META-INF/maven/pom")), any());//CompositeName is used for testing
+  }
+
+  @Test
+  public void initializeArchiveShouldOnlyBindEntriesBelowDirectory() throws NamingException, IOException {
+    final File archive = File.createTempFile("configuration", ".jar");
+    archive.deleteOnExit();
+    final ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+    writeEntry(zipOutputStream, "config/app/db.properties", "url=jdbc:test");
+    writeEntry(zipOutputStream, "test/app/db.properties", "url=jdbc:other");
+    zipOutputStream.close();
+    final InitialContext initialContext = mock(InitialContext.class);
+    final NameParser nameParser = new NameParser() {
+
+      public Name parse(String string) throws NamingException {
+        return new CompositeName(string);//CompositeName is used for testing
+      }
+    };
+
+    final int result = new PropertiesInitializer(initialContext).initializeArchive(nameParser, "properties/archived/*=" + archive.getPath() + "!config/");
+
+    final Properties db = new Properties();
+    db.setProperty("url", "jdbc:test");
+    assertThat(result, is(1));
+    verify(initialContext).bind(new CompositeName("properties/archived/app/db"), db);//CompositeName is used for testing
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseShouldRejectArchives() {
+    PropertiesInitializer.parse(null, new String[]{"properties/archived/*=" + testPropertiesPath});
+  }
+
+  private static void writeEntry(final ZipOutputStream zipOutputStream, final String name, final String content) throws IOException {
+    zipOutputStream.putNextEntry(new ZipEntry(name));
+    if (content != null) {
+      zipOutputStream.write(content.getBytes("ISO-8859-1"));
+    }
+    zipOutputStream.closeEntry();
+  }
 }
@@ -0,0 +1,106 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import javax.naming.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link PropertiesResolver}.
+ *
+ * @author pdgreen
+ */
+public class PropertiesResolverSpec {
+
+  private static ValueDescriptor<Properties> descriptor(final String jndiName, final String... keyValues) throws InvalidNameException {
+    final Properties properties = new Properties();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      properties.setProperty(keyValues[i], keyValues[i + 1]);
+    }
+    return ValueDescriptor.of(new CompositeName(jndiName), properties);//CompositeName is used for testing
+  }
+
+  @Test
+  public void resolveShouldReplaceOwnKeysAndSystemProperties() throws NamingException {
+    System.setProperty("resolver.spec.home", "/opt/app");
+    try {
+      final List<ValueDescriptor<Properties>> result = PropertiesResolver.resolve(Arrays.asList(
+              descriptor("properties/app", "logs", "${dir}/logs", "dir", "${resolver.spec.home}/var", "plain", "value")), null);
+
+      final Properties properties = result.get(0).getValue();
+      assertThat(properties.getProperty("logs"), is("/opt/app/var/logs"));
+      assertThat(properties.getProperty("dir"), is("/opt/app/var"));
+      assertThat(properties.getProperty("plain"), is("value"));
+    } finally {
+      System.clearProperty("resolver.spec.home");
+    }
+  }
+
+  @Test
+  public void resolveShouldReplaceKeysOfOtherEntries() throws NamingException {
+    final List<ValueDescriptor<Properties>> result = PropertiesResolver.resolve(Arrays.asList(
+            descriptor("properties/app", "url", "http://${properties/common#host}:${port}/", "port", "8080"),
+            descriptor("properties/common", "host", "${domain#name}.example.com", "domain#name", "www")), null);
+
+    assertThat(result.get(0).getValue().getProperty("url"), is("http://www.example.com:8080/"));
+    assertThat(result.get(0).getJndiName().toString(), is("properties/app"));
+  }
+
+  @Test
+  public void resolveShouldLookUpPropertiesBoundEarlier() throws NamingException {
+    final Context context = mock(Context.class);
+    final Properties bound = new Properties();
+    bound.setProperty("host", "ldap.example.com");
+    when(context.lookup("properties/shared")).thenReturn(bound);
+
+    final List<ValueDescriptor<Properties>> result = PropertiesResolver.resolve(Arrays.asList(
+            descriptor("properties/app", "a", "${properties/shared#host}", "b", "${properties/shared#host}")), context);
+
+    assertThat(result.get(0).getValue().getProperty("b"), is("ldap.example.com"));
+    verify(context, times(1)).lookup("properties/shared");
+  }
+
+  @Test
+  public void resolveShouldRejectCycles() throws NamingException {
+    try {
+      PropertiesResolver.resolve(Arrays.asList(descriptor("properties/app", "a", "${b}", "b", "x${properties/other#c}"),
+              descriptor("properties/other", "c", "${properties/app#a}")), null);
+      fail("cycle not detected");
+    } catch (IllegalArgumentException ex) {
+      assertThat(ex.getMessage(), containsString("properties/app#b -> properties/other#c -> properties/app#a"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void resolveShouldRejectUnknownPlaceholders() throws NamingException {
+    PropertiesResolver.resolve(Arrays.asList(descriptor("properties/app", "a", "${resolver.spec.undefined}")), null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void resolveShouldRejectUnterminatedPlaceholders() throws NamingException {
+    PropertiesResolver.resolve(Arrays.asList(descriptor("properties/app", "a", "${b", "b", "value")), null);
+  }
+
+  @Test
+  public void resolveShouldFollowLongChainsWithoutRecursion() throws NamingException {
+    final int length = 100000;
+    final List<String> keyValues = new ArrayList<String>(2 * length);
+    for (int i = 0; i < length - 1; i++) {
+      keyValues.add("key" + i);
+      keyValues.add("${key" + (i + 1) + "}");
+    }
+    keyValues.add("key" + (length - 1));
+    keyValues.add("end");
+
+    final List<ValueDescriptor<Properties>> result = PropertiesResolver.resolve(Arrays.asList(
+            descriptor("properties/chain", keyValues.toArray(new String[keyValues.size()]))), null);
+
+    assertThat(result.get(0).getValue().getProperty("key0"), is("end"));
+    assertThat(result.get(0).getValue().size(), is(length));
+  }
+}
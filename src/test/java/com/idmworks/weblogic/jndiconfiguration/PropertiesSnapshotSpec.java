@@ -0,0 +1,71 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Specification for {@link PropertiesSnapshot}.
+ *
+ * @author pdgreen
+ */
+public class PropertiesSnapshotSpec {
+
+  private Properties properties;
+
+  @Before
+  public void initializeProperties() {
+    properties = new Properties();
+    for (int i = 0; i < 1000; i++) {
+      properties.setProperty("key" + i, "value" + i);
+    }
+  }
+
+  @Test
+  public void snapshotShouldContainSameEntriesAsProperties() {
+    final PropertiesSnapshot result = PropertiesSnapshot.of(properties);
+
+    assertThat(result.size(), is(1000));
+    assertThat(result.get("key0"), is("value0"));
+    assertThat(result.getProperty("key999"), is("value999"));
+    assertThat(result.get("missing"), is(nullValue()));
+    assertThat(result.getProperty("missing", "default"), is("default"));
+    assertThat(result.containsKey("key500"), is(true));
+    assertThat(new HashMap<String, String>(result).equals(result), is(true));
+    assertThat(result.toProperties(), is(properties));
+  }
+
+  @Test
+  public void snapshotShouldIncludeDefaults() {
+    final Properties withDefaults = new Properties(properties);
+    withDefaults.setProperty("own", "value");
+
+    final PropertiesSnapshot result = PropertiesSnapshot.of(withDefaults);
+
+    assertThat(result.size(), is(1001));
+    assertThat(result.get("key1"), is("value1"));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void snapshotShouldBeImmutable() {
+    PropertiesSnapshot.of(properties).put("key", "value");
+  }
+
+  @Test
+  public void snapshotShouldSurviveSerialization() throws Exception {
+    final PropertiesSnapshot snapshot = PropertiesSnapshot.of(properties);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeObject(snapshot);
+    output.close();
+
+    final Object result = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+    assertThat(result, is((Object) snapshot));
+    assertThat(((Map<?, ?>) result).get("key42"), is((Object) "value42"));
+  }
+}
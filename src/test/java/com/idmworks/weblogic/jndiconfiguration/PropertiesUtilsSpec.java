@@ -1,5 +1,12 @@
 package com.idmworks.weblogic.jndiconfiguration;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -13,10 +20,12 @@ import static org.hamcrest.CoreMatchers.*;
 public class PropertiesUtilsSpec {
 
   private String testPropertiesPath;
+  private String mockPropertiesPath;
 
   @Before
   public void initializePropertiesPath() {
     testPropertiesPath = getClass().getClassLoader().getResource("test.properties").getPath();
+    mockPropertiesPath = getClass().getClassLoader().getResource("mock.properties").getPath();
   }
 
   @Test
@@ -34,4 +43,102 @@ public class PropertiesUtilsSpec {
     assertThat(result.getProperty("testfield5"), is("5"));
     assertThat(result.getProperty("testfield6"), is("8"));
   }
+
+  @Test
+  public void loadPropertiesShouldLoadAllFilesInInputOrder() {
+    final List<String> filenames = Arrays.asList(mockPropertiesPath, testPropertiesPath, mockPropertiesPath);
+
+    final List<Properties> result = PropertiesUtils.loadProperties(filenames);
+
+    assertThat(result.size(), is(3));
+    assertThat(result.get(0).getProperty("mockfield1"), is("three"));
+    assertThat(result.get(1).getProperty("testfield6"), is("8"));
+    assertThat(result.get(2).getProperty("mockfield3"), is("mice"));
+  }
+
+  @Test
+  public void loadPropertiesShouldLoadShortListsOnCallingThread() {
+    final long tasksBefore = PropertiesUtils.getLoaderExecutor().getTaskCount();
+
+    PropertiesUtils.loadProperties(Collections.nCopies(PropertiesUtils.MAX_SERIAL_LOAD, testPropertiesPath));
+
+    assertThat(PropertiesUtils.getLoaderExecutor().getTaskCount(), is(tasksBefore));
+  }
+
+  @Test
+  public void loadPropertiesShouldShareLoaderThreadsBetweenCalls() {
+    final List<String> filenames = new ArrayList<String>();
+    for (int i = 0; i < 20; i++) {
+      filenames.add(i % 2 == 0 ? mockPropertiesPath : testPropertiesPath);
+    }
+    final long tasksBefore = PropertiesUtils.getLoaderExecutor().getTaskCount();
+
+    final List<Properties> first = PropertiesUtils.loadProperties(filenames);
+    final List<Properties> second = PropertiesUtils.loadProperties(filenames);
+
+    assertThat(first.get(18).getProperty("mockfield1"), is("three"));
+    assertThat(second.get(19).getProperty("testfield6"), is("8"));
+    assertThat(PropertiesUtils.getLoaderExecutor().getTaskCount() - tasksBefore, is(40L));
+    assertThat(PropertiesUtils.getLoaderExecutor().getLargestPoolSize() <= 16, is(true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void loadPropertiesShouldFailWhenAnyFileInLongListIsMissing() {
+    final List<String> filenames = new ArrayList<String>(Collections.nCopies(10, testPropertiesPath));
+    filenames.add(5, "/does/not/exist.properties");
+
+    PropertiesUtils.loadProperties(filenames);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void loadPropertiesShouldFailWhenAnyFileIsMissing() {
+    PropertiesUtils.loadProperties(Arrays.asList(testPropertiesPath, "/does/not/exist.properties"));
+  }
+
+  @Test
+  public void mergeLayersShouldLetLaterLayersOverride() {
+    final Properties base = new Properties();
+    base.setProperty("host", "base");
+    base.setProperty("port", "389");
+    final Properties node = new Properties();
+    node.setProperty("host", "node");
+
+    final Properties result = PropertiesUtils.mergeLayers(Arrays.asList(base, node));
+
+    assertThat(result.getProperty("host"), is("node"));
+    assertThat(result.getProperty("port"), is("389"));
+    assertThat(PropertiesUtils.splitLayers("a.properties" + PropertiesUtils.LAYER_SEPARATOR + "b.properties"), is(Arrays.asList("a.properties", "b.properties")));
+  }
+
+  @Test
+  public void splitLayersShouldKeepColonsCommasAndSpacesInFilenames() {
+    assertThat(PropertiesUtils.splitLayers("/opt/my app/a,b:c.properties "), is(Arrays.asList("/opt/my app/a,b:c.properties ")));
+    assertThat(PropertiesUtils.splitLayers("C:\\conf\\base.properties|D:\\node.properties"), is(Arrays.asList("C:\\conf\\base.properties", "D:\\node.properties")));
+  }
+
+  @Test
+  public void splitLayersShouldUnescapeSeparatorInFilenames() {
+    assertThat(PropertiesUtils.splitLayers("a\\|b.properties|c.properties"), is(Arrays.asList("a|b.properties", "c.properties")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void splitLayersShouldRejectEmptyLayers() {
+    PropertiesUtils.splitLayers("a.properties" + PropertiesUtils.LAYER_SEPARATOR + PropertiesUtils.LAYER_SEPARATOR + "b.properties");
+  }
+
+  @Test
+  public void loadPropertiesShouldLoadFilesLargerThanPooledBuffers() throws IOException {
+    final File file = File.createTempFile("large", ".properties");
+    file.deleteOnExit();
+    final FileWriter writer = new FileWriter(file);
+    for (int i = 0; i < 10000; i++) {
+      writer.write("key" + i + "=value" + i + "\n");
+    }
+    writer.close();
+
+    final Properties result = PropertiesUtils.loadProperties(file.getPath());
+
+    assertThat(result.size(), is(10000));
+    assertThat(result.getProperty("key9999"), is("value9999"));
+  }
 }
@@ -0,0 +1,116 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Properties;
+import javax.naming.*;
+import org.junit.*;
+import org.mockito.ArgumentMatcher;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link PropertiesWatcher}.
+ *
+ * @author pdgreen
+ */
+public class PropertiesWatcherSpec {
+
+  private File file;
+  private PropertiesWatcher watcher;
+
+  @Before
+  public void createPropertiesFile() throws IOException {
+    file = File.createTempFile("watched", ".properties");
+    file.deleteOnExit();
+    write("key=initial\n");
+    watcher = new PropertiesWatcher(50);
+  }
+
+  @After
+  public void closeWatcher() {
+    watcher.close();
+  }
+
+  @Test
+  public void changedFileShouldBeReboundOnceAfterBurstOfWrites() throws Exception {
+    final Name jndiName = new CompositeName("properties/watched");//CompositeName is used for testing
+    final Reinitializer<Properties> reinitializer = mock(Reinitializer.class);
+    watcher.watch(file.getPath(), jndiName, PropertiesUtils.loadProperties(file.getPath()), reinitializer);
+
+    write("key=first\n");
+    write("key=second\n");
+    write("key=changed\n");
+    awaitReloads(1);
+
+    assertThat(watcher.getReloadCount(), is(1L));
+    assertThat(watcher.getRebindCount(), is(1L));
+    final Properties expected = new Properties();
+    expected.setProperty("key", "changed");
+    verify(reinitializer).reinitialize(argThat(new ArgumentMatcher<ValueDescriptor<Properties>>() {
+
+      @Override
+      public boolean matches(Object argument) {
+        final ValueDescriptor<?> descriptor = (ValueDescriptor<?>) argument;
+        return descriptor.getJndiName().equals(jndiName) && descriptor.getValue().equals(expected);
+      }
+    }));
+  }
+
+  @Test
+  public void unchangedPropertiesShouldNotBeRebound() throws Exception {
+    final Reinitializer<Properties> reinitializer = mock(Reinitializer.class);
+    watcher.watch(file.getPath(), new CompositeName("properties/watched"), PropertiesUtils.loadProperties(file.getPath()), reinitializer);
+
+    write("# comment only\nkey=initial\n");
+    awaitReloads(1);
+
+    assertThat(watcher.getUnchangedCount(), is(1L));
+    verifyZeroInteractions(reinitializer);
+  }
+
+  @Test
+  public void changedBaseLayerShouldRebindMergedLayers() throws Exception {
+    final File base = File.createTempFile("base", ".properties");
+    base.deleteOnExit();
+    write(base, "key=base\nother=base\n");
+    final String layers = base.getPath() + PropertiesUtils.LAYER_SEPARATOR + file.getPath();
+    final Name jndiName = new CompositeName("properties/layered");//CompositeName is used for testing
+    final Reinitializer<Properties> reinitializer = mock(Reinitializer.class);
+    watcher.watch(layers, jndiName, PropertiesUtils.loadLayeredProperties(layers), reinitializer);
+
+    write(base, "key=base\nother=changed\n");
+    awaitReloads(1);
+
+    final Properties expected = new Properties();
+    expected.setProperty("key", "initial");
+    expected.setProperty("other", "changed");
+    verify(reinitializer).reinitialize(argThat(new ArgumentMatcher<ValueDescriptor<Properties>>() {
+
+      @Override
+      public boolean matches(Object argument) {
+        return ((ValueDescriptor<?>) argument).getValue().equals(expected);
+      }
+    }));
+  }
+
+  private void write(final String content) throws IOException {
+    write(file, content);
+  }
+
+  private static void write(final File file, final String content) throws IOException {
+    final FileWriter writer = new FileWriter(file);
+    writer.write(content);
+    writer.close();
+  }
+
+  private void awaitReloads(final long reloads) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 20000;
+    while (watcher.getReloadCount() < reloads && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    Thread.sleep(200);
+  }
+}
@@ -0,0 +1,35 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.spi.InitialContextFactory;
+import static org.mockito.Mockito.*;
+
+/**
+ * {@link InitialContextFactory} handing out mocked {@link Context}s while recording the environment each was created
+ * with; used instead of WebLogic in specifications.
+ *
+ * @author pdgreen
+ */
+public class RecordingContextFactory implements InitialContextFactory {
+
+  static final List<Hashtable<?, ?>> ENVIRONMENTS = new CopyOnWriteArrayList<Hashtable<?, ?>>();
+  static final List<Context> CONTEXTS = new CopyOnWriteArrayList<Context>();
+
+  static void reset() {
+    ENVIRONMENTS.clear();
+    CONTEXTS.clear();
+  }
+
+  public Context getInitialContext(Hashtable<?, ?> environment) throws NamingException {
+    final Hashtable<?, ?> copy = (Hashtable<?, ?>) environment.clone();
+    final Context context = mock(Context.class);
+    doReturn(copy).when(context).getEnvironment();
+    ENVIRONMENTS.add(copy);
+    CONTEXTS.add(context);
+    return context;
+  }
+}
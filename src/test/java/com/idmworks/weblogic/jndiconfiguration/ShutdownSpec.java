@@ -0,0 +1,106 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Properties;
+import javax.naming.*;
+import javax.naming.directory.DirContext;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link Shutdown}.
+ *
+ * @author pdgreen
+ */
+public class ShutdownSpec {
+
+  private InitialContext initialContext;
+
+  @Before
+  public void forgetEarlierInitializers() {
+    PropertiesWatcher.closeAll();
+    OwnedBindings.drain(false);
+    OwnedBindings.drain(true);
+    LdapDirContextFactory.invalidateAll();
+    StubDirContextFactory.reset();
+    initialContext = mock(InitialContext.class);
+  }
+
+  @After
+  public void invalidateEnvironments() {
+    LdapDirContextFactory.invalidateAll();
+  }
+
+  @Test
+  public void shutdownShouldUnbindNamesBoundByInitializers() throws NamingException {
+    final Name stringName = new CompositeName("app/string");//CompositeName is used for testing
+    final Name ldapName = new CompositeName("ldap/directory");//CompositeName is used for testing
+    final Properties properties = new Properties();
+    properties.setProperty(LdapPagedSearch.PAGED_SEARCH_KEY, "true");
+    new StringInitializer(initialContext).initialize(ValueDescriptor.of(stringName, "value"));
+    new LdapDirContextInitializer(initialContext).initialize(ValueDescriptor.of(ldapName, properties));
+
+    final Shutdown.Report report = new Shutdown(initialContext, InitializerOptions.none()).shutdown();
+
+    verify(initialContext).unbind(stringName);
+    verify(initialContext).unbind(FingerprintBinder.buildFingerprintName(stringName));
+    verify(initialContext).unbind(ldapName);
+    verify(initialContext).unbind(LdapDirContextInitializer.buildPropertiesName(ldapName));
+    verify(initialContext).unbind(LdapPagedSearch.buildPagedSearchName(ldapName));
+    assertThat(report.getUnboundCount(), is(4));
+    assertThat(report.getFailedCount(), is(0));
+    assertThat(OwnedBindings.size(), is(0));
+  }
+
+  @Test
+  public void shutdownShouldCarryOnWhenUnbindFails() throws NamingException {
+    final Name failingName = new CompositeName("app/failing");//CompositeName is used for testing
+    final Name otherName = new CompositeName("app/other");//CompositeName is used for testing
+    doThrow(new NamingException("refused")).when(initialContext).unbind(failingName);
+    final StringInitializer stringInitializer = new StringInitializer(initialContext);
+    stringInitializer.initialize(ValueDescriptor.of(failingName, "value"));
+    stringInitializer.initialize(ValueDescriptor.of(otherName, "value"));
+
+    final Shutdown.Report report = new Shutdown(initialContext, InitializerOptions.none()).shutdown();
+
+    verify(initialContext).unbind(otherName);
+    assertThat(report.getUnboundCount(), is(1));
+    assertThat(report.getFailedCount(), is(1));
+  }
+
+  @Test
+  public void shutdownShouldCloseConnectionsNotReturnedWithinGracePeriod() throws Exception {
+    final Name ldapName = new CompositeName("ldap/pooled");//CompositeName is used for testing
+    final Properties properties = new Properties();
+    properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, StubDirContextFactory.class.getName());
+    properties.setProperty(Context.PROVIDER_URL, "ldap://localhost:389/dc=fake");
+    properties.setProperty(LdapPoolConfiguration.POOL_KEY, "true");
+    when(initialContext.lookup(LdapDirContextInitializer.buildPropertiesName(ldapName))).thenReturn(properties);
+    final Reference reference = new Reference(DirContext.class.getName(), new StringRefAddr(LdapDirContextFactory.JNDI_NAME_ADDRESS_TYPE, "ldap/pooled"), LdapDirContextFactory.class.getName(), null);
+    final DirContext returned = (DirContext) new LdapDirContextFactory().getObjectInstance(reference, ldapName, initialContext, null);
+    new LdapDirContextFactory().getObjectInstance(reference, ldapName, initialContext, null);
+    returned.close();
+
+    final Shutdown.Report report = new Shutdown(initialContext, InitializerOptions.parse(new String[]{"-grace=10"})).shutdown();
+
+    assertThat(report.getConnectionsClosed(), is(1));
+    assertThat(StubDirContextFactory.OPEN.get(), is(0));
+    assertThat(LdapDirContextFactory.getEnvironment("ldap/pooled"), is(nullValue()));
+  }
+
+  @Test
+  public void shutdownShouldStopWatchers() throws Exception {
+    new PropertiesWatcher(PropertiesWatcher.DEFAULT_DEBOUNCE);
+
+    final Shutdown.Report report = new Shutdown(initialContext, InitializerOptions.none()).shutdown();
+
+    assertThat(report.getWatchersClosed(), is(1));
+    assertThat(PropertiesWatcher.closeAll(), is(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeGraceShouldBeRejected() {
+    new Shutdown(initialContext, InitializerOptions.parse(new String[]{"-grace=-1"}));
+  }
+}
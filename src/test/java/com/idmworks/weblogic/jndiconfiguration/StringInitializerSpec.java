@@ -1,5 +1,6 @@
 package com.idmworks.weblogic.jndiconfiguration;
 
+import java.util.Hashtable;
 import java.util.List;
 import javax.naming.*;
 import org.junit.*;
@@ -28,6 +29,44 @@ public class StringInitializerSpec {
     verify(initialContext).bind(jndiName, value);
   }
 
+  @Test
+  public void initializeShouldSkipUnchangedValueWhenRebinding() throws NamingException {
+    final InitialContext initialContext = mock(InitialContext.class);
+    final Name jndiName = new CompositeName("properties/nothing");//CompositeName is used for testing
+    when(initialContext.lookup(FingerprintBinder.buildFingerprintName(jndiName))).thenReturn(FingerprintBinder.fingerprint("nose"));
+
+    final StringInitializer instance = new StringInitializer(initialContext, new SubcontextCache(), InitializerOptions.parse(new String[]{"-rebind"}));
+    instance.initialize(ValueDescriptor.of(jndiName, "nose"));
+    instance.initialize(ValueDescriptor.of(jndiName, "mouth"));
+
+    verify(initialContext, never()).bind(jndiName, "nose");
+    verify(initialContext, never()).rebind(jndiName, "nose");
+    verify(initialContext).rebind(jndiName, "mouth");
+  }
+
+  @Test
+  public void initializeShouldBindFlaggedEntriesNodeLocally() throws NamingException {
+    RecordingContextFactory.reset();
+    final Hashtable<String, String> ht = new Hashtable<String, String>();
+    ht.put(Context.INITIAL_CONTEXT_FACTORY, RecordingContextFactory.class.getName());
+    final InitialContext initialContext = JndiUtils.createInitialContext(ht);
+    final NameParser nameParser = new NameParser() {
+
+      public Name parse(String string) throws NamingException {
+        return new CompositeName(string);//CompositeName is used for testing
+      }
+    };
+
+    final StringInitializer instance = new StringInitializer(initialContext);
+    for (final ValueDescriptor<String> stringDescriptor : StringInitializer.parse(nameParser, new String[]{"server/node:local=Test", "jsf/ProjectStage=Development"})) {
+      instance.initialize(stringDescriptor);
+    }
+
+    assertThat(RecordingContextFactory.ENVIRONMENTS.get(1).get(JndiUtils.REPLICATE_BINDINGS), is((Object) "false"));
+    verify(RecordingContextFactory.CONTEXTS.get(1)).bind(new CompositeName("server/node"), "Test");
+    verify(RecordingContextFactory.CONTEXTS.get(0)).bind(new CompositeName("jsf/ProjectStage"), "Development");
+  }
+
   @Test
   public void parseShouldParseValidInputs() {
     final String[] args = {"properties/test=test", "properties/mock=value"};
@@ -0,0 +1,115 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Specification for {@link StringPool}.
+ *
+ * @author pdgreen
+ */
+public class StringPoolSpec {
+
+  private static final int FILES = 40;
+  private static final int KEYS = 100;
+  private final List<String> filenames = new ArrayList<String>();
+
+  /**
+   * Files of one application per environment: every file has the same keys, most values are shared defaults and a
+   * few are specific to the file.
+   */
+  @Before
+  public void writeOverlappingFiles() throws IOException {
+    for (int i = 0; i < FILES; i++) {
+      final File file = File.createTempFile("overlapping" + i, ".properties");
+      file.deleteOnExit();
+      final FileWriter writer = new FileWriter(file);
+      for (int key = 0; key < KEYS; key++) {
+        final String value = key % 5 == 0 ? "jdbc:oracle:thin:@db" + i + ".example.com:1521/APP" : "default-value-of-setting-" + key;
+        writer.write("application.datasource.setting." + key + "=" + value + "\n");
+      }
+      writer.close();
+      filenames.add(file.getPath());
+    }
+  }
+
+  /**
+   * Estimated heap bytes of the distinct string instances referenced by properties.
+   */
+  private static long retainedBytes(final List<Properties> loaded) {
+    final Set<Object> instances = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    long bytes = 0L;
+    for (final Properties properties : loaded) {
+      for (final Map.Entry<Object, Object> entry : properties.entrySet()) {
+        for (final Object string : new Object[]{entry.getKey(), entry.getValue()}) {
+          if (instances.add(string)) {
+            bytes += StringPool.estimateBytes((String) string);
+          }
+        }
+      }
+    }
+    return bytes;
+  }
+
+  @Test
+  public void internShouldReturnPooledInstance() {
+    final StringPool instance = new StringPool();
+    final String first = new String("value");
+    final String second = new String("value");
+
+    assertThat(instance.intern(first), is(sameInstance(first)));
+    assertThat(instance.intern(second), is(sameInstance(first)));
+    assertThat(instance.intern((String) null), is(nullValue()));
+    assertThat(instance.getDeduplicatedCount(), is(1L));
+    assertThat(instance.getBytesSaved(), is(StringPool.estimateBytes("value")));
+  }
+
+  @Test
+  public void internShouldReplaceKeysAndValuesInPlace() {
+    final StringPool instance = new StringPool();
+    final String key = new String("key");
+    final String value = new String("value");
+    instance.intern(key);
+    instance.intern(value);
+    final Properties properties = new Properties();
+    properties.put(new String("key"), new String("value"));
+    properties.put(new String("other"), new String("value"));
+
+    assertThat(instance.intern(properties), is(sameInstance(properties)));
+    assertThat(properties.size(), is(2));
+    for (final Object pooledKey : properties.keySet()) {
+      if (pooledKey.equals(key)) {
+        assertThat(pooledKey, is(sameInstance((Object) key)));
+      }
+    }
+    assertThat(properties.get("key"), is(sameInstance((Object) value)));
+    assertThat(properties.get("other"), is(sameInstance((Object) value)));
+  }
+
+  @Test
+  public void loadPropertiesShouldShareStringsAcrossOverlappingFiles() throws IOException {
+    final List<Properties> raw = new ArrayList<Properties>(FILES);
+    for (final String filename : filenames) {
+      final Properties properties = new Properties();
+      final FileInputStream inputStream = new FileInputStream(filename);
+      properties.load(inputStream);
+      inputStream.close();
+      raw.add(properties);
+    }
+    final long savedBefore = PropertiesUtils.getStringPool().getBytesSaved();
+
+    final List<Properties> interned = PropertiesUtils.loadProperties(filenames);
+
+    assertThat(interned, is(raw));
+    final long rawBytes = retainedBytes(raw);
+    final long internedBytes = retainedBytes(interned);
+    assertThat("interned " + internedBytes + " of " + rawBytes + " bytes", internedBytes * 4 < rawBytes, is(true));
+    assertThat(PropertiesUtils.getStringPool().getBytesSaved() - savedBefore >= rawBytes - internedBytes, is(true));
+  }
+}
@@ -0,0 +1,47 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+import javax.naming.spi.InitialContextFactory;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Mockito.*;
+
+/**
+ * {@link InitialContextFactory} handing out mocked {@link DirContext}s while counting the open ones; used instead of
+ * an LDAP server in specifications.
+ *
+ * @author pdgreen
+ */
+public class StubDirContextFactory implements InitialContextFactory {
+
+  static final AtomicInteger CREATED = new AtomicInteger();
+  static final AtomicInteger OPEN = new AtomicInteger();
+  static final AtomicInteger MAX_OPEN = new AtomicInteger();
+
+  static void reset() {
+    CREATED.set(0);
+    OPEN.set(0);
+    MAX_OPEN.set(0);
+  }
+
+  public Context getInitialContext(Hashtable<?, ?> environment) throws NamingException {
+    final DirContext dirContext = mock(DirContext.class);
+    doAnswer(new Answer<Object>() {
+
+      public Object answer(InvocationOnMock invocation) {
+        OPEN.decrementAndGet();
+        return null;
+      }
+    }).when(dirContext).close();
+    CREATED.incrementAndGet();
+    final int open = OPEN.incrementAndGet();
+    int max;
+    while ((max = MAX_OPEN.get()) < open && !MAX_OPEN.compareAndSet(max, open)) {
+    }
+    return dirContext;
+  }
+}
@@ -0,0 +1,142 @@
+package com.idmworks.weblogic.jndiconfiguration;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.naming.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Specification for {@link TypedInitializer}.
+ *
+ * @author pdgreen
+ */
+public class TypedInitializerSpec {
+
+  private NameParser nameParser;
+
+  @Before
+  public void initializeNameParser() {
+    nameParser = new NameParser() {
+
+      public Name parse(String string) throws NamingException {
+        return new CompositeName(string);//CompositeName is used for testing
+      }
+    };
+  }
+
+  @Test
+  public void initializeShouldBindConvertedValue() throws NamingException {
+    final InitialContext initialContext = mock(InitialContext.class);
+    final Name jndiName = new CompositeName("app/maxUsers");//CompositeName is used for testing
+
+    final TypedInitializer instance = new TypedInitializer(initialContext);
+    instance.initialize(ValueDescriptor.<Object>of(jndiName, 42));
+
+    verify(initialContext).bind(jndiName, 42);
+  }
+
+  @Test
+  public void parseShouldConvertValuesByTypeHint() {
+    final String[] args = {"app/name=plain", "app/maxUsers:int=42", "app/limit:long=9000000000", "app/enabled:bool=TRUE",
+      "app/timeout:duration=30s", "app/retry:duration=250", "app/admins:list=alice, bob"};
+
+    final List<ValueDescriptor<Object>> result = TypedInitializer.parse(nameParser, args);
+
+    assertThat(result.get(0).getJndiName().toString(), is("app/name"));
+    assertThat(result.get(0).getValue(), is((Object) "plain"));
+    assertThat(result.get(1).getJndiName().toString(), is("app/maxUsers"));
+    assertThat(result.get(1).getValue(), is((Object) 42));
+    assertThat(result.get(2).getValue(), is((Object) 9000000000L));
+    assertThat(result.get(3).getValue(), is((Object) Boolean.TRUE));
+    assertThat(result.get(4).getValue(), is((Object) 30000L));
+    assertThat(result.get(5).getValue(), is((Object) 250L));
+    assertThat(result.get(6).getValue(), is((Object) Arrays.asList("alice", "bob")));
+  }
+
+  @Test
+  public void parseShouldStripLocalFlagAfterType() {
+    final List<ValueDescriptor<Object>> result = TypedInitializer.parse(nameParser, new String[]{"app/maxUsers:int:local=42", "app/name:local=x"});
+
+    assertThat(result.get(0).getJndiName().toString(), is("app/maxUsers"));
+    assertThat(result.get(0).getValue(), is((Object) 42));
+    assertThat(result.get(0).isLocal(), is(true));
+    assertThat(result.get(1).getJndiName().toString(), is("app/name"));
+    assertThat(result.get(1).getValue(), is((Object) "x"));
+    assertThat(result.get(1).isLocal(), is(true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseShouldRejectInvalidValue() {
+    TypedInitializer.parse(nameParser, new String[]{"app/enabled:bool=yes"});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseShouldRejectUnknownType() {
+    TypedInitializer.parse(nameParser, new String[]{"app/timeout:durtion=30s"});
+  }
+
+  @Test
+  public void parseShouldKeepEscapedColonsAndPathsInName() {
+    final List<ValueDescriptor<Object>> result = TypedInitializer.parse(nameParser, new String[]{"java:comp/env/x=5", "a\\:b:local=c", "a\\:b:int=1"});
+
+    assertThat(result.get(0).getJndiName().toString(), is("java:comp/env/x"));
+    assertThat(result.get(0).getValue(), is((Object) "5"));
+    assertThat(result.get(1).getJndiName().toString(), is("a:b"));
+    assertThat(result.get(1).getValue(), is((Object) "c"));
+    assertThat(result.get(1).isLocal(), is(true));
+    assertThat(result.get(2).getJndiName().toString(), is("a:b"));
+    assertThat(result.get(2).getValue(), is((Object) 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseShouldRejectOverflowingDuration() {
+    TypedInitializer.parse(nameParser, new String[]{"app/timeout:duration=9223372036854775d"});
+  }
+
+  @Test
+  public void parseShouldConvertTypedProperties() throws IOException {
+    final File propertiesFile = File.createTempFile("typed", ".properties");
+    propertiesFile.deleteOnExit();
+    final FileWriter writer = new FileWriter(propertiesFile);
+    writer.write("name=plain\nmaxUsers\\:int=42\ntimeout\\:duration=2m\nurl\\\\\\:legacy=http://example.com/\n");
+    writer.close();
+
+    final List<ValueDescriptor<Object>> result = TypedInitializer.parse(nameParser, new String[]{"app/settings:properties=" + propertiesFile.getPath()});
+
+    assertThat(result.get(0).getJndiName().toString(), is("app/settings"));
+    final Map<?, ?> settings = (Map<?, ?>) result.get(0).getValue();
+    assertThat(settings.get("name"), is((Object) "plain"));
+    assertThat(settings.get("maxUsers"), is((Object) 42));
+    assertThat(settings.get("timeout"), is((Object) 120000L));
+    assertThat(settings.get("url:legacy"), is((Object) "http://example.com/"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseShouldRejectInvalidTypedProperty() throws IOException {
+    final File propertiesFile = File.createTempFile("typed", ".properties");
+    propertiesFile.deleteOnExit();
+    final FileWriter writer = new FileWriter(propertiesFile);
+    writer.write("enabled\\:bool=yes\n");
+    writer.close();
+
+    TypedInitializer.parse(nameParser, new String[]{"app/settings:properties=" + propertiesFile.getPath()});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseShouldRejectUnknownTypeOfProperty() throws IOException {
+    final File propertiesFile = File.createTempFile("typed", ".properties");
+    propertiesFile.deleteOnExit();
+    final FileWriter writer = new FileWriter(propertiesFile);
+    writer.write("url\\:legacy=http://example.com/\n");
+    writer.close();
+
+    TypedInitializer.parse(nameParser, new String[]{"app/settings:properties=" + propertiesFile.getPath()});
+  }
+}